@@ -14,6 +14,7 @@ public class AdminScreen extends JPanel {
     private final JTable ordersTable;
     private final DefaultTableModel customersModel;
     private final DefaultTableModel ordersModel;
+    private final OrderHistoryPager ordersPager;
 
     /**
      * Constructs an AdminScreen with the given parent UI.
@@ -42,6 +43,7 @@ public class AdminScreen extends JPanel {
         
         customersTable = new JTable(customersModel);
         ordersTable = new JTable(ordersModel);
+        ordersPager = new OrderHistoryPager(parent.orderDb, "admin", "ADMIN", ordersModel, this::toOrderRow);
         
         initUI();
         refreshData();
@@ -103,7 +105,9 @@ public class AdminScreen extends JPanel {
         orderButtonsPanel.add(cancelOrderBtn);
         orderButtonsPanel.add(refreshOrdersBtn);
         
-        ordersPanel.add(new JScrollPane(ordersTable), BorderLayout.CENTER);
+        JScrollPane ordersScroll = new JScrollPane(ordersTable);
+        ordersPager.attach(ordersScroll); // orders load a page at a time as the admin scrolls
+        ordersPanel.add(ordersScroll, BorderLayout.CENTER);
         ordersPanel.add(orderButtonsPanel, BorderLayout.SOUTH);
 
         // Add panels to split pane
@@ -117,12 +121,10 @@ public class AdminScreen extends JPanel {
     private void refreshData() {
     // Clear existing data
     customersModel.setRowCount(0);
-    ordersModel.setRowCount(0);
 
     //  Connect to grab info customers from users.db
-    try (Connection userConn = DriverManager.getConnection(parent.userDb.getConnectionUrl())) {
-        try (PreparedStatement custStmt = userConn.prepareStatement(
-                "SELECT username, full_name, email, phone FROM users WHERE user_type = 'CUSTOMER'")) {
+    try (Connection userConn = parent.userDb.getConnection()) {
+        try (PreparedStatement custStmt = userConn.prepareStatement(SqlStatements.CUSTOMER_LIST)) {
             
             try (ResultSet rs = custStmt.executeQuery()) {
                 while (rs.next()) {
@@ -145,46 +147,29 @@ public class AdminScreen extends JPanel {
             JOptionPane.ERROR_MESSAGE);
     }
 
-    // Connect to grab order info from orders.db 
-    try (Connection orderConn = DriverManager.getConnection("jdbc:sqlite:orders.db")) { // Hardcoded path to orders.db
-        try (PreparedStatement orderStmt = orderConn.prepareStatement( // Query to get order details
-                "SELECT o.order_id, o.customer_username, o.restaurant_name, o.status, " +
-                "o.total_amount, o.item_count, o.estimated_minutes, " +
-                "((o.created_at + (o.estimated_minutes * 60)) - strftime('%s', 'now')) / 60 as minutes_remaining " +
-                "FROM orders o " +
-                "ORDER BY o.created_at DESC"))  { 
-            // Execute query and populate orders table
-            try (ResultSet rs = orderStmt.executeQuery()) {
-                while (rs.next()) { // Iterate through results
-                    String etaDisplay = "N/A"; // Default ETA display
-                    if (!"CANCELLED".equals(rs.getString("status")) && 
-                        !"DELIVERED".equals(rs.getString("status"))) { // Only calculate ETA for active orders
-                        int minutesRemaining = rs.getInt("minutes_remaining"); // Get calculated minutes remaining
-                        etaDisplay = minutesRemaining > 0 ? minutesRemaining + " min" : "Due now"; // Format ETA display
-                    }
-                    // Prepare row data for orders table
-                    Object[] rowData = { 
-                        rs.getLong("order_id"),// Order ID
-                        rs.getString("customer_username"),// Customer username
-                        rs.getString("restaurant_name"),// Restaurant name
-                        rs.getString("status"),// Order status
-                        String.format("$%.2f", rs.getDouble("total_amount")),// Total amount
-                        rs.getInt("item_count"),// Item count
-                        etaDisplay// Estimated time of arrival display
-                    };
-                    // Add row to orders table model
-                    ordersModel.addRow(rowData);
-                }
-            }
+    // first page of orders from orders.db, the rest loads on scroll
+    ordersPager.reload();
+}
+
+    // Prepare row data for orders table
+    private Object[] toOrderRow(OrderRow order) {
+        String etaDisplay = "N/A"; // Default ETA display
+        if (!"CANCELLED".equals(order.getStatus()) &&
+            !"DELIVERED".equals(order.getStatus())) { // Only calculate ETA for active orders
+            long dueAt = order.getCreatedAt() + order.getEstimatedMinutes() * 60L;
+            long minutesRemaining = (dueAt - System.currentTimeMillis() / 1000) / 60; // minutes left until the ETA
+            etaDisplay = minutesRemaining > 0 ? minutesRemaining + " min" : "Due now"; // Format ETA display
         }
-        // Handle SQL exceptions
-    } catch (SQLException ex) {
-        JOptionPane.showMessageDialog(this,
-            "Error fetching orders: " + ex.getMessage(),
-            "Database Error",
-            JOptionPane.ERROR_MESSAGE);
+        return new Object[] {
+            order.getOrderId(),// Order ID
+            order.getCustomerUsername(),// Customer username
+            order.getRestaurantName(),// Restaurant name
+            order.getStatus(),// Order status
+            String.format("$%.2f", order.getTotalAmount()),// Total amount
+            order.getItemCount(),// Item count
+            etaDisplay// Estimated time of arrival display
+        };
     }
-}
 
     /*
      * Cancels the selected order from the orders table
@@ -0,0 +1,269 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * BugFingerprints keeps Logger from writing the same bug over and over when one exception keeps coming back
+ * (a timer hitting a broken connection every few seconds).
+ * Exceptions are grouped by type plus their top few stack frames. The first one of a group in each window gets a
+ * full bug report; the rest only bump a counter, and when the window is over a {@link Summary} of how many came in
+ * is handed to the summary consumer. The table remembers first seen, last seen and the total count per group.
+ */
+public class BugFingerprints {
+
+    static final int DEFAULT_FRAMES = 5;
+    static final long DEFAULT_WINDOW_MS = TimeUnit.MINUTES.toMillis(5);
+    // fingerprints quiet for this many windows are forgotten, so the table doesn't grow forever
+    private static final int FORGET_AFTER_WINDOWS = 12;
+
+    /**
+     * How many times one fingerprint repeated during a window after its full report.
+     */
+    public static class Summary {
+        private final String fingerprint;
+        private final String location;
+        private final long bugId;
+        private final long repeats;
+        private final long total;
+        private final long firstSeen;
+        private final long lastSeen;
+
+        Summary(Entry entry) {
+            this.fingerprint = entry.id;
+            this.location = entry.location;
+            this.bugId = entry.bugId;
+            this.repeats = entry.repeats;
+            this.total = entry.total;
+            this.firstSeen = entry.firstSeen;
+            this.lastSeen = entry.lastSeen;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        // exception type and where it was thrown, for reading the summary without the report
+        public String getLocation() {
+            return location;
+        }
+
+        // the full report these were repeats of
+        public long getBugId() {
+            return bugId;
+        }
+
+        public long getRepeats() {
+            return repeats;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        // epoch millis
+        public long getFirstSeen() {
+            return firstSeen;
+        }
+
+        // epoch millis
+        public long getLastSeen() {
+            return lastSeen;
+        }
+    }
+
+    // one fingerprint, guarded by itself
+    private static final class Entry {
+        final long key;
+        final String id;
+        final String location;
+        final long firstSeen;
+        long lastSeen;
+        long total;
+        long windowStart;
+        long bugId;
+        long repeats;  // since the full report of the current window
+
+        Entry(long key, String location, long now) {
+            this.key = key;
+            this.id = Long.toHexString(key);
+            this.location = location;
+            this.firstSeen = now;
+        }
+    }
+
+    private final long windowMs;
+    private final int frames;
+    private final LongSupplier clock;
+    private final Consumer<Summary> summaries;
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong reported = new AtomicLong();
+    private final AtomicLong suppressed = new AtomicLong();
+
+    /**
+     * Constructs a table. Nothing sweeps it on its own, see {@link #startSweeping()}.
+     * @param windowMs How long after a full report the same fingerprint only gets counted, 0 to report every time.
+     * @param frames How many top stack frames go into a fingerprint.
+     * @param clock Current time in epoch millis.
+     * @param summaries Gets the repeat counts when a window is over.
+     */
+    public BugFingerprints(long windowMs, int frames, LongSupplier clock, Consumer<Summary> summaries) {
+        this.windowMs = windowMs;
+        this.frames = frames;
+        this.clock = clock;
+        this.summaries = summaries;
+    }
+
+    /**
+     * Constructs a table with the window from FOODDASH_BUG_DEDUP_SECONDS (5 minutes if not set, 0 turns it off),
+     * swept in the background.
+     * @param summaries Gets the repeat counts when a window is over.
+     * @return The table.
+     */
+    public static BugFingerprints fromEnv(Consumer<Summary> summaries) {
+        long seconds = LogAppender.envLong("FOODDASH_BUG_DEDUP_SECONDS", TimeUnit.MILLISECONDS.toSeconds(DEFAULT_WINDOW_MS));
+        BugFingerprints table = new BugFingerprints(TimeUnit.SECONDS.toMillis(seconds), DEFAULT_FRAMES,
+                System::currentTimeMillis, summaries);
+        table.startSweeping();
+        return table;
+    }
+
+    /**
+     * Sweeps every window on a daemon thread, so a storm that stops still gets its summary.
+     */
+    public void startSweeping() {
+        if (windowMs <= 0) {
+            return;
+        }
+        ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "bug-fingerprint-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, windowMs / 4);
+        sweeper.scheduleWithFixedDelay(this::sweep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the fingerprint of an exception: a 64-bit hash of its type and the class, method and line of its top
+     * frames. Hashing instead of building a string keeps a repeat down to the stack trace copy.
+     * @param e The exception.
+     * @return Its fingerprint.
+     */
+    public long fingerprint(Throwable e) {
+        long hash = 1125899906842597L;
+        hash = 31 * hash + e.getClass().getName().hashCode();
+        StackTraceElement[] trace = e.getStackTrace();
+        for (int i = 0; i < Math.min(frames, trace.length); i++) {
+            hash = 31 * hash + trace[i].getClassName().hashCode();
+            hash = 31 * hash + trace[i].getMethodName().hashCode();
+            hash = 31 * hash + trace[i].getLineNumber();
+        }
+        // spread the bits (murmur3 finalizer) so fingerprints differing only at the last frame aren't neighbours
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Counts one occurrence, and writes the full report if it's the first of its fingerprint this window.
+     * Threads hitting the same new fingerprint at once wait for the one writing the report, so they all get its id.
+     * @param e The exception.
+     * @param report Writes the full report and returns its bug id, or 0 if it didn't write one.
+     * @return The bug id of the full report this occurrence belongs to, 0 if there is none.
+     */
+    public long record(Throwable e, LongSupplier report) {
+        if (windowMs <= 0) {
+            long bugId = report.getAsLong();
+            if (bugId != 0) {
+                reported.incrementAndGet();
+            }
+            return bugId;
+        }
+        long key = fingerprint(e);
+        long now = clock.getAsLong();
+        Entry entry = entries.computeIfAbsent(key, k -> new Entry(k, location(e), now));
+        long bugId;
+        synchronized (entry) {
+            if (entry.bugId != 0 && now - entry.windowStart < windowMs) {
+                entry.total++;
+                entry.lastSeen = now;
+                entry.repeats++;
+                suppressed.incrementAndGet();
+                return entry.bugId;
+            }
+            // the sweeper hasn't gotten to the last window yet, its summary goes before the new report
+            if (entry.repeats > 0) {
+                summaries.accept(new Summary(entry));
+            }
+            entry.total++;
+            entry.lastSeen = now;
+            entry.windowStart = now;
+            entry.repeats = 0;
+            // 0 means the report was held back (rate limited), so the next occurrence tries again
+            entry.bugId = report.getAsLong();
+            bugId = entry.bugId;
+        }
+        if (bugId != 0) {
+            reported.incrementAndGet();
+        }
+        return bugId;
+    }
+
+    /**
+     * Hands out the summaries of windows that are over and forgets fingerprints that have been quiet for a while.
+     */
+    public void sweep() {
+        long now = clock.getAsLong();
+        List<Summary> finished = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            synchronized (entry) {
+                if (now - entry.windowStart < windowMs) {
+                    continue;
+                }
+                if (entry.repeats > 0) {
+                    finished.add(new Summary(entry));
+                    // the next occurrence starts a new window with a full report
+                    entry.repeats = 0;
+                    entry.bugId = 0;
+                } else if (now - entry.lastSeen >= windowMs * FORGET_AFTER_WINDOWS) {
+                    entries.remove(entry.key, entry);
+                }
+            }
+        }
+        finished.forEach(summaries);
+    }
+
+    private static String location(Throwable e) {
+        StackTraceElement[] trace = e.getStackTrace();
+        String where = trace.length > 0 ? " at " + trace[0].getClassName() + "." + trace[0].getMethodName()
+                + "() line " + trace[0].getLineNumber() : "";
+        return e.getClass().getSimpleName() + where;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // occurrences that got a full report
+    public long getReported() {
+        return reported.get();
+    }
+
+    // occurrences that were only counted
+    public long getSuppressed() {
+        return suppressed.get();
+    }
+
+    @Override
+    public String toString() {
+        return "BugFingerprints[fingerprints=" + size() + " reported=" + getReported() + " suppressed=" + getSuppressed() + "]";
+    }
+}
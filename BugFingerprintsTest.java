@@ -0,0 +1,121 @@
+import org.junit.jupiter.api.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import static org.junit.jupiter.api.Assertions.*;
+/*
+--> Tests bug deduplication by stack fingerprint:
+    - the same exception thrown from the same place is one fingerprint, the same type from somewhere else is another
+    - only the first occurrence in a window gets a full report, the rest return its bug id and are counted
+    - when the window is over the repeats come out as one summary with first seen, last seen and the total,
+      and the next occurrence gets a new full report
+    - with the window at 0 every occurrence is reported
+--> Will return "Bug fingerprint test passed" with the table counters if succeeded.
+ */
+public class BugFingerprintsTest {
+
+    // failAt and repeat, the test methods calling them are different frames each time
+    private static final int FRAMES = 2;
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final List<BugFingerprints.Summary> summaries = new ArrayList<>();
+    private final AtomicLong nextBugId = new AtomicLong(1000);
+    private int reports;
+
+    private long report() {
+        reports++;
+        return nextBugId.incrementAndGet();
+    }
+
+    @Test
+    void testRepeatsAreCounted() {
+        BugFingerprints table = new BugFingerprints(60_000, FRAMES, now::get, summaries::add);
+        assertEquals(table.fingerprint(repeat(1)), table.fingerprint(repeat(2)));
+        assertNotEquals(table.fingerprint(repeat(1)), table.fingerprint(failElsewhere()));
+        assertNotEquals(table.fingerprint(repeat(1)), table.fingerprint(new IllegalStateException()));
+
+        long first = table.record(repeat(0), this::report);
+        for (int i = 1; i <= 99; i++) {
+            now.addAndGet(100);
+            assertEquals(first, table.record(repeat(i), this::report));
+        }
+        long other = table.record(failElsewhere(), this::report);
+        assertNotEquals(first, other);
+        assertEquals(2, reports);
+        assertEquals(99, table.getSuppressed());
+        assertEquals(2, table.size());
+
+        // nothing to say until the window is over
+        table.sweep();
+        assertTrue(summaries.isEmpty());
+        now.addAndGet(60_000);
+        table.sweep();
+        assertEquals(1, summaries.size());
+        BugFingerprints.Summary summary = summaries.get(0);
+        assertEquals(first, summary.getBugId());
+        assertEquals(99, summary.getRepeats());
+        assertEquals(100, summary.getTotal());
+        assertEquals(1_000_000, summary.getFirstSeen());
+        assertEquals(1_000_000 + 99 * 100, summary.getLastSeen());
+        assertTrue(summary.getLocation().startsWith("IllegalStateException at BugFingerprintsTest.failAt()"));
+
+        // the next one starts a new window with its own report, and the total keeps going
+        long again = table.record(repeat(0), this::report);
+        assertNotEquals(first, again);
+        assertEquals(3, reports);
+        table.record(repeat(0), this::report);
+        now.addAndGet(60_000);
+        // the sweeper didn't run: the new report writes the summary of the window before first
+        table.record(repeat(0), this::report);
+        assertEquals(2, summaries.size());
+        assertEquals(1, summaries.get(1).getRepeats());
+        assertEquals(102, summaries.get(1).getTotal());
+        System.out.println("Bug fingerprint test passed - " + table);
+    }
+
+    @Test
+    void testConcurrentFirstOccurrence() throws Exception {
+        BugFingerprints table = new BugFingerprints(60_000, FRAMES, now::get, summaries::add);
+        long[] ids = new long[8];
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < ids.length; t++) {
+            int slot = t;
+            threads.add(new Thread(() -> ids[slot] = table.record(repeat(slot), () -> {
+                synchronized (this) {
+                    return report();
+                }
+            })));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1, reports);
+        for (long id : ids) {
+            assertEquals(ids[0], id);
+        }
+    }
+
+    @Test
+    void testWindowOff() {
+        BugFingerprints table = new BugFingerprints(0, FRAMES, now::get, summaries::add);
+        for (int i = 0; i < 5; i++) {
+            table.record(repeat(i), this::report);
+        }
+        assertEquals(5, reports);
+        assertEquals(0, table.getSuppressed());
+    }
+
+    // the same two top frames every time, wherever the test calls it from
+    private static IllegalStateException repeat(int n) {
+        return failAt(n);
+    }
+
+    private static IllegalStateException failAt(int n) {
+        return new IllegalStateException("attempt " + n);
+    }
+
+    private static IllegalStateException failElsewhere() {
+        return new IllegalStateException("somewhere else");
+    }
+}
@@ -0,0 +1,258 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * BugRateLimiter keeps a failing subsystem from burying the app in bug reports (a dead database gives one HIGH bug per
+ * failed call). Every module gets a token bucket per severity: a burst it can always log, refilled at a steady rate,
+ * both bigger for worse severities. Once a bucket is empty the module is in a storm and reports are let through at
+ * random with a chance that shrinks as the storm goes on, so a few still show up without the cost growing with it.
+ * Everything held back is counted, and each summary interval a {@link Summary} per module says how many were.
+ */
+public class BugRateLimiter {
+
+    static final long SUMMARY_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+    // chance of getting through at the start of a storm, and the least it gets to
+    static final double STORM_SAMPLE = 0.5;
+    static final double MIN_SAMPLE = 0.001;
+
+    /**
+     * Burst and refill rate for one severity.
+     */
+    enum Limit {
+        LOW(5, 2),
+        MEDIUM(10, 6),
+        HIGH(20, 20),
+        CRITICAL(60, 60);
+
+        final int burst;
+        final int perMinute;
+
+        Limit(int burst, int perMinute) {
+            this.burst = burst;
+            this.perMinute = perMinute;
+        }
+
+        // anything mapSeverity doesn't return is treated as HIGH, its default
+        static Limit of(String severity) {
+            if (severity != null) {
+                switch (severity) {
+                    case "LOW": return LOW;
+                    case "MEDIUM": return MEDIUM;
+                    case "CRITICAL": return CRITICAL;
+                    default: break;
+                }
+            }
+            return HIGH;
+        }
+    }
+
+    /**
+     * How many reports of one module and severity were held back during a summary interval.
+     */
+    public static class Summary {
+        private final String module;
+        private final String severity;
+        private final long suppressed;
+        private final long sampled;
+        private final long intervalMs;
+
+        Summary(String module, Limit limit, long suppressed, long sampled, long intervalMs) {
+            this.module = module;
+            this.severity = limit.name();
+            this.suppressed = suppressed;
+            this.sampled = sampled;
+            this.intervalMs = intervalMs;
+        }
+
+        public String getModule() {
+            return module;
+        }
+
+        public String getSeverity() {
+            return severity;
+        }
+
+        public long getSuppressed() {
+            return suppressed;
+        }
+
+        // let through by sampling while the bucket was empty
+        public long getSampled() {
+            return sampled;
+        }
+
+        public long getIntervalMs() {
+            return intervalMs;
+        }
+    }
+
+    // one module at one severity, guarded by itself
+    private static final class Bucket {
+        final Limit limit;
+        double tokens;
+        long refilledAt;
+        long intervalStart;
+        long suppressed;   // this interval
+        long sampled;      // this interval
+
+        Bucket(Limit limit, double scale, long now) {
+            this.limit = limit;
+            this.tokens = limit.burst * scale;
+            this.refilledAt = now;
+            this.intervalStart = now;
+        }
+    }
+
+    private final double scale;
+    private final LongSupplier clock;
+    private final DoubleSupplier random;
+    private final Consumer<Summary> summaries;
+    private final Map<String, AtomicReferenceArray<Bucket>> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong allowed = new AtomicLong();
+    private final AtomicLong suppressed = new AtomicLong();
+    private final AtomicLong sampled = new AtomicLong();
+
+    /**
+     * Constructs a limiter. Nothing writes the summaries on its own, see {@link #startSweeping()}.
+     * @param scale Multiplies every burst and rate, 0 turns limiting off.
+     * @param clock Current time in epoch millis.
+     * @param random Numbers in [0, 1) for sampling.
+     * @param summaries Gets the held back counts when an interval is over.
+     */
+    public BugRateLimiter(double scale, LongSupplier clock, DoubleSupplier random, Consumer<Summary> summaries) {
+        this.scale = scale;
+        this.clock = clock;
+        this.random = random;
+        this.summaries = summaries;
+    }
+
+    /**
+     * Constructs a limiter scaled by FOODDASH_BUG_RATE_PERCENT (100 if not set, 0 turns it off), summarized in the
+     * background.
+     * @param summaries Gets the held back counts when an interval is over.
+     * @return The limiter.
+     */
+    public static BugRateLimiter fromEnv(Consumer<Summary> summaries) {
+        double scale = LogAppender.envLong("FOODDASH_BUG_RATE_PERCENT", 100) / 100.0;
+        BugRateLimiter limiter = new BugRateLimiter(scale, System::currentTimeMillis,
+                () -> ThreadLocalRandom.current().nextDouble(), summaries);
+        limiter.startSweeping();
+        return limiter;
+    }
+
+    /**
+     * Writes the summaries every interval on a daemon thread, so a storm that stops still gets its count.
+     */
+    public void startSweeping() {
+        if (scale <= 0) {
+            return;
+        }
+        ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "bug-rate-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, SUMMARY_INTERVAL_MS, SUMMARY_INTERVAL_MS / 4, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Takes a token for one report, or decides by sampling if the bucket is empty.
+     * @param module The module reporting.
+     * @param severity Its severity, from mapSeverity or the caller.
+     * @return true to write the report, false if it's held back (and counted).
+     */
+    public boolean tryAcquire(String module, String severity) {
+        if (scale <= 0) {
+            return true;
+        }
+        Limit limit = Limit.of(severity);
+        long now = clock.getAsLong();
+        AtomicReferenceArray<Bucket> levels = buckets.computeIfAbsent(module != null ? module : "UNKNOWN",
+                m -> new AtomicReferenceArray<>(Limit.values().length));
+        Bucket bucket = levels.get(limit.ordinal());
+        if (bucket == null) {
+            levels.compareAndSet(limit.ordinal(), null, new Bucket(limit, scale, now));
+            bucket = levels.get(limit.ordinal());
+        }
+        synchronized (bucket) {
+            double burst = limit.burst * scale;
+            double perMs = limit.perMinute * scale / 60_000.0;
+            bucket.tokens = Math.min(burst, bucket.tokens + Math.max(0, now - bucket.refilledAt) * perMs);
+            bucket.refilledAt = now;
+            if (bucket.tokens >= 1) {
+                bucket.tokens -= 1;
+                allowed.incrementAndGet();
+                return true;
+            }
+            // a storm: the longer it goes on this interval, the less gets through
+            double storm = bucket.suppressed + bucket.sampled;
+            double chance = Math.max(MIN_SAMPLE, STORM_SAMPLE * burst / (burst + storm));
+            if (random.getAsDouble() < chance) {
+                bucket.sampled++;
+                sampled.incrementAndGet();
+                return true;
+            }
+            bucket.suppressed++;
+            suppressed.incrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * Hands out the summaries of intervals that are over and had something held back.
+     */
+    public void sweep() {
+        long now = clock.getAsLong();
+        List<Summary> finished = new ArrayList<>();
+        for (Map.Entry<String, AtomicReferenceArray<Bucket>> entry : buckets.entrySet()) {
+            for (int level = 0; level < entry.getValue().length(); level++) {
+                Bucket bucket = entry.getValue().get(level);
+                if (bucket == null) {
+                    continue;
+                }
+                synchronized (bucket) {
+                    if (now - bucket.intervalStart < SUMMARY_INTERVAL_MS) {
+                        continue;
+                    }
+                    if (bucket.suppressed > 0) {
+                        finished.add(new Summary(entry.getKey(), bucket.limit, bucket.suppressed, bucket.sampled,
+                                now - bucket.intervalStart));
+                    }
+                    bucket.intervalStart = now;
+                    bucket.suppressed = 0;
+                    bucket.sampled = 0;
+                }
+            }
+        }
+        finished.forEach(summaries);
+    }
+
+    public long getAllowed() {
+        return allowed.get();
+    }
+
+    public long getSuppressed() {
+        return suppressed.get();
+    }
+
+    public long getSampled() {
+        return sampled.get();
+    }
+
+    @Override
+    public String toString() {
+        return "BugRateLimiter[modules=" + buckets.size() + " allowed=" + getAllowed() + " sampled=" + getSampled()
+                + " suppressed=" + getSuppressed() + "]";
+    }
+}
@@ -0,0 +1,91 @@
+import org.junit.jupiter.api.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import static org.junit.jupiter.api.Assertions.*;
+/*
+--> Tests the bug report rate limiter:
+    - a module gets its burst for a severity right away, then one report per refill; other modules and severities
+      have their own buckets
+    - once a bucket is empty reports are sampled, fewer the longer the storm, so 10000 failures write well under a hundred
+    - every interval the held back reports of each module come out as one summary, and the counts start over
+    - at scale 0 nothing is limited
+--> Will return "Bug rate limiter test passed" with the limiter counters if succeeded.
+ */
+public class BugRateLimiterTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final List<BugRateLimiter.Summary> summaries = new ArrayList<>();
+
+    @Test
+    void testBurstAndRefill() {
+        // never lucky enough to be sampled
+        BugRateLimiter limiter = new BugRateLimiter(1.0, now::get, () -> 0.999, summaries::add);
+        for (int i = 0; i < BugRateLimiter.Limit.HIGH.burst; i++) {
+            assertTrue(limiter.tryAcquire("OrderDatabase.getConnection", "HIGH"));
+        }
+        assertFalse(limiter.tryAcquire("OrderDatabase.getConnection", "HIGH"));
+        // same module at another severity, and another module, aren't affected
+        assertTrue(limiter.tryAcquire("OrderDatabase.getConnection", "LOW"));
+        assertTrue(limiter.tryAcquire("UserDataBase.login", "HIGH"));
+
+        // HIGH refills 20 a minute: one every 3 seconds
+        now.addAndGet(2_000);
+        assertFalse(limiter.tryAcquire("OrderDatabase.getConnection", "HIGH"));
+        now.addAndGet(1_000);
+        assertTrue(limiter.tryAcquire("OrderDatabase.getConnection", "HIGH"));
+        assertFalse(limiter.tryAcquire("OrderDatabase.getConnection", "HIGH"));
+
+        // LOW only gets 5
+        for (int i = 1; i < BugRateLimiter.Limit.LOW.burst; i++) {
+            assertTrue(limiter.tryAcquire("OrderDatabase.getConnection", "LOW"));
+        }
+        assertFalse(limiter.tryAcquire("OrderDatabase.getConnection", "LOW"));
+        assertEquals(4, limiter.getSuppressed());
+    }
+
+    @Test
+    void testStormSamplingAndSummaries() {
+        Random random = new Random(42);
+        BugRateLimiter limiter = new BugRateLimiter(1.0, now::get, random::nextDouble, summaries::add);
+        int written = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (limiter.tryAcquire("DriverGetOrder.refreshOrders", "HIGH")) {
+                written++;
+            }
+        }
+        long sampled = limiter.getSampled();
+        assertEquals(BugRateLimiter.Limit.HIGH.burst + sampled, written);
+        assertTrue(sampled > 10 && sampled < 300, "sampled " + sampled);
+        limiter.tryAcquire("UserDataBase.login", "LOW");
+
+        // nothing until the interval is over, then one summary for the module that had a storm
+        limiter.sweep();
+        assertTrue(summaries.isEmpty());
+        now.addAndGet(BugRateLimiter.SUMMARY_INTERVAL_MS);
+        limiter.sweep();
+        assertEquals(1, summaries.size());
+        BugRateLimiter.Summary summary = summaries.get(0);
+        assertEquals("DriverGetOrder.refreshOrders", summary.getModule());
+        assertEquals("HIGH", summary.getSeverity());
+        assertEquals(10_000 - written, summary.getSuppressed());
+        assertEquals(sampled, summary.getSampled());
+        assertEquals(BugRateLimiter.SUMMARY_INTERVAL_MS, summary.getIntervalMs());
+
+        // the counts start over, and a quiet interval says nothing
+        now.addAndGet(BugRateLimiter.SUMMARY_INTERVAL_MS);
+        limiter.sweep();
+        assertEquals(1, summaries.size());
+        System.out.println("Bug rate limiter test passed - " + limiter);
+    }
+
+    @Test
+    void testOff() {
+        BugRateLimiter limiter = new BugRateLimiter(0, now::get, () -> 0.999, summaries::add);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(limiter.tryAcquire("OrderDatabase.getConnection", "LOW"));
+        }
+        assertEquals(0, limiter.getSuppressed());
+    }
+}
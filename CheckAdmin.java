@@ -33,7 +33,7 @@ public class CheckAdmin {
     
     public static void main(String[] args) {
         try {
-            UserDataBase userDb = new UserDataBase(java.nio.file.Path.of("users.db"));
+            UserDataBase userDb = new UserDataBase(DataStore.fileFor(java.nio.file.Path.of("."), "users"));
             
             String adminUsername = "FoodDashAdmin";
             
@@ -0,0 +1,440 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ConnectionPool keeps a small, bounded set of open SQLite connections for each database file.
+ * All four database classes borrow from here instead of opening a new connection per statement.
+ * Each new connection gets the same PRAGMA setup, connections held too long are reported as leaks,
+ * and checkout/wait metrics are kept for troubleshooting.
+ */
+public class ConnectionPool {
+
+    private static final int DEFAULT_MAX_SIZE = 4;
+    private static final long BORROW_TIMEOUT_MS = 5000;
+    private static final long LEAK_THRESHOLD_MS = 30000;
+    // the borrower's stack for leak reports costs a fillInStackTrace per checkout, so it's only taken when asked for
+    static final boolean LEAK_TRACE = "true".equalsIgnoreCase(System.getenv("FOODDASH_LEAK_TRACE"));
+
+    // one pool per database file, shared by everything that opens that file
+    private static final Map<String, ConnectionPool> pools = new ConcurrentHashMap<>();
+
+    // background check for connections that were never given back
+    private static final ScheduledExecutorService leakChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ConnectionPool-leak-checker");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static {
+        leakChecker.scheduleWithFixedDelay(() -> {
+            for (ConnectionPool pool : pools.values()) {
+                pool.reportLeaks();
+            }
+        }, LEAK_THRESHOLD_MS, LEAK_THRESHOLD_MS / 2, TimeUnit.MILLISECONDS);
+    }
+
+    private final String url;
+    private final int maxSize;
+    private volatile StorageProfile profile;
+    private GroupCommitWriter writer;
+    private final Semaphore permits;
+    private final Deque<Pooled> idle = new ConcurrentLinkedDeque<>();
+    // bumped by attach()/useProfile(); connections opened under an older one are closed instead of reused
+    private final AtomicInteger configGeneration = new AtomicInteger();
+    private final Set<Lease> leased = ConcurrentHashMap.newKeySet();
+    // other database files ATTACHed to every connection, schema name -> file (DataStore's split layout)
+    private final Map<String, Path> attached = new LinkedHashMap<>();
+
+    // metrics
+    private final AtomicLong checkoutCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final StatementCache.Stats statementStats = new StatementCache.Stats();
+
+    private ConnectionPool(String url, int maxSize) {
+        this.url = url;
+        this.maxSize = maxSize;
+        this.permits = new Semaphore(maxSize, true);
+        this.profile = StorageProfile.current();
+    }
+
+    /**
+     * Returns the shared pool for the given database file, creating it on first use.
+     * @param dbPath Path to the SQLite database file.
+     * @return The pool for that file.
+     */
+    public static ConnectionPool forDatabase(Path dbPath) {
+        String url = "jdbc:sqlite:" + dbPath.toAbsolutePath().toString();
+        return pools.computeIfAbsent(url, u -> new ConnectionPool(u, DEFAULT_MAX_SIZE));
+    }
+
+    /**
+     * Closes every pool and their idle connections (used on shutdown and by tests).
+     */
+    public static void closeAll() {
+        for (ConnectionPool pool : pools.values()) {
+            pool.close();
+        }
+        pools.clear();
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public StorageProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Returns the single writer thread for this database file, starting it on first use.
+     * Writes that go through it are grouped into shared transactions instead of committing one by one.
+     * @return The group commit writer for this file.
+     */
+    public synchronized GroupCommitWriter getWriter() {
+        if (writer == null) {
+            writer = new GroupCommitWriter(this);
+        }
+        return writer;
+    }
+
+    /**
+     * Switches the pool to a storage profile and puts the database file in WAL mode.
+     * Idle connections are closed so every connection handed out afterwards has the new settings.
+     * Called from the database classes' init().
+     * @param newProfile The profile to apply.
+     * @throws SQLException if the journal mode can't be changed
+     */
+    public void useProfile(StorageProfile newProfile) throws SQLException {
+        this.profile = newProfile;
+        resetConnections();
+        try (Connection conn = openConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute(newProfile.journalModePragma());
+        }
+    }
+
+    /**
+     * ATTACHes another database file to every connection this pool hands out from now on,
+     * so queries can join its tables (unqualified names still resolve to this pool's own file first).
+     * Idle connections are closed so they pick it up.
+     * @param schemaName Name to attach the file as, like "orders".
+     * @param dbPath The file to attach.
+     */
+    public void attach(String schemaName, Path dbPath) {
+        synchronized (attached) {
+            attached.put(schemaName, dbPath.toAbsolutePath());
+        }
+        resetConnections();
+    }
+
+    /*
+    --> throws away idle connections and has the writer reopen its own, so new settings apply everywhere
+    --> connections leased right now can't be closed under their borrower; the new generation makes release()
+        close them when they come back
+    */
+    private void resetConnections() {
+        configGeneration.incrementAndGet();
+        Pooled pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            closeQuietly(pooled.raw);
+        }
+        synchronized (this) {
+            if (writer != null) {
+                writer.reopenConnection();
+            }
+        }
+    }
+
+    /**
+     * Borrows a connection from the pool. Closing the returned connection gives it back.
+     * @return A pooled connection.
+     * @throws SQLException if no connection frees up within the borrow timeout
+     */
+    public Connection getConnection() throws SQLException {
+        return getConnection(null);
+    }
+
+    /*
+    --> same as getConnection() but tags the lease with who borrowed it
+    --> the tag shows up in leak reports so we know which method forgot to close
+    */
+    public Connection getConnection(String owner) throws SQLException {
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(BORROW_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        long waited = System.nanoTime() - start;
+        totalWaitNanos.addAndGet(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+
+        if (!acquired) {
+            timeoutCount.incrementAndGet();
+            reportLeaks();
+            throw new SQLException("Timed out after " + BORROW_TIMEOUT_MS + " ms waiting for a connection to "
+                    + url + " (" + activeCount.get() + " of " + maxSize + " in use)");
+        }
+
+        Pooled pooled;
+        try {
+            pooled = idle.pollFirst();
+            // someone closed the real connection behind our back, or it was put back just as the settings changed
+            while (pooled != null && (pooled.raw.isClosed() || pooled.generation != configGeneration.get())) {
+                closeQuietly(pooled.raw);
+                pooled = idle.pollFirst();
+            }
+            if (pooled == null) {
+                // read first, so a reset while this one opens marks it stale
+                int generation = configGeneration.get();
+                pooled = new Pooled(openConnection(), generation);
+            }
+        } catch (SQLException e) {
+            permits.release();
+            throw e;
+        }
+
+        Lease lease = new Lease(pooled, owner);
+        leased.add(lease);
+        activeCount.incrementAndGet();
+        checkoutCount.incrementAndGet();
+        return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, lease);
+    }
+
+    /**
+     * Opens a connection with the pool's PRAGMA setup that is not managed by the pool.
+     * Used for one-off work like schema setup where the connection state shouldn't leak into the pool.
+     * The pool's own connections and the writer's come from here too, so they all get a StatementCache.
+     * @return A new connection the caller must close.
+     * @throws SQLException if the connection can't be opened
+     */
+    public Connection openConnection() throws SQLException {
+        Connection conn = DriverManager.getConnection(url);
+        // foreign_keys is NOT turned on here: the cross-file FOREIGN KEY clauses (orders -> users etc.)
+        // can't resolve inside a single file, so enforcing them would reject every insert
+        try (Statement stmt = conn.createStatement()) {
+            for (String pragma : profile.connectionPragmas()) {
+                stmt.execute(pragma);
+            }
+            synchronized (attached) {
+                for (Map.Entry<String, Path> entry : attached.entrySet()) {
+                    stmt.execute("ATTACH DATABASE '" + entry.getValue().toString().replace("'", "''")
+                            + "' AS " + entry.getKey());
+                }
+            }
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        createdCount.incrementAndGet();
+        return StatementCache.wrap(conn, StatementCache.DEFAULT_CAPACITY, statementStats);
+    }
+
+    // gives a connection back; broken, closed or outdated (older settings/ATTACHes) connections are thrown away
+    private void release(Lease lease) {
+        if (!leased.remove(lease)) {
+            return;
+        }
+        activeCount.decrementAndGet();
+        Connection raw = lease.pooled.raw;
+        try {
+            if (lease.pooled.generation != configGeneration.get()) {
+                closeQuietly(raw);
+            } else if (!raw.isClosed()) {
+                if (!raw.getAutoCommit()) {
+                    // don't hand the next borrower a half finished transaction
+                    raw.rollback();
+                    raw.setAutoCommit(true);
+                }
+                idle.offerFirst(lease.pooled);
+            }
+        } catch (SQLException e) {
+            Logger.catchAndLogBug(e, "ConnectionPool.release");
+            closeQuietly(raw);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private static void closeQuietly(Connection raw) {
+        try {
+            raw.close();
+        } catch (SQLException ignored) { }
+    }
+
+    /*
+    --> looks for connections that have been checked out longer than the leak threshold
+    --> each leak is reported once to bugs.log with the owner tag, and the stack of whoever borrowed it
+        if FOODDASH_LEAK_TRACE=true
+    */
+    public void reportLeaks() {
+        long now = System.nanoTime();
+        for (Lease lease : leased) {
+            long heldMs = TimeUnit.NANOSECONDS.toMillis(now - lease.acquiredAt);
+            if (heldMs >= LEAK_THRESHOLD_MS && !lease.leakReported) {
+                lease.leakReported = true;
+                leakCount.incrementAndGet();
+                StringBuilder trace = new StringBuilder();
+                if (lease.origin != null) {
+                    for (StackTraceElement frame : lease.origin.getStackTrace()) {
+                        trace.append("\n    at ").append(frame);
+                    }
+                } else {
+                    trace.append(" (run with FOODDASH_LEAK_TRACE=true to see the stack)");
+                }
+                Logger.reportBug("ConnectionPool",
+                        "Possible connection leak: connection to " + url + " held for " + heldMs + " ms"
+                                + (lease.owner != null ? " by " + lease.owner : ""),
+                        "Connection was borrowed here:" + trace,
+                        "Connections are closed (or their RowCursor is closed) after use",
+                        "Connection still checked out; " + activeCount.get() + " of " + maxSize + " in use",
+                        "MEDIUM", "OPEN");
+            }
+        }
+    }
+
+    /**
+     * Closes all idle connections and stops handing out new ones from this pool.
+     */
+    public void close() {
+        synchronized (this) {
+            if (writer != null) {
+                writer.close();
+                writer = null;
+            }
+        }
+        Pooled pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            closeQuietly(pooled.raw);
+        }
+        pools.remove(url, this);
+    }
+
+    // metrics getters
+    public long getCheckoutCount() {
+        return checkoutCount.get();
+    }
+
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public long getCreatedCount() {
+        return createdCount.get();
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    public long getLeakCount() {
+        return leakCount.get();
+    }
+
+    // prepared statement reuse across every connection this pool (and its writer) has opened
+    public StatementCache.Stats getStatementStats() {
+        return statementStats;
+    }
+
+    public double getAverageWaitMillis() {
+        long checkouts = checkoutCount.get() + timeoutCount.get();
+        return checkouts == 0 ? 0.0 : totalWaitNanos.get() / 1_000_000.0 / checkouts;
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ConnectionPool[%s active=%d idle=%d max=%d checkouts=%d created=%d "
+                + "avgWait=%.3fms maxWait=%.3fms timeouts=%d leaks=%d statements(%s)]",
+                url, getActiveCount(), getIdleCount(), maxSize, getCheckoutCount(), getCreatedCount(),
+                getAverageWaitMillis(), getMaxWaitMillis(), getTimeoutCount(), getLeakCount(), statementStats);
+    }
+
+    // a real connection and the config generation it was opened under
+    private static final class Pooled {
+        final Connection raw;
+        final int generation;
+
+        Pooled(Connection raw, int generation) {
+            this.raw = raw;
+            this.generation = generation;
+        }
+    }
+
+    /*
+    --> one checked out connection
+    --> acts as the proxy handler: close() returns the connection, everything else goes to the real one
+    */
+    private class Lease implements InvocationHandler {
+        private final Pooled pooled;
+        private final Connection raw;
+        private final String owner;
+        private final long acquiredAt = System.nanoTime();
+        private final Throwable origin = LEAK_TRACE ? new Throwable("Connection borrowed") : null;
+        private volatile boolean released;
+        private volatile boolean leakReported;
+
+        Lease(Pooled pooled, String owner) {
+            this.pooled = pooled;
+            this.raw = pooled.raw;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("close".equals(name) && method.getParameterCount() == 0) {
+                if (!released) {
+                    released = true;
+                    release(this);
+                }
+                return null;
+            }
+            if ("isClosed".equals(name) && method.getParameterCount() == 0) {
+                return released || raw.isClosed();
+            }
+            if (released) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            try {
+                return method.invoke(raw, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
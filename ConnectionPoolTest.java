@@ -0,0 +1,109 @@
+import org.junit.jupiter.api.*;
+import java.nio.file.*;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import static org.junit.jupiter.api.Assertions.*;
+/*
+--> Tests the shared connection pool used by the database classes:
+    - connections are reused instead of reopened
+    - closing a RowCursor from a query method gives its connection back
+    - a connection that was out while a file got ATTACHed isn't reused, the next borrower sees the new file
+--> Will return "Connection pool test passed" with the pool stats if succeeded.
+ */
+public class ConnectionPoolTest {
+
+    private static Path orderDbPath;
+
+    private OrderDatabase orderDb;
+
+    @BeforeAll
+    static void setup() throws Exception {
+        orderDbPath = Files.createTempFile("test-orders", ".db");
+    }
+
+    @AfterAll
+    static void cleanup() throws Exception {
+        ConnectionPool.closeAll();
+        Files.deleteIfExists(orderDbPath);
+    }
+
+    @BeforeEach
+    void init() throws Exception {
+        orderDb = new OrderDatabase(orderDbPath);
+        orderDb.init();
+    }
+
+    @Test
+    void testConnectionsAreReused() throws SQLException {
+        ConnectionPool pool = orderDb.getPool();
+        long createdBefore = pool.getCreatedCount();
+
+        for (int i = 0; i < 20; i++) {
+            try (Connection conn = orderDb.getConnection()) {
+                assertFalse(conn.isClosed());
+            }
+        }
+
+        // at most one new connection should have been opened for 20 checkouts in a row
+        assertTrue(pool.getCreatedCount() - createdBefore <= 1);
+        assertEquals(0, pool.getActiveCount());
+        assertTrue(pool.getCheckoutCount() >= 20);
+    }
+
+    @Test
+    void testLeasedConnectionPicksUpAttach() throws Exception {
+        Path extra = Files.createTempFile("test-attached", ".db");
+        try {
+            try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + extra.toAbsolutePath());
+                 Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE attached_marker (id INTEGER)");
+            }
+            ConnectionPool pool = orderDb.getPool();
+            Connection leased = orderDb.getConnection();
+            pool.attach("poolextra", extra);
+            leased.close();
+            assertEquals(0, pool.getIdleCount());
+
+            try (Connection conn = orderDb.getConnection();
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM poolextra.attached_marker")) {
+                assertTrue(rs.next());
+            }
+        } finally {
+            ConnectionPool.closeAll();
+            Files.deleteIfExists(extra);
+        }
+    }
+
+    @Test
+    void testClosingCursorReturnsConnection() throws SQLException {
+        long orderId = orderDb.createOrder("poolcustomer", "Pizza Place", "123 Main St", "456 Home St", "none", 19.99, 1, "CARD", 20.10294, 60.120, 69.420, 42.560);
+        assertTrue(orderId > 0);
+
+        ConnectionPool pool = orderDb.getPool();
+        RowCursor<OrderRow> cursor = orderDb.getOrderHistory("poolcustomer", "CUSTOMER");
+        assertEquals(1, pool.getActiveCount());
+        assertTrue(cursor.hasNext());
+        assertEquals("Pizza Place", cursor.next().getRestaurantName());
+        cursor.close();
+        assertEquals(0, pool.getActiveCount());
+
+        // reading to the end gives the connection back without an explicit close
+        RowCursor<OrderRow> drained = orderDb.getOrderHistory("poolcustomer", "CUSTOMER");
+        while (drained.hasNext()) {
+            drained.next();
+        }
+        assertTrue(drained.isClosed());
+        assertEquals(0, pool.getActiveCount());
+
+        // single row lookups don't hold anything
+        assertEquals(19.99, orderDb.getOrderDetails(orderId).getTotalAmount(), 0.001);
+        assertNull(orderDb.getOrderDetails(-1));
+        assertEquals(0, pool.getActiveCount());
+
+        System.out.println("Connection pool test passed - " + pool);
+    }
+}
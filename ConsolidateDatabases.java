@@ -0,0 +1,162 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * ConsolidateDatabases is a one-shot tool that moves an existing install from the four split files
+ * (users.db, drivers.db, orders.db, payments.db) into a single fooddash.db.
+ * Each split file is first brought up to the current schema, then every row is copied into a freshly created
+ * consolidated file inside one transaction. If anything fails the new file is deleted and nothing changes.
+ * The original files are left as they are; once fooddash.db exists the app opens it instead (see DataStore).
+ * Run with: java -cp ".;lib/sqlite-jdbc-3.42.0.0.jar" ConsolidateDatabases [directory]
+ */
+public class ConsolidateDatabases {
+
+    public static void main(String[] args) {
+        Path dir = Path.of(args.length > 0 ? args[0] : ".");
+        try {
+            Map<String, Integer> copied = consolidate(dir);
+            System.out.println("Consolidated into " + dir.resolve(DataStore.CONSOLIDATED_FILE) + ":");
+            for (Map.Entry<String, Integer> entry : copied.entrySet()) {
+                System.out.printf("  %-24s %d rows%n", entry.getKey(), entry.getValue());
+            }
+            System.out.println("The old .db files were not touched and can be deleted once everything checks out.");
+        } catch (Exception e) {
+            Logger.catchAndLogBug(e, "ConsolidateDatabases");
+            System.err.println("Consolidation failed: " + e.getMessage());
+            System.exit(1);
+        } finally {
+            ConnectionPool.closeAll();
+        }
+    }
+
+    /*
+    --> refuses to run if fooddash.db already exists or there's nothing to move
+    --> opens the split install once so every file runs its migrations (orders v5 drops its unused payment_transactions,
+        which would otherwise clash with the payments one)
+    --> creates fooddash.db through DataStore so it has the current schema, attaches every split file and
+        copies table by table (only the columns both sides have) in one transaction
+    --> returns rows copied per schema.table
+    */
+    public static Map<String, Integer> consolidate(Path dir) throws Exception {
+        Path target = dir.resolve(DataStore.CONSOLIDATED_FILE);
+        if (Files.exists(target)) {
+            throw new IllegalStateException(target + " already exists");
+        }
+        if (!DataStore.hasSplitFiles(dir)) {
+            throw new IllegalStateException("No split database files found in " + dir.toAbsolutePath());
+        }
+
+        StorageProfile profile = StorageProfile.current();
+        DataStore.open(dir, DataStore.Layout.SPLIT, profile);
+        ConnectionPool.closeAll();  // checkpoints and lets go of the split files before we read them
+
+        Map<String, Integer> copied = new LinkedHashMap<>();
+        try {
+            DataStore.open(dir, DataStore.Layout.CONSOLIDATED, profile);
+            try (Connection conn = ConnectionPool.forDatabase(target).openConnection();
+                 Statement stmt = conn.createStatement()) {
+                List<String> attachedNames = new ArrayList<>();
+                for (Map.Entry<String, String> split : DataStore.SPLIT_FILES.entrySet()) {
+                    Path source = dir.resolve(split.getValue());
+                    if (Files.exists(source)) {
+                        String name = "src_" + split.getKey();
+                        stmt.execute("ATTACH DATABASE '" + source.toAbsolutePath().toString().replace("'", "''") + "' AS " + name);
+                        attachedNames.add(name);
+                    }
+                }
+
+                conn.setAutoCommit(false);
+                try {
+                    for (String source : attachedNames) {
+                        for (String table : tables(stmt, source)) {
+                            copied.put(source.substring(4) + "." + table, copyTable(stmt, source, table));
+                        }
+                    }
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+                for (String name : attachedNames) {
+                    stmt.execute("DETACH DATABASE " + name);
+                }
+            }
+        } catch (Exception e) {
+            ConnectionPool.closeAll();
+            Files.deleteIfExists(target);
+            Files.deleteIfExists(Path.of(target + "-wal"));
+            Files.deleteIfExists(Path.of(target + "-shm"));
+            throw e;
+        }
+        return copied;
+    }
+
+    // user tables in an attached file, in the order they were created (parents before children)
+    private static List<String> tables(Statement stmt, String schema) throws SQLException {
+        List<String> tables = new ArrayList<>();
+        try (ResultSet rs = stmt.executeQuery("SELECT name FROM " + schema + ".sqlite_master "
+                + "WHERE type = 'table' AND name NOT LIKE 'sqlite_%' AND name != '" + SchemaMigrator.VERSION_TABLE + "' "
+                + "ORDER BY rowid")) {
+            while (rs.next()) {
+                tables.add(rs.getString(1));
+            }
+        }
+        return tables;
+    }
+
+    /*
+    --> ids are copied as they are so references between tables (order_items.order_id etc) still line up
+    --> plain INSERT, so a row that clashes with one already there fails the whole move instead of going missing
+    --> the one exception is the restaurants a migration seeded: the new file already has them under the same ids,
+        so those ids are left out
+    --> every table's copied count is checked against the source's COUNT(*) (less the seeded rows)
+    */
+    private static int copyTable(Statement stmt, String schema, String table) throws SQLException {
+        Set<String> sourceColumns = columns(stmt, schema, table);
+        Set<String> targetColumns = columns(stmt, "main", table);
+        if (targetColumns.isEmpty()) {
+            // something only the old file has (like orders' renamed payment table), carry it over as is
+            stmt.executeUpdate("CREATE TABLE main." + table + " AS SELECT * FROM " + schema + "." + table);
+            return count(stmt, "SELECT COUNT(*) FROM main." + table);
+        }
+        sourceColumns.retainAll(targetColumns);
+        String cols = String.join(", ", sourceColumns);
+        String where = table.equals("restaurants")
+                ? " WHERE restaurant_id NOT IN (SELECT restaurant_id FROM main.restaurants)" : "";
+        int expected = count(stmt, "SELECT COUNT(*) FROM " + schema + "." + table + where);
+        int copied = stmt.executeUpdate("INSERT INTO main." + table + " (" + cols + ") SELECT " + cols
+                + " FROM " + schema + "." + table + where);
+        if (copied != expected) {
+            throw new SQLException("Copied " + copied + " of " + expected + " rows from " + schema + "." + table);
+        }
+        return copied;
+    }
+
+    private static int count(Statement stmt, String sql) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static Set<String> columns(Statement stmt, String schema, String table) throws SQLException {
+        Set<String> columns = new LinkedHashSet<>();
+        try (ResultSet rs = stmt.executeQuery("PRAGMA " + schema + ".table_info(" + table + ")")) {
+            while (rs.next()) {
+                columns.add(rs.getString("name"));
+            }
+        }
+        return columns;
+    }
+}
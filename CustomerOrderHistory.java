@@ -11,6 +11,7 @@ public class CustomerOrderHistory extends JPanel {
     private FoodDeliveryLoginUI parent;
     private String username;
     private DefaultTableModel tableModel;
+    private OrderHistoryPager pager;
 
     /**
      * Constructs a CustomerOrderHistory with the given parent and username.
@@ -37,7 +38,19 @@ public class CustomerOrderHistory extends JPanel {
             topPanel.add(refreshBtn);
             add(topPanel, BorderLayout.NORTH);
 
-            add(new JScrollPane(table), BorderLayout.CENTER);
+            JScrollPane scroll = new JScrollPane(table);
+            add(scroll, BorderLayout.CENTER);
+
+            // loads a page at a time as the customer scrolls instead of every order at once
+            java.text.SimpleDateFormat dateFormat = new java.text.SimpleDateFormat("MM/dd/yyyy");
+            pager = new OrderHistoryPager(parent.orderDb, username, "CUSTOMER", tableModel, order -> new Object[]{
+                order.getOrderId(),
+                order.getRestaurantName(),
+                String.format("$%.2f", order.getTotalAmount()),
+                order.getStatus(),
+                dateFormat.format(new java.util.Date(order.getCreatedAt() * 1000L))
+            });
+            pager.attach(scroll);
 
             loadHistory();
         } catch (Exception e) {
@@ -46,29 +59,8 @@ public class CustomerOrderHistory extends JPanel {
     }
 
     private void loadHistory() {
-        tableModel.setRowCount(0);
         try {
-            String sql = "SELECT order_id, restaurant_name, total_amount, status, created_at FROM orders WHERE customer_username = ? ORDER BY created_at DESC";
-            Connection conn = DriverManager.getConnection(parent.orderDb.getConnectionUrl());
-            PreparedStatement stmt = conn.prepareStatement(sql);
-            stmt.setString(1, username);
-            ResultSet rs = stmt.executeQuery();
-
-            while (rs.next()) {
-                tableModel.addRow(new Object[]{
-                    rs.getLong("order_id"),
-                    rs.getString("restaurant_name"),
-                    String.format("$%.2f", rs.getDouble("total_amount")),
-                    rs.getString("status"),
-                    new java.text.SimpleDateFormat("MM/dd/yyyy").format(new java.util.Date(rs.getLong("created_at") * 1000L))
-                });
-            }
-            rs.close();
-            stmt.close();
-            conn.close();
-        } catch (SQLException ex) {
-            Logger.catchAndLogBug(ex, "CustomerOrderHistory.loadHistory");
-            JOptionPane.showMessageDialog(this, "Error: " + ex.getMessage());
+            pager.reload();
         } catch (Exception ex) {
             Logger.catchAndLogBug(ex, "CustomerOrderHistory.loadHistory");
             JOptionPane.showMessageDialog(this, "Unexpected error loading order history");
@@ -0,0 +1,171 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * DataStore opens the four databases (users, drivers, orders, payments) in one of two layouts.
+ * CONSOLIDATED keeps all four schemas in a single fooddash.db, so cross-domain queries (driver deliveries with
+ * order totals, payment history with orders) are plain joins sharing one page cache, one WAL and one writer thread.
+ * SPLIT keeps the original users.db/drivers.db/orders.db/payments.db and ATTACHes the other three files to every
+ * pooled connection so the same queries still run.
+ * The layout comes from FOODDASH_STORAGE_LAYOUT; if that isn't set, an install that still has the split files stays
+ * SPLIT (until ConsolidateDatabases is run on it) and everything else is CONSOLIDATED.
+ */
+public class DataStore {
+
+    public enum Layout { SPLIT, CONSOLIDATED }
+
+    public static final String CONSOLIDATED_FILE = "fooddash.db";
+
+    // schema name -> file in the split layout, in the order they have to be initialized
+    // the schema names double as the ATTACH names, so "orders.orders" works from any connection
+    static final Map<String, String> SPLIT_FILES = new LinkedHashMap<>();
+
+    static {
+        SPLIT_FILES.put("users", "users.db");
+        SPLIT_FILES.put("drivers", "drivers.db");
+        SPLIT_FILES.put("orders", "orders.db");
+        SPLIT_FILES.put("payments", "payments.db");
+    }
+
+    private final Path dir;
+    private final Layout layout;
+    private UserDataBase userDb;
+    private DriverDatabase driverDb;
+    private OrderDatabase orderDb;
+    private PaymentDatabase paymentDb;
+
+    private DataStore(Path dir, Layout layout) {
+        this.dir = dir;
+        this.layout = layout;
+    }
+
+    /**
+     * Opens and initializes all four databases in a directory using the default layout and storage profile.
+     * @param dir Directory the database files live in.
+     * @return The opened store.
+     * @throws SQLException if any database fails to initialize
+     */
+    public static DataStore open(Path dir) throws SQLException {
+        return open(dir, defaultLayout(dir), StorageProfile.current());
+    }
+
+    /*
+    --> initializes users, drivers, orders, payments in that order (each one's migrations run on its own schema)
+    --> CONSOLIDATED: all four point at the same file, which gets a schema_versions table first
+        so the four migrators don't fight over PRAGMA user_version
+    --> SPLIT: once every file is up to date, each pool attaches the other three
+    */
+    public static DataStore open(Path dir, Layout layout, StorageProfile profile) throws SQLException {
+        DataStore store = new DataStore(dir, layout);
+        if (layout == Layout.CONSOLIDATED) {
+            try (Connection conn = ConnectionPool.forDatabase(store.pathFor("users")).openConnection()) {
+                SchemaMigrator.useVersionTable(conn);
+            }
+        }
+
+        store.userDb = new UserDataBase(store.pathFor("users"), profile);
+        store.userDb.init();
+        store.driverDb = new DriverDatabase(store.pathFor("drivers"), profile);
+        store.driverDb.init();
+        store.orderDb = new OrderDatabase(store.pathFor("orders"), profile);
+        store.orderDb.init();
+        store.paymentDb = new PaymentDatabase(store.pathFor("payments"), profile);
+        store.paymentDb.init();
+
+        if (layout == Layout.SPLIT) {
+            for (String schema : SPLIT_FILES.keySet()) {
+                ConnectionPool pool = ConnectionPool.forDatabase(store.pathFor(schema));
+                for (String other : SPLIT_FILES.keySet()) {
+                    if (!other.equals(schema)) {
+                        pool.attach(other, store.pathFor(other));
+                    }
+                }
+            }
+            // a claim touches orders and drivers, which are different files (and writers) here
+            store.orderDb.useDriversPool(store.driverDb.getPool());
+        }
+        return store;
+    }
+
+    /**
+     * Picks the layout for a directory: FOODDASH_STORAGE_LAYOUT if set, SPLIT if the directory still has the
+     * old per-domain files and no consolidated one, CONSOLIDATED otherwise.
+     * @param dir Directory the database files live in.
+     * @return The layout to open with.
+     */
+    public static Layout defaultLayout(Path dir) {
+        String value = System.getenv("FOODDASH_STORAGE_LAYOUT");
+        if (value != null && !value.isBlank()) {
+            try {
+                return Layout.valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                Logger.catchAndLogBug(e, "DataStore.defaultLayout");
+            }
+        }
+        if (!Files.exists(dir.resolve(CONSOLIDATED_FILE)) && hasSplitFiles(dir)) {
+            return Layout.SPLIT;
+        }
+        return Layout.CONSOLIDATED;
+    }
+
+    /**
+     * Checks if any of the old per-domain database files exist in a directory.
+     * @param dir Directory to look in.
+     * @return true if at least one split file is there.
+     */
+    public static boolean hasSplitFiles(Path dir) {
+        for (String file : SPLIT_FILES.values()) {
+            if (Files.exists(dir.resolve(file))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the file a schema lives in under the default layout, for tools that open a database directly.
+     * @param dir Directory the database files live in.
+     * @param schema users, drivers, orders or payments.
+     * @return Path to the file holding that schema.
+     */
+    public static Path fileFor(Path dir, String schema) {
+        return new DataStore(dir, defaultLayout(dir)).pathFor(schema);
+    }
+
+    /**
+     * Returns the file a schema lives in for this store's layout.
+     * @param schema users, drivers, orders or payments.
+     * @return Path to the database file.
+     */
+    public Path pathFor(String schema) {
+        String file = SPLIT_FILES.get(schema);
+        if (file == null) {
+            throw new IllegalArgumentException("Unknown schema " + schema);
+        }
+        return dir.resolve(layout == Layout.CONSOLIDATED ? CONSOLIDATED_FILE : file);
+    }
+
+    public Layout getLayout() {
+        return layout;
+    }
+
+    public UserDataBase getUserDb() {
+        return userDb;
+    }
+
+    public DriverDatabase getDriverDb() {
+        return driverDb;
+    }
+
+    public OrderDatabase getOrderDb() {
+        return orderDb;
+    }
+
+    public PaymentDatabase getPaymentDb() {
+        return paymentDb;
+    }
+}
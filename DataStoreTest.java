@@ -0,0 +1,121 @@
+import org.junit.jupiter.api.*;
+import java.nio.file.*;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+/*
+--> Tests the two storage layouts and the migration between them:
+    - consolidated: all four schemas in fooddash.db, delivery history and payment history join orders in one query
+    - split: the same joins work through ATTACH, and ConsolidateDatabases moves everything into fooddash.db
+--> Will return "Data store test passed" with the rows copied if succeeded.
+ */
+public class DataStoreTest {
+
+    private Path dir;
+
+    @BeforeEach
+    void setup() throws Exception {
+        dir = Files.createTempDirectory("test-datastore");
+    }
+
+    @AfterEach
+    void cleanup() throws Exception {
+        ConnectionPool.closeAll();
+        // sqlite may still be dropping the -wal/-shm files while we list them, so missing ones are fine
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    @Test
+    void testConsolidatedJoinsAcrossSchemas() throws SQLException {
+        DataStore store = DataStore.open(dir, DataStore.Layout.CONSOLIDATED, StorageProfile.FAST);
+        long orderId = addDeliveredOrder(store);
+
+        assertTrue(Files.exists(dir.resolve(DataStore.CONSOLIDATED_FILE)));
+        assertFalse(Files.exists(dir.resolve("orders.db")));
+        // all four domains share one pool (and so one writer and one WAL)
+        assertSame(store.getOrderDb().getPool(), store.getDriverDb().getPool());
+
+        assertDeliveryJoined(store, orderId);
+        assertPaymentJoined(store);
+
+        // each schema tracks its own version in the shared file, user_version just says so
+        try (Connection conn = store.getOrderDb().getConnection()) {
+            assertEquals(SchemaMigrator.USES_VERSION_TABLE, SchemaMigrator.getVersion(conn));
+            assertEquals(OrderDatabase.MIGRATIONS.getLatestVersion(), SchemaMigrator.getVersion(conn, "OrderDatabase"));
+            assertEquals(PaymentDatabase.MIGRATIONS.getLatestVersion(), SchemaMigrator.getVersion(conn, "PaymentDatabase"));
+        }
+    }
+
+    @Test
+    void testSplitInstallIsConsolidated() throws Exception {
+        DataStore split = DataStore.open(dir, DataStore.Layout.SPLIT, StorageProfile.FAST);
+        long orderId = addDeliveredOrder(split);
+        assertDeliveryJoined(split, orderId);  // drivers.db reaching orders.db through ATTACH
+        assertPaymentJoined(split);
+        ConnectionPool.closeAll();
+
+        Map<String, Integer> copied = ConsolidateDatabases.consolidate(dir);
+        ConnectionPool.closeAll();
+        assertEquals(1, copied.get("orders.orders"));
+        assertEquals(1, copied.get("drivers.delivery_history"));
+        assertEquals(1, copied.get("payments.payment_transactions"));
+        assertFalse(copied.containsKey("orders.payment_transactions"));
+        assertThrows(IllegalStateException.class, () -> ConsolidateDatabases.consolidate(dir));
+
+        DataStore store = DataStore.open(dir, DataStore.Layout.CONSOLIDATED, StorageProfile.FAST);
+        assertTrue(store.getUserDb().authenticate("storecustomer", "hash"));
+        assertEquals("Data Grill", store.getOrderDb().getOrderDetails(orderId).getRestaurantName());
+        assertDeliveryJoined(store, orderId);
+        assertPaymentJoined(store);
+
+        // new rows don't collide with the copied ids
+        long next = store.getOrderDb().createOrder("storecustomer", "Data Grill", "1 Data St", "2 Home St", "none",
+                12.50, 1, "CARD", 41.98, 70.96, 41.99, 70.97);
+        assertTrue(next > orderId);
+        System.out.println("Data store test passed - " + copied);
+    }
+
+    private static long addDeliveredOrder(DataStore store) throws SQLException {
+        assertTrue(store.getUserDb().register("storecustomer", "hash"));
+        long orderId = store.getOrderDb().createOrder("storecustomer", "Data Grill", "1 Data St", "2 Home St", "none",
+                24.00, 1, "CARD", 41.98, 70.96, 41.99, 70.97);
+        assertTrue(orderId > 0);
+        store.getDriverDb().registerDriver("storedriver", "Car", "D123", "Downtown");
+        store.getDriverDb().recordDelivery("storedriver", orderId, 100, 200, "DELIVERED");
+
+        long methodId = store.getPaymentDb().addCardPayment("storedriver", "4111111111111111", "12/30", "Store Driver");
+        store.getPaymentDb().createTransaction(methodId, orderId, 4.80);
+        return orderId;
+    }
+
+    private static void assertDeliveryJoined(DataStore store, long orderId) throws SQLException {
+        try (RowCursor<DeliveryRow> cursor = store.getDriverDb().getDeliveryHistory("storedriver")) {
+            assertTrue(cursor.hasNext());
+            DeliveryRow row = cursor.next();
+            assertEquals(orderId, row.getOrderId());
+            assertEquals("Data Grill", row.getRestaurantName());
+            assertEquals(24.00, row.getTotalAmount(), 0.001);
+        }
+    }
+
+    private static void assertPaymentJoined(DataStore store) throws SQLException {
+        try (Connection conn = store.getPaymentDb().getConnection();
+             PreparedStatement ps = conn.prepareStatement(SqlStatements.PAYMENT_HISTORY)) {
+            ps.setString(1, "storedriver");
+            try (ResultSet rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+                assertEquals("Data Grill", rs.getString("restaurant_name"));
+                assertEquals(4.80, rs.getDouble("amount"), 0.001);
+            }
+        }
+    }
+}
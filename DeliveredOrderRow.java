@@ -0,0 +1,84 @@
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * DeliveredOrderRow is what EtaModel learns from: where a delivered order went, when it was placed and how long it took.
+ */
+public class DeliveredOrderRow {
+    private final long orderId;
+    private final String restaurantName;
+    private final long createdAt;
+    private final int actualMinutes;
+    private final Double restaurantLat;
+    private final Double restaurantLon;
+    private final Double deliveryLat;
+    private final Double deliveryLon;
+
+    /**
+     * Constructs a DeliveredOrderRow from its values.
+     * @param orderId Order id.
+     * @param restaurantName Restaurant the order was from.
+     * @param createdAt When it was placed, epoch seconds.
+     * @param actualMinutes Minutes from placing to delivery.
+     * @param restaurantLat Restaurant latitude, null if unknown.
+     * @param restaurantLon Restaurant longitude, null if unknown.
+     * @param deliveryLat Delivery latitude, null if unknown.
+     * @param deliveryLon Delivery longitude, null if unknown.
+     */
+    public DeliveredOrderRow(long orderId, String restaurantName, long createdAt, int actualMinutes,
+                             Double restaurantLat, Double restaurantLon, Double deliveryLat, Double deliveryLon) {
+        this.orderId = orderId;
+        this.restaurantName = restaurantName;
+        this.createdAt = createdAt;
+        this.actualMinutes = actualMinutes;
+        this.restaurantLat = restaurantLat;
+        this.restaurantLon = restaurantLon;
+        this.deliveryLat = deliveryLat;
+        this.deliveryLon = deliveryLon;
+    }
+
+    /**
+     * Maps the current row of ORDER_DELIVERY_TIME.
+     * @param rs ResultSet positioned on a row.
+     * @return The mapped row.
+     * @throws SQLException if a column is missing
+     */
+    public static DeliveredOrderRow from(ResultSet rs) throws SQLException {
+        return new DeliveredOrderRow(rs.getLong("order_id"), rs.getString("restaurant_name"), rs.getLong("created_at"),
+                rs.getInt("actual_minutes"), OrderRow.getNullableDouble(rs, "restaurant_lat"),
+                OrderRow.getNullableDouble(rs, "restaurant_lon"), OrderRow.getNullableDouble(rs, "delivery_lat"),
+                OrderRow.getNullableDouble(rs, "delivery_lon"));
+    }
+
+    public long getOrderId() {
+        return orderId;
+    }
+
+    public String getRestaurantName() {
+        return restaurantName;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public int getActualMinutes() {
+        return actualMinutes;
+    }
+
+    public Double getRestaurantLat() {
+        return restaurantLat;
+    }
+
+    public Double getRestaurantLon() {
+        return restaurantLon;
+    }
+
+    public Double getDeliveryLat() {
+        return deliveryLat;
+    }
+
+    public Double getDeliveryLon() {
+        return deliveryLon;
+    }
+}
@@ -0,0 +1,93 @@
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * DeliveryRow is one entry of a driver's delivery_history, joined with the restaurant name
+ * and total from the order it belongs to.
+ */
+public class DeliveryRow {
+    private final long id;
+    private final String driverUsername;
+    private final long orderId;
+    private final Long pickupTime;
+    private final Long deliveryTime;
+    private final String deliveryStatus;
+    private final Integer customerRating;
+    private final String customerFeedback;
+    private final double earnings;
+    private final String restaurantName;
+    private final double totalAmount;
+
+    private DeliveryRow(ResultSet rs) throws SQLException {
+        this.id = rs.getLong("id");
+        this.driverUsername = rs.getString("driver_username");
+        this.orderId = rs.getLong("order_id");
+        this.pickupTime = OrderRow.getNullableLong(rs, "pickup_time");
+        this.deliveryTime = OrderRow.getNullableLong(rs, "delivery_time");
+        this.deliveryStatus = rs.getString("delivery_status");
+        Long rating = OrderRow.getNullableLong(rs, "customer_rating");
+        this.customerRating = rating != null ? rating.intValue() : null;
+        this.customerFeedback = rs.getString("customer_feedback");
+        this.earnings = rs.getDouble("earnings");
+        this.restaurantName = rs.getString("restaurant_name");
+        this.totalAmount = rs.getDouble("total_amount");
+    }
+
+    /**
+     * Maps the current row of the delivery history query.
+     * @param rs ResultSet positioned on a row.
+     * @return The mapped row.
+     * @throws SQLException if a column is missing
+     */
+    public static DeliveryRow from(ResultSet rs) throws SQLException {
+        return new DeliveryRow(rs);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getDriverUsername() {
+        return driverUsername;
+    }
+
+    public long getOrderId() {
+        return orderId;
+    }
+
+    public Long getPickupTime() {
+        return pickupTime;
+    }
+
+    public Long getDeliveryTime() {
+        return deliveryTime;
+    }
+
+    public String getDeliveryStatus() {
+        return deliveryStatus;
+    }
+
+    /**
+     * Returns the customer's 1-5 rating.
+     * @return Rating, or null if the customer didn't rate.
+     */
+    public Integer getCustomerRating() {
+        return customerRating;
+    }
+
+    public String getCustomerFeedback() {
+        return customerFeedback;
+    }
+
+    public double getEarnings() {
+        return earnings;
+    }
+
+    public String getRestaurantName() {
+        return restaurantName;
+    }
+
+    public double getTotalAmount() {
+        return totalAmount;
+    }
+}
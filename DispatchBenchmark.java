@@ -0,0 +1,169 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * DispatchBenchmark measures DispatchEngine against a throwaway consolidated database with 10k available drivers
+ * spread over the Boston area.
+ * Phases: finding the 5 nearest drivers with the SpatialGrid vs checking every driver, and full dispatches
+ * (nearest-k lookup, offers, claimOrder) where drivers accept 80% of offers straight away.
+ * Run with: java -cp ".;lib/sqlite-jdbc-3.42.0.0.jar" DispatchBenchmark [drivers] [orders]
+ */
+public class DispatchBenchmark {
+
+    private static final double LAT = 42.36;
+    private static final double LON = -71.06;
+    private static final double SPREAD = 0.3;  // degrees, roughly 30 km across
+    private static final int LOOKUPS = 20_000;
+    private static final int THREADS = 8;
+
+    public static void main(String[] args) throws Exception {
+        int drivers = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int orders = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        Path dir = Files.createTempDirectory("bench-dispatch");
+        try {
+            System.out.println("Dispatch benchmark: " + drivers + " drivers, " + orders + " orders");
+            System.out.println("=".repeat(72));
+            System.out.printf("%-28s %14s %14s%n", "Phase", "ops/sec", "us/op");
+            System.out.println("-".repeat(72));
+
+            DataStore store = DataStore.open(dir, DataStore.Layout.CONSOLIDATED, StorageProfile.FAST);
+            Random random = new Random(42);
+            double[][] positions = addDrivers(store, drivers, random);
+
+            runLookups(positions, random);
+
+            List<long[]> placed = new ArrayList<>();
+            for (int i = 0; i < orders; i++) {
+                double lat = LAT + (random.nextDouble() - 0.5) * SPREAD;
+                double lon = LON + (random.nextDouble() - 0.5) * SPREAD;
+                long orderId = store.getOrderDb().createOrder("benchcustomer", "Bench Grill", "1 Bench St", "2 Home St", "none",
+                        20, 1, "CARD", lat, lon, lat + 0.01, lon + 0.01);
+                placed.add(new long[] { orderId, Double.doubleToLongBits(lat), Double.doubleToLongBits(lon) });
+            }
+
+            // every fifth offer is declined, the rest accepted on the spot
+            DispatchEngine.OfferChannel channel = (driver, orderId, km) ->
+                    CompletableFuture.completedFuture((driver.hashCode() + orderId) % 5 != 0);
+            try (DispatchEngine engine = new DispatchEngine(store.getOrderDb(), store.getDriverDb(), channel, 5, 1000, 2, 25, THREADS)) {
+                engine.loadAvailableDrivers();
+                long start = System.nanoTime();
+                List<CompletableFuture<DispatchEngine.Result>> results = new ArrayList<>();
+                for (long[] order : placed) {
+                    results.add(engine.submit(order[0], Double.longBitsToDouble(order[1]), Double.longBitsToDouble(order[2])));
+                }
+                int assignedCount = 0;
+                for (CompletableFuture<DispatchEngine.Result> result : results) {
+                    if (result.get().getOutcome() == DispatchEngine.Outcome.ASSIGNED) {
+                        assignedCount++;
+                    }
+                }
+                long nanos = System.nanoTime() - start;
+                print("dispatch (" + THREADS + " threads)", nanos, orders);
+                System.out.printf("%-28s %14.0f %14s%n", "assignments/sec", assignedCount / (nanos / 1e9), assignedCount + " assigned");
+                System.out.println("-".repeat(72));
+                System.out.println(engine);
+            }
+            System.out.println("=".repeat(72));
+        } finally {
+            ConnectionPool.closeAll();
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : files.toList()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    // one transaction for all the drivers, registerDriver one at a time would be most of the run
+    private static double[][] addDrivers(DataStore store, int count, Random random) throws Exception {
+        double[][] positions = new double[count][];
+        try (Connection conn = store.getDriverDb().getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement insert = conn.prepareStatement(SqlStatements.DRIVER_INSERT);
+                 PreparedStatement status = conn.prepareStatement(SqlStatements.DRIVER_SET_STATUS);
+                 PreparedStatement location = conn.prepareStatement(SqlStatements.DRIVER_SET_LOCATION)) {
+                long now = Instant.now().getEpochSecond();
+                for (int i = 0; i < count; i++) {
+                    String username = "benchdriver" + i;
+                    positions[i] = new double[] { LAT + (random.nextDouble() - 0.5) * SPREAD, LON + (random.nextDouble() - 0.5) * SPREAD };
+                    insert.setString(1, username);
+                    insert.setString(2, "Car");
+                    insert.setString(3, "B" + i);
+                    insert.setString(4, "Boston");
+                    insert.setLong(5, now);
+                    insert.addBatch();
+                    status.setString(1, "AVAILABLE");
+                    status.setString(2, username);
+                    status.addBatch();
+                    location.setDouble(1, positions[i][0]);
+                    location.setDouble(2, positions[i][1]);
+                    location.setLong(3, now);
+                    location.setString(4, username);
+                    location.addBatch();
+                }
+                insert.executeBatch();
+                status.executeBatch();
+                location.executeBatch();
+                conn.commit();
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        return positions;
+    }
+
+    private static void runLookups(double[][] positions, Random random) {
+        SpatialGrid<Integer> grid = new SpatialGrid<>(0.01);
+        for (int i = 0; i < positions.length; i++) {
+            grid.put(i, positions[i][0], positions[i][1]);
+        }
+        double[][] queries = new double[LOOKUPS][];
+        for (int i = 0; i < LOOKUPS; i++) {
+            queries[i] = new double[] { LAT + (random.nextDouble() - 0.5) * SPREAD, LON + (random.nextDouble() - 0.5) * SPREAD };
+        }
+
+        long sink = 0;
+        long start = System.nanoTime();
+        for (double[] q : queries) {
+            sink += grid.nearest(q[0], q[1], 5, 25, null).size();
+        }
+        print("nearest-5 grid", System.nanoTime() - start, LOOKUPS);
+
+        // what finding the nearest drivers costs without an index: every driver, every time
+        int scans = LOOKUPS / 20;
+        start = System.nanoTime();
+        for (int n = 0; n < scans; n++) {
+            double[] q = queries[n];
+            double[] best = { Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE };
+            for (double[] p : positions) {
+                double km = MapCalculator.distanceKm(q[0], q[1], p[0], p[1]);
+                if (km < best[4]) {
+                    int i = 4;
+                    while (i > 0 && best[i - 1] > km) {
+                        best[i] = best[i - 1];
+                        i--;
+                    }
+                    best[i] = km;
+                }
+            }
+            sink += (long) best[0];
+        }
+        print("nearest-5 linear scan", System.nanoTime() - start, scans);
+        if (sink == Long.MIN_VALUE) {
+            System.out.println(sink);  // keeps the JIT from dropping the loops
+        }
+    }
+
+    private static void print(String phase, long nanos, int ops) {
+        System.out.printf("%-28s %14.0f %14.3f%n", phase, ops / (nanos / 1e9), nanos / 1000.0 / ops);
+    }
+}
@@ -0,0 +1,284 @@
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * DispatchEngine hands new orders to the nearest available driver instead of waiting for someone to pull them
+ * from DriverGetOrder's list. AVAILABLE drivers with a known position are kept in a SpatialGrid; a new order is
+ * offered to the k nearest (by MapCalculator distance from the restaurant) one at a time, closest first.
+ * A driver who declines or doesn't answer within the accept timeout is skipped and the next one is asked; after
+ * the configured number of rounds the order is left PENDING so drivers can still pick it up by hand.
+ * An accepted offer goes through OrderDatabase.claimOrder, so dispatch and manual pickup can't both win.
+ */
+public class DispatchEngine implements AutoCloseable {
+
+    // ~1.1 km cells, about the size of a neighbourhood
+    private static final double CELL_DEGREES = 0.01;
+
+    /**
+     * How offers reach drivers. Complete the future with true to accept, false to decline;
+     * not completing it before the accept timeout counts as a decline.
+     */
+    public interface OfferChannel {
+        CompletableFuture<Boolean> offer(String driverUsername, long orderId, double distanceKm);
+    }
+
+    public enum Outcome {
+        ASSIGNED,    // a driver accepted and the claim went through
+        UNASSIGNED,  // nobody accepted, the order is still pending
+        TAKEN        // the order stopped being pending while offers were out (picked up by hand, cancelled)
+    }
+
+    /**
+     * What happened to one order.
+     */
+    public static final class Result {
+        private final long orderId;
+        private final Outcome outcome;
+        private final String driverUsername;
+        private final double distanceKm;
+        private final int offers;
+
+        Result(long orderId, Outcome outcome, String driverUsername, double distanceKm, int offers) {
+            this.orderId = orderId;
+            this.outcome = outcome;
+            this.driverUsername = driverUsername;
+            this.distanceKm = distanceKm;
+            this.offers = offers;
+        }
+
+        public long getOrderId() {
+            return orderId;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        // null unless ASSIGNED
+        public String getDriverUsername() {
+            return driverUsername;
+        }
+
+        public double getDistanceKm() {
+            return distanceKm;
+        }
+
+        public int getOffers() {
+            return offers;
+        }
+
+        @Override
+        public String toString() {
+            return "Order #" + orderId + " " + outcome + (driverUsername != null
+                    ? " to " + driverUsername + String.format(" (%.2f km)", distanceKm) : "") + " after " + offers + " offers";
+        }
+    }
+
+    private final OrderDatabase orderDb;
+    private final DriverDatabase driverDb;
+    private final OfferChannel channel;
+    private final int nearest;
+    private final long acceptTimeoutMs;
+    private final int rounds;
+    private final double maxKm;
+
+    private final SpatialGrid<String> available = new SpatialGrid<>(CELL_DEGREES);
+    // drivers looking at an offer right now, so two orders never wait on the same driver
+    private final Set<String> offering = ConcurrentHashMap.newKeySet();
+    private final ExecutorService workers;
+
+    private final AtomicLong assigned = new AtomicLong();
+    private final AtomicLong unassigned = new AtomicLong();
+    private final AtomicLong offers = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    /**
+     * Constructs an engine with the default settings: 5 nearest drivers, 30 second accept timeout,
+     * 2 rounds, drivers up to 25 km away, 4 dispatch threads.
+     */
+    public DispatchEngine(OrderDatabase orderDb, DriverDatabase driverDb, OfferChannel channel) {
+        this(orderDb, driverDb, channel, 5, 30_000, 2, 25, 4);
+    }
+
+    /**
+     * Constructs an engine.
+     * @param orderDb Where orders are claimed.
+     * @param driverDb Where available drivers are loaded from.
+     * @param channel How offers reach drivers.
+     * @param nearest How many drivers (k) are asked per round.
+     * @param acceptTimeoutMs How long one driver has to answer.
+     * @param rounds How many groups of k drivers to try before giving up.
+     * @param maxKm Drivers farther than this from the restaurant are never asked.
+     * @param threads Orders dispatched at the same time by submit().
+     */
+    public DispatchEngine(OrderDatabase orderDb, DriverDatabase driverDb, OfferChannel channel,
+                          int nearest, long acceptTimeoutMs, int rounds, double maxKm, int threads) {
+        this.orderDb = orderDb;
+        this.driverDb = driverDb;
+        this.channel = channel;
+        this.nearest = nearest;
+        this.acceptTimeoutMs = acceptTimeoutMs;
+        this.rounds = rounds;
+        this.maxKm = maxKm;
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "dispatch");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * (Re)loads every AVAILABLE driver with a known position from the drivers table.
+     * @return Number of drivers in the index afterwards.
+     * @throws SQLException if the drivers can't be read
+     */
+    public int loadAvailableDrivers() throws SQLException {
+        driverDb.forEachAvailableDriver(row -> available.put(row.getUsername(), row.getLat(), row.getLon()));
+        return available.size();
+    }
+
+    // a driver came online, finished a delivery or moved
+    public void driverAvailable(String username, double lat, double lon) {
+        available.put(username, lat, lon);
+    }
+
+    // a driver went offline or took an order by hand
+    public void driverUnavailable(String username) {
+        available.remove(username);
+    }
+
+    public int getAvailableCount() {
+        return available.size();
+    }
+
+    /**
+     * Dispatches an order in the background.
+     * @param orderId A pending order.
+     * @param restaurantLat Where the order is picked up.
+     * @param restaurantLon Where the order is picked up.
+     * @return Completes with the result (or the SQLException from claiming, or a RejectedExecutionException
+     *         if the engine is closed before the order gets dispatched).
+     */
+    public CompletableFuture<Result> submit(long orderId, double restaurantLat, double restaurantLon) {
+        Submitted task = new Submitted(orderId, restaurantLat, restaurantLon);
+        try {
+            workers.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.result.completeExceptionally(e);
+        }
+        return task.result;
+    }
+
+    // a submit() waiting for a worker, kept as its own type so close() can fail the ones that never ran
+    private final class Submitted implements Runnable {
+        final CompletableFuture<Result> result = new CompletableFuture<>();
+        final long orderId;
+        final double restaurantLat;
+        final double restaurantLon;
+
+        Submitted(long orderId, double restaurantLat, double restaurantLon) {
+            this.orderId = orderId;
+            this.restaurantLat = restaurantLat;
+            this.restaurantLon = restaurantLon;
+        }
+
+        @Override
+        public void run() {
+            try {
+                result.complete(dispatch(orderId, restaurantLat, restaurantLon));
+            } catch (Exception e) {
+                Logger.catchAndLogBug(e, "DispatchEngine.submit");
+                result.completeExceptionally(e);
+            }
+        }
+    }
+
+    /*
+    --> blocking version of submit: asks up to rounds * k drivers, nearest first, one at a time
+    --> a driver is never asked about the same order twice, and never about two orders at once
+    --> the winner leaves the index; losing the claim means someone else has the order, so we stop
+    */
+    public Result dispatch(long orderId, double restaurantLat, double restaurantLon) throws SQLException {
+        Set<String> asked = new HashSet<>();
+        int sent = 0;
+        for (int round = 0; round < rounds; round++) {
+            List<SpatialGrid.Hit<String>> candidates = available.nearest(restaurantLat, restaurantLon, nearest, maxKm,
+                    driver -> !asked.contains(driver) && !offering.contains(driver));
+            if (candidates.isEmpty()) {
+                break;
+            }
+            for (SpatialGrid.Hit<String> candidate : candidates) {
+                String driver = candidate.getKey();
+                if (!offering.add(driver)) {
+                    continue;  // another order got to them first
+                }
+                try {
+                    asked.add(driver);
+                    sent++;
+                    if (!ask(driver, orderId, candidate.getDistanceKm())) {
+                        continue;
+                    }
+                    if (!orderDb.claimOrder(orderId, driver)) {
+                        unassigned.incrementAndGet();
+                        return new Result(orderId, Outcome.TAKEN, null, 0, sent);
+                    }
+                    available.remove(driver);
+                    assigned.incrementAndGet();
+                    return new Result(orderId, Outcome.ASSIGNED, driver, candidate.getDistanceKm(), sent);
+                } finally {
+                    offering.remove(driver);
+                }
+            }
+        }
+        unassigned.incrementAndGet();
+        return new Result(orderId, Outcome.UNASSIGNED, null, 0, sent);
+    }
+
+    // true only if the driver accepted in time
+    private boolean ask(String driver, long orderId, double distanceKm) {
+        offers.incrementAndGet();
+        CompletableFuture<Boolean> answer = channel.offer(driver, orderId, distanceKm);
+        try {
+            return Boolean.TRUE.equals(answer.get(acceptTimeoutMs, TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            timeouts.incrementAndGet();
+            answer.cancel(true);  // tells the channel the offer is gone
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            Logger.catchAndLogBug(e, "DispatchEngine.ask");
+            return false;
+        }
+    }
+
+    // orders being dispatched stop asking (their offers are interrupted) and finish UNASSIGNED,
+    // the queued ones fail so nobody waits on them forever
+    @Override
+    public void close() {
+        for (Runnable queued : workers.shutdownNow()) {
+            if (queued instanceof Submitted) {
+                ((Submitted) queued).result.completeExceptionally(
+                        new RejectedExecutionException("DispatchEngine closed before order #" + ((Submitted) queued).orderId + " was dispatched"));
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DispatchEngine[available=" + available.size() + " assigned=" + assigned.get() + " unassigned=" + unassigned.get()
+                + " offers=" + offers.get() + " timeouts=" + timeouts.get() + "]";
+    }
+}
@@ -0,0 +1,181 @@
+import org.junit.jupiter.api.*;
+import java.nio.file.*;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+/*
+--> Tests nearest-driver dispatch:
+    - the spatial grid returns the same k nearest points as checking every point
+    - an order is offered nearest first, a decline and a timeout move on to the next driver, and the one who
+      accepts gets the order (and leaves the index)
+    - nobody accepting leaves the order pending; an order picked up by hand while offers are out comes back TAKEN
+    - closing the engine completes every submitted order's future, including ones still queued or submitted after
+--> Will return "Dispatch engine test passed" with the engine counters if succeeded.
+ */
+public class DispatchEngineTest {
+
+    private static final double LAT = 42.36;
+    private static final double LON = -71.06;
+
+    private Path dir;
+    private DataStore store;
+
+    @BeforeEach
+    void setup() throws Exception {
+        dir = Files.createTempDirectory("test-dispatch");
+        store = DataStore.open(dir, DataStore.Layout.CONSOLIDATED, StorageProfile.FAST);
+    }
+
+    @AfterEach
+    void cleanup() throws Exception {
+        ConnectionPool.closeAll();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    @Test
+    void testGridMatchesBruteForce() {
+        SpatialGrid<Integer> grid = new SpatialGrid<>(0.01);
+        Random random = new Random(7);
+        double[][] points = new double[3000][];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = new double[] { LAT + (random.nextDouble() - 0.5) * 0.4, LON + (random.nextDouble() - 0.5) * 0.4 };
+            grid.put(i, points[i][0], points[i][1]);
+        }
+        grid.remove(0);
+        grid.put(1, LAT, LON);  // moved
+        points[1] = new double[] { LAT, LON };
+
+        for (int q = 0; q < 50; q++) {
+            double lat = LAT + (random.nextDouble() - 0.5) * 0.4;
+            double lon = LON + (random.nextDouble() - 0.5) * 0.4;
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 1; i < points.length; i++) {
+                expected.add(i);
+            }
+            double[][] p = points;
+            expected.sort(Comparator.comparingDouble(i -> MapCalculator.distanceKm(lat, lon, p[i][0], p[i][1])));
+
+            List<SpatialGrid.Hit<Integer>> hits = grid.nearest(lat, lon, 5, 100, null);
+            assertEquals(5, hits.size());
+            for (int i = 0; i < 5; i++) {
+                assertEquals(expected.get(i), hits.get(i).getKey());
+            }
+        }
+        assertFalse(grid.contains(0));
+        assertEquals(points.length - 1, grid.size());
+    }
+
+    @Test
+    void testOfferedNearestFirstWithFallback() throws Exception {
+        addDriver("near", 0.001);
+        addDriver("middle", 0.005);
+        addDriver("far", 0.02);
+        addDriver("toofar", 1.0);
+        List<String> asked = new ArrayList<>();
+        DispatchEngine.OfferChannel channel = (driver, orderId, km) -> {
+            asked.add(driver);
+            if (driver.equals("near")) {
+                return CompletableFuture.completedFuture(false);   // declines
+            } else if (driver.equals("middle")) {
+                return new CompletableFuture<>();                  // never answers
+            }
+            return CompletableFuture.completedFuture(true);
+        };
+        try (DispatchEngine engine = new DispatchEngine(store.getOrderDb(), store.getDriverDb(), channel, 2, 100, 2, 25, 2)) {
+            assertEquals(4, engine.loadAvailableDrivers());
+            long orderId = newOrder();
+
+            DispatchEngine.Result result = engine.submit(orderId, LAT, LON).get();
+            assertEquals(DispatchEngine.Outcome.ASSIGNED, result.getOutcome());
+            assertEquals("far", result.getDriverUsername());
+            assertEquals(List.of("near", "middle", "far"), asked);
+            assertEquals("far", store.getOrderDb().getOrderDetails(orderId).getDriverUsername());
+            assertEquals("ON_DELIVERY", store.getDriverDb().getDriverStats("far").getCurrentStatus());
+            assertEquals(3, engine.getAvailableCount());
+
+            // only near and middle are close enough now, and neither takes it
+            long second = newOrder();
+            asked.clear();
+            result = engine.dispatch(second, LAT, LON);
+            assertEquals(DispatchEngine.Outcome.UNASSIGNED, result.getOutcome());
+            assertEquals(List.of("near", "middle"), asked);
+            assertEquals("PENDING", store.getOrderDb().getOrderDetails(second).getStatus());
+            System.out.println("Dispatch engine test passed - " + engine);
+        }
+    }
+
+    @Test
+    void testOrderTakenByHandWhileOffering() throws Exception {
+        addDriver("slowpoke", 0.001);
+        addDriver("grabber", 0.3);
+        long orderId = newOrder();
+        DispatchEngine.OfferChannel channel = (driver, id, km) -> {
+            try {
+                // somebody takes it from the list before the offer is answered
+                assertTrue(store.getOrderDb().claimOrder(id, "grabber"));
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+            return CompletableFuture.completedFuture(true);
+        };
+        try (DispatchEngine engine = new DispatchEngine(store.getOrderDb(), store.getDriverDb(), channel, 1, 100, 1, 5, 1)) {
+            engine.loadAvailableDrivers();
+            DispatchEngine.Result result = engine.dispatch(orderId, LAT, LON);
+            assertEquals(DispatchEngine.Outcome.TAKEN, result.getOutcome());
+            assertEquals("grabber", store.getOrderDb().getOrderDetails(orderId).getDriverUsername());
+            assertEquals("AVAILABLE", store.getDriverDb().getDriverStats("slowpoke").getCurrentStatus());
+        }
+    }
+
+    @Test
+    void testCloseCompletesEverySubmit() throws Exception {
+        addDriver("sleepy", 0.001);
+        CountDownLatch offered = new CountDownLatch(1);
+        // never answers, the accept timeout is longer than the test
+        DispatchEngine.OfferChannel channel = (driver, id, km) -> {
+            offered.countDown();
+            return new CompletableFuture<>();
+        };
+        DispatchEngine engine = new DispatchEngine(store.getOrderDb(), store.getDriverDb(), channel, 1, 60_000, 1, 5, 1);
+        engine.loadAvailableDrivers();
+        CompletableFuture<DispatchEngine.Result> running = engine.submit(newOrder(), LAT, LON);
+        CompletableFuture<DispatchEngine.Result> queued = engine.submit(newOrder(), LAT, LON);
+        assertTrue(offered.await(5, TimeUnit.SECONDS));
+        engine.close();
+        CompletableFuture<DispatchEngine.Result> late = engine.submit(newOrder(), LAT, LON);
+
+        assertEquals(DispatchEngine.Outcome.UNASSIGNED, running.get(5, TimeUnit.SECONDS).getOutcome());
+        for (CompletableFuture<DispatchEngine.Result> failed : List.of(queued, late)) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        }
+    }
+
+    private void addDriver(String username, double offsetDegrees) throws SQLException {
+        store.getDriverDb().registerDriver(username, "Car", "D-" + username, "Downtown");
+        store.getDriverDb().updateDriverStatus(username, "AVAILABLE");
+        store.getDriverDb().updateDriverLocation(username, LAT + offsetDegrees, LON);
+    }
+
+    private long newOrder() throws SQLException {
+        long orderId = store.getOrderDb().createOrder("dispatchcustomer", "Dispatch Deli", "1 Dispatch St", "2 Home St", "none",
+                20.00, 1, "CARD", LAT, LON, LAT + 0.01, LON + 0.01);
+        assertTrue(orderId > 0);
+        assertEquals(LAT, store.getOrderDb().getOrderDetails(orderId).getRestaurantLat(), 1e-9);
+        return orderId;
+    }
+}
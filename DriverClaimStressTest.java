@@ -0,0 +1,187 @@
+import org.junit.jupiter.api.*;
+import java.nio.file.*;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+/*
+--> Stress tests OrderDatabase.claimOrder: 200 simulated drivers race for 50 pending orders,
+    each driver trying orders in its own random order until it wins one or none are left
+--> Checks every order went to exactly one driver (one ASSIGNED event each), winners are ON_DELIVERY
+    and every losing driver's status was never touched
+--> Also checks a lost claim in the split layout (drivers.db its own file) writes nothing, and a claim whose
+    driver update fails there is undone
+--> Will return "Driver claim stress test passed" with claims per second if succeeded.
+ */
+public class DriverClaimStressTest {
+
+    private static final int DRIVERS = 200;
+    private static final int ORDERS = 50;
+
+    private Path dir;
+
+    @BeforeEach
+    void setup() throws Exception {
+        dir = Files.createTempDirectory("test-claims");
+    }
+
+    @AfterEach
+    void cleanup() throws Exception {
+        ConnectionPool.closeAll();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    @Test
+    void testEveryOrderClaimedExactlyOnce() throws Exception {
+        DataStore store = DataStore.open(dir, DataStore.Layout.CONSOLIDATED, StorageProfile.FAST);
+        OrderDatabase orderDb = store.getOrderDb();
+        List<Long> orderIds = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            orderIds.add(orderDb.createOrder("claimcustomer", "Race Cafe", "1 Race St", "2 Home St", "none",
+                    15.00, 1, "CARD", 41.98, 70.96, 41.99, 70.97));
+        }
+        for (int d = 0; d < DRIVERS; d++) {
+            store.getDriverDb().registerDriver("claimdriver" + d, "Car", "L" + d, "Downtown");
+            store.getDriverDb().updateDriverStatus("claimdriver" + d, "AVAILABLE");
+        }
+
+        Map<Long, String> winners = new ConcurrentHashMap<>();
+        AtomicInteger attempts = new AtomicInteger();
+        AtomicInteger doubleWins = new AtomicInteger();
+        CountDownLatch go = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(DRIVERS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int d = 0; d < DRIVERS; d++) {
+            String driver = "claimdriver" + d;
+            List<Long> tryOrder = new ArrayList<>(orderIds);
+            Collections.shuffle(tryOrder);
+            futures.add(pool.submit(() -> {
+                go.await();
+                for (long orderId : tryOrder) {
+                    attempts.incrementAndGet();
+                    if (orderDb.claimOrder(orderId, driver)) {
+                        if (winners.putIfAbsent(orderId, driver) != null) {
+                            doubleWins.incrementAndGet();
+                        }
+                        break;  // a driver only takes one delivery at a time
+                    }
+                }
+                return null;
+            }));
+        }
+        long start = System.nanoTime();
+        go.countDown();
+        for (Future<?> f : futures) {
+            f.get(60, TimeUnit.SECONDS);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+
+        assertEquals(0, doubleWins.get());
+        assertEquals(ORDERS, winners.size());
+        assertEquals(ORDERS, winners.values().stream().distinct().count());
+
+        try (Connection conn = orderDb.getConnection()) {
+            for (long orderId : orderIds) {
+                assertEquals(winners.get(orderId), orderDb.getOrderDetails(orderId).getDriverUsername());
+                assertEquals(1, count(conn, "SELECT COUNT(*) FROM order_updates WHERE order_id = ? AND status = 'ASSIGNED'", orderId));
+            }
+            assertEquals(ORDERS, count(conn, "SELECT COUNT(*) FROM drivers WHERE current_status = 'ON_DELIVERY'", null));
+            assertEquals(DRIVERS - ORDERS, count(conn, "SELECT COUNT(*) FROM drivers WHERE current_status = 'AVAILABLE'", null));
+        }
+        for (String driver : winners.values()) {
+            assertEquals("ON_DELIVERY", store.getDriverDb().getDriverStats(driver).getCurrentStatus());
+        }
+        System.out.printf("Driver claim stress test passed - %d claims by %d drivers in %.3fs (%.0f claims/sec)%n",
+                attempts.get(), DRIVERS, seconds, attempts.get() / seconds);
+    }
+
+    @Test
+    void testLostClaimWritesNothingAcrossFiles() throws Exception {
+        DataStore store = DataStore.open(dir, DataStore.Layout.SPLIT, StorageProfile.FAST);
+        OrderDatabase orderDb = store.getOrderDb();
+        long orderId = orderDb.createOrder("claimcustomer", "Race Cafe", "1 Race St", "2 Home St", "none",
+                15.00, 1, "CARD", 41.98, 70.96, 41.99, 70.97);
+        store.getDriverDb().registerDriver("fast", "Car", "L1", "Downtown");
+        store.getDriverDb().registerDriver("slow", "Car", "L2", "Downtown");
+
+        assertTrue(orderDb.claimOrder(orderId, "fast"));
+        assertFalse(orderDb.claimOrder(orderId, "slow"));
+        assertEquals("ON_DELIVERY", store.getDriverDb().getDriverStats("fast").getCurrentStatus());
+        assertEquals("OFFLINE", store.getDriverDb().getDriverStats("slow").getCurrentStatus());
+
+        // an unknown driver can't claim: the claim is undone, the order is pending again and still claimable
+        long other = orderDb.createOrder("claimcustomer", "Race Cafe", "1 Race St", "2 Home St", "none",
+                15.00, 1, "CARD", 41.98, 70.96, 41.99, 70.97);
+        assertThrows(SQLException.class, () -> orderDb.claimOrder(other, "ghost"));
+        assertEquals("PENDING", orderDb.getOrderDetails(other).getStatus());
+        assertNull(orderDb.getOrderDetails(other).getDriverUsername());
+        try (Connection conn = orderDb.getConnection()) {
+            assertEquals(1, count(conn, "SELECT COUNT(*) FROM order_updates WHERE order_id = ? AND status = 'PENDING' "
+                    + "AND notes LIKE 'Claim undone%'", other));
+        }
+        assertTrue(orderDb.claimOrder(other, "slow"));
+        assertEquals("ON_DELIVERY", store.getDriverDb().getDriverStats("slow").getCurrentStatus());
+
+        // a read while the claim is committed but the driver update hasn't run yet caches ASSIGNED,
+        // undoing the claim has to drop it
+        long third = orderDb.createOrder("claimcustomer", "Race Cafe", "1 Race St", "2 Home St", "none",
+                15.00, 1, "CARD", 41.98, 70.96, 41.99, 70.97);
+        CountDownLatch release = new CountDownLatch(1);
+        store.getDriverDb().getPool().getWriter().submit(conn -> {
+            // holds up the drivers writer, so the claim's driver update waits behind it
+            while (release.getCount() > 0) {
+                Thread.onSpinWait();
+            }
+            return null;
+        });
+        ExecutorService claimer = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> claim = claimer.submit(() -> orderDb.claimOrder(third, "ghost"));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!"ASSIGNED".equals(orderDb.getOrderDetails(third).getStatus())) {
+                assertTrue(System.currentTimeMillis() < deadline, "claim never committed");
+                Thread.sleep(5);
+            }
+            assertEquals("ghost", orderDb.getOrderDetails(third).getDriverUsername());
+            release.countDown();
+            ExecutionException e = assertThrows(ExecutionException.class, () -> claim.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(SQLException.class, e.getCause());
+        } finally {
+            release.countDown();
+            claimer.shutdown();
+        }
+        assertEquals("PENDING", orderDb.getOrderDetails(third).getStatus());
+        assertNull(orderDb.getOrderDetails(third).getDriverUsername());
+    }
+
+    private static int count(Connection conn, String sql, Long param) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            if (param != null) {
+                ps.setLong(1, param);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+}
@@ -1,11 +1,10 @@
 import java.nio.file.Path;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.time.Instant;
+import java.util.function.Consumer;
 
 /**
  * DriverDatabase manages driver accounts and their delivery information.
@@ -14,14 +13,44 @@ import java.time.Instant;
 public class DriverDatabase {
     private final Path dbPath;
     private final String url;
+    private final ConnectionPool pool;
+    private final StorageProfile profile;
 
     /**
-     * Constructs a DriverDatabase with the given database path.
+     * Constructs a DriverDatabase with the given database path, using the configured storage profile.
      * @param dbPath Path to the SQLite database file.
      */
     public DriverDatabase(Path dbPath) {
+        this(dbPath, StorageProfile.current());
+    }
+
+    /**
+     * Constructs a DriverDatabase with the given database path and storage profile.
+     * @param dbPath Path to the SQLite database file.
+     * @param profile SQLite settings applied to every connection during init().
+     */
+    public DriverDatabase(Path dbPath, StorageProfile profile) {
         this.dbPath = dbPath;
         this.url = "jdbc:sqlite:" + dbPath.toAbsolutePath().toString();
+        this.pool = ConnectionPool.forDatabase(dbPath);
+        this.profile = profile;
+    }
+
+    public String getConnectionUrl() {
+        return url;
+    }
+
+    /**
+     * Borrows a pooled connection to drivers.db. Close it to give it back to the pool.
+     * @return A pooled connection.
+     * @throws SQLException if no connection is available
+     */
+    public Connection getConnection() throws SQLException {
+        return pool.getConnection();
+    }
+
+    public ConnectionPool getPool() {
+        return pool;
     }
 
     // initializes all the driver tables
@@ -33,57 +62,17 @@ public class DriverDatabase {
                 throw new SQLException("SQLite JDBC driver not found on classpath", e);
             }
 
-            try (Connection conn = DriverManager.getConnection(url);
+            // WAL + the storage profile settings for every connection we hand out from now on
+            pool.useProfile(profile);
+
+            // own connection for setup so the foreign_keys pragma doesn't end up on a pooled connection
+            try (Connection conn = pool.openConnection();
                  Statement stmt = conn.createStatement()) {
 
                 stmt.executeUpdate("PRAGMA foreign_keys = ON");  // need this or foreign keys dont work
 
-                /*
-                 * main drivers table - stores info about each driver
-                 * username links to the users table
-                 */
-                stmt.executeUpdate("CREATE TABLE IF NOT EXISTS drivers ("
-                        + "username TEXT PRIMARY KEY,"
-                        + "vehicle_type TEXT,"
-                        + "license_number TEXT,"
-                        + "current_status TEXT DEFAULT 'OFFLINE',"  // tracks if driver is available or busy
-                        + "total_deliveries INTEGER DEFAULT 0,"
-                        + "rating DECIMAL(3,2) DEFAULT 0.0,"  // average customer rating out of 5
-                        + "service_area TEXT,"  // what area they deliver in
-                        + "account_status TEXT DEFAULT 'ACTIVE',"
-                        + "joined_date INTEGER NOT NULL,"
-                        + "FOREIGN KEY (username) REFERENCES users(username) ON DELETE CASCADE ON UPDATE CASCADE"
-                        + ")");
-
-                // history of all deliveries a driver has done
-                stmt.executeUpdate("CREATE TABLE IF NOT EXISTS delivery_history ("
-                        + "id INTEGER PRIMARY KEY AUTOINCREMENT,"
-                        + "driver_username TEXT NOT NULL,"
-                        + "order_id INTEGER NOT NULL,"
-                        + "pickup_time INTEGER,"
-                        + "delivery_time INTEGER,"
-                        + "delivery_status TEXT,"
-                        + "customer_rating INTEGER,"  // rating from 1-5
-                        + "customer_feedback TEXT,"
-                        + "earnings DECIMAL(10,2),"  // how much they made from this delivery
-                        + "FOREIGN KEY (driver_username) REFERENCES drivers(username),"
-                        + "FOREIGN KEY (order_id) REFERENCES orders(order_id)"
-                        + ")");
-
-                // schedule table for when drivers want to work (not really using this much yet)
-                stmt.executeUpdate("CREATE TABLE IF NOT EXISTS driver_schedule ("
-                        + "id INTEGER PRIMARY KEY AUTOINCREMENT,"
-                        + "driver_username TEXT NOT NULL,"
-                        + "day_of_week INTEGER,"  // 1 = sunday, 7 = saturday
-                        + "start_time TEXT,"
-                        + "end_time TEXT,"
-                        + "is_active BOOLEAN DEFAULT 1,"
-                        + "FOREIGN KEY (driver_username) REFERENCES drivers(username)"
-                        + ")");
-
-                // just adding a couple indexes for the main queries we do
-                stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_drivers_status ON drivers(current_status)");
-                stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_delivery_history_driver ON delivery_history(driver_username)");
+                // only does real work the first time a file is opened by a newer version
+                MIGRATIONS.migrate(conn);
             }
         } catch (Exception e) {
             Logger.catchAndLogBug(e, "DriverDatabase.init");
@@ -91,14 +80,88 @@ public class DriverDatabase {
         }
     }
 
+    // schema history for drivers.db, version is kept by SchemaMigrator (user_version, or schema_versions in fooddash.db)
+    // add new changes as a new numbered step at the end
+    static final SchemaMigrator MIGRATIONS = new SchemaMigrator("DriverDatabase")
+            .add(1, "baseline drivers schema", DriverDatabase::createBaselineSchema)
+            .add(2, "covering delivery history index", DriverDatabase::addDeliveryHistoryIndex)
+            .add(3, "driver location", DriverDatabase::addDriverLocation);
+
+    // version 1 - the tables init() used to create on every start
+    private static void createBaselineSchema(Statement stmt) throws SQLException {
+        /*
+         * main drivers table - stores info about each driver
+         * username links to the users table
+         */
+        stmt.executeUpdate("CREATE TABLE IF NOT EXISTS drivers ("
+                + "username TEXT PRIMARY KEY,"
+                + "vehicle_type TEXT,"
+                + "license_number TEXT,"
+                + "current_status TEXT DEFAULT 'OFFLINE',"  // tracks if driver is available or busy
+                + "total_deliveries INTEGER DEFAULT 0,"
+                + "rating DECIMAL(3,2) DEFAULT 0.0,"  // average customer rating out of 5
+                + "service_area TEXT,"  // what area they deliver in
+                + "account_status TEXT DEFAULT 'ACTIVE',"
+                + "joined_date INTEGER NOT NULL,"
+                + "FOREIGN KEY (username) REFERENCES users(username) ON DELETE CASCADE ON UPDATE CASCADE"
+                + ")");
+
+        // history of all deliveries a driver has done
+        stmt.executeUpdate("CREATE TABLE IF NOT EXISTS delivery_history ("
+                + "id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + "driver_username TEXT NOT NULL,"
+                + "order_id INTEGER NOT NULL,"
+                + "pickup_time INTEGER,"
+                + "delivery_time INTEGER,"
+                + "delivery_status TEXT,"
+                + "customer_rating INTEGER,"  // rating from 1-5
+                + "customer_feedback TEXT,"
+                + "earnings DECIMAL(10,2),"  // how much they made from this delivery
+                + "FOREIGN KEY (driver_username) REFERENCES drivers(username),"
+                + "FOREIGN KEY (order_id) REFERENCES orders(order_id)"
+                + ")");
+
+        // schedule table for when drivers want to work (not really using this much yet)
+        stmt.executeUpdate("CREATE TABLE IF NOT EXISTS driver_schedule ("
+                + "id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + "driver_username TEXT NOT NULL,"
+                + "day_of_week INTEGER,"  // 1 = sunday, 7 = saturday
+                + "start_time TEXT,"
+                + "end_time TEXT,"
+                + "is_active BOOLEAN DEFAULT 1,"
+                + "FOREIGN KEY (driver_username) REFERENCES drivers(username)"
+                + ")");
+
+        // just adding a couple indexes for the main queries we do
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_drivers_status ON drivers(current_status)");
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_delivery_history_driver ON delivery_history(driver_username)");
+    }
+
+    /*
+    --> version 2 - one index on delivery_history that serves both driver screens:
+        history comes back already in delivery_time order (no sort), and the COUNT/AVG/SUM
+        subqueries in getDriverStats read rating + earnings straight from the index without touching the table
+    --> replaces the plain driver_username index, which is a prefix of this one
+    */
+    private static void addDeliveryHistoryIndex(Statement stmt) throws SQLException {
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_delivery_history_driver_time ON delivery_history("
+                + "driver_username, delivery_time, customer_rating, earnings)");
+        stmt.executeUpdate("DROP INDEX IF EXISTS idx_delivery_history_driver");
+    }
+
+    // version 3 - last known position, so DispatchEngine can offer orders to the closest available drivers
+    private static void addDriverLocation(Statement stmt) throws SQLException {
+        SchemaMigrator.addColumnIfMissing(stmt, "drivers", "current_lat", "REAL");
+        SchemaMigrator.addColumnIfMissing(stmt, "drivers", "current_lon", "REAL");
+        SchemaMigrator.addColumnIfMissing(stmt, "drivers", "location_updated_at", "INTEGER");
+    }
+
     // adds a new driver to the system
     public void registerDriver(String username, String vehicleType, String licenseNumber,
                              String serviceArea) throws SQLException {
         try {
-            String sql = "INSERT INTO drivers (username, vehicle_type, license_number, service_area, "
-                      + "current_status, account_status, joined_date) "
-                      + "VALUES (?, ?, ?, ?, 'OFFLINE', 'ACTIVE', ?)";
-            try (Connection conn = DriverManager.getConnection(url);
+            String sql = SqlStatements.DRIVER_INSERT;
+            try (Connection conn = pool.getConnection();
                  PreparedStatement ps = conn.prepareStatement(sql)) {
                 ps.setString(1, username);
                 ps.setString(2, vehicleType);
@@ -116,13 +179,15 @@ public class DriverDatabase {
     // change driver status (AVAILABLE, ON_DELIVERY, or OFFLINE)
     public void updateDriverStatus(String username, String status) throws SQLException {
         try {
-            String sql = "UPDATE drivers SET current_status = ? WHERE username = ?";
-            try (Connection conn = DriverManager.getConnection(url);
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setString(1, status);
-                ps.setString(2, username);
-                ps.executeUpdate();
-            }
+            String sql = SqlStatements.DRIVER_SET_STATUS;
+            // goes through the writer thread so status flips from many drivers commit together
+            pool.getWriter().execute(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setString(1, status);
+                    ps.setString(2, username);
+                    return ps.executeUpdate();
+                }
+            });
         } catch (SQLException ex) {
             Logger.catchAndLogBug(ex, "DriverDatabase.updateDriverStatus");
             throw ex;
@@ -136,9 +201,8 @@ public class DriverDatabase {
     public void recordDelivery(String username, long orderId, long pickupTime,
                              long deliveryTime, String status) throws SQLException {
         try {
-            String sql = "INSERT INTO delivery_history (driver_username, order_id, pickup_time, "
-                      + "delivery_time, delivery_status) VALUES (?, ?, ?, ?, ?)";
-            try (Connection conn = DriverManager.getConnection(url);
+            String sql = SqlStatements.DELIVERY_INSERT;
+            try (Connection conn = pool.getConnection();
                  PreparedStatement ps = conn.prepareStatement(sql)) {
                 ps.setString(1, username);
                 ps.setLong(2, orderId);
@@ -149,8 +213,7 @@ public class DriverDatabase {
 
                 // if delivery was successful add to their total count
                 if ("DELIVERED".equals(status)) {
-                    sql = "UPDATE drivers SET total_deliveries = total_deliveries + 1 WHERE username = ?";
-                    try (PreparedStatement ps2 = conn.prepareStatement(sql)) {
+                    try (PreparedStatement ps2 = conn.prepareStatement(SqlStatements.DRIVER_INCREMENT_DELIVERIES)) {
                         ps2.setString(1, username);
                         ps2.executeUpdate();
                     }
@@ -167,11 +230,9 @@ public class DriverDatabase {
     // 2. recalculate the drivers overall average rating
     public void updateRating(String username, long orderId, int rating, String feedback) throws SQLException {
         try {
-            try (Connection conn = DriverManager.getConnection(url)) {
+            try (Connection conn = pool.getConnection()) {
                 // first update the specific delivery record
-                String sql1 = "UPDATE delivery_history SET customer_rating = ?, customer_feedback = ? "
-                          + "WHERE driver_username = ? AND order_id = ?";
-                try (PreparedStatement ps1 = conn.prepareStatement(sql1)) {
+                try (PreparedStatement ps1 = conn.prepareStatement(SqlStatements.DELIVERY_SET_RATING)) {
                     ps1.setInt(1, rating);
                     ps1.setString(2, feedback);
                     ps1.setString(3, username);
@@ -180,9 +241,7 @@ public class DriverDatabase {
                 }
 
                 // then update their average rating by calculating from all their deliveries
-                String sql2 = "UPDATE drivers SET rating = (SELECT AVG(customer_rating) FROM delivery_history "
-                    + "WHERE driver_username = ? AND customer_rating IS NOT NULL) WHERE username = ?";
-                try (PreparedStatement ps2 = conn.prepareStatement(sql2)) {
+                try (PreparedStatement ps2 = conn.prepareStatement(SqlStatements.DRIVER_RECALC_RATING)) {
                     ps2.setString(1, username);
                     ps2.setString(2, username);
                     ps2.executeUpdate();
@@ -198,9 +257,8 @@ public class DriverDatabase {
     public void setSchedule(String username, int dayOfWeek, String startTime,
                           String endTime) throws SQLException {
         try {
-            String sql = "INSERT INTO driver_schedule (driver_username, day_of_week, start_time, end_time) "
-                      + "VALUES (?, ?, ?, ?)";
-            try (Connection conn = DriverManager.getConnection(url);
+            String sql = SqlStatements.SCHEDULE_INSERT;
+            try (Connection conn = pool.getConnection();
                  PreparedStatement ps = conn.prepareStatement(sql)) {
                 ps.setString(1, username);
                 ps.setInt(2, dayOfWeek);
@@ -216,37 +274,62 @@ public class DriverDatabase {
 
     // get all past deliveries for a driver
     // joins with orders table to get restaurant info too
-    // NOTE: whoever calls this needs to close the ResultSet when done
-    public ResultSet getDeliveryHistory(String username) throws SQLException {
+    // rows are streamed - close the cursor when done (or use forEachDelivery)
+    public RowCursor<DeliveryRow> getDeliveryHistory(String username) throws SQLException {
         try {
-            String sql = "SELECT dh.*, o.restaurant_name, o.total_amount "
-                      + "FROM delivery_history dh "
-                      + "JOIN orders o ON dh.order_id = o.order_id "
-                      + "WHERE driver_username = ? "
-                      + "ORDER BY delivery_time DESC";  // newest first
-            Connection conn = DriverManager.getConnection(url);
-            PreparedStatement ps = conn.prepareStatement(sql);
-            ps.setString(1, username);
-            return ps.executeQuery();
+            return RowCursor.open(pool, "DriverDatabase.getDeliveryHistory", SqlStatements.DELIVERY_HISTORY, DeliveryRow::from, username);
         } catch (SQLException ex) {
             Logger.catchAndLogBug(ex, "DriverDatabase.getDeliveryHistory");
             throw ex;
         }
     }
 
+    // same as getDeliveryHistory but hands each row to the action and closes everything itself
+    public void forEachDelivery(String username, Consumer<DeliveryRow> action) throws SQLException {
+        try {
+            RowCursor.forEach(pool, "DriverDatabase.forEachDelivery", SqlStatements.DELIVERY_HISTORY, DeliveryRow::from, action, username);
+        } catch (SQLException ex) {
+            Logger.catchAndLogBug(ex, "DriverDatabase.forEachDelivery");
+            throw ex;
+        }
+    }
+
+    // stores where a driver is right now (goes through the writer like status changes)
+    public void updateDriverLocation(String username, double lat, double lon) throws SQLException {
+        try {
+            String sql = SqlStatements.DRIVER_SET_LOCATION;
+            pool.getWriter().execute(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setDouble(1, lat);
+                    ps.setDouble(2, lon);
+                    ps.setLong(3, Instant.now().getEpochSecond());
+                    ps.setString(4, username);
+                    return ps.executeUpdate();
+                }
+            });
+        } catch (SQLException ex) {
+            Logger.catchAndLogBug(ex, "DriverDatabase.updateDriverLocation");
+            throw ex;
+        }
+    }
+
+    // every AVAILABLE driver with a known position, for loading DispatchEngine's spatial index
+    public void forEachAvailableDriver(Consumer<DriverLocationRow> action) throws SQLException {
+        try {
+            RowCursor.forEach(pool, "DriverDatabase.forEachAvailableDriver", SqlStatements.DRIVER_AVAILABLE_LOCATIONS,
+                    DriverLocationRow::from, action);
+        } catch (SQLException ex) {
+            Logger.catchAndLogBug(ex, "DriverDatabase.forEachAvailableDriver");
+            throw ex;
+        }
+    }
+
     // gets stats for a driver - total orders, average rating, total earnings
-    // using subqueries here which might be slow with lots of data but works for now
-    public ResultSet getDriverStats(String username) throws SQLException {
+    // the subqueries only read idx_delivery_history_driver_time, not the table
+    // returns null if the driver doesn't exist
+    public DriverStatsRow getDriverStats(String username) throws SQLException {
         try {
-            String sql = "SELECT d.*, "
-                      + "(SELECT COUNT(*) FROM delivery_history WHERE driver_username = d.username) as total_orders, "
-                      + "(SELECT AVG(customer_rating) FROM delivery_history WHERE driver_username = d.username) as avg_rating, "
-                      + "(SELECT SUM(earnings) FROM delivery_history WHERE driver_username = d.username) as total_earnings "
-                      + "FROM drivers d WHERE d.username = ?";
-            Connection conn = DriverManager.getConnection(url);
-            PreparedStatement ps = conn.prepareStatement(sql);
-            ps.setString(1, username);
-            return ps.executeQuery();
+            return RowCursor.first(pool, "DriverDatabase.getDriverStats", SqlStatements.DRIVER_STATS, DriverStatsRow::from, username);
         } catch (SQLException ex) {
             Logger.catchAndLogBug(ex, "DriverDatabase.getDriverStats");
             throw ex;
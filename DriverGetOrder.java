@@ -91,40 +91,32 @@ public class DriverGetOrder extends JPanel {
     private void refreshOrders() {
         ordersModel.setRowCount(0);
         
-        try (Connection conn = DriverManager.getConnection(parent.orderDb.getConnectionUrl());
-             PreparedStatement stmt = conn.prepareStatement(
-                "SELECT o.order_id, o.restaurant_name, o.restaurant_address, o.total_amount, " +
-                "o.estimated_minutes, o.status, o.created_at, " +
-                "GROUP_CONCAT(oi.item_name || ' x' || oi.quantity) as items, " +
-                "SUM(oi.quantity) as item_count " +
-                "FROM orders o " +
-                "LEFT JOIN order_items oi ON o.order_id = oi.order_id " +
-                "WHERE o.status = 'PENDING' AND o.driver_username IS NULL " +
-                "GROUP BY o.order_id " +
-                "ORDER BY o.created_at DESC")) {
+        try (Connection conn = parent.orderDb.getConnection();
+             // items_summary/item_count are kept on the order by triggers, no join needed
+             PreparedStatement stmt = conn.prepareStatement(SqlStatements.ORDER_AVAILABLE)) {
             
-            ResultSet rs = stmt.executeQuery();
-            
-            while (rs.next()) {
-                int itemCount = rs.getInt("item_count");
-                String items = rs.getString("items");
-                double totalAmount = rs.getDouble("total_amount");
-                double driverPay = totalAmount * DRIVER_COMMISSION;
-                int baseEta = rs.getInt("estimated_minutes");
-                int deliveryEta = baseEta + 10; // Add 10 minutes for delivery
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int itemCount = rs.getInt("item_count");
+                    String items = rs.getString("items");
+                    double totalAmount = rs.getDouble("total_amount");
+                    double driverPay = totalAmount * DRIVER_COMMISSION;
+                    int baseEta = rs.getInt("estimated_minutes");
+                    int deliveryEta = baseEta + 10; // Add 10 minutes for delivery
                 
-                Object[] row = {
-                    rs.getLong("order_id"),
-                    rs.getString("restaurant_name"),
-                    rs.getString("restaurant_address"),
-                    items != null ? items : "No items",
-                    currencyFormat.format(totalAmount),
-                    currencyFormat.format(driverPay),
-                    baseEta + " mins",
-                    deliveryEta + " mins",
-                    rs.getString("status")
-                };
-                ordersModel.addRow(row);
+                    Object[] row = {
+                        rs.getLong("order_id"),
+                        rs.getString("restaurant_name"),
+                        rs.getString("restaurant_address"),
+                        items != null ? items : "No items",
+                        currencyFormat.format(totalAmount),
+                        currencyFormat.format(driverPay),
+                        baseEta + " mins",
+                        deliveryEta + " mins",
+                        rs.getString("status")
+                    };
+                    ordersModel.addRow(row);
+                }
             }
         } catch (SQLException ex) {
             Logger.catchAndLogBug(ex, "DriverGetOrder.refreshOrders");
@@ -164,9 +156,15 @@ public class DriverGetOrder extends JPanel {
 
         if (confirm == JOptionPane.YES_OPTION) {
             try {
-                parent.orderDb.assignDriverToOrder(orderId, username);
-                // Update driver status to ON_DELIVERY
-                parent.driverDb.updateDriverStatus(username, "ON_DELIVERY");
+                // takes the order and puts the driver ON_DELIVERY together, only if nobody got it first
+                if (!parent.orderDb.claimOrder(orderId, username)) {
+                    JOptionPane.showMessageDialog(this,
+                        "Order #" + orderId + " was just taken by another driver.",
+                        "Order Unavailable",
+                        JOptionPane.WARNING_MESSAGE);
+                    refreshOrders();
+                    return;
+                }
                 JOptionPane.showMessageDialog(this,
                     "Order accepted successfully! Head to " + restaurant + " at " + address + " to pick up the order.",
                     "Order Accepted",
@@ -0,0 +1,39 @@
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * DriverLocationRow is a driver's username and last known position from the drivers table.
+ */
+public class DriverLocationRow {
+    private final String username;
+    private final double lat;
+    private final double lon;
+
+    private DriverLocationRow(ResultSet rs) throws SQLException {
+        this.username = rs.getString("username");
+        this.lat = rs.getDouble("current_lat");
+        this.lon = rs.getDouble("current_lon");
+    }
+
+    /**
+     * Maps the current row of a query selecting username, current_lat and current_lon from drivers.
+     * @param rs ResultSet positioned on a row.
+     * @return The mapped row.
+     * @throws SQLException if a column is missing
+     */
+    public static DriverLocationRow from(ResultSet rs) throws SQLException {
+        return new DriverLocationRow(rs);
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public double getLat() {
+        return lat;
+    }
+
+    public double getLon() {
+        return lon;
+    }
+}
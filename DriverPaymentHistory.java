@@ -25,7 +25,7 @@ public class DriverPaymentHistory extends JPanel {
         // Default to "Driver" if username is null/empty *tricky*
 		this.username = username == null || username.isEmpty() ? "Driver" : username;
         // Set up table model; based on payment transaction fields
-		String[] cols = { "Date", "Amount", "Status", "Order ID", "Method", "Details" };
+		String[] cols = { "Date", "Amount", "Status", "Order ID", "Restaurant", "Method", "Details" };
 		model = new DefaultTableModel(cols, 0) {
             // Override to make cells non-editable; so it doesnt get messed up
 			@Override 
@@ -71,24 +71,18 @@ public class DriverPaymentHistory extends JPanel {
 		}
 	}
     /* Load payment history from the database and populate the table 
-     --> queries payment_transactions and payment_methods tables for the driver's username
+     --> queries payment_transactions and payment_methods tables for the driver's username, joined with orders for the restaurant
      --> populates the table model with formatted payment data
      --> Connects to PaymentDatabase to get connection URL
      --> creates SQL query with PreparedStatement to prevent SQL injection
-     --> grab columns: date, amount, status, order ID, method, details
+     --> grab columns: date, amount, status, order ID, restaurant, method, details
      --> if any SQL error occurs, show error dialog
     */
 	private void loadPayments() {
 		model.setRowCount(0); // Clear existing rows
         // Load payment history from the database for this driver
-		try (Connection conn = DriverManager.getConnection(parent.paymentDb.getConnectionUrl()); // Get connection URL from PaymentDatabase
-			 PreparedStatement ps = conn.prepareStatement(
-				"SELECT t.id, t.order_id, t.amount, t.status, t.created_at, t.completed_at, t.error_message, " +
-				"       m.payment_type, m.card_number, m.card_name, m.bank_name " +
-				"FROM payment_transactions t " +
-				"JOIN payment_methods m ON t.payment_method_id = m.id " +
-				"WHERE m.username = ? " +
-				"ORDER BY COALESCE(t.completed_at, t.created_at) DESC")) {
+		try (Connection conn = parent.paymentDb.getConnection(); // Borrow a pooled connection from PaymentDatabase
+			 PreparedStatement ps = conn.prepareStatement(SqlStatements.PAYMENT_HISTORY)) {
 			ps.setString(1, username); // Set username parameter to prevent SQL injection
 			try (ResultSet rs = ps.executeQuery()) { // Execute query
 				while (rs.next()) { // Iterate through results
@@ -101,6 +95,7 @@ public class DriverPaymentHistory extends JPanel {
 					double amount = rs.getDouble("amount"); // Get payment amount
 					String status = rs.getString("status"); // Get payment status
 					Long orderId = rs.getObject("order_id") != null ? rs.getLong("order_id") : null; // Get order ID if exists
+					String restaurant = rs.getString("restaurant_name"); // null if the payout isn't for an order
 
 					String type = rs.getString("payment_type"); // Get payment method type
 					String method; 
@@ -125,6 +120,7 @@ public class DriverPaymentHistory extends JPanel {
 						currency.format(amount),
 						status,
 						orderId,
+						restaurant != null ? restaurant : "",
 						method,
 						details != null ? details : ""
 					};
@@ -112,14 +112,13 @@ public class DriverScreen extends JPanel {
             long orderId = Long.parseLong(input);
 
             // load order to compute driver pay
-            ResultSet rs = null;
             try {
-                rs = parent.orderDb.getOrderDetails(orderId);
-                if (!rs.next()) {
+                OrderRow order = parent.orderDb.getOrderDetails(orderId);
+                if (order == null) {
                     JOptionPane.showMessageDialog(this, "Order not found: " + orderId, "Error", JOptionPane.ERROR_MESSAGE);
                     return;
                 }
-                double total = rs.getDouble("total_amount");
+                double total = order.getTotalAmount();
                 // driver commission same as DriverGetOrder
                 double driverPay = Math.round(total * 0.30 * 100.0) / 100.0;
 
@@ -146,14 +145,6 @@ public class DriverScreen extends JPanel {
             } catch (Exception ex) {
                 Logger.catchAndLogBug(ex, "DriverScreen");
                 JOptionPane.showMessageDialog(this, "Error collecting payment: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-            } finally {
-                if (rs != null) {
-                    try {
-                        rs.getStatement().close();
-                        rs.getStatement().getConnection().close();
-                        rs.close();
-                    } catch (Exception ignored) { }
-                }
             }
         });
 
@@ -215,6 +206,16 @@ public class DriverScreen extends JPanel {
         });
 
         logoutBtn.addActionListener(e -> logout());
+
+        // an admin cancelling one of this driver's orders shows up right away
+        if (parent.orderDb != null) {
+            parent.watchOrders(parent.orderDb.getEvents().subscribeDriver(username, event -> {
+                if (event.getStatus() == OrderStatus.CANCELLED) {
+                    SwingUtilities.invokeLater(() -> parent.showNotification("Order #" + event.getOrderId() + " was cancelled.",
+                            new Color(198, 40, 40), Color.WHITE, 5000));
+                }
+            }), null);
+        }
     }
     // logout and go back to login
     private void logout() {
@@ -224,6 +225,7 @@ public class DriverScreen extends JPanel {
             JOptionPane.YES_NO_OPTION);
 
         if (confirm == JOptionPane.YES_OPTION) {
+            parent.stopWatchingOrders();
             parent.getSceneSorter().switchPage("Login");
         }
     }
@@ -0,0 +1,87 @@
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * DriverStatsRow is a driver's profile row plus totals computed from their delivery history.
+ */
+public class DriverStatsRow {
+    private final String username;
+    private final String vehicleType;
+    private final String licenseNumber;
+    private final String currentStatus;
+    private final double rating;
+    private final String serviceArea;
+    private final String accountStatus;
+    private final long joinedDate;
+    private final int totalOrders;
+    private final double avgRating;
+    private final double totalEarnings;
+
+    private DriverStatsRow(ResultSet rs) throws SQLException {
+        this.username = rs.getString("username");
+        this.vehicleType = rs.getString("vehicle_type");
+        this.licenseNumber = rs.getString("license_number");
+        this.currentStatus = rs.getString("current_status");
+        this.rating = rs.getDouble("rating");
+        this.serviceArea = rs.getString("service_area");
+        this.accountStatus = rs.getString("account_status");
+        this.joinedDate = rs.getLong("joined_date");
+        this.totalOrders = rs.getInt("total_orders");
+        this.avgRating = rs.getDouble("avg_rating");      // AVG of nothing is NULL, getDouble turns that into 0
+        this.totalEarnings = rs.getDouble("total_earnings");
+    }
+
+    /**
+     * Maps the current row of the driver stats query.
+     * @param rs ResultSet positioned on a row.
+     * @return The mapped row.
+     * @throws SQLException if a column is missing
+     */
+    public static DriverStatsRow from(ResultSet rs) throws SQLException {
+        return new DriverStatsRow(rs);
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getVehicleType() {
+        return vehicleType;
+    }
+
+    public String getLicenseNumber() {
+        return licenseNumber;
+    }
+
+    public String getCurrentStatus() {
+        return currentStatus;
+    }
+
+    public double getRating() {
+        return rating;
+    }
+
+    public String getServiceArea() {
+        return serviceArea;
+    }
+
+    public String getAccountStatus() {
+        return accountStatus;
+    }
+
+    public long getJoinedDate() {
+        return joinedDate;
+    }
+
+    public int getTotalOrders() {
+        return totalOrders;
+    }
+
+    public double getAvgRating() {
+        return avgRating;
+    }
+
+    public double getTotalEarnings() {
+        return totalEarnings;
+    }
+}
@@ -12,6 +12,7 @@ public class DriveryHistory extends JPanel {
     private final String username;
     private final JTable historyTable;
     private final DefaultTableModel tableModel;
+    private final OrderHistoryPager pager;
 
     /**
      * Constructs a DriveryHistory with the given parent and username.
@@ -41,6 +42,7 @@ public class DriveryHistory extends JPanel {
         };
         
         historyTable = new JTable(tableModel);
+        pager = new OrderHistoryPager(parent.orderDb, username, "DRIVER", tableModel, this::toTableRow);
         initUI();
         loadDeliveryHistory();
     }
@@ -63,6 +65,7 @@ public class DriveryHistory extends JPanel {
 
         // Table Panel
         JScrollPane scrollPane = new JScrollPane(historyTable);
+        pager.attach(scrollPane);  // next page loads as the driver scrolls
         add(scrollPane, BorderLayout.CENTER);
 
         // Button Panel
@@ -74,55 +77,27 @@ public class DriveryHistory extends JPanel {
     }
 
     private void loadDeliveryHistory() {
-        // Clear existing data
-        tableModel.setRowCount(0);
-
-        try {
-            String sql = "SELECT o.order_id, o.customer_username, o.restaurant_name, " +
-                        "o.status, o.total_amount, o.created_at, " +
-                        "COALESCE(o.payment_status, 'PENDING') as payment_status, " +
-                        "o.delivery_address, o.assigned_at " +
-                        "FROM orders o " +
-                        "WHERE o.driver_username = ? " +
-                        "AND o.status IN ('ASSIGNED', 'IN_PROGRESS', 'DELIVERED', 'CANCELLED') " +
-                        "ORDER BY o.created_at DESC";
+        pager.reload();
+    }
 
-            try (Connection conn = DriverManager.getConnection(parent.orderDb.getConnectionUrl());
-                 PreparedStatement stmt = conn.prepareStatement(sql)) {
-                
-                stmt.setString(1, username);
-                try (ResultSet rs = stmt.executeQuery()) {
-                    while (rs.next()) {
-                        String status = rs.getString("status");
-                        String paymentStatus = rs.getString("payment_status");
-                        if (paymentStatus == null) {
-                            paymentStatus = "PENDING";
-                        }
+    private Object[] toTableRow(OrderRow order) {
+        String paymentStatus = order.getPaymentStatus();
+        if (paymentStatus == null) {
+            paymentStatus = "PENDING";
+        }
 
-                        // Format the date
-                        long timestamp = rs.getLong("created_at");
-                        java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("MM/dd/yyyy HH:mm:ss");
-                        String dateStr = sdf.format(new java.util.Date(timestamp * 1000L));
+        // Format the date
+        java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("MM/dd/yyyy HH:mm:ss");
+        String dateStr = sdf.format(new java.util.Date(order.getCreatedAt() * 1000L));
 
-                        Object[] row = {
-                            rs.getLong("order_id"),
-                            rs.getString("customer_username"),
-                            rs.getString("restaurant_name"),
-                            String.format("$%.2f", rs.getDouble("total_amount")),
-                            status,
-                            dateStr,
-                            paymentStatus
-                        };
-                        tableModel.addRow(row);
-                    }
-                }
-            }
-        } catch (SQLException ex) {
-            Logger.catchAndLogBug(ex, "DriveryHistory");
-            JOptionPane.showMessageDialog(this,
-                "Error loading delivery history: " + ex.getMessage(),
-                "Database Error",
-                JOptionPane.ERROR_MESSAGE);
-        }
+        return new Object[] {
+            order.getOrderId(),
+            order.getCustomerUsername(),
+            order.getRestaurantName(),
+            String.format("$%.2f", order.getTotalAmount()),
+            order.getStatus(),
+            dateStr,
+            paymentStatus
+        };
     }
 }
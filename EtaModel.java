@@ -0,0 +1,189 @@
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * EtaModel estimates delivery time from the actual_minutes of orders that were already delivered.
+ * An estimate is the drive from the restaurant to the customer (MapCalculator's speed) plus the time everything else
+ * takes (kitchen, waiting for a driver), learned as a running average per restaurant and hour of day.
+ * Recording a delivery and making an estimate are both a few map lookups, no matter how much history there is.
+ * OrderDatabase keeps the per restaurant and hour averages in eta_stats and {@link #load}s them at startup,
+ * so a restart doesn't have to go through the delivered orders again.
+ * Until a restaurant has enough history the estimate falls back to the restaurant's other hours, then all
+ * restaurants at that hour, then everything, and with no history at all to the old 30/45/60 by order total.
+ */
+public class EtaModel {
+
+    // a level needs this many deliveries before its average is trusted over the next level up
+    static final int MIN_SAMPLES = 3;
+    private static final int HOURS = 24;
+    private static final double AVERAGE_SPEED_KMH = 30;
+
+    // running average of the non-driving minutes for one group of deliveries
+    private static final class Stats {
+        private long count;
+        private double mean;
+
+        synchronized void add(double minutes) {
+            count++;
+            mean += (minutes - mean) / count;
+        }
+
+        // folds in another group's average, weighted by its count
+        synchronized void merge(long samples, double average) {
+            if (samples <= 0) {
+                return;
+            }
+            count += samples;
+            mean += (average - mean) * samples / count;
+        }
+
+        // NaN until there are MIN_SAMPLES deliveries
+        synchronized double mean() {
+            return count >= MIN_SAMPLES ? mean : Double.NaN;
+        }
+
+        synchronized long count() {
+            return count;
+        }
+    }
+
+    private final ZoneId zone;
+    private final Map<String, Stats[]> byRestaurantHour = new ConcurrentHashMap<>();
+    private final Map<String, Stats> byRestaurant = new ConcurrentHashMap<>();
+    private final Stats[] byHour = new Stats[HOURS];
+    private final Stats overall = new Stats();
+
+    /**
+     * Constructs an empty model that buckets orders by hour in the system time zone.
+     */
+    public EtaModel() {
+        this(ZoneId.systemDefault());
+    }
+
+    /**
+     * Constructs an empty model.
+     * @param zone Time zone the hour-of-day buckets are in.
+     */
+    public EtaModel(ZoneId zone) {
+        this.zone = zone;
+        for (int hour = 0; hour < HOURS; hour++) {
+            byHour[hour] = new Stats();
+        }
+    }
+
+    /**
+     * Learns from one delivered order.
+     * @param order The order, with its actual_minutes filled in.
+     */
+    public void record(DeliveredOrderRow order) {
+        double other = otherMinutes(order);
+        int hour = hourOf(order.getCreatedAt());
+        String restaurant = order.getRestaurantName();
+
+        byRestaurantHour.computeIfAbsent(restaurant, r -> newHours())[hour].add(other);
+        byRestaurant.computeIfAbsent(restaurant, r -> new Stats()).add(other);
+        byHour[hour].add(other);
+        overall.add(other);
+    }
+
+    /**
+     * Adds a stored average for one restaurant and hour, as if its deliveries had been recorded one by one.
+     * @param restaurant Restaurant name.
+     * @param hour Hour of day, 0-23.
+     * @param samples How many deliveries the average is over.
+     * @param meanMinutes Average non-driving minutes.
+     */
+    public void load(String restaurant, int hour, long samples, double meanMinutes) {
+        if (hour < 0 || hour >= HOURS) {
+            return;
+        }
+        byRestaurantHour.computeIfAbsent(restaurant, r -> newHours())[hour].merge(samples, meanMinutes);
+        byRestaurant.computeIfAbsent(restaurant, r -> new Stats()).merge(samples, meanMinutes);
+        byHour[hour].merge(samples, meanMinutes);
+        overall.merge(samples, meanMinutes);
+    }
+
+    // the part of a delivery that isn't driving, what the averages are kept of
+    static double otherMinutes(DeliveredOrderRow order) {
+        return order.getActualMinutes() - travelMinutes(order.getRestaurantLat(), order.getRestaurantLon(),
+                order.getDeliveryLat(), order.getDeliveryLon());
+    }
+
+    /**
+     * Estimates how long a new order will take.
+     * @param restaurantName Restaurant the order is from.
+     * @param createdAt When the order is placed, epoch seconds.
+     * @param restaurantLat Restaurant latitude, null if unknown.
+     * @param restaurantLon Restaurant longitude, null if unknown.
+     * @param deliveryLat Delivery latitude, null if unknown.
+     * @param deliveryLon Delivery longitude, null if unknown.
+     * @param orderTotal Order total, only used when there's no history yet.
+     * @return Estimated minutes until delivery, at least 1.
+     */
+    public int estimate(String restaurantName, long createdAt, Double restaurantLat, Double restaurantLon,
+                        Double deliveryLat, Double deliveryLon, double orderTotal) {
+        int hour = hourOf(createdAt);
+        double other = Double.NaN;
+        Stats[] hours = byRestaurantHour.get(restaurantName);
+        if (hours != null) {
+            other = hours[hour].mean();
+        }
+        if (Double.isNaN(other)) {
+            Stats restaurant = byRestaurant.get(restaurantName);
+            other = restaurant != null ? restaurant.mean() : Double.NaN;
+        }
+        if (Double.isNaN(other)) {
+            other = byHour[hour].mean();
+        }
+        if (Double.isNaN(other)) {
+            other = overall.mean();
+        }
+        if (Double.isNaN(other)) {
+            return fallbackMinutes(orderTotal);
+        }
+        double minutes = other + travelMinutes(restaurantLat, restaurantLon, deliveryLat, deliveryLon);
+        return Math.max(1, (int) Math.round(minutes));
+    }
+
+    // how many deliveries the model has learned from
+    public long getSampleCount() {
+        return overall.count();
+    }
+
+    /*
+    --> what OrderDatabase used to return for every order, kept for a brand new install with nothing delivered yet
+    */
+    static int fallbackMinutes(double orderTotal) {
+        if (orderTotal <= 20) return 30;
+        else if (orderTotal <= 50) return 45;
+        else return 60;
+    }
+
+    // unrounded calculateETA, 0 when either end has no coordinates (orders from before they were stored)
+    private static double travelMinutes(Double fromLat, Double fromLon, Double toLat, Double toLon) {
+        if (fromLat == null || fromLon == null || toLat == null || toLon == null
+                || (fromLat == 0 && fromLon == 0) || (toLat == 0 && toLon == 0)) {
+            return 0;
+        }
+        return MapCalculator.distanceKm(fromLat, fromLon, toLat, toLon) / AVERAGE_SPEED_KMH * 60;
+    }
+
+    int hourOf(long epochSeconds) {
+        return Instant.ofEpochSecond(epochSeconds).atZone(zone).getHour();
+    }
+
+    private static Stats[] newHours() {
+        Stats[] hours = new Stats[HOURS];
+        for (int hour = 0; hour < HOURS; hour++) {
+            hours[hour] = new Stats();
+        }
+        return hours;
+    }
+
+    @Override
+    public String toString() {
+        return "EtaModel[deliveries=" + overall.count() + " restaurants=" + byRestaurant.size() + "]";
+    }
+}
@@ -0,0 +1,126 @@
+import org.junit.jupiter.api.*;
+import java.nio.file.*;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+/*
+--> Tests the learned ETA model:
+    - with no history the estimate is still the old 30/45/60 by order total
+    - the restaurant's own hour is used once it has enough deliveries, then its other hours, then everyone at
+      that hour, then everything; the drive from MapCalculator is added on top
+    - delivering an order through OrderDatabase feeds the model and its stored averages, and a reopened database
+      starts from those averages
+--> Will return "ETA model test passed" with the model counters if succeeded.
+ */
+public class EtaModelTest {
+
+    // 2026-03-02 12:00 UTC, and the same day at 18:00
+    private static final long NOON = 1772452800L;
+    private static final long EVENING = NOON + 6 * 3600;
+
+    private Path dir;
+
+    @BeforeEach
+    void setup() throws Exception {
+        dir = Files.createTempDirectory("test-eta");
+    }
+
+    @AfterEach
+    void cleanup() throws Exception {
+        ConnectionPool.closeAll();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    @Test
+    void testFallbackLevels() {
+        EtaModel model = new EtaModel(ZoneOffset.UTC);
+        assertEquals(30, model.estimate("Crimson Dining", NOON, null, null, null, null, 15.00));
+        assertEquals(45, model.estimate("Crimson Dining", NOON, null, null, null, null, 35.00));
+        assertEquals(60, model.estimate("Crimson Dining", NOON, null, null, null, null, 80.00));
+
+        // Crimson at noon takes 20 minutes besides driving, Greyhound in the evening 40
+        for (int i = 0; i < EtaModel.MIN_SAMPLES; i++) {
+            model.record(delivered("Crimson Dining", NOON, 20));
+            model.record(delivered("Greyhound Tavern", EVENING, 40));
+        }
+        assertEquals(2 * EtaModel.MIN_SAMPLES, model.getSampleCount());
+        assertEquals(20, model.estimate("Crimson Dining", NOON, null, null, null, null, 80.00));
+        // Crimson has no evening history, its other hours win over everyone's evening
+        assertEquals(20, model.estimate("Crimson Dining", EVENING, null, null, null, null, 80.00));
+        // a new restaurant gets everyone's average for that hour
+        assertEquals(40, model.estimate("New Place", EVENING, null, null, null, null, 15.00));
+        assertEquals(20, model.estimate("New Place", NOON, null, null, null, null, 15.00));
+        // nobody at 3am, so everything
+        assertEquals(30, model.estimate("New Place", NOON - 9 * 3600, null, null, null, null, 15.00));
+
+        // the drive is added on top: 10 km at 30 km/h is 20 minutes
+        double[] start = { 41.98656, 70.96437 };
+        double lat = start[0] + 10 / 111.19;
+        double drive = MapCalculator.distanceKm(start[0], start[1], lat, start[1]) / 30 * 60;
+        assertEquals(Math.round(20 + drive), model.estimate("Crimson Dining", NOON, start[0], start[1], lat, start[1], 15.00));
+    }
+
+    @Test
+    void testDeliveriesFeedTheModel() throws SQLException {
+        DataStore store = DataStore.open(dir, DataStore.Layout.CONSOLIDATED, StorageProfile.FAST);
+        OrderDatabase orderDb = store.getOrderDb();
+        assertEquals(0, orderDb.getEtaModel().getSampleCount());
+
+        // five deliveries that each took 25 minutes from the restaurant to the same spot
+        for (int i = 0; i < 5; i++) {
+            long orderId = orderDb.createOrder("etacustomer", "Crimson Dining", "125 Burrill Ave", "1 Home St", "none",
+                    15.00, 1, "CARD", 41.98656, 70.96437, 41.98656, 70.96437);
+            backdate(orderDb, orderId, 25 * 60);
+            orderDb.transitionOrder(orderId, OrderStatus.ASSIGNED, "etadriver", "Driver assigned");
+            orderDb.transitionOrder(orderId, OrderStatus.DELIVERED, "etadriver", "Delivered");
+        }
+        assertEquals(5, orderDb.getEtaModel().getSampleCount());
+
+        OrderDraft draft = new OrderDraft("etacustomer", "Crimson Dining", "125 Burrill Ave", "1 Home St");
+        draft.setRestaurantLocation(41.98656, 70.96437);
+        draft.setDeliveryLocation(41.98656, 70.96437);
+        draft.addItem("Burger", 1, 12.99, null);
+        assertEquals(25, orderDb.placeOrder(draft).getEstimatedMinutes());
+
+        // one restaurant at one hour, so one stored average
+        try (Connection conn = orderDb.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*), SUM(samples) FROM eta_stats");
+             ResultSet rs = ps.executeQuery()) {
+            assertTrue(rs.next());
+            assertEquals(1, rs.getInt(1));
+            assertEquals(5, rs.getInt(2));
+        }
+
+        // a restart loads the same thing from eta_stats
+        ConnectionPool.closeAll();
+        DataStore reopened = DataStore.open(dir, DataStore.Layout.CONSOLIDATED, StorageProfile.FAST);
+        EtaModel model = reopened.getOrderDb().getEtaModel();
+        assertEquals(5, model.getSampleCount());
+        assertEquals(25, model.estimate("Crimson Dining", Instant.now().getEpochSecond(), 41.98656, 70.96437,
+                41.98656, 70.96437, 15.00));
+        System.out.println("ETA model test passed - " + model);
+    }
+
+    private static DeliveredOrderRow delivered(String restaurant, long createdAt, int minutes) {
+        return new DeliveredOrderRow(0, restaurant, createdAt, minutes, null, null, null, null);
+    }
+
+    private static void backdate(OrderDatabase orderDb, long orderId, long seconds) throws SQLException {
+        try (Connection conn = orderDb.getConnection();
+             PreparedStatement ps = conn.prepareStatement("UPDATE orders SET created_at = created_at - ? WHERE order_id = ?")) {
+            ps.setLong(1, seconds);
+            ps.setLong(2, orderId);
+            ps.executeUpdate();
+        }
+    }
+}
@@ -27,6 +27,10 @@ public class FoodDeliveryLoginUI {
     // Holds the address for the currently logged-in user
     public Address address;
 
+    // order notifications for the logged-in user, one set per session no matter how often a screen is rebuilt
+    private OrderEventBus.Subscription orderEvents;
+    private Timer orderPoll;
+
     /**
      * Returns the SceneSorter instance for managing UI scenes.
      * @return The SceneSorter managing all application screens.
@@ -98,6 +102,32 @@ public class FoodDeliveryLoginUI {
         timer.start();
     }
 
+    /**
+     * Makes these the session's order notifications, closing the ones a previous screen set up.
+     * Screens get rebuilt on every "Back", so they hand their subscription to the session instead of keeping it.
+     * @param subscription Event bus subscription for the logged-in user (can be null).
+     * @param poll Fallback poll timer, already started (can be null).
+     */
+    public void watchOrders(OrderEventBus.Subscription subscription, Timer poll) {
+        stopWatchingOrders();
+        orderEvents = subscription;
+        orderPoll = poll;
+    }
+
+    /**
+     * Closes the session's order notifications, on logout.
+     */
+    public void stopWatchingOrders() {
+        if (orderPoll != null) {
+            orderPoll.stop();
+            orderPoll = null;
+        }
+        if (orderEvents != null) {
+            orderEvents.close();
+            orderEvents = null;
+        }
+    }
+
     /**
      * Closes the application window.
      */
@@ -0,0 +1,316 @@
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * GroupCommitWriter is the single writer thread for one SQLite database file.
+ * SQLite only allows one writer at a time, so instead of every caller fighting for the write lock and
+ * committing on its own, callers queue their write and this thread runs everything that's waiting
+ * inside one transaction (one fsync), then completes each caller's future.
+ * Every request runs under its own savepoint so one failing write doesn't undo the others in the batch.
+ */
+public class GroupCommitWriter {
+
+    /**
+     * A unit of write work. Runs on the writer thread with the writer's connection, inside a transaction.
+     * @param <T> What the work returns (generated id, row count, etc).
+     */
+    @FunctionalInterface
+    public interface WriteWork<T> {
+        T run(Connection conn) throws SQLException;
+    }
+
+    private static final int MAX_BATCH_SIZE = 128;
+    private static final int QUEUE_CAPACITY = 10_000;
+    // how long we keep collecting once a batch has more than one request in it
+    private static final long LATENCY_BUDGET_MICROS = 2000;
+
+    private final ConnectionPool pool;
+    private final BlockingQueue<WriteRequest<?>> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile boolean reopenConnection;
+    private Connection conn;  // only touched by the writer thread
+
+    // metrics
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong maxBatchSize = new AtomicLong();
+
+    GroupCommitWriter(ConnectionPool pool) {
+        this.pool = pool;
+        this.thread = new Thread(this::runLoop, "GroupCommitWriter-" + pool.getUrl());
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Queues a write and returns right away.
+     * @param work The write to run on the writer thread.
+     * @param <T> Result type.
+     * @return Future completed after the batch containing this write has committed.
+     */
+    public <T> CompletableFuture<T> submit(WriteWork<T> work) {
+        WriteRequest<T> request = new WriteRequest<>(work);
+        if (!running) {
+            request.future.completeExceptionally(closedException());
+            return request.future;
+        }
+        try {
+            queue.put(request);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            request.future.completeExceptionally(new SQLException("Interrupted while queueing write", e));
+            return request.future;
+        }
+        // closed while we were queueing: if the writer already drained the queue for the last time nobody would run it
+        if (!running && queue.remove(request)) {
+            request.future.completeExceptionally(closedException());
+        }
+        return request.future;
+    }
+
+    /**
+     * Queues a write and waits for it to commit.
+     * If called from inside another write (on the writer thread) it just runs in the current transaction.
+     * @param work The write to run.
+     * @param <T> Result type.
+     * @return Whatever the work returned.
+     * @throws SQLException if the write or the commit failed
+     */
+    public <T> T execute(WriteWork<T> work) throws SQLException {
+        if (Thread.currentThread() == thread) {
+            return work.run(conn);
+        }
+        try {
+            return submit(work).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for write to commit", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException("Write failed", cause);
+        }
+    }
+
+    // makes the writer open a fresh connection before its next batch (after a storage profile change)
+    void reopenConnection() {
+        reopenConnection = true;
+    }
+
+    /**
+     * Stops the writer thread once the queued writes are done.
+     */
+    public void close() {
+        running = false;
+        thread.interrupt();
+    }
+
+    private void runLoop() {
+        List<WriteRequest<?>> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                WriteRequest<?> first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                collectBatch(batch);
+                runBatch(batch);
+            } catch (InterruptedException e) {
+                // close() interrupts us, loop condition decides if we're done
+            } catch (Throwable e) {
+                if (e instanceof Exception) {
+                    Logger.catchAndLogBug((Exception) e, "GroupCommitWriter");
+                } else {
+                    Logger.catchAndLogBug(new SQLException("Writer failed", e), "GroupCommitWriter");
+                }
+                // anything the batch didn't get to complete, so no caller waits forever
+                for (WriteRequest<?> request : batch) {
+                    request.future.completeExceptionally(e);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+        closeConnection();
+        // whatever got queued after the loop ended won't run
+        List<WriteRequest<?>> leftovers = new ArrayList<>();
+        queue.drainTo(leftovers);
+        for (WriteRequest<?> request : leftovers) {
+            request.future.completeExceptionally(closedException());
+        }
+    }
+
+    private SQLException closedException() {
+        return new SQLException("Writer for " + pool.getUrl() + " is closed");
+    }
+
+    /*
+    --> grabs everything already waiting in the queue
+    --> if there was more than one request (so we're under load) keep collecting until the latency budget runs out
+    --> a lone request under no load commits right away without waiting
+    --> close() interrupting the wait just ends collecting, what's in the batch still runs
+    */
+    private void collectBatch(List<WriteRequest<?>> batch) {
+        queue.drainTo(batch, MAX_BATCH_SIZE - batch.size());
+        if (batch.size() == 1) {
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(LATENCY_BUDGET_MICROS);
+        while (batch.size() < MAX_BATCH_SIZE) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            WriteRequest<?> next;
+            try {
+                next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+            queue.drainTo(batch, MAX_BATCH_SIZE - batch.size());
+        }
+    }
+
+    private void runBatch(List<WriteRequest<?>> batch) throws SQLException {
+        Connection c = connection();
+        c.setAutoCommit(false);
+        try {
+            for (WriteRequest<?> request : batch) {
+                Savepoint savepoint = c.setSavepoint();
+                try {
+                    request.runOn(c);
+                    c.releaseSavepoint(savepoint);
+                } catch (Throwable e) {
+                    // only undo this request, the rest of the batch still commits
+                    c.rollback(savepoint);
+                    request.error = e;
+                }
+            }
+            c.commit();
+        } catch (SQLException commitFailure) {
+            try {
+                c.rollback();
+            } catch (SQLException ignored) { }
+            for (WriteRequest<?> request : batch) {
+                if (request.error == null) {
+                    request.error = commitFailure;
+                }
+            }
+        } finally {
+            try {
+                c.setAutoCommit(true);
+            } catch (SQLException e) {
+                closeConnection();  // connection is in a bad state, start over next batch
+            }
+        }
+
+        batchCount.incrementAndGet();
+        requestCount.addAndGet(batch.size());
+        maxBatchSize.accumulateAndGet(batch.size(), Math::max);
+        // only tell callers after the commit so nobody acts on data that could still roll back
+        for (WriteRequest<?> request : batch) {
+            if (request.error != null) {
+                failedCount.incrementAndGet();
+            }
+            request.complete();
+        }
+    }
+
+    private Connection connection() throws SQLException {
+        if (reopenConnection) {
+            reopenConnection = false;
+            closeConnection();
+        }
+        if (conn == null || conn.isClosed()) {
+            conn = pool.openConnection();
+        }
+        return conn;
+    }
+
+    private void closeConnection() {
+        if (conn != null) {
+            try {
+                conn.close();
+            } catch (SQLException ignored) { }
+            conn = null;
+        }
+    }
+
+    // metrics getters
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public long getMaxBatchSize() {
+        return maxBatchSize.get();
+    }
+
+    public double getAverageBatchSize() {
+        long batches = batchCount.get();
+        return batches == 0 ? 0.0 : (double) requestCount.get() / batches;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("GroupCommitWriter[%s requests=%d batches=%d avgBatch=%.1f maxBatch=%d failed=%d queued=%d]",
+                pool.getUrl(), getRequestCount(), getBatchCount(), getAverageBatchSize(), getMaxBatchSize(),
+                getFailedCount(), getQueueDepth());
+    }
+
+    // one queued write and the future its caller is waiting on
+    private static class WriteRequest<T> {
+        final WriteWork<T> work;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        T result;
+        Throwable error;
+
+        WriteRequest(WriteWork<T> work) {
+            this.work = work;
+        }
+
+        void runOn(Connection c) throws SQLException {
+            result = work.run(c);
+        }
+
+        void complete() {
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+}
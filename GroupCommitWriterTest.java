@@ -0,0 +1,153 @@
+import org.junit.jupiter.api.*;
+import java.nio.file.*;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.*;
+/*
+--> Tests the single writer thread that group commits writes to one database file:
+    - writes from many threads all commit and get batched together
+    - one failing write doesn't roll back the rest of its batch, even if it throws an Error
+    - closing the writer completes every write queued before it, and fails the ones after instead of leaving them hanging
+--> Will return "Group commit test passed" with the writer stats if succeeded.
+ */
+public class GroupCommitWriterTest {
+
+    private static Path orderDbPath;
+
+    private OrderDatabase orderDb;
+
+    @BeforeAll
+    static void setup() throws Exception {
+        orderDbPath = Files.createTempFile("test-orders", ".db");
+    }
+
+    @AfterAll
+    static void cleanup() throws Exception {
+        ConnectionPool.closeAll();
+        Files.deleteIfExists(orderDbPath);
+    }
+
+    @BeforeEach
+    void init() throws Exception {
+        orderDb = new OrderDatabase(orderDbPath);
+        orderDb.init();
+    }
+
+    @Test
+    void testConcurrentWritesAllCommit() throws Exception {
+        int threads = 16;
+        int perThread = 25;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String customer = "groupcustomer" + t;
+            Thread worker = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    try {
+                        orderDb.createOrder(customer, "Pizza Place", "123 Main St", "456 Home St", "none", 19.99, 1, "CARD", 20.10294, 60.120, 69.420, 42.560);
+                    } catch (SQLException e) {
+                        fail(e);
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals(threads * perThread, countRows("SELECT COUNT(*) FROM orders WHERE customer_username LIKE 'groupcustomer%'"));
+        // every order also gets its "Order created" update in the same transaction
+        assertEquals(threads * perThread, countRows("SELECT COUNT(*) FROM order_updates u JOIN orders o ON o.order_id = u.order_id "
+                + "WHERE o.customer_username LIKE 'groupcustomer%'"));
+
+        GroupCommitWriter writer = orderDb.getPool().getWriter();
+        assertTrue(writer.getBatchCount() <= writer.getRequestCount());
+        System.out.println("Group commit test passed - " + writer);
+    }
+
+    @Test
+    void testFailedWriteDoesNotPoisonBatch() throws Exception {
+        GroupCommitWriter writer = orderDb.getPool().getWriter();
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            int n = i;
+            futures.add(writer.submit(conn -> {
+                // every third write hits a table that doesn't exist
+                String table = n % 3 == 0 ? "no_such_table" : "order_updates";
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "INSERT INTO " + table + " (order_id, status, notes, updated_at, updated_by) VALUES (?, 'TEST', 'batch', 0, 'groupwriter')")) {
+                    ps.setLong(1, 1000 + n);
+                    return ps.executeUpdate();
+                }
+            }));
+        }
+
+        int failed = 0;
+        for (CompletableFuture<Integer> future : futures) {
+            try {
+                assertEquals(1, future.get());
+            } catch (ExecutionException e) {
+                assertInstanceOf(SQLException.class, e.getCause());
+                failed++;
+            }
+        }
+        assertEquals(4, failed);
+        assertEquals(6, countRows("SELECT COUNT(*) FROM order_updates WHERE updated_by = 'groupwriter'"));
+
+        // an Error only fails its own write, and the writer keeps going
+        CompletableFuture<Integer> broken = writer.submit(conn -> {
+            throw new AssertionError("broken write");
+        });
+        ExecutionException e = assertThrows(ExecutionException.class, () -> broken.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(AssertionError.class, e.getCause());
+        assertEquals(1, writer.submit(conn -> 1).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testCloseCompletesEveryWrite() throws Exception {
+        // its own writer, the pool's is shared with the other tests
+        GroupCommitWriter writer = new GroupCommitWriter(orderDb.getPool());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Integer> slow = writer.submit(conn -> {
+            started.countDown();
+            // close() interrupts the writer thread, so don't wait on anything interruptible
+            while (release.getCount() > 0) {
+                Thread.onSpinWait();
+            }
+            return 1;
+        });
+        started.await();
+        List<CompletableFuture<Integer>> queued = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            queued.add(writer.submit(conn -> 1));
+        }
+        writer.close();
+        release.countDown();
+        CompletableFuture<Integer> late = writer.submit(conn -> 1);
+
+        assertEquals(1, slow.get(5, TimeUnit.SECONDS));
+        for (CompletableFuture<Integer> future : queued) {
+            assertEquals(1, future.get(5, TimeUnit.SECONDS));
+        }
+        ExecutionException e = assertThrows(ExecutionException.class, () -> late.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(SQLException.class, e.getCause());
+    }
+
+    private int countRows(String sql) throws SQLException {
+        try (Connection conn = orderDb.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
@@ -1,10 +1,15 @@
 import org.junit.jupiter.api.*;
 import java.nio.file.*;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import static org.junit.jupiter.api.Assertions.*;
 /*
 --> Tests if admin can properly cancel customer orders.
 --> Creates a test customer order, and then uses an admin account to cancel it.
+--> Pages through order history forwards and backwards with the keyset pagination API.
 --> Will return "Admin flow test passed - Cancelled Order ID: 1" if succeeded.
  */
 public class IntegrationAdminTest {
@@ -67,4 +72,41 @@ public class IntegrationAdminTest {
 
         System.out.println("Admin flow test passed - Cancelled Order ID: " + orderId);
     }
+
+    // order history pages forward without gaps or repeats, and paging back returns the same rows
+    @Test
+    void testOrderHistoryPaging() throws SQLException {
+        // 25 orders, most of them placed in the same second so order_id has to break the ties
+        for (int i = 0; i < 25; i++) {
+            assertTrue(orderDb.createOrder("pagecustomer", "Pizza Place", "123 Main St", "456 Home St", "none", 10 + i, 1, "CARD", 0, 0, 0, 0) > 0);
+        }
+
+        List<OrderPage> pages = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        OrderPage page = orderDb.getOrderHistoryPage("pagecustomer", "CUSTOMER", null, 10);
+        pages.add(page);
+        assertFalse(page.hasNewer());
+        while (page.hasOlder()) {
+            page = orderDb.getOrderHistoryPage("pagecustomer", "CUSTOMER", page.getOlderKey(), 10);
+            pages.add(page);
+        }
+        long previousId = Long.MAX_VALUE;
+        for (OrderPage p : pages) {
+            for (OrderRow row : p.getRows()) {
+                assertTrue(seen.add(row.getOrderId()));
+                assertTrue(row.getOrderId() < previousId);  // newest first
+                previousId = row.getOrderId();
+            }
+        }
+        assertEquals(3, pages.size());
+        assertEquals(25, seen.size());
+        assertEquals(5, pages.get(2).getRows().size());
+
+        // going back from the last page gives the middle page again
+        OrderPage back = orderDb.getOrderHistoryPageBefore("pagecustomer", "CUSTOMER", pages.get(2).getNewerKey(), 10);
+        assertEquals(pages.get(1).getRows().get(0).getOrderId(), back.getRows().get(0).getOrderId());
+        assertEquals(10, back.getRows().size());
+        assertTrue(back.hasNewer());
+        assertTrue(back.hasOlder());
+    }
 }
@@ -1,11 +1,15 @@
 import org.junit.jupiter.api.*;
 import java.nio.file.*;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import static org.junit.jupiter.api.Assertions.*;
 /*
 --> Tests
     - If the user account can be properly created.
     - If this temp account can make orders.
+    - If placeOrder saves the order and all of its items together (or none of it).
 ---> Will return "Customer flow test passed - Order ID: 1" if succeeded.
  */
 public class IntegrationCustomerTest {
@@ -81,4 +85,40 @@ public class IntegrationCustomerTest {
 
         System.out.println("Customer flow test passed - Order ID: " + orderId);
     }
+
+    // placeOrder writes the order and its items in one transaction
+    @Test
+    void testPlaceOrderIsAtomic() throws SQLException {
+        OrderDraft draft = new OrderDraft("draftcustomer", "Pizza Place", "123 Main St", "456 Home St");
+        draft.setPaymentType("CARD");
+        draft.addItem("Pizza", 2, 14.99, null)
+             .addItem("Soda", 1, 2.99, "no ice");
+
+        PlacedOrder placed = orderDb.placeOrder(draft);
+        assertTrue(placed.getOrderId() > 0);
+        assertEquals(3, placed.getItemCount());
+        assertEquals(45, placed.getEstimatedMinutes());
+        assertEquals(2, countRows("SELECT COUNT(*) FROM order_items WHERE order_id = " + placed.getOrderId()));
+
+        // the order row carries its own items summary (kept by the order_items triggers)
+        OrderRow row = orderDb.getOrderDetails(placed.getOrderId());
+        assertEquals(3, row.getItemCount());
+        assertTrue(row.getItems().contains("Pizza x2"));
+        assertTrue(row.getItems().contains("Soda x1"));
+
+        // a bad item (null name) should roll back the order row too
+        OrderDraft bad = new OrderDraft("draftcustomer", "Pizza Place", "123 Main St", "456 Home St");
+        bad.addItem("Pizza", 1, 14.99, null)
+           .addItem(null, 1, 1.00, null);
+        assertThrows(SQLException.class, () -> orderDb.placeOrder(bad));
+        assertEquals(1, countRows("SELECT COUNT(*) FROM orders WHERE customer_username = 'draftcustomer'"));
+    }
+
+    private int countRows(String sql) throws SQLException {
+        try (Connection conn = orderDb.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
 }
@@ -7,7 +7,7 @@ import java.sql.SQLException;
 public class ListUsers {
     public static void main(String[] args) {
         try {
-            String url = "jdbc:sqlite:" + java.nio.file.Path.of("users.db").toAbsolutePath().toString();
+            String url = "jdbc:sqlite:" + DataStore.fileFor(java.nio.file.Path.of("."), "users").toAbsolutePath().toString();
             
             String sql = "SELECT username, user_type, full_name, email, phone, admin_hash FROM users";
             try (Connection c = DriverManager.getConnection(url);
@@ -0,0 +1,546 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * LogAppender writes Logger's output on its own thread so a catch block (often on the Swing EDT) never waits on disk.
+ * Callers put entries (text, or a {@link Record} that renders it later) into a bounded lock-free ring buffer and return;
+ * one appender thread takes them out in order, renders them, keeps one open channel per log file and writes through a
+ * buffer that is flushed when it fills up, when the queue runs dry after the flush interval, or when someone calls
+ * {@link #flush()}.
+ * When the buffer is full the {@link Overflow} policy decides what happens, and every dropped entry is counted.
+ * Files registered with {@link #rotate(Path, LogRotation)} roll over into compressed segments.
+ */
+public class LogAppender {
+
+    static final int DEFAULT_CAPACITY = 8192;
+    static final long DEFAULT_FLUSH_MS = 200;
+    private static final int FILE_BUFFER_BYTES = 64 * 1024;
+    private static final int SCRATCH_MAX_CHARS = 1024 * 1024;
+    // how long a blocked producer or a flush() caller waits before looking again
+    private static final long RETRY_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    /**
+     * What append() does when the ring buffer is full.
+     */
+    public enum Overflow {
+        BLOCK,          // wait for the appender thread to make room, nothing is lost
+        DROP_OLDEST,    // throw away the oldest queued entry to make room for the new one
+        DROP_NEWEST     // throw away the new entry
+    }
+
+    /**
+     * Counters for everything that went through the appender.
+     */
+    public static class Stats {
+        private final AtomicLong enqueued = new AtomicLong();
+        private final AtomicLong written = new AtomicLong();
+        private final AtomicLong droppedOldest = new AtomicLong();
+        private final AtomicLong droppedNewest = new AtomicLong();
+        private final AtomicLong blockedWaits = new AtomicLong();
+        private final AtomicLong failedWrites = new AtomicLong();
+
+        public long getEnqueued() {
+            return enqueued.get();
+        }
+
+        public long getWritten() {
+            return written.get();
+        }
+
+        public long getDroppedOldest() {
+            return droppedOldest.get();
+        }
+
+        public long getDroppedNewest() {
+            return droppedNewest.get();
+        }
+
+        public long getDropped() {
+            return droppedOldest.get() + droppedNewest.get();
+        }
+
+        public long getBlockedWaits() {
+            return blockedWaits.get();
+        }
+
+        public long getFailedWrites() {
+            return failedWrites.get();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("enqueued=%d written=%d droppedOldest=%d droppedNewest=%d blockedWaits=%d failedWrites=%d",
+                    getEnqueued(), getWritten(), getDroppedOldest(), getDroppedNewest(), getBlockedWaits(), getFailedWrites());
+        }
+    }
+
+    /**
+     * Text that is only put together on the appender thread, so the caller doesn't pay for building it.
+     * Whatever a record reads has to be safe to read from another thread after append() returns.
+     */
+    public interface Record {
+        void render(StringBuilder out);
+    }
+
+    // one queued write, either ready-made text or a record to render
+    private static final class Entry {
+        final Path file;
+        final String text;
+        final Record record;
+
+        Entry(Path file, String text, Record record) {
+            this.file = file;
+            this.text = text;
+            this.record = record;
+        }
+    }
+
+    /*
+    --> Bounded multi-producer multi-consumer queue (Dmitry Vyukov's design): every slot has a sequence number that says
+        whether it is free for the producer at position n (seq == n) or holds the entry for the consumer at n (seq == n + 1).
+        Producers and consumers only CAS their own counter, so nobody takes a lock. The appender thread is the normal
+        consumer, producers also consume when they drop the oldest entry.
+    */
+    static final class Ring<E> {
+        private final Object[] items;
+        private final AtomicLongArray sequence;
+        private final int mask;
+        private final AtomicLong head = new AtomicLong();  // next position to take
+        private final AtomicLong tail = new AtomicLong();  // next position to fill
+
+        Ring(int capacity) {
+            int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+            items = new Object[size];
+            sequence = new AtomicLongArray(size);
+            mask = size - 1;
+            for (int i = 0; i < size; i++) {
+                sequence.set(i, i);
+            }
+        }
+
+        // false if the ring is full
+        boolean offer(E item) {
+            long pos = tail.get();
+            while (true) {
+                int slot = (int) (pos & mask);
+                long diff = sequence.get(slot) - pos;
+                if (diff == 0) {
+                    if (tail.compareAndSet(pos, pos + 1)) {
+                        items[slot] = item;
+                        // publishes the item: the volatile write happens after the plain one above
+                        sequence.set(slot, pos + 1);
+                        return true;
+                    }
+                    pos = tail.get();
+                } else if (diff < 0) {
+                    return false;
+                } else {
+                    pos = tail.get();
+                }
+            }
+        }
+
+        // null if the ring is empty
+        @SuppressWarnings("unchecked")
+        E poll() {
+            long pos = head.get();
+            while (true) {
+                int slot = (int) (pos & mask);
+                long diff = sequence.get(slot) - (pos + 1);
+                if (diff == 0) {
+                    if (head.compareAndSet(pos, pos + 1)) {
+                        E item = (E) items[slot];
+                        items[slot] = null;
+                        sequence.set(slot, pos + mask + 1);
+                        return item;
+                    }
+                    pos = head.get();
+                } else if (diff < 0) {
+                    return null;
+                } else {
+                    pos = head.get();
+                }
+            }
+        }
+
+        boolean isEmpty() {
+            return head.get() >= tail.get();
+        }
+
+        int capacity() {
+            return mask + 1;
+        }
+    }
+
+    // an open log file and the bytes not written to it yet, only touched by the appender thread
+    private static final class Output {
+        final FileChannel channel;
+        final ByteBuffer buffer = ByteBuffer.allocate(FILE_BUFFER_BYTES);
+        final long openedAt = System.currentTimeMillis();
+        long size;  // in the file plus in the buffer
+
+        Output(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+        }
+
+        void write(byte[] bytes) throws IOException {
+            size += bytes.length;
+            if (bytes.length > buffer.remaining()) {
+                drain();
+            }
+            if (bytes.length > buffer.capacity()) {
+                ByteBuffer big = ByteBuffer.wrap(bytes);
+                while (big.hasRemaining()) {
+                    channel.write(big);
+                }
+            } else {
+                buffer.put(bytes);
+            }
+        }
+
+        void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    private static volatile LogAppender shared;
+
+    private final Ring<Entry> ring;
+    private final long flushNanos;
+    private final Overflow overflow;
+    private final Stats stats = new Stats();
+    private final Map<Path, Output> outputs = new HashMap<>();
+    // records render into this, reused so the appender thread isn't growing a new builder for every stack trace
+    private StringBuilder scratch = new StringBuilder(FILE_BUFFER_BYTES);
+    private final Map<Path, LogRotation> rotations = new ConcurrentHashMap<>();
+    private final Thread thread;
+    private volatile boolean started;
+    private volatile boolean closing;
+    private volatile boolean sleeping;
+    // flush(): callers raise the target, the appender thread moves flushedThrough up to it
+    private final AtomicLong flushTarget = new AtomicLong();
+    private volatile long flushedThrough;
+
+    /**
+     * Constructs an appender. Nothing is written until {@link #start()}.
+     * @param capacity Ring buffer size, rounded up to a power of two.
+     * @param flushMs How long written entries may sit in memory before they go to the file, 0 to write as soon as the
+     *                queue runs dry.
+     * @param overflow What to do when the buffer is full.
+     */
+    public LogAppender(int capacity, long flushMs, Overflow overflow) {
+        this.ring = new Ring<>(capacity);
+        this.flushNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, flushMs));
+        this.overflow = overflow;
+        this.thread = new Thread(this::run, "logger-appender");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Returns the appender Logger writes through, started on first use and drained when the JVM exits.
+     * Configured by FOODDASH_LOG_BUFFER (entries), FOODDASH_LOG_FLUSH_MS and FOODDASH_LOG_OVERFLOW
+     * (BLOCK, DROP_OLDEST or DROP_NEWEST, BLOCK if not set).
+     * @return The shared appender.
+     */
+    public static LogAppender shared() {
+        LogAppender appender = shared;
+        if (appender == null) {
+            synchronized (LogAppender.class) {
+                appender = shared;
+                if (appender == null) {
+                    appender = new LogAppender((int) envLong("FOODDASH_LOG_BUFFER", DEFAULT_CAPACITY),
+                            envLong("FOODDASH_LOG_FLUSH_MS", DEFAULT_FLUSH_MS), envOverflow());
+                    appender.start();
+                    LogAppender closing = appender;
+                    Runtime.getRuntime().addShutdownHook(new Thread(closing::close, "logger-shutdown"));
+                    shared = appender;
+                }
+            }
+        }
+        return appender;
+    }
+
+    // these can't go through Logger, it's the one being configured
+    static long envLong(String name, long fallback) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            System.err.println("Ignoring " + name + "=" + value + ": not a number");
+            return fallback;
+        }
+    }
+
+    private static Overflow envOverflow() {
+        String value = System.getenv("FOODDASH_LOG_OVERFLOW");
+        if (value == null || value.isBlank()) {
+            return Overflow.BLOCK;
+        }
+        try {
+            return Overflow.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Ignoring FOODDASH_LOG_OVERFLOW=" + value + ": not an overflow policy");
+            return Overflow.BLOCK;
+        }
+    }
+
+    public synchronized void start() {
+        if (!started && !closing) {
+            started = true;
+            thread.start();
+        }
+    }
+
+    /**
+     * Rolls the file over to compressed segments according to the policy, see {@link LogRotation}.
+     * @param file The log file.
+     * @param rotation When to roll it and how much of it to keep.
+     */
+    public void rotate(Path file, LogRotation rotation) {
+        rotations.put(file, rotation);
+    }
+
+    /**
+     * Queues text to be appended to a file. Never does I/O on the calling thread.
+     * @param file The log file, created if it doesn't exist.
+     * @param text What to append, line breaks included.
+     * @return false if the entry was dropped (DROP_NEWEST on a full buffer, or the appender is closed).
+     */
+    public boolean append(Path file, String text) {
+        return enqueue(new Entry(file, text, null));
+    }
+
+    /**
+     * Queues a record to be rendered and appended to a file on the appender thread.
+     * @param file The log file, created if it doesn't exist.
+     * @param record Renders what to append, line breaks included.
+     * @return false if the entry was dropped (DROP_NEWEST on a full buffer, or the appender is closed).
+     */
+    public boolean append(Path file, Record record) {
+        return enqueue(new Entry(file, null, record));
+    }
+
+    private boolean enqueue(Entry entry) {
+        if (closing) {
+            stats.droppedNewest.incrementAndGet();
+            return false;
+        }
+        while (!ring.offer(entry)) {
+            switch (overflow) {
+                case DROP_NEWEST:
+                    stats.droppedNewest.incrementAndGet();
+                    return false;
+                case DROP_OLDEST:
+                    if (ring.poll() != null) {
+                        stats.droppedOldest.incrementAndGet();
+                    }
+                    break;
+                default:
+                    stats.blockedWaits.incrementAndGet();
+                    LockSupport.unpark(thread);
+                    LockSupport.parkNanos(RETRY_NANOS);
+                    if (closing) {
+                        stats.droppedNewest.incrementAndGet();
+                        return false;
+                    }
+                    break;
+            }
+        }
+        stats.enqueued.incrementAndGet();
+        if (sleeping) {
+            LockSupport.unpark(thread);
+        }
+        return true;
+    }
+
+    /**
+     * Waits until everything appended before this call is in its file (or dropped).
+     * @param timeoutMs How long to wait at most.
+     * @return false if it timed out or the appender isn't running.
+     */
+    public boolean flush(long timeoutMs) {
+        if (!started || !thread.isAlive()) {
+            return false;
+        }
+        long target = stats.enqueued.get();
+        flushTarget.accumulateAndGet(target, Math::max);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (flushedThrough < target) {
+            if (System.nanoTime() > deadline || !thread.isAlive()) {
+                return false;
+            }
+            LockSupport.unpark(thread);
+            LockSupport.parkNanos(RETRY_NANOS);
+        }
+        return true;
+    }
+
+    public boolean flush() {
+        return flush(5000);
+    }
+
+    /**
+     * Writes out whatever is queued, closes the files and stops the appender thread.
+     * Entries appended after this are dropped.
+     */
+    public void close() {
+        synchronized (this) {
+            closing = true;
+        }
+        if (started) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        long lastFlush = System.nanoTime();
+        boolean dirty = false;
+        while (true) {
+            Entry entry = ring.poll();
+            if (entry != null) {
+                write(entry);
+                dirty = true;
+                continue;
+            }
+            // the queue is empty: everything enqueued so far has been written to a buffer or dropped
+            long done = stats.written.get() + stats.droppedOldest.get() + stats.failedWrites.get();
+            long now = System.nanoTime();
+            boolean wanted = flushTarget.get() > flushedThrough;
+            if (dirty && (wanted || closing || now - lastFlush >= flushNanos)) {
+                drainAll();
+                dirty = false;
+                lastFlush = now;
+            }
+            if (wanted && !dirty) {
+                flushedThrough = done;
+            }
+            if (closing && ring.isEmpty()) {
+                break;
+            }
+            sleeping = true;
+            if (ring.isEmpty() && !closing) {
+                // with unwritten bytes, wake up in time to flush them
+                LockSupport.parkNanos(dirty ? Math.max(RETRY_NANOS, flushNanos - (now - lastFlush)) : TimeUnit.SECONDS.toNanos(1));
+            }
+            sleeping = false;
+        }
+        drainAll();
+        for (Output output : outputs.values()) {
+            try {
+                output.channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        outputs.clear();
+        flushedThrough = Long.MAX_VALUE;
+    }
+
+    private void write(Entry entry) {
+        try {
+            byte[] bytes = render(entry).getBytes(StandardCharsets.UTF_8);
+            Output output = open(entry.file);
+            LogRotation rotation = rotations.get(entry.file);
+            if (rotation != null && rotation.isDue(output.size, output.openedAt, System.currentTimeMillis(), bytes.length)) {
+                outputs.remove(entry.file);
+                output.drain();
+                output.channel.close();
+                rotation.roll(entry.file);
+                output = open(entry.file);
+            }
+            output.write(bytes);
+            stats.written.incrementAndGet();
+        } catch (IOException e) {
+            // If fails, print to console, and open the file again next time
+            stats.failedWrites.incrementAndGet();
+            e.printStackTrace();
+            closeQuietly(outputs.remove(entry.file));
+        } catch (RuntimeException e) {
+            // a record that couldn't render, the file is fine
+            stats.failedWrites.incrementAndGet();
+            e.printStackTrace();
+        }
+    }
+
+    private String render(Entry entry) {
+        if (entry.record == null) {
+            return entry.text;
+        }
+        if (scratch.capacity() > SCRATCH_MAX_CHARS) {
+            scratch = new StringBuilder(FILE_BUFFER_BYTES);
+        }
+        scratch.setLength(0);
+        entry.record.render(scratch);
+        return scratch.toString();
+    }
+
+    private Output open(Path file) throws IOException {
+        Output output = outputs.get(file);
+        if (output == null) {
+            output = new Output(FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+            outputs.put(file, output);
+        }
+        return output;
+    }
+
+    private void drainAll() {
+        for (Path file : outputs.keySet().toArray(new Path[0])) {
+            try {
+                outputs.get(file).drain();
+            } catch (IOException e) {
+                e.printStackTrace();
+                closeQuietly(outputs.remove(file));
+            }
+        }
+    }
+
+    private static void closeQuietly(Output output) {
+        if (output != null) {
+            try {
+                output.channel.close();
+            } catch (IOException ignored) { }
+        }
+    }
+
+    public Stats getStats() {
+        return stats;
+    }
+
+    public Overflow getOverflow() {
+        return overflow;
+    }
+
+    public int getCapacity() {
+        return ring.capacity();
+    }
+
+    @Override
+    public String toString() {
+        return "LogAppender[" + overflow + " capacity=" + getCapacity() + " " + stats + "]";
+    }
+}
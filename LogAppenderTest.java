@@ -0,0 +1,134 @@
+import org.junit.jupiter.api.*;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+/*
+--> Tests the asynchronous log appender:
+    - entries from one thread end up in the file in the order they were appended, and each file gets only its own
+    - records are rendered on the appender thread, in order with plain text
+    - with BLOCK and a tiny buffer, several threads logging at once lose nothing and each thread's lines stay in order
+    - a full buffer drops the oldest or the newest entries depending on the policy, and the drops are counted
+--> Will return "Log appender test passed" with the appender counters if succeeded.
+ */
+public class LogAppenderTest {
+
+    private Path dir;
+    private LogAppender appender;
+
+    @BeforeEach
+    void setup() throws Exception {
+        dir = Files.createTempDirectory("test-log-appender");
+    }
+
+    @AfterEach
+    void cleanup() throws Exception {
+        if (appender != null) {
+            appender.close();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    @Test
+    void testOrderAndFiles() throws Exception {
+        appender = new LogAppender(16, 50, LogAppender.Overflow.BLOCK);
+        appender.start();
+        Path errors = dir.resolve("errors.log");
+        Path bugs = dir.resolve("bugs.log");
+        for (int i = 0; i < 1000; i++) {
+            appender.append(i % 3 == 0 ? errors : bugs, i + "\n");
+        }
+        assertTrue(appender.flush());
+        List<String> errorLines = Files.readAllLines(errors);
+        List<String> bugLines = Files.readAllLines(bugs);
+        assertEquals(334, errorLines.size());
+        assertEquals(666, bugLines.size());
+        assertEquals("999", errorLines.get(333));
+        assertEquals("998", bugLines.get(665));
+        assertEquals(1000, appender.getStats().getWritten());
+
+        // files stay open: appending after a flush adds to the end, records are rendered by the appender thread
+        Thread caller = Thread.currentThread();
+        appender.append(errors, out -> out.append(Thread.currentThread() == caller ? "caller" : "rendered").append('\n'));
+        appender.append(errors, "last\n");
+        assertTrue(appender.flush());
+        assertEquals(List.of("rendered", "last"), Files.readAllLines(errors).subList(334, 336));
+    }
+
+    @Test
+    void testBlockLosesNothing() throws Exception {
+        appender = new LogAppender(4, 0, LogAppender.Overflow.BLOCK);
+        appender.start();
+        Path file = dir.resolve("threads.log");
+        int threads = 4;
+        int perThread = 5000;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            workers.add(new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    appender.append(file, id + " " + i + "\n");
+                }
+            }));
+        }
+        workers.forEach(Thread::start);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertTrue(appender.flush());
+
+        int[] next = new int[threads];
+        for (String line : Files.readAllLines(file)) {
+            String[] parts = line.split(" ");
+            int id = Integer.parseInt(parts[0]);
+            assertEquals(next[id]++, Integer.parseInt(parts[1]));
+        }
+        for (int t = 0; t < threads; t++) {
+            assertEquals(perThread, next[t]);
+        }
+        assertEquals(0, appender.getStats().getDropped());
+        System.out.println("Log appender test passed - " + appender);
+    }
+
+    @Test
+    void testDropPolicies() throws Exception {
+        // the appender thread isn't started yet, so the buffer fills up
+        Path oldest = dir.resolve("oldest.log");
+        appender = new LogAppender(8, 0, LogAppender.Overflow.DROP_OLDEST);
+        for (int i = 0; i < 20; i++) {
+            assertTrue(appender.append(oldest, i + "\n"));
+        }
+        assertEquals(12, appender.getStats().getDroppedOldest());
+        appender.start();
+        assertTrue(appender.flush());
+        assertEquals(List.of("12", "13", "14", "15", "16", "17", "18", "19"), Files.readAllLines(oldest));
+        appender.close();
+
+        Path newest = dir.resolve("newest.log");
+        appender = new LogAppender(8, 0, LogAppender.Overflow.DROP_NEWEST);
+        int accepted = 0;
+        for (int i = 0; i < 20; i++) {
+            if (appender.append(newest, i + "\n")) {
+                accepted++;
+            }
+        }
+        assertEquals(8, accepted);
+        assertEquals(12, appender.getStats().getDroppedNewest());
+        appender.start();
+        assertTrue(appender.flush());
+        assertEquals(List.of("0", "1", "2", "3", "4", "5", "6", "7"), Files.readAllLines(newest));
+
+        // closing writes what's left, anything after is dropped
+        appender.append(newest, "8\n");
+        appender.close();
+        assertFalse(appender.append(newest, "9\n"));
+        assertEquals("8", Files.readAllLines(newest).get(8));
+        assertEquals(13, appender.getStats().getDroppedNewest());
+    }
+}
@@ -0,0 +1,205 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * LogRotation says when LogAppender should start a new segment of a log file, and cleans up the old ones.
+ * A file rolls over when the next write would take it past maxBytes, or when it has been open for maxAgeMs.
+ * The rolled segment (bugs-20261017-093000-000.jsonl) is gzipped on a background thread, and the oldest segments
+ * are deleted until the rolled ones together fit in maxTotalBytes. The live file isn't counted, it's capped by maxBytes.
+ */
+public class LogRotation {
+
+    static final long DEFAULT_MAX_BYTES = 10L * 1024 * 1024;
+    static final long DEFAULT_MAX_AGE_MS = TimeUnit.HOURS.toMillis(24);
+    static final long DEFAULT_MAX_TOTAL_BYTES = 100L * 1024 * 1024;
+    private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    // one thread for all rotations, compressing is slow but nobody waits on it
+    private static final ExecutorService COMPRESSOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "log-compressor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final long maxBytes;
+    private final long maxAgeMs;
+    private final long maxTotalBytes;
+    // rolled but not compressed yet, prune leaves these to the task that compresses them
+    private final Set<Path> pending = ConcurrentHashMap.newKeySet();
+    private volatile Future<?> lastArchive;
+
+    /**
+     * Constructs a rotation policy. A limit of 0 turns that limit off.
+     * @param maxBytes Largest a segment gets before rolling over.
+     * @param maxAgeMs Longest a segment stays open before rolling over.
+     * @param maxTotalBytes Most bytes the rolled (compressed) segments may take together.
+     */
+    public LogRotation(long maxBytes, long maxAgeMs, long maxTotalBytes) {
+        this.maxBytes = maxBytes;
+        this.maxAgeMs = maxAgeMs;
+        this.maxTotalBytes = maxTotalBytes;
+    }
+
+    /**
+     * Reads the limits from FOODDASH_LOG_ROTATE_BYTES, FOODDASH_LOG_ROTATE_MINUTES and FOODDASH_LOG_RETAIN_BYTES
+     * (10MB, a day and 100MB if not set).
+     * @return The configured policy.
+     */
+    public static LogRotation fromEnv() {
+        return new LogRotation(
+                LogAppender.envLong("FOODDASH_LOG_ROTATE_BYTES", DEFAULT_MAX_BYTES),
+                TimeUnit.MINUTES.toMillis(LogAppender.envLong("FOODDASH_LOG_ROTATE_MINUTES", TimeUnit.MILLISECONDS.toMinutes(DEFAULT_MAX_AGE_MS))),
+                LogAppender.envLong("FOODDASH_LOG_RETAIN_BYTES", DEFAULT_MAX_TOTAL_BYTES));
+    }
+
+    /**
+     * Whether the file has to roll over before the next write. An empty file never does.
+     * @param size Bytes in the file now.
+     * @param openedAtMs When the appender opened it.
+     * @param nowMs Current time.
+     * @param incoming Bytes about to be written.
+     * @return true to roll first.
+     */
+    boolean isDue(long size, long openedAtMs, long nowMs, int incoming) {
+        if (size == 0) {
+            return false;
+        }
+        return (maxBytes > 0 && size + incoming > maxBytes) || (maxAgeMs > 0 && nowMs - openedAtMs >= maxAgeMs);
+    }
+
+    /**
+     * Renames the (closed) file to a timestamped segment and queues it for compression and cleanup.
+     * @param file The live log file.
+     * @throws IOException if the rename fails
+     */
+    void roll(Path file) throws IOException {
+        Path rolled = segmentName(file.toAbsolutePath());
+        Files.move(file, rolled, StandardCopyOption.ATOMIC_MOVE);
+        pending.add(rolled);
+        lastArchive = COMPRESSOR.submit(() -> {
+            try {
+                gzip(rolled);
+            } catch (IOException e) {
+                // If fails, print to console, the segment stays uncompressed and is pruned next time
+                e.printStackTrace();
+            } finally {
+                pending.remove(rolled);
+            }
+            try {
+                prune(file);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    // bugs.jsonl -> bugs-20261017-093000-000.jsonl, the counter keeps two rolls in the same second apart
+    private static Path segmentName(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String ext = dot > 0 ? name.substring(dot) : "";
+        String stamp = LocalDateTime.now().format(STAMP);
+        for (int n = 0; ; n++) {
+            Path candidate = file.resolveSibling(String.format("%s-%s-%03d%s", base, stamp, n, ext));
+            if (!Files.exists(candidate) && !Files.exists(Path.of(candidate + ".gz"))) {
+                return candidate;
+            }
+        }
+    }
+
+    private static void gzip(Path segment) throws IOException {
+        Path gz = Path.of(segment + ".gz");
+        Path tmp = Path.of(gz + ".tmp");
+        try (InputStream in = Files.newInputStream(segment);
+             OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp), 64 * 1024)) {
+            in.transferTo(out);
+        }
+        Files.move(tmp, gz, StandardCopyOption.ATOMIC_MOVE);
+        Files.delete(segment);
+    }
+
+    /*
+    --> Deletes the oldest rolled segments of the file until the rest fit in maxTotalBytes.
+        Segment names start with the timestamp, so sorting by name is oldest first.
+    */
+    void prune(Path file) throws IOException {
+        if (maxTotalBytes <= 0) {
+            return;
+        }
+        List<Path> segments = segments(file);
+        segments.removeAll(pending);
+        long total = 0;
+        for (Path segment : segments) {
+            total += Files.size(segment);
+        }
+        for (int i = 0; i < segments.size() && total > maxTotalBytes; i++) {
+            total -= Files.size(segments.get(i));
+            Files.deleteIfExists(segments.get(i));
+        }
+    }
+
+    /**
+     * Lists the rolled segments of a log file, compressed or not, oldest first.
+     * @param file The live log file.
+     * @return Its segments.
+     * @throws IOException if the directory can't be read
+     */
+    static List<Path> segments(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String prefix = (dot > 0 ? name.substring(0, dot) : name) + "-";
+        String ext = dot > 0 ? name.substring(dot) : "";
+        Path dir = file.toAbsolutePath().getParent();
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                String other = path.getFileName().toString();
+                if (other.startsWith(prefix) && (other.endsWith(ext) || other.endsWith(ext + ".gz"))) {
+                    segments.add(path);
+                }
+            }
+        }
+        segments.sort((a, b) -> a.getFileName().toString().compareTo(b.getFileName().toString()));
+        return segments;
+    }
+
+    /**
+     * Waits for the last rolled segment to be compressed and pruned (tests).
+     * @param timeoutMs How long to wait at most.
+     * @return false if it timed out.
+     */
+    boolean awaitArchived(long timeoutMs) {
+        Future<?> archive = lastArchive;
+        if (archive == null) {
+            return true;
+        }
+        try {
+            archive.get(timeoutMs, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LogRotation[maxBytes=" + maxBytes + " maxAgeMs=" + maxAgeMs + " maxTotalBytes=" + maxTotalBytes + "]";
+    }
+}
@@ -0,0 +1,131 @@
+import org.junit.jupiter.api.*;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import static org.junit.jupiter.api.Assertions.*;
+/*
+--> Tests the JSON-lines bug log and its rotation:
+    - a bug is one line of JSON with quotes, backslashes, line breaks and control characters escaped
+    - the log rolls over before it would pass its size, the old segments are gzipped and nothing is lost or reordered
+    - the oldest segments are deleted once the rolled ones take more than the retained total
+    - a segment that has been open long enough rolls over no matter its size
+--> Will return "Log rotation test passed" with the segment count if succeeded.
+ */
+public class LogRotationTest {
+
+    private Path dir;
+    private LogAppender appender;
+
+    @BeforeEach
+    void setup() throws Exception {
+        dir = Files.createTempDirectory("test-log-rotation");
+        appender = new LogAppender(64, 0, LogAppender.Overflow.BLOCK);
+        appender.start();
+    }
+
+    @AfterEach
+    void cleanup() throws Exception {
+        appender.close();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    @Test
+    void testBugJson() {
+        Logger.Bug bug = new Logger.Bug("OrderDatabase.addOrderItem", "SQLException: \"order_items\" failed",
+                "1. a\\b\n2.\tc", "No exception thrown", "line\r\nbell\u0007", "HIGH", null);
+        String json = bug.toJson();
+        assertFalse(json.contains("\n"));
+        assertTrue(json.startsWith("{\"bugId\":" + bug.bugId + ",\"date\":\""));
+        assertTrue(json.contains("\"description\":\"SQLException: \\\"order_items\\\" failed\""));
+        assertTrue(json.contains("\"stepsToReproduce\":\"1. a\\\\b\\n2.\\tc\""));
+        assertTrue(json.contains("\"actualResult\":\"line\\r\\nbell\\u0007\""));
+        assertTrue(json.endsWith("\"status\":null}") || json.contains("\"status\":null,"));
+    }
+
+    @Test
+    void testSizeRotationKeepsEverything() throws Exception {
+        Path file = dir.resolve("bugs.jsonl");
+        LogRotation rotation = new LogRotation(1000, 0, 0);
+        appender.rotate(file, rotation);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String line = String.format("{\"bugId\":%d,\"pad\":\"%s\"}", i, "x".repeat(70));
+            expected.add(line);
+            appender.append(file, line + "\n");
+        }
+        assertTrue(appender.flush());
+        assertTrue(rotation.awaitArchived(5000));
+
+        List<Path> segments = LogRotation.segments(file);
+        assertTrue(segments.size() >= 19, "segments: " + segments.size());
+        List<String> lines = new ArrayList<>();
+        for (Path segment : segments) {
+            assertTrue(segment.toString().endsWith(".jsonl.gz"), segment.toString());
+            lines.addAll(read(segment));
+        }
+        assertTrue(Files.size(file) <= 1000);
+        lines.addAll(Files.readAllLines(file));
+        assertEquals(expected, lines);
+        System.out.println("Log rotation test passed - " + segments.size() + " segments");
+    }
+
+    @Test
+    void testRetentionAndAge() throws Exception {
+        Path file = dir.resolve("bugs.jsonl");
+        LogRotation rotation = new LogRotation(1000, 0, 600);
+        appender.rotate(file, rotation);
+        for (int i = 0; i < 500; i++) {
+            appender.append(file, String.format("{\"bugId\":%d,\"n\":%d}%n", i, (long) i * 7919 * 7919));
+            if (i % 50 == 0) {
+                assertTrue(appender.flush());
+                assertTrue(rotation.awaitArchived(5000));
+            }
+        }
+        assertTrue(appender.flush());
+        assertTrue(rotation.awaitArchived(5000));
+        long total = 0;
+        for (Path segment : LogRotation.segments(file)) {
+            total += Files.size(segment);
+        }
+        assertTrue(total <= 600, "retained " + total);
+        // what's left is the newest: the live file ends with the last bug
+        List<String> live = Files.readAllLines(file);
+        assertTrue(live.get(live.size() - 1).startsWith("{\"bugId\":499,"));
+
+        // a quiet log still rolls over once it's old enough
+        Path aged = dir.resolve("aged.jsonl");
+        LogRotation byAge = new LogRotation(0, 1, 0);
+        appender.rotate(aged, byAge);
+        appender.append(aged, "{\"bugId\":1}\n");
+        assertTrue(appender.flush());
+        Thread.sleep(5);
+        appender.append(aged, "{\"bugId\":2}\n");
+        assertTrue(appender.flush());
+        assertTrue(byAge.awaitArchived(5000));
+        List<Path> segments = LogRotation.segments(aged);
+        assertEquals(1, segments.size());
+        assertEquals(List.of("{\"bugId\":1}"), read(segments.get(0)));
+        assertEquals(List.of("{\"bugId\":2}"), Files.readAllLines(aged));
+    }
+
+    private static List<String> read(Path segment) throws IOException {
+        if (!segment.toString().endsWith(".gz")) {
+            return Files.readAllLines(segment);
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(segment)), StandardCharsets.UTF_8))) {
+            return reader.lines().toList();
+        }
+    }
+}
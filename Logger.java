@@ -1,20 +1,28 @@
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.file.Path;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Logger provides centralized error and bug logging with file outputs and simulated Jira integration.
- * Logs errors to errors.log and structured bug reports to bugs.log.
+ * Logs errors to errors.log and structured bug reports to bugs.log (and, if turned on, one JSON line per bug to bugs.jsonl).
+ * Writes go through {@link LogAppender}, so logging from a catch block queues the text and returns right away.
  */
 public class Logger {
 
-    private static final String LOG_FILE = "errors.log";
-    private static final String BUG_LOG_FILE = "bugs.log";
+    private static final Path LOG_PATH = Path.of("errors.log");
+    private static final Path BUG_LOG_PATH = Path.of("bugs.log");
+    private static final Path BUG_JSONL_PATH = Path.of("bugs.jsonl");
     private static final AtomicLong bugIdCounter = new AtomicLong(1000);
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String NL = System.lineSeparator();
+    private static final String SEPARATOR = "=".repeat(80);
+    private static final String DIVIDER = "-".repeat(80);
 
     /**
      * Bug represents a structured JIRA-like bug report with auto-incremented ID,
@@ -35,7 +43,7 @@ public class Logger {
         public Bug(String module, String description, String stepsToReproduce, 
                    String expectedResult, String actualResult, String severity, String status) {
             this.bugId = bugIdCounter.incrementAndGet();
-            this.date = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+            this.date = LocalDateTime.now().format(DATE_FORMAT);
             this.module = module;
             this.description = description;
             this.stepsToReproduce = stepsToReproduce;
@@ -44,100 +52,240 @@ public class Logger {
             this.severity = severity;
             this.status = status;
         }
+
+        /*
+         --> One compact JSON object on one line, for bugs.jsonl
+         */
+        public String toJson() {
+            StringBuilder sb = new StringBuilder(256);
+            renderJson(sb, bugId, date, module, severity, status, description, stepsToReproduce, expectedResult, actualResult);
+            return sb.toString();
+        }
     }
 
-    public static void logError(Exception e) {
-        try (FileWriter fw = new FileWriter(LOG_FILE, true);
-             PrintWriter pw = new PrintWriter(fw)) {
+    /*
+     --> What catchAndLogBug keeps of an exception: the exception itself, when it happened and the bug id.
+     --> The description, date and stack trace are only turned into text on the appender thread.
+     */
+    private static final class CapturedBug implements LogAppender.Record {
+        final long bugId;
+        final long time;
+        final Throwable error;
+        final String module;
+        final String severity;
+        private String stackTrace;  // appender thread only, rendered once for bugs.log and bugs.jsonl
+
+        CapturedBug(long bugId, long time, Throwable error, String module, String severity) {
+            this.bugId = bugId;
+            this.time = time;
+            this.error = error;
+            this.module = module;
+            this.severity = severity;
+        }
+
+        @Override
+        public void render(StringBuilder out) {
+            renderBug(out, bugId, formatMillis(time), module, severity, "OPEN", description(), stepsToReproduce(),
+                    "No exception thrown", stackTrace());
+        }
+
+        void renderJson(StringBuilder out) {
+            Logger.renderJson(out, bugId, formatMillis(time), module, severity, "OPEN", description(), stepsToReproduce(),
+                    "No exception thrown", stackTrace());
+            out.append('\n');
+        }
+
+        private String description() {
+            return error.getClass().getSimpleName() + ": " + (error.getMessage() != null ? error.getMessage() : "No message");
+        }
+
+        // Extract line number and method from top of stack trace if possible *error location*
+        private String stepsToReproduce() {
+            StackTraceElement[] trace = error.getStackTrace();
+            String locationInfo = "";
+            if (trace.length > 0) {
+                StackTraceElement top = trace[0];
+                locationInfo = top.getClassName() + "." + top.getMethodName() + "() at line " + top.getLineNumber();
+            }
+            return "See stack trace for conditions. Occurred in: " + locationInfo;
+        }
+
+        private String stackTrace() {
+            if (stackTrace == null) {
+                stackTrace = Logger.stackTrace(error);
+            }
+            return stackTrace;
+        }
+    }
+
+    // the bugs.log layout, for logBug and for exceptions catchAndLogBug captured
+    private static void renderBug(StringBuilder out, long bugId, String date, String module, String severity, String status,
+                                  String description, String stepsToReproduce, String expectedResult, String actualResult) {
+        out.append(SEPARATOR).append(NL);
+        out.append("BUG ID: ").append(bugId).append(NL);
+        out.append("Date: ").append(date).append(NL);
+        out.append("Module: ").append(module).append(NL);
+        out.append("Severity: ").append(severity).append(NL);
+        out.append("Status: ").append(status).append(NL);
+        out.append(DIVIDER).append(NL);
+        out.append("Description:").append(NL);
+        out.append("  ").append(description).append(NL).append(NL);
+        out.append("Steps to Reproduce:").append(NL);
+        out.append("  ").append(stepsToReproduce).append(NL).append(NL);
+        out.append("Expected Result:").append(NL);
+        out.append("  ").append(expectedResult).append(NL).append(NL);
+        out.append("Actual Result:").append(NL);
+        out.append("  ").append(actualResult).append(NL).append(NL);
+        out.append(SEPARATOR).append(NL).append(NL);
+    }
+
+    // one compact JSON object, the bugs.jsonl layout
+    private static void renderJson(StringBuilder out, long bugId, String date, String module, String severity, String status,
+                                   String description, String stepsToReproduce, String expectedResult, String actualResult) {
+        out.append("{\"bugId\":").append(bugId);
+        appendJsonField(out, "date", date);
+        appendJsonField(out, "module", module);
+        appendJsonField(out, "severity", severity);
+        appendJsonField(out, "status", status);
+        appendJsonField(out, "description", description);
+        appendJsonField(out, "stepsToReproduce", stepsToReproduce);
+        appendJsonField(out, "expectedResult", expectedResult);
+        appendJsonField(out, "actualResult", actualResult);
+        out.append('}');
+    }
 
-            pw.println("-----");
-            pw.println("Time: " + java.time.LocalDateTime.now());
-            e.printStackTrace(pw);  // writes full stack trace to the file
-            pw.println();
+    static String stackTrace(Throwable e) {
+        StringWriter sw = new StringWriter(1024);
+        PrintWriter pw = new PrintWriter(sw);
+        e.printStackTrace(pw);
+        pw.flush();
+        return sw.toString();
+    }
+
+    // ,"name":"value" with value escaped for JSON
+    static void appendJsonField(StringBuilder sb, String name, String value) {
+        sb.append(",\"").append(name).append("\":");
+        if (value == null) {
+            sb.append("null");
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+    // repeats of the same exception, created on the first catchAndLogBug
+    private static final class Fingerprints {
+        static final BugFingerprints TABLE = BugFingerprints.fromEnv(Logger::logRepeats);
+    }
+
+    // per-module report budgets, created on the first report
+    private static final class RateLimits {
+        static final BugRateLimiter LIMITER = BugRateLimiter.fromEnv(Logger::logSuppressed);
+    }
+
+    /*
+     --> bugs.jsonl is only written when FOODDASH_BUG_JSONL=true, and rotates by LogRotation.fromEnv().
+         Set up on first use so the rotation is registered before the first line.
+     */
+    private static final class JsonLines {
+        static final boolean ENABLED = "true".equalsIgnoreCase(System.getenv("FOODDASH_BUG_JSONL"));
 
-        } catch (IOException io) {
-            io.printStackTrace(); // If fails, print to console
+        static {
+            if (ENABLED) {
+                LogAppender.shared().rotate(BUG_JSONL_PATH, LogRotation.fromEnv());
+            }
         }
     }
 
+    /*
+     --> Waits for everything logged so far to reach the log files (tests, and before exiting on purpose).
+     */
+    public static boolean flush() {
+        return LogAppender.shared().flush();
+    }
+
+    public static void logError(Exception e) {
+        long time = System.currentTimeMillis();
+        LogAppender.shared().append(LOG_PATH, out -> {
+            out.append("-----").append(NL);
+            out.append("Time: ").append(LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault())).append(NL);
+            out.append(stackTrace(e)).append(NL);  // full stack trace goes to the file
+        });
+    }
+
     /*
      --> Logs the bug report to bugs.log 
      --> Bug ID, date, module, severity, status, description, steps to reproduce, expected and actual results
+     --> and the same as one JSON line to bugs.jsonl when FOODDASH_BUG_JSONL=true
      */
     public static void logBug(Bug bug) {
-        try (FileWriter fw = new FileWriter(BUG_LOG_FILE, true);
-             PrintWriter pw = new PrintWriter(fw)) {
-
-            pw.println("=".repeat(80));
-            pw.println("BUG ID: " + bug.bugId);
-            pw.println("Date: " + bug.date);
-            pw.println("Module: " + bug.module);
-            pw.println("Severity: " + bug.severity);
-            pw.println("Status: " + bug.status);
-            pw.println("-".repeat(80));
-            pw.println("Description:");
-            pw.println("  " + bug.description);
-            pw.println();
-            pw.println("Steps to Reproduce:");
-            pw.println("  " + bug.stepsToReproduce);
-            pw.println();
-            pw.println("Expected Result:");
-            pw.println("  " + bug.expectedResult);
-            pw.println();
-            pw.println("Actual Result:");
-            pw.println("  " + bug.actualResult);
-            pw.println();
-            pw.println("=".repeat(80));
-            pw.println();
-
-        } catch (IOException io) {
-            io.printStackTrace(); // If fails, print to console
+        LogAppender.shared().append(BUG_LOG_PATH, out -> renderBug(out, bug.bugId, bug.date, bug.module, bug.severity,
+                bug.status, bug.description, bug.stepsToReproduce, bug.expectedResult, bug.actualResult));
+        if (JsonLines.ENABLED) {
+            LogAppender.shared().append(BUG_JSONL_PATH, out -> {
+                renderJson(out, bug.bugId, bug.date, bug.module, bug.severity, bug.status, bug.description,
+                        bug.stepsToReproduce, bug.expectedResult, bug.actualResult);
+                out.append('\n');
+            });
         }
     }
 
     /*
     --> log the bug in one call with all fields.
-    -->Returns the auto-generated bugId for reference *tracking*.
+    -->Returns the auto-generated bugId for reference *tracking*, or 0 if the module is over its rate limit (see BugRateLimiter).
      */
     public static long reportBug(String module, String description, String stepsToReproduce,
                                   String expectedResult, String actualResult, String severity, String status) {
+        if (!RateLimits.LIMITER.tryAcquire(module, severity)) {
+            return 0;
+        }
         Bug bug = new Bug(module, description, stepsToReproduce, expectedResult, actualResult, severity, status);
         logBug(bug);
+        linkJira(bug.bugId);
+        return bug.bugId;
+    }
 
-        // If Jira integration is enabled, attempt to create an issue *Fake Jira*
+    // If Jira integration is enabled, attempt to create an issue *Fake Jira*
+    private static void linkJira(long bugId) {
         try {
             String enabled = System.getenv("JIRA_ENABLED");
             if (enabled != null && enabled.equalsIgnoreCase("true")) {
-                String issueKey = postBugToJira(bug);
+                String issueKey = postBugToJira(bugId);
                 if (issueKey != null) {
-                    try (FileWriter fw = new FileWriter(BUG_LOG_FILE, true);
-                         PrintWriter pw = new PrintWriter(fw)) {
-                        pw.println("Jira Issue: " + issueKey + " (linked to Bug ID: " + bug.bugId + ")");
-                        pw.println();
-                    } catch (IOException ignored) { }
+                    LogAppender.shared().append(BUG_LOG_PATH, "Jira Issue: " + issueKey + " (linked to Bug ID: " + bugId + ")" + NL + NL);
                 }
             }
         } catch (Exception ignored) {
             // never let Jira failures break app logic; bugs are already written to file
         }
-
-        return bug.bugId;
     }
 
     /*  
     --> Simulated Jira Format: create a Jira-like issue key and write a log entry.
     */
-    private static String postBugToJira(Bug bug) {
+    private static String postBugToJira(long bugId) {
         try {
             String projectKey = System.getenv("JIRA_PROJECT");
             String keyPrefix = (projectKey != null && !projectKey.isBlank()) ? projectKey : "SIM";
-            String issueKey = keyPrefix + "-" + bug.bugId;
+            String issueKey = keyPrefix + "-" + bugId;
 
-            try (FileWriter fw = new FileWriter(BUG_LOG_FILE, true);
-                 PrintWriter pw = new PrintWriter(fw)) {
-                pw.println("[Simulated Jira Issue Created] " + issueKey + " for Bug ID: " + bug.bugId);
-                pw.println();
-            } catch (IOException ignored) { }
+            LogAppender.shared().append(BUG_LOG_PATH, "[Simulated Jira Issue Created] " + issueKey + " for Bug ID: " + bugId + NL + NL);
 
             return issueKey;
         } catch (Exception ex) {
@@ -150,31 +298,13 @@ public class Logger {
     /*
     --> Catch any exception and auto-log it as a bug
     --> Extracts module from exception stack trace, uses exception message as description,
-    --> and captures full stack trace as actual result. Auto-marks as HIGH severity and OPEN status.
+    --> and captures full stack trace as actual result. Severity comes from mapSeverity, status is OPEN.
+    --> The same exception (type + top frames) coming back within FOODDASH_BUG_DEDUP_SECONDS is only counted,
+    --> and returns the Bug ID of the report it repeats, see BugFingerprints.
+    --> New reports are rate limited per module and severity (BugRateLimiter); a held back one returns 0.
      */
     public static long catchAndLogBug(Exception e, String module) {
-        // Extract stack trace as string
-        StringWriter sw = new StringWriter();
-        PrintWriter pw = new PrintWriter(sw);
-        e.printStackTrace(pw);
-        String stackTrace = sw.toString();
-        pw.close();
-
-        // Extract line number and method from top of stack trace if possible *error location*
-        StackTraceElement[] trace = e.getStackTrace();
-        String locationInfo = "";
-        if (trace.length > 0) {
-            StackTraceElement top = trace[0];
-            locationInfo = top.getClassName() + "." + top.getMethodName() + "() at line " + top.getLineNumber();
-        }
-
-        String description = e.getClass().getSimpleName() + ": " + (e.getMessage() != null ? e.getMessage() : "No message");
-        String stepsToReproduce = "See stack trace for conditions. Occurred in: " + locationInfo;
-        String expectedResult = "No exception thrown";
-        String actualResult = stackTrace;
-
-        String severity = mapSeverity(e, module);
-        return reportBug(module, description, stepsToReproduce, expectedResult, actualResult, severity, "OPEN");
+        return Fingerprints.TABLE.record(e, () -> reportIfAllowed(e, module, mapSeverity(e, module)));
     }
 
     /*
@@ -192,25 +322,70 @@ public class Logger {
 
     // Explicit severity overload for callers needing manual control
     public static long catchAndLogBug(Exception e, String module, String severity) {
-        StringWriter sw = new StringWriter();
-        PrintWriter pw = new PrintWriter(sw);
-        e.printStackTrace(pw);
-        String stackTrace = sw.toString();
-        pw.close();
+        return Fingerprints.TABLE.record(e, () -> reportIfAllowed(e, module, severity));
+    }
 
-        StackTraceElement[] trace = e.getStackTrace();
-        String locationInfo = "";
-        if (trace.length > 0) {
-            StackTraceElement top = trace[0];
-            locationInfo = top.getClassName() + "." + top.getMethodName() + "() at line " + top.getLineNumber();
+    private static long reportIfAllowed(Exception e, String module, String severity) {
+        return RateLimits.LIMITER.tryAcquire(module, severity) ? reportException(e, module, severity) : 0;
+    }
+
+    /*
+     --> Writes the full report for an exception. Only the exception is captured here, the text is built
+     --> on the appender thread (see CapturedBug), so a catch block pays for a couple of small objects.
+     */
+    static long reportException(Exception e, String module, String severity) {
+        CapturedBug bug = new CapturedBug(bugIdCounter.incrementAndGet(), System.currentTimeMillis(), e, module, severity);
+        LogAppender.shared().append(BUG_LOG_PATH, bug);
+        if (JsonLines.ENABLED) {
+            LogAppender.shared().append(BUG_JSONL_PATH, bug::renderJson);
         }
+        linkJira(bug.bugId);
+        return bug.bugId;
+    }
+
+    /*
+     --> Logs how many times a bug repeated after its report, one line in bugs.log (and bugs.jsonl if on)
+     */
+    static void logRepeats(BugFingerprints.Summary summary) {
+        String first = formatMillis(summary.getFirstSeen());
+        String last = formatMillis(summary.getLastSeen());
+        LogAppender.shared().append(BUG_LOG_PATH, "[Repeated] Bug ID: " + summary.getBugId() + " (" + summary.getLocation()
+                + ") happened " + summary.getRepeats() + " more times, last at " + last + "; " + summary.getTotal()
+                + " times since " + first + " [fingerprint " + summary.getFingerprint() + "]" + NL + NL);
+        if (JsonLines.ENABLED) {
+            StringBuilder sb = new StringBuilder(256);
+            sb.append("{\"repeatOf\":").append(summary.getBugId());
+            appendJsonField(sb, "fingerprint", summary.getFingerprint());
+            appendJsonField(sb, "location", summary.getLocation());
+            sb.append(",\"repeats\":").append(summary.getRepeats());
+            sb.append(",\"total\":").append(summary.getTotal());
+            appendJsonField(sb, "firstSeen", first);
+            appendJsonField(sb, "lastSeen", last);
+            LogAppender.shared().append(BUG_JSONL_PATH, sb.append("}\n").toString());
+        }
+    }
 
-        String description = e.getClass().getSimpleName() + ": " + (e.getMessage() != null ? e.getMessage() : "No message");
-        String stepsToReproduce = "See stack trace for conditions. Occurred in: " + locationInfo;
-        String expectedResult = "No exception thrown";
-        String actualResult = stackTrace;
+    /*
+     --> Logs how many reports a module had held back during a storm, one line in bugs.log (and bugs.jsonl if on)
+     */
+    static void logSuppressed(BugRateLimiter.Summary summary) {
+        long seconds = summary.getIntervalMs() / 1000;
+        LogAppender.shared().append(BUG_LOG_PATH, "[Suppressed] " + summary.getSuppressed() + " bug reports from "
+                + summary.getModule() + " (" + summary.getSeverity() + ") in the last " + seconds + "s, "
+                + summary.getSampled() + " sampled through" + NL + NL);
+        if (JsonLines.ENABLED) {
+            StringBuilder sb = new StringBuilder(160);
+            sb.append("{\"suppressed\":").append(summary.getSuppressed());
+            appendJsonField(sb, "module", summary.getModule());
+            appendJsonField(sb, "severity", summary.getSeverity());
+            sb.append(",\"sampled\":").append(summary.getSampled());
+            sb.append(",\"intervalSeconds\":").append(seconds);
+            LogAppender.shared().append(BUG_JSONL_PATH, sb.append("}\n").toString());
+        }
+    }
 
-        return reportBug(module, description, stepsToReproduce, expectedResult, actualResult, severity, "OPEN");
+    private static String formatMillis(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault()).format(DATE_FORMAT);
     }
 
     // Severity mapping by exception type and module hints
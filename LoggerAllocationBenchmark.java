@@ -0,0 +1,123 @@
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * LoggerAllocationBenchmark measures what logging a caught exception costs the thread that caught it: bytes allocated
+ * (from the JVM's per-thread allocation counter) and time per call.
+ * "eager render" is what catchAndLogBug used to do before handing the text off: print the stack trace into a
+ * StringWriter, format the date through a new DateTimeFormatter and build the bugs.log block with "=".repeat(80).
+ * "lazy capture" is Logger.reportException, which only queues the exception for the appender thread, and "repeat" is
+ * catchAndLogBug on an exception the fingerprint table has already reported this window.
+ * Every call gets a fresh exception, created before the timer starts. Writes bugs.log into the working directory,
+ * so run it from a scratch directory: java LoggerAllocationBenchmark [calls]
+ */
+public class LoggerAllocationBenchmark {
+
+    private static final int WARMUP = 3;
+    private static final int RUNS = 5;
+
+    private interface Phase {
+        void log(Exception e);
+    }
+
+    public static void main(String[] args) {
+        int calls = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        System.out.println("Logger allocation benchmark: " + calls + " exceptions per run, best of " + RUNS + " runs");
+        System.out.println("=".repeat(80));
+        System.out.printf("%-20s %18s %14s%n", "Path", "bytes/call", "ns/call");
+        System.out.println("-".repeat(80));
+        run(threads, "eager render", calls, LoggerAllocationBenchmark::eagerRender);
+        run(threads, "lazy capture", calls, e -> Logger.reportException(e, "LoggerAllocationBenchmark.run", "HIGH"));
+        run(threads, "repeat", calls, e -> Logger.catchAndLogBug(e, "LoggerAllocationBenchmark.run"));
+        System.out.println("-".repeat(80));
+        Logger.flush();
+        System.out.println(LogAppender.shared());
+    }
+
+    private static void run(com.sun.management.ThreadMXBean threads, String name, int calls, Phase phase) {
+        long thread = Thread.currentThread().getId();
+        long bestBytes = Long.MAX_VALUE;
+        long bestNanos = Long.MAX_VALUE;
+        for (int run = 0; run < WARMUP + RUNS; run++) {
+            Exception[] errors = new Exception[calls];
+            for (int i = 0; i < calls; i++) {
+                errors[i] = fail(i);
+            }
+            long bytes = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            for (Exception e : errors) {
+                phase.log(e);
+            }
+            long nanos = System.nanoTime() - start;
+            bytes = threads.getThreadAllocatedBytes(thread) - bytes;
+            // let the appender catch up so the next run doesn't wait on a full buffer
+            Logger.flush();
+            if (run >= WARMUP) {
+                bestBytes = Math.min(bestBytes, bytes);
+                bestNanos = Math.min(bestNanos, nanos);
+            }
+        }
+        System.out.printf("%-20s %18d %14d%n", name, bestBytes / calls, bestNanos / calls);
+    }
+
+    // one throw site, so every exception has the same fingerprint and a realistic stack depth
+    private static Exception fail(int n) {
+        try {
+            throw new java.sql.SQLException("database is locked (attempt " + n + ")");
+        } catch (Exception e) {
+            return e;
+        }
+    }
+
+    // catchAndLogBug + logBug as they were, up to the text that went to bugs.log
+    private static void eagerRender(Exception e) {
+        StringWriter sw = new StringWriter();
+        PrintWriter pw = new PrintWriter(sw);
+        e.printStackTrace(pw);
+        String stackTrace = sw.toString();
+        pw.close();
+
+        StackTraceElement[] trace = e.getStackTrace();
+        String locationInfo = "";
+        if (trace.length > 0) {
+            StackTraceElement top = trace[0];
+            locationInfo = top.getClassName() + "." + top.getMethodName() + "() at line " + top.getLineNumber();
+        }
+        String description = e.getClass().getSimpleName() + ": " + (e.getMessage() != null ? e.getMessage() : "No message");
+        String stepsToReproduce = "See stack trace for conditions. Occurred in: " + locationInfo;
+        String date = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+
+        StringWriter out = new StringWriter();
+        PrintWriter bug = new PrintWriter(out);
+        bug.println("=".repeat(80));
+        bug.println("BUG ID: " + 0);
+        bug.println("Date: " + date);
+        bug.println("Module: " + "LoggerAllocationBenchmark.run");
+        bug.println("Severity: " + "HIGH");
+        bug.println("Status: " + "OPEN");
+        bug.println("-".repeat(80));
+        bug.println("Description:");
+        bug.println("  " + description);
+        bug.println();
+        bug.println("Steps to Reproduce:");
+        bug.println("  " + stepsToReproduce);
+        bug.println();
+        bug.println("Expected Result:");
+        bug.println("  " + "No exception thrown");
+        bug.println();
+        bug.println("Actual Result:");
+        bug.println("  " + stackTrace);
+        bug.println();
+        bug.println("=".repeat(80));
+        bug.println();
+        bug.flush();
+        if (out.getBuffer().length() == 0) {
+            System.out.println("empty");  // keeps the JIT from dropping the rendering
+        }
+    }
+}
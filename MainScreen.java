@@ -7,11 +7,13 @@ import javax.swing.*;
  * Provides navigation to profile, order history, and restaurant selection.
  */
 public class MainScreen extends JPanel {
+    // the event bus does the quick notifications, this only has to catch what it can't see
+    private static final int DEFAULT_POLL_SECONDS = 30;
+
     private String username;
     private String zipCode = "";
     private String email = "you@example.com";
     private FoodDeliveryLoginUI parent;
-    private javax.swing.Timer deliveredCheckTimer;
 
     /**
      * Constructs a MainScreen with the given parent and username.
@@ -118,37 +120,81 @@ public class MainScreen extends JPanel {
             JOptionPane.showMessageDialog(this, "Error checking for delivered orders: " + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
         }
 
-        // Periodic check while this screen is shown
-        deliveredCheckTimer = new javax.swing.Timer(5000, e -> {
-            try {
-                if (parent.orderDb != null && parent.orderDb.hasUnnotifiedDelivered(username)) {
-                    parent.showNotification("Your food has been delivered!", new Color(46, 125, 50), Color.WHITE, 5000);
-                    parent.orderDb.markDeliveredNotified(username);
+        // pushed by OrderDatabase as soon as one of this customer's orders changes, no polling
+        OrderEventBus.Subscription orderEvents = null;
+        if (parent.orderDb != null) {
+            orderEvents = parent.orderDb.getEvents().subscribeCustomer(username, this::onOrderEvent);
+        }
+
+        // fallback polling, catches orders delivered by another process (a second app instance) that the bus never sees
+        // every 30 seconds, FOODDASH_DELIVERY_POLL_SECONDS changes that and 0 turns it off
+        javax.swing.Timer deliveredCheckTimer = null;
+        int pollSeconds = fallbackPollSeconds();
+        if (pollSeconds > 0) {
+            deliveredCheckTimer = new javax.swing.Timer(pollSeconds * 1000, e -> {
+                try {
+                    if (parent.orderDb != null && parent.orderDb.hasUnnotifiedDelivered(username)) {
+                        parent.showNotification("Your food has been delivered!", new Color(46, 125, 50), Color.WHITE, 5000);
+                        parent.orderDb.markDeliveredNotified(username);
+                    }
+                } catch (SQLException ex) {
+                    Logger.catchAndLogBug(ex, "MainScreen");
+                    // Stop the timer if a database error occurs to prevent repeated errors
+                    ((javax.swing.Timer) e.getSource()).stop();
+                    JOptionPane.showMessageDialog(this, "Error checking for delivered orders: " + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
                 }
+            });
+            deliveredCheckTimer.start();
+        }
+        // the session keeps them, so the MainScreen built by every "Back" replaces this one's instead of adding to it
+        parent.watchOrders(orderEvents, deliveredCheckTimer);
+    }
+
+    // runs on the event bus thread, the notification itself goes back onto the EDT
+    private void onOrderEvent(OrderEventBus.Event event) {
+        String message;
+        Color color = new Color(46, 125, 50);
+        if (event.getStatus() == OrderStatus.DELIVERED) {
+            message = "Your food has been delivered!";
+            try {
+                parent.orderDb.markDeliveredNotified(username);
             } catch (SQLException ex) {
-                Logger.catchAndLogBug(ex, "MainScreen");
-                // Stop the timer if a database error occurs to prevent repeated errors
-                if (deliveredCheckTimer != null) {
-                    deliveredCheckTimer.stop();
-                }
-                JOptionPane.showMessageDialog(this, "Error checking for delivered orders: " + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
+                Logger.catchAndLogBug(ex, "MainScreen.onOrderEvent");
             }
-        });
-        deliveredCheckTimer.start();
+        } else if (event.getStatus() == OrderStatus.ASSIGNED) {
+            message = "A driver has picked up order #" + event.getOrderId() + "!";
+        } else if (event.getStatus() == OrderStatus.CANCELLED) {
+            message = "Order #" + event.getOrderId() + " was cancelled.";
+            color = new Color(198, 40, 40);
+        } else {
+            return;
+        }
+        Color bg = color;
+        SwingUtilities.invokeLater(() -> parent.showNotification(message, bg, Color.WHITE, 5000));
+    }
+
+    private static int fallbackPollSeconds() {
+        String value = System.getenv("FOODDASH_DELIVERY_POLL_SECONDS");
+        if (value == null || value.isBlank()) {
+            return DEFAULT_POLL_SECONDS;
+        }
+        try {
+            return Math.max(0, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            Logger.catchAndLogBug(e, "MainScreen.fallbackPollSeconds");
+            return DEFAULT_POLL_SECONDS;
+        }
     }
 
     // logout and go back to login
     private void logout() {
-        if (deliveredCheckTimer != null) {
-            deliveredCheckTimer.stop();
-            deliveredCheckTimer = null;
-        }
         int confirm = JOptionPane.showConfirmDialog(this,
             "Are you sure you want to logout?",
             "Logout",
             JOptionPane.YES_NO_OPTION);
 
         if (confirm == JOptionPane.YES_OPTION) {
+            parent.stopWatchingOrders();
             parent.getSceneSorter().switchPage("Login");
         }
     }
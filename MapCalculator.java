@@ -1,9 +1,19 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 /**
  * MapCalculator provides utility methods for calculating distances and travel times
  * between geographic coordinates using the Haversine formula.
+ * The matrix methods do many-to-many at once (every driver to every order, every restaurant to an address list)
+ * and split big matrices across the common ForkJoinPool.
  */
 public class MapCalculator {
     private static final double EARTH_RADIUS_KM = 6371; // Earth's radius in kilometers
+    private static final double AVERAGE_SPEED_KMH = 30; // used by calculateETA and the ETA matrices alike
+    // below this many cells the matrix is filled on the calling thread, splitting costs more than it saves
+    static final int PARALLEL_THRESHOLD = 64 * 1024;
+    // rows per fork-join task are picked so each task fills about this many cells
+    private static final int CELLS_PER_TASK = 16 * 1024;
 
     /**
      * Calculates the estimated travel time in minutes between two coordinate pairs.
@@ -15,19 +25,10 @@ public class MapCalculator {
      * @return Estimated travel time in minutes, rounded to one decimal place.
      */
     public static double calculateETA (double lat1, double lon1, double lat2, double lon2){
-        // The Haversine equation is used to deterime the distance in kilometers between two sets of coordinates.
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLon = Math.toRadians(lon2 - lon1);
-
-        lat1 = Math.toRadians(lat1);
-        lat2 = Math.toRadians(lat2);
-
-        double a = Math.pow(Math.sin(dLat / 2), 2) + Math.pow(Math.sin(dLon / 2), 2) * Math.cos(lat1) * Math.cos(lat2);
-        double c = 2 * Math.asin(Math.sqrt(a));
-        double distanceKm = EARTH_RADIUS_KM * c; // Distance in kilometers
+        double distanceKm = distanceKm(lat1, lon1, lat2, lon2);
         // Now we need to find the speed. This can be done by dividing distance by how fast a car is going.
         // The average global speed for a car is 30 km.
-        double temp = distanceKm/30;
+        double temp = distanceKm/AVERAGE_SPEED_KMH;
         temp=temp * 60; // Converting hours to minutes.
         return (double) Math.round(temp * 10) /10; // Rounding makes it more readable
     }
@@ -42,18 +43,201 @@ public class MapCalculator {
      * @return Distance in miles, rounded to one decimal place.
      */
     public static double calculateMiles (double lat1, double lon1, double lat2, double lon2){
-            // Redoing the first calculation prevents headaches.
+        double distanceKm = distanceKm(lat1, lon1, lat2, lon2);
+        // We can now convert the kilometers to miles, since this app is based within Massachusetts.
+        double miles = distanceKm/1.609;
+        return (double) Math.round(miles * 10) /10; // Used to ensure miles only have a singular decimal point.
+    }
+
+    /**
+     * Calculates the distance in kilometers between two coordinate pairs, not rounded.
+     * The rounded methods above are for showing to people; this one is for comparing distances (DispatchEngine).
+     * @param lat1 Latitude of the first location.
+     * @param lon1 Longitude of the first location.
+     * @param lat2 Latitude of the second location.
+     * @param lon2 Longitude of the second location.
+     * @return Distance in kilometers.
+     */
+    public static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        // The Haversine equation is used to deterime the distance in kilometers between two sets of coordinates.
         double dLat = Math.toRadians(lat2 - lat1);
         double dLon = Math.toRadians(lon2 - lon1);
 
         lat1 = Math.toRadians(lat1);
         lat2 = Math.toRadians(lat2);
 
-        double a = Math.pow(Math.sin(dLat / 2), 2) + Math.pow(Math.sin(dLon / 2), 2) * Math.cos(lat1) * Math.cos(lat2);
+        double sinLat = Math.sin(dLat / 2);
+        double sinLon = Math.sin(dLon / 2);
+        double a = sinLat * sinLat + sinLon * sinLon * Math.cos(lat1) * Math.cos(lat2);
         double c = 2 * Math.asin(Math.sqrt(a));
-        double distanceKm = EARTH_RADIUS_KM * c; // Distance in kilometers
-        // We can now convert the kilometers to miles, since this app is based within Massachusetts.
-        double miles = distanceKm/1.609;
-        return (double) Math.round(miles * 10) /10; // Used to ensure miles only have a singular decimal point.
+        return EARTH_RADIUS_KM * c;
+    }
+
+    /**
+     * Fills a distance matrix between two lists of points, not rounded.
+     * @param fromLat Latitudes of the row points.
+     * @param fromLon Longitudes of the row points.
+     * @param toLat Latitudes of the column points.
+     * @param toLon Longitudes of the column points.
+     * @param out Row-major result, out[i * toLat.length + j] is the distance in km from point i to point j.
+     *            Has to hold at least fromLat.length * toLat.length values.
+     */
+    public static void distanceMatrixKm(double[] fromLat, double[] fromLon, double[] toLat, double[] toLon, double[] out) {
+        fillMatrix(fromLat, fromLon, toLat, toLon, out, 1, true);
+    }
+
+    // the benchmark and test use this to compare the calling-thread path with the fork-join one on the same matrix
+    static void distanceMatrixKm(double[] fromLat, double[] fromLon, double[] toLat, double[] toLon, double[] out,
+                                 boolean allowParallel) {
+        fillMatrix(fromLat, fromLon, toLat, toLon, out, 1, allowParallel);
+    }
+
+    /**
+     * Same as distanceMatrixKm but allocates the result.
+     * @return Row-major matrix of fromLat.length * toLat.length distances in km.
+     */
+    public static double[] distanceMatrixKm(double[] fromLat, double[] fromLon, double[] toLat, double[] toLon) {
+        double[] out = new double[checkLengths(fromLat, fromLon, toLat, toLon)];
+        fillMatrix(fromLat, fromLon, toLat, toLon, out, 1, true);
+        return out;
+    }
+
+    /**
+     * Fills a travel time matrix between two lists of points, at the same average speed as calculateETA but not rounded.
+     * @param out Row-major result, out[i * toLat.length + j] is the minutes from point i to point j.
+     * @see #distanceMatrixKm(double[], double[], double[], double[], double[])
+     */
+    public static void etaMatrixMinutes(double[] fromLat, double[] fromLon, double[] toLat, double[] toLon, double[] out) {
+        fillMatrix(fromLat, fromLon, toLat, toLon, out, 60 / AVERAGE_SPEED_KMH, true);
+    }
+
+    /**
+     * Same as etaMatrixMinutes but allocates the result.
+     * @return Row-major matrix of fromLat.length * toLat.length travel times in minutes.
+     */
+    public static double[] etaMatrixMinutes(double[] fromLat, double[] fromLon, double[] toLat, double[] toLon) {
+        double[] out = new double[checkLengths(fromLat, fromLon, toLat, toLon)];
+        fillMatrix(fromLat, fromLon, toLat, toLon, out, 60 / AVERAGE_SPEED_KMH, true);
+        return out;
+    }
+
+    private static int checkLengths(double[] fromLat, double[] fromLon, double[] toLat, double[] toLon) {
+        if (fromLat.length != fromLon.length || toLat.length != toLon.length) {
+            throw new IllegalArgumentException("Latitude and longitude arrays have different lengths");
+        }
+        long cells = (long) fromLat.length * toLat.length;
+        if (cells > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Matrix of " + cells + " cells is too big for one array");
+        }
+        return (int) cells;
+    }
+
+    /*
+    --> haversine needs sin(dLat/2) and sin(dLon/2) for every pair; with the half angles' sin and cos worked out once
+        per point, sin(a/2 - b/2) = sin(a/2)cos(b/2) - cos(a/2)sin(b/2) is just multiplies, so the only
+        call left per cell is asin(sqrt(...))
+    --> the column side is precomputed into arrays once, each row does its own four values when it starts
+    --> scale turns km into whatever the caller wants (1 for km, minutes per km for ETA)
+    */
+    private static void fillMatrix(double[] fromLat, double[] fromLon, double[] toLat, double[] toLon, double[] out, double scale,
+                                   boolean allowParallel) {
+        int cells = checkLengths(fromLat, fromLon, toLat, toLon);
+        if (out.length < cells) {
+            throw new IllegalArgumentException("Result array holds " + out.length + " values, needs " + cells);
+        }
+        Columns columns = new Columns(toLat, toLon);
+        if (!allowParallel || cells < PARALLEL_THRESHOLD) {
+            fillRows(fromLat, fromLon, columns, out, scale * 2 * EARTH_RADIUS_KM, 0, fromLat.length);
+        } else {
+            int rowsPerTask = Math.max(1, CELLS_PER_TASK / Math.max(1, toLat.length));
+            ForkJoinPool.commonPool().invoke(new RowsTask(fromLat, fromLon, columns, out, scale * 2 * EARTH_RADIUS_KM,
+                    0, fromLat.length, rowsPerTask));
+        }
+    }
+
+    private static void fillRows(double[] fromLat, double[] fromLon, Columns columns, double[] out, double factor,
+                                 int startRow, int endRow) {
+        int width = columns.sinLat.length;
+        for (int i = startRow; i < endRow; i++) {
+            double halfLat = Math.toRadians(fromLat[i]) / 2;
+            double halfLon = Math.toRadians(fromLon[i]) / 2;
+            double sinLat = Math.sin(halfLat);
+            double cosLat = Math.cos(halfLat);
+            double sinLon = Math.sin(halfLon);
+            double cosLon = Math.cos(halfLon);
+            double cosFullLat = Math.cos(2 * halfLat);
+            int offset = i * width;
+            for (int j = 0; j < width; j++) {
+                double dLat = columns.sinLat[j] * cosLat - columns.cosLat[j] * sinLat;
+                double dLon = columns.sinLon[j] * cosLon - columns.cosLon[j] * sinLon;
+                double a = dLat * dLat + dLon * dLon * cosFullLat * columns.cosFullLat[j];
+                // rounding can push a a hair past 1 for antipodal points
+                out[offset + j] = factor * Math.asin(Math.sqrt(Math.min(1, a)));
+            }
+        }
+    }
+
+    // per-point values for the column side of a matrix, computed once
+    private static final class Columns {
+        final double[] sinLat;
+        final double[] cosLat;
+        final double[] sinLon;
+        final double[] cosLon;
+        final double[] cosFullLat;
+
+        Columns(double[] lat, double[] lon) {
+            int n = lat.length;
+            sinLat = new double[n];
+            cosLat = new double[n];
+            sinLon = new double[n];
+            cosLon = new double[n];
+            cosFullLat = new double[n];
+            for (int j = 0; j < n; j++) {
+                double halfLat = Math.toRadians(lat[j]) / 2;
+                double halfLon = Math.toRadians(lon[j]) / 2;
+                sinLat[j] = Math.sin(halfLat);
+                cosLat[j] = Math.cos(halfLat);
+                sinLon[j] = Math.sin(halfLon);
+                cosLon[j] = Math.cos(halfLon);
+                cosFullLat[j] = Math.cos(2 * halfLat);
+            }
+        }
+    }
+
+    // splits the rows in half until a piece is small enough to fill directly
+    private static final class RowsTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] fromLat;
+        private final double[] fromLon;
+        private final Columns columns;
+        private final double[] out;
+        private final double factor;
+        private final int startRow;
+        private final int endRow;
+        private final int rowsPerTask;
+
+        RowsTask(double[] fromLat, double[] fromLon, Columns columns, double[] out, double factor,
+                 int startRow, int endRow, int rowsPerTask) {
+            this.fromLat = fromLat;
+            this.fromLon = fromLon;
+            this.columns = columns;
+            this.out = out;
+            this.factor = factor;
+            this.startRow = startRow;
+            this.endRow = endRow;
+            this.rowsPerTask = rowsPerTask;
+        }
+
+        @Override
+        protected void compute() {
+            if (endRow - startRow <= rowsPerTask) {
+                fillRows(fromLat, fromLon, columns, out, factor, startRow, endRow);
+                return;
+            }
+            int mid = (startRow + endRow) >>> 1;
+            invokeAll(new RowsTask(fromLat, fromLon, columns, out, factor, startRow, mid, rowsPerTask),
+                      new RowsTask(fromLat, fromLon, columns, out, factor, mid, endRow, rowsPerTask));
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,94 @@
+import java.util.Random;
+
+/**
+ * MapCalculatorBenchmark compares filling a many-to-many distance matrix with the per-pair methods
+ * (calculateMiles, distanceKm) against distanceMatrixKm on the calling thread and on the fork-join pool.
+ * Sizes are drivers x orders style matrices around Bridgewater; every phase is run a few times first so the JIT is warm.
+ * Run with: java MapCalculatorBenchmark [rows] [cols] e.g. java MapCalculatorBenchmark 2000 5000
+ */
+public class MapCalculatorBenchmark {
+
+    private static final int WARMUP = 3;
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) {
+        int[][] sizes = args.length >= 2
+                ? new int[][] { { Integer.parseInt(args[0]), Integer.parseInt(args[1]) } }
+                : new int[][] { { 100, 100 }, { 1000, 1000 }, { 2000, 5000 } };
+
+        System.out.println("Distance matrix benchmark: best of " + RUNS + " runs, "
+                + Runtime.getRuntime().availableProcessors() + " cores");
+        System.out.println("=".repeat(80));
+        System.out.printf("%-12s %-22s %14s %14s %12s%n", "Matrix", "Impl", "cells/sec", "ns/cell", "ms");
+        System.out.println("-".repeat(80));
+        for (int[] size : sizes) {
+            run(size[0], size[1]);
+            System.out.println("-".repeat(80));
+        }
+    }
+
+    private static void run(int rows, int cols) {
+        Random random = new Random(rows * 31L + cols);
+        double[] fromLat = new double[rows];
+        double[] fromLon = new double[rows];
+        double[] toLat = new double[cols];
+        double[] toLon = new double[cols];
+        fill(random, fromLat, fromLon);
+        fill(random, toLat, toLon);
+        double[] out = new double[rows * cols];
+        String name = rows + "x" + cols;
+
+        print(name, "calculateMiles", time(() -> {
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < cols; j++) {
+                    out[i * cols + j] = MapCalculator.calculateMiles(fromLat[i], fromLon[i], toLat[j], toLon[j]);
+                }
+            }
+        }), out.length);
+        print(name, "distanceKm per pair", time(() -> {
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < cols; j++) {
+                    out[i * cols + j] = MapCalculator.distanceKm(fromLat[i], fromLon[i], toLat[j], toLon[j]);
+                }
+            }
+        }), out.length);
+        print(name, "matrix, one thread", time(() ->
+                MapCalculator.distanceMatrixKm(fromLat, fromLon, toLat, toLon, out, false)), out.length);
+        print(name, "matrix, fork-join", time(() ->
+                MapCalculator.distanceMatrixKm(fromLat, fromLon, toLat, toLon, out, true)), out.length);
+
+        double sink = 0;
+        for (int i = 0; i < out.length; i += 97) {
+            sink += out[i];
+        }
+        if (sink == Double.MIN_VALUE) {
+            System.out.println(sink);  // keeps the JIT from dropping the loops
+        }
+    }
+
+    // best of RUNS after WARMUP untimed runs
+    private static long time(Runnable phase) {
+        for (int i = 0; i < WARMUP; i++) {
+            phase.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            phase.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static void fill(Random random, double[] lat, double[] lon) {
+        for (int i = 0; i < lat.length; i++) {
+            lat[i] = 41.98 + (random.nextDouble() - 0.5) * 0.5;
+            lon[i] = 70.96 + (random.nextDouble() - 0.5) * 0.5;
+        }
+    }
+
+    private static void print(String matrix, String impl, long nanos, int cells) {
+        System.out.printf("%-12s %-22s %14.0f %14.2f %12.2f%n", matrix, impl, cells / (nanos / 1e9),
+                (double) nanos / cells, nanos / 1e6);
+    }
+}
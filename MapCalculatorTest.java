@@ -0,0 +1,82 @@
+import org.junit.jupiter.api.*;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+/*
+--> Tests the many-to-many distance and ETA matrices:
+    - every cell matches the per-pair distanceKm, for a small matrix and for one big enough to run on the fork-join pool
+    - the ETA matrix is the distance at calculateETA's speed
+    - mismatched or too short arrays are rejected
+--> Will return "Map calculator test passed" with the matrix sizes if succeeded.
+ */
+public class MapCalculatorTest {
+
+    @Test
+    void testMatrixMatchesPerPair() {
+        Random random = new Random(3);
+        double[][] small = points(random, 40);
+        double[][] cols = points(random, 25);
+        double[] km = MapCalculator.distanceMatrixKm(small[0], small[1], cols[0], cols[1]);
+        assertEquals(40 * 25, km.length);
+        assertMatches(small, cols, km);
+
+        // well over PARALLEL_THRESHOLD cells
+        double[][] rows = points(random, 600);
+        double[][] wide = points(random, 300);
+        assertTrue(600 * 300 > MapCalculator.PARALLEL_THRESHOLD);
+        double[] big = MapCalculator.distanceMatrixKm(rows[0], rows[1], wide[0], wide[1]);
+        assertMatches(rows, wide, big);
+        double[] sequential = new double[big.length];
+        MapCalculator.distanceMatrixKm(rows[0], rows[1], wide[0], wide[1], sequential, false);
+        assertArrayEquals(sequential, big);
+
+        // same point, and the other side of the world
+        double[] edge = MapCalculator.distanceMatrixKm(new double[] { 41.98656, 10 }, new double[] { 70.96437, 20 },
+                new double[] { 41.98656, -10 }, new double[] { 70.96437, -160 });
+        assertEquals(0, edge[0], 1e-9);
+        // asin is touchy right at 1, so antipodal points only agree to the meter
+        assertEquals(Math.PI * 6371, edge[3], 0.001);
+        System.out.println("Map calculator test passed - " + km.length + " and " + big.length + " cell matrices");
+    }
+
+    @Test
+    void testEtaMatrix() {
+        Random random = new Random(5);
+        double[][] from = points(random, 10);
+        double[][] to = points(random, 10);
+        double[] km = MapCalculator.distanceMatrixKm(from[0], from[1], to[0], to[1]);
+        double[] minutes = new double[km.length];
+        MapCalculator.etaMatrixMinutes(from[0], from[1], to[0], to[1], minutes);
+        for (int i = 0; i < km.length; i++) {
+            assertEquals(km[i] / 30 * 60, minutes[i], 1e-9);
+        }
+        assertEquals(MapCalculator.calculateETA(from[0][0], from[1][0], to[0][1], to[1][1]), minutes[1], 0.05);
+    }
+
+    @Test
+    void testBadArrays() {
+        double[] two = { 1, 2 };
+        double[] three = { 1, 2, 3 };
+        assertThrows(IllegalArgumentException.class, () -> MapCalculator.distanceMatrixKm(two, three, two, two));
+        assertThrows(IllegalArgumentException.class, () -> MapCalculator.distanceMatrixKm(two, two, two, three));
+        assertThrows(IllegalArgumentException.class, () -> MapCalculator.etaMatrixMinutes(two, two, three, three, new double[5]));
+    }
+
+    private static void assertMatches(double[][] rows, double[][] cols, double[] matrix) {
+        for (int i = 0; i < rows[0].length; i++) {
+            for (int j = 0; j < cols[0].length; j++) {
+                double expected = MapCalculator.distanceKm(rows[0][i], rows[1][i], cols[0][j], cols[1][j]);
+                assertEquals(expected, matrix[i * cols[0].length + j], 1e-9, "cell " + i + "," + j);
+            }
+        }
+    }
+
+    // lat/lon arrays around Bridgewater, a few degrees across
+    private static double[][] points(Random random, int n) {
+        double[][] p = new double[2][n];
+        for (int i = 0; i < n; i++) {
+            p[0][i] = 41.98 + (random.nextDouble() - 0.5) * 4;
+            p[1][i] = 70.96 + (random.nextDouble() - 0.5) * 4;
+        }
+        return p;
+    }
+}
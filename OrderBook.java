@@ -0,0 +1,240 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * OrderBook holds the open orders in memory, indexed by order id, store id, customer id and status.
+ * Adding, looking up and moving an order between statuses are all O(1) no matter how many orders are open,
+ * and reads (the driver "available orders" view, a store's or customer's orders) never take a lock.
+ * State changes for one order are serialized on that order, so two drivers accepting the same order can't both win,
+ * and only follow the OrderStatus transition table.
+ * Completed (4) and cancelled (5) orders leave the book.
+ */
+public class OrderBook {
+
+    // status codes from Orders
+    public static final int UNACCEPTED = OrderStatus.PENDING.code();
+    public static final int ACCEPTED = OrderStatus.ASSIGNED.code();
+    public static final int READY = OrderStatus.READY.code();
+    public static final int EN_ROUTE = OrderStatus.IN_PROGRESS.code();
+    public static final int COMPLETED = OrderStatus.DELIVERED.code();
+    public static final int CANCELLED = OrderStatus.CANCELLED.code();
+
+    private final Map<Integer, Orders> byId = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<Orders>> byStore = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<Orders>> byCustomer = new ConcurrentHashMap<>();
+    // one set per open status, index = status code
+    private final List<Set<Orders>> byStatus = new ArrayList<>();
+
+    public OrderBook() {
+        for (int status = UNACCEPTED; status <= EN_ROUTE; status++) {
+            byStatus.add(ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    /**
+     * Adds a new order to the book under its current status.
+     * @param order The order (status has to be an open one, 0-3).
+     * @return false if an order with that id is already in the book.
+     */
+    public boolean add(Orders order) {
+        if (!isOpen(order.status)) {
+            throw new IllegalArgumentException("Order " + order.orderID + " has closed status " + order.status);
+        }
+        synchronized (order) {
+            if (byId.putIfAbsent(order.orderID, order) != null) {
+                return false;
+            }
+            addIndex(byStore, order.StoreID, order);
+            addIndex(byCustomer, order.customerID, order);
+            byStatus.get(order.status).add(order);
+        }
+        return true;
+    }
+
+    public Orders get(int orderId) {
+        return byId.get(orderId);
+    }
+
+    /**
+     * Moves an order to a new status, but only if it's still in the expected one and the move is in the
+     * OrderStatus table. This is what stops two drivers from accepting the same order: the second one sees
+     * ACCEPTED, not UNACCEPTED.
+     * Moving to COMPLETED or CANCELLED takes the order out of the book.
+     * @param orderId The order to change.
+     * @param expectedStatus Status the order has to be in right now.
+     * @param newStatus Status to move it to.
+     * @return true if the order was moved, false if it's gone, was in another status or can't move there.
+     */
+    public boolean transition(int orderId, int expectedStatus, int newStatus) {
+        return transition(orderId, expectedStatus, newStatus, null);
+    }
+
+    /*
+    --> same as above but runs the given change on the order (e.g. setting the driver) while holding its lock,
+        only when the transition goes through
+    */
+    public boolean transition(int orderId, int expectedStatus, int newStatus, Consumer<Orders> change) {
+        if (!isLegal(expectedStatus, newStatus)) {
+            return false;
+        }
+        Orders order = byId.get(orderId);
+        if (order == null) {
+            return false;
+        }
+        synchronized (order) {
+            if (order.status != expectedStatus || byId.get(orderId) != order) {
+                return false;
+            }
+            if (change != null) {
+                change.accept(order);
+            }
+            byStatus.get(order.status).remove(order);
+            order.status = newStatus;
+            if (isOpen(newStatus)) {
+                byStatus.get(newStatus).add(order);
+            } else {
+                removeIndexes(order);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Moves an order to a status from whatever it's in now (admin cancels, status updates from the store).
+     * @param orderId The order to change.
+     * @param newStatus Status to move it to.
+     * @return false if the order isn't in the book or its current status can't move to newStatus.
+     */
+    public boolean setStatus(int orderId, int newStatus) {
+        while (true) {
+            Orders order = byId.get(orderId);
+            if (order == null) {
+                return false;
+            }
+            int current = order.status;
+            if (!isLegal(current, newStatus)) {
+                return false;
+            }
+            if (transition(orderId, current, newStatus)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gives the driver the order if nobody has accepted it yet.
+     * @return true if this driver got the order.
+     */
+    public boolean accept(int orderId, Driver driver) {
+        return transition(orderId, UNACCEPTED, ACCEPTED, order -> {
+            order.driverID = driver.ID;
+            order.driver = driver.name;
+        });
+    }
+
+    /**
+     * Removes an order from the book without changing its status.
+     * @return The removed order, or null if it wasn't there.
+     */
+    public Orders remove(int orderId) {
+        Orders order = byId.get(orderId);
+        if (order == null) {
+            return null;
+        }
+        synchronized (order) {
+            if (byId.get(orderId) != order) {
+                return null;
+            }
+            byStatus.get(order.status).remove(order);
+            removeIndexes(order);
+        }
+        return order;
+    }
+
+    // caller holds the order's lock
+    private void removeIndexes(Orders order) {
+        byId.remove(order.orderID, order);
+        removeIndex(byStore, order.StoreID, order);
+        removeIndex(byCustomer, order.customerID, order);
+    }
+
+    /*
+    --> a store's or customer's set is created with its first order and dropped with its last, so the maps
+        don't keep an empty set for everyone who ever ordered
+    --> both run inside the map's compute for that key, so an add can't land in a set that's just been dropped
+    */
+    private static void addIndex(Map<Integer, Set<Orders>> index, int key, Orders order) {
+        index.compute(key, (k, set) -> {
+            if (set == null) {
+                set = ConcurrentHashMap.newKeySet();
+            }
+            set.add(order);
+            return set;
+        });
+    }
+
+    private static void removeIndex(Map<Integer, Set<Orders>> index, int key, Orders order) {
+        index.computeIfPresent(key, (k, set) -> {
+            set.remove(order);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    /**
+     * Live, read-only view of the orders no driver has accepted yet. Iterating it never blocks writers
+     * (and isn't blocked by them); it may or may not show changes made while iterating.
+     * @return Unaccepted orders.
+     */
+    public Set<Orders> availableOrders() {
+        return withStatus(UNACCEPTED);
+    }
+
+    public Set<Orders> withStatus(int status) {
+        if (!isOpen(status)) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(byStatus.get(status));
+    }
+
+    public Set<Orders> forStore(int storeId) {
+        return Collections.unmodifiableSet(byStore.getOrDefault(storeId, Collections.emptySet()));
+    }
+
+    public Set<Orders> forCustomer(int customerId) {
+        return Collections.unmodifiableSet(byCustomer.getOrDefault(customerId, Collections.emptySet()));
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    // stores and customers with at least one open order
+    int storeCount() {
+        return byStore.size();
+    }
+
+    int customerCount() {
+        return byCustomer.size();
+    }
+
+    public int count(int status) {
+        return isOpen(status) ? byStatus.get(status).size() : 0;
+    }
+
+    private static boolean isLegal(int from, int to) {
+        try {
+            return OrderStatus.fromCode(from).canMoveTo(OrderStatus.fromCode(to));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static boolean isOpen(int status) {
+        return status >= UNACCEPTED && status <= EN_ROUTE;
+    }
+}
@@ -0,0 +1,178 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * OrderBookBenchmark compares the OrderBook with the two ArrayLists OrderingSystem used to keep,
+ * at 10k, 100k and 1M open orders.
+ * Phases: accepting random orders (remove from unaccepted + add to accepted), cancelling random orders,
+ * reading the available-orders view, and (OrderBook only, the lists aren't thread safe) accepting from several threads.
+ * Run with: java OrderBookBenchmark [sizes...] e.g. java OrderBookBenchmark 10000 100000 1000000
+ */
+public class OrderBookBenchmark {
+
+    private static final int OPS = 2000;
+    private static final int THREADS = 4;
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = args.length > 0 ? new int[args.length] : new int[] { 10_000, 100_000, 1_000_000 };
+        for (int i = 0; i < args.length; i++) {
+            sizes[i] = Integer.parseInt(args[i]);
+        }
+
+        System.out.println("Order book benchmark: " + OPS + " operations per phase");
+        System.out.println("=".repeat(80));
+        System.out.printf("%-10s %-10s %-16s %14s %14s%n", "Orders", "Impl", "Phase", "ops/sec", "us/op");
+        System.out.println("-".repeat(80));
+        for (int size : sizes) {
+            runLists(size);
+            runBook(size);
+            System.out.println("-".repeat(80));
+        }
+    }
+
+    // what OrderingSystem did before: List.remove(Object) is a linear search every time
+    private static void runLists(int size) {
+        List<Orders> unaccepted = new ArrayList<>();
+        List<Orders> accepted = new ArrayList<>();
+        Orders[] all = populate(size);
+        for (Orders order : all) {
+            unaccepted.add(order);
+        }
+        int[] picks = picks(size, 1);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < OPS; i++) {
+            Orders order = all[picks[i]];
+            if (order.status == 0) {
+                unaccepted.remove(order);
+                accepted.add(order);
+                order.status = 1;
+            }
+        }
+        print(size, "lists", "accept", System.nanoTime() - start, OPS);
+
+        start = System.nanoTime();
+        for (int i = OPS; i < OPS * 2; i++) {
+            Orders order = all[picks[i]];
+            if (order.status == 0) {
+                unaccepted.remove(order);
+            } else {
+                accepted.remove(order);
+            }
+            order.status = 5;
+        }
+        print(size, "lists", "cancel", System.nanoTime() - start, OPS);
+
+        start = System.nanoTime();
+        long seen = 0;
+        for (int i = 0; i < 10; i++) {
+            for (Orders order : unaccepted) {
+                seen += order.orderID & 1;
+            }
+        }
+        print(size, "lists", "available scan", System.nanoTime() - start, 10);
+        blackhole(seen);
+    }
+
+    private static void runBook(int size) throws Exception {
+        OrderBook book = new OrderBook();
+        Orders[] all = populate(size);
+        for (Orders order : all) {
+            book.add(order);
+        }
+        int[] picks = picks(size, 2);
+        Driver driver = new Driver("bench", 1, 0, "none", "car");
+
+        long start = System.nanoTime();
+        for (int i = 0; i < OPS; i++) {
+            book.accept(all[picks[i]].orderID, driver);
+        }
+        print(size, "OrderBook", "accept", System.nanoTime() - start, OPS);
+
+        start = System.nanoTime();
+        for (int i = OPS; i < OPS * 2; i++) {
+            book.setStatus(all[picks[i]].orderID, OrderBook.CANCELLED);
+        }
+        print(size, "OrderBook", "cancel", System.nanoTime() - start, OPS);
+
+        start = System.nanoTime();
+        long seen = 0;
+        for (int i = 0; i < 10; i++) {
+            for (Orders order : book.availableOrders()) {
+                seen += order.orderID & 1;
+            }
+        }
+        print(size, "OrderBook", "available scan", System.nanoTime() - start, 10);
+        blackhole(seen);
+
+        // every thread goes after the same orders, only one accept per order may win
+        int[] contested = picks(size, 3);
+        AtomicInteger wins = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            start = System.nanoTime();
+            for (int t = 0; t < THREADS; t++) {
+                Driver racer = new Driver("racer" + t, 10 + t, 0, "none", "car");
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < OPS; i++) {
+                        if (book.accept(all[contested[i]].orderID, racer)) {
+                            wins.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+            print(size, "OrderBook", THREADS + "-thread accept", System.nanoTime() - start, OPS * THREADS);
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        blackhole(wins.get());
+    }
+
+    private static Orders[] populate(int size) {
+        Orders[] all = new Orders[size];
+        for (int i = 0; i < size; i++) {
+            all[i] = new Orders(i + 1, "customer" + (i % 5000), i % 5000, null, 0, null, i % 200, 0);
+        }
+        return all;
+    }
+
+    // distinct random indexes so every operation hits a different order
+    private static int[] picks(int size, long seed) {
+        Random random = new Random(seed);
+        int[] picks = new int[OPS * 2];
+        Set<Integer> used = new HashSet<>();
+        for (int i = 0; i < picks.length; i++) {
+            int pick;
+            do {
+                pick = random.nextInt(size);
+            } while (!used.add(pick) && used.size() < size);
+            picks[i] = pick;
+        }
+        return picks;
+    }
+
+    private static void print(int size, String impl, String phase, long nanos, int ops) {
+        double usPerOp = nanos / 1000.0 / ops;
+        System.out.printf("%-10d %-10s %-16s %14.0f %14.3f%n", size, impl, phase, ops / (nanos / 1e9), usPerOp);
+    }
+
+    // keeps the JIT from throwing away loops whose result isn't used
+    private static void blackhole(long value) {
+        if (value == Long.MIN_VALUE) {
+            System.out.println(value);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+import org.junit.jupiter.api.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import static org.junit.jupiter.api.Assertions.*;
+/*
+--> Tests the in-memory order book:
+    - orders show up under their id, store, customer and status, and move between status indexes on a transition
+    - a transition from the wrong status is refused, and completed/cancelled orders leave the book (and a store
+      or customer with nothing left leaves the indexes)
+    - several drivers racing for the same orders: every order is accepted exactly once
+--> Will return "Order book test passed" with the number of accepted orders if succeeded.
+ */
+public class OrderBookTest {
+
+    @Test
+    void testIndexesFollowTransitions() {
+        OrderBook book = new OrderBook();
+        Orders first = new Orders(1, "alice", 10, null, 0, null, 100, OrderBook.UNACCEPTED);
+        Orders second = new Orders(2, "alice", 10, null, 0, null, 200, OrderBook.UNACCEPTED);
+        assertTrue(book.add(first));
+        assertTrue(book.add(second));
+        assertFalse(book.add(first));
+
+        assertSame(first, book.get(1));
+        assertEquals(2, book.forCustomer(10).size());
+        assertTrue(book.forStore(100).contains(first));
+        assertFalse(book.forStore(100).contains(second));
+        assertEquals(2, book.availableOrders().size());
+
+        Driver driver = new Driver("dave", 7, 0, "none", "car");
+        assertTrue(book.accept(1, driver));
+        assertEquals(7, first.driverID);
+        assertEquals(OrderBook.ACCEPTED, first.status);
+        assertFalse(book.availableOrders().contains(first));
+        assertTrue(book.withStatus(OrderBook.ACCEPTED).contains(first));
+
+        // wrong expected status, nothing changes
+        assertFalse(book.transition(1, OrderBook.UNACCEPTED, OrderBook.READY));
+        assertEquals(OrderBook.ACCEPTED, first.status);
+        assertThrows(UnsupportedOperationException.class, () -> book.availableOrders().clear());
+
+        assertTrue(book.setStatus(1, OrderBook.COMPLETED));
+        assertNull(book.get(1));
+        assertEquals(0, book.count(OrderBook.ACCEPTED));
+        assertEquals(1, book.forCustomer(10).size());
+        assertTrue(book.forStore(100).isEmpty());
+        assertFalse(book.setStatus(1, OrderBook.CANCELLED));
+
+        assertSame(second, book.remove(2));
+        assertEquals(0, book.size());
+        assertEquals(0, book.storeCount());
+        assertEquals(0, book.customerCount());
+        assertTrue(book.forCustomer(10).isEmpty());
+    }
+
+    @Test
+    void testConcurrentAcceptsWinOnce() throws Exception {
+        int orderCount = 5000;
+        int drivers = 8;
+        OrderBook book = new OrderBook();
+        for (int i = 1; i <= orderCount; i++) {
+            book.add(new Orders(i, "customer" + (i % 50), i % 50, null, 0, null, i % 20, OrderBook.UNACCEPTED));
+        }
+
+        AtomicIntegerArray winners = new AtomicIntegerArray(orderCount + 1);
+        CountDownLatch go = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(drivers);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int d = 0; d < drivers; d++) {
+            Driver driver = new Driver("driver" + d, d + 1, 0, "none", "car");
+            futures.add(pool.submit(() -> {
+                go.await();
+                // everyone walks the available view while the others are taking orders out of it
+                for (Orders order : book.availableOrders()) {
+                    if (book.accept(order.orderID, driver)) {
+                        winners.incrementAndGet(order.orderID);
+                    }
+                }
+                return null;
+            }));
+        }
+        go.countDown();
+        for (Future<?> f : futures) {
+            f.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        for (int i = 1; i <= orderCount; i++) {
+            assertEquals(1, winners.get(i), "order " + i + " accepted " + winners.get(i) + " times");
+            assertEquals(OrderBook.ACCEPTED, book.get(i).status);
+        }
+        assertEquals(0, book.count(OrderBook.UNACCEPTED));
+        assertEquals(orderCount, book.count(OrderBook.ACCEPTED));
+        System.out.println("Order book test passed - " + orderCount + " orders accepted once each by " + drivers + " drivers");
+    }
+}
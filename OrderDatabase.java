@@ -1,11 +1,14 @@
 import java.nio.file.Path;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
 import javax.swing.JOptionPane;
 
 /**
@@ -15,20 +18,72 @@ import javax.swing.JOptionPane;
 public class OrderDatabase {
     private final Path dbPath;
     private final String url;
+    private final ConnectionPool pool;
+    private final StorageProfile profile;
+    private final OrderEventBus events = new OrderEventBus();
+    private final EtaModel eta = new EtaModel();
+    private final OrderSummaryCache summaries = new OrderSummaryCache();
+    private volatile RestaurantDirectory restaurants;
+    // set when drivers.db is a separate file (SPLIT layout), see claimOrder
+    private volatile ConnectionPool driversPool;
 
     /**
-     * Constructs an OrderDatabase with the given database path.
+     * Constructs an OrderDatabase with the given database path, using the configured storage profile.
      * @param dbPath Path to the SQLite database file.
      */
     public OrderDatabase(Path dbPath) {
+        this(dbPath, StorageProfile.current());
+    }
+
+    /**
+     * Constructs an OrderDatabase with the given database path and storage profile.
+     * @param dbPath Path to the SQLite database file.
+     * @param profile SQLite settings applied to every connection during init().
+     */
+    public OrderDatabase(Path dbPath, StorageProfile profile) {
         this.dbPath = dbPath;
         this.url = "jdbc:sqlite:" + dbPath.toAbsolutePath().toString();
+        this.pool = ConnectionPool.forDatabase(dbPath);
+        this.profile = profile;
     }
 
     public String getConnectionUrl() {
         return url;
     }
 
+    /**
+     * Borrows a pooled connection to orders.db. Close it to give it back to the pool.
+     * @return A pooled connection.
+     * @throws SQLException if no connection is available
+     */
+    public Connection getConnection() throws SQLException {
+        return pool.getConnection();
+    }
+
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    // drivers live in their own file with their own writer, so claims can't update both in one transaction
+    void useDriversPool(ConnectionPool driversPool) {
+        this.driversPool = driversPool;
+    }
+
+    // status changes made through this OrderDatabase are pushed here once they commit
+    public OrderEventBus getEvents() {
+        return events;
+    }
+
+    // learns from every delivery made through this OrderDatabase, starting from what's already in the file
+    public EtaModel getEtaModel() {
+        return eta;
+    }
+
+    // history first pages and getOrderDetails results, dropped by the writes below
+    public OrderSummaryCache getSummaryCache() {
+        return summaries;
+    }
+
     public void init() throws SQLException {
         try {
             Class.forName("org.sqlite.JDBC");
@@ -39,209 +94,380 @@ public class OrderDatabase {
             throw new SQLException("SQLite JDBC driver not found on classpath", e);
         }
 
-        try (Connection conn = DriverManager.getConnection(url);
+        // WAL + the storage profile settings for every connection we hand out from now on
+        pool.useProfile(profile);
+
+        // own connection for setup so the foreign_keys pragma doesn't end up on a pooled connection
+        try (Connection conn = pool.openConnection();
              Statement stmt = conn.createStatement()) {
 
             stmt.executeUpdate("PRAGMA foreign_keys = ON");
 
-            // migration stuff - adding columns to existing tables if they dont have them yet
-            // this way the database works even if someone has an older version
-
-            // check for payment_status column
-            boolean needsPaymentStatus = false;
-            try (ResultSet rs = stmt.executeQuery("SELECT payment_status FROM orders LIMIT 1")) {
-                // column exists if this works
-            } catch (SQLException ex) {
-                needsPaymentStatus = true;
-            }
-            if (needsPaymentStatus) {
-                try {
-                    stmt.executeUpdate("ALTER TABLE orders ADD COLUMN payment_status TEXT DEFAULT 'PENDING'");
-                } catch (SQLException ex) {
-                    // probably already added, just ignore
+            // only does real work the first time a file is opened by a newer version, otherwise it's a version check
+            // (one pragma read, plus a schema_versions row in fooddash.db)
+            MIGRATIONS.migrate(conn);
+
+            // estimates start from the stored averages, not from scratch (and not from every delivered order)
+            try (PreparedStatement ps = conn.prepareStatement(SqlStatements.ETA_STATS_AFTER)) {
+                ps.setLong(1, 0);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        eta.load(rs.getString("restaurant_name"), rs.getInt("hour"), rs.getLong("samples"),
+                                rs.getDouble("mean_minutes"));
+                    }
                 }
             }
+        }
+    }
 
-            // check for payment_type column
-            boolean needsPaymentType = false;
-            try (ResultSet rs = stmt.executeQuery("SELECT payment_type FROM orders LIMIT 1")) {
-            } catch (SQLException ex) {
-                needsPaymentType = true;
-            }
-            if (needsPaymentType) {
-                try {
-                    stmt.executeUpdate("ALTER TABLE orders ADD COLUMN payment_type TEXT");
-                } catch (SQLException ex) {
-                }
-            }
+    /*
+    --> schema history for orders.db, version is kept by SchemaMigrator (user_version, or schema_versions in fooddash.db)
+    --> add new changes as a new numbered step at the end, never edit a step that already shipped
+    */
+    static final SchemaMigrator MIGRATIONS = new SchemaMigrator("OrderDatabase")
+            .add(1, "baseline orders schema", OrderDatabase::createBaselineSchema)
+            .add(2, "trigger-maintained items_summary", OrderDatabase::addItemsSummary)
+            .add(3, "keyset pagination indexes", OrderDatabase::addPaginationIndexes)
+            .add(4, "partial indexes for live order queries", OrderDatabase::addPartialIndexes)
+            .add(5, "drop unused orders-side payment_transactions", OrderDatabase::dropOrderPaymentTransactions)
+            .add(6, "restaurant and delivery coordinates", OrderDatabase::addCoordinates)
+            .add(7, "restaurants table", OrderDatabase::addRestaurants)
+            .add(8, "stored delivery time averages", OrderDatabase::addEtaStats);
+
+    // version 1 - everything init() used to create/probe on every start
+    // safe on files made by older versions: tables are only created if missing and old tables get the newer columns
+    private static void createBaselineSchema(Statement stmt) throws SQLException {
+        // main orders table - stores all the order info
+        stmt.executeUpdate("CREATE TABLE IF NOT EXISTS orders ("
+                + "order_id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + "customer_username TEXT NOT NULL,"
+                + "restaurant_name TEXT NOT NULL,"
+                + "status TEXT NOT NULL DEFAULT 'PENDING',"
+                + "total_amount DECIMAL(10,2) NOT NULL,"
+                + "created_at INTEGER NOT NULL,"
+                + "assigned_at INTEGER,"  // when driver picked it up
+                + "picked_up_at INTEGER,"
+                + "delivered_at INTEGER,"
+                + "driver_username TEXT,"
+                + "delivery_address TEXT,"
+                + "special_instructions TEXT,"  // extra requests from customer
+                + "estimated_minutes INTEGER,"
+                + "actual_minutes INTEGER,"  
+                + "item_count INTEGER NOT NULL DEFAULT 0,"
+                + "payment_type TEXT,"
+                + "payment_status TEXT DEFAULT 'PENDING',"
+                + "restaurant_address TEXT,"
+                + "delivered_notified INTEGER DEFAULT 0,"
+                + "FOREIGN KEY (customer_username) REFERENCES users(username) ON DELETE RESTRICT ON UPDATE CASCADE,"
+                + "FOREIGN KEY (driver_username) REFERENCES drivers(username) ON DELETE RESTRICT ON UPDATE CASCADE,"
+                + "CHECK (payment_type IN ('CARD', 'BANK'))"
+                + ")");
+
+        // payment transactions - separate from orders table
+        stmt.executeUpdate("CREATE TABLE IF NOT EXISTS payment_transactions ("
+                + "transaction_id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + "order_id INTEGER NOT NULL,"
+                + "amount DECIMAL(10,2) NOT NULL,"
+                + "status TEXT NOT NULL DEFAULT 'PENDING',"
+                + "created_at INTEGER NOT NULL,"
+                + "completed_at INTEGER,"
+                + "payment_type TEXT NOT NULL,"
+                + "payment_reference TEXT,"
+                + "error_message TEXT,"
+                + "FOREIGN KEY (order_id) REFERENCES orders(order_id)"
+                + ")");
+
+        // individual items in each order (pizza x2, burger x1, etc)
+        stmt.executeUpdate("CREATE TABLE IF NOT EXISTS order_items ("
+                + "item_id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + "order_id INTEGER NOT NULL,"
+                + "item_name TEXT NOT NULL,"
+                + "quantity INTEGER NOT NULL,"
+                + "unit_price DECIMAL(10,2) NOT NULL,"
+                + "special_requests TEXT,"
+                + "FOREIGN KEY (order_id) REFERENCES orders(order_id)"
+                + ")");
+
+        // keeps a log of all status changes for an order
+        // useful for tracking when things went wrong
+        stmt.executeUpdate("CREATE TABLE IF NOT EXISTS order_updates ("
+                + "update_id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + "order_id INTEGER NOT NULL,"
+                + "status TEXT NOT NULL,"
+                + "notes TEXT,"
+                + "updated_at INTEGER NOT NULL,"
+                + "updated_by TEXT NOT NULL,"
+                + "FOREIGN KEY (order_id) REFERENCES orders(order_id)"
+                + ")");
+
+        // indexes for common searches
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_orders_customer ON orders(customer_username)");
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_orders_status ON orders(status)");
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_order_items_order ON order_items(order_id)");
+
+        // files from before these columns existed
+        SchemaMigrator.addColumnIfMissing(stmt, "orders", "payment_status", "TEXT DEFAULT 'PENDING'");
+        SchemaMigrator.addColumnIfMissing(stmt, "orders", "payment_type", "TEXT");
+        SchemaMigrator.addColumnIfMissing(stmt, "orders", "restaurant_address", "TEXT");
+        //  delivered_notified flag (for customer notifications- easy way to do it before .db convertion)
+        SchemaMigrator.addColumnIfMissing(stmt, "orders", "delivered_notified", "INTEGER DEFAULT 0");
+    }
 
-            // check for restaurant_address
-            boolean needsRestaurantAddress = false;
-            try (ResultSet rs = stmt.executeQuery("SELECT restaurant_address FROM orders LIMIT 1")) {
-            } catch (SQLException ex) {
-                needsRestaurantAddress = true;
-            }
-            if (needsRestaurantAddress) {
-                try {
-                    stmt.executeUpdate("ALTER TABLE orders ADD COLUMN restaurant_address TEXT");
-                } catch (SQLException ex) {
-                }
-            }
+    /*
+    --> version 2 - orders carries its own "Pizza x2,Soda x1" summary so listings don't need a
+        GROUP_CONCAT subquery (or a join + GROUP BY) per order
+    --> triggers on order_items recompute items_summary and item_count for the one order that changed,
+        inside the same transaction as the item write, so they can't drift from order_items
+    --> existing orders get backfilled once
+    */
+    private static void addItemsSummary(Statement stmt) throws SQLException {
+        SchemaMigrator.addColumnIfMissing(stmt, "orders", "items_summary", "TEXT");
+
+        String refresh = "UPDATE orders SET "
+                + "items_summary = (SELECT GROUP_CONCAT(item_name || ' x' || quantity) FROM order_items WHERE order_id = %1$s.order_id), "
+                + "item_count = (SELECT COALESCE(SUM(quantity), 0) FROM order_items WHERE order_id = %1$s.order_id) "
+                + "WHERE order_id = %1$s.order_id;";
+        stmt.executeUpdate("CREATE TRIGGER IF NOT EXISTS trg_order_items_insert AFTER INSERT ON order_items BEGIN "
+                + String.format(refresh, "NEW") + " END");
+        stmt.executeUpdate("CREATE TRIGGER IF NOT EXISTS trg_order_items_delete AFTER DELETE ON order_items BEGIN "
+                + String.format(refresh, "OLD") + " END");
+        // an item moved to another order has to refresh both
+        stmt.executeUpdate("CREATE TRIGGER IF NOT EXISTS trg_order_items_update AFTER UPDATE ON order_items BEGIN "
+                + String.format(refresh, "OLD") + " " + String.format(refresh, "NEW") + " END");
+
+        stmt.executeUpdate("UPDATE orders SET "
+                + "items_summary = (SELECT GROUP_CONCAT(item_name || ' x' || quantity) FROM order_items WHERE order_id = orders.order_id), "
+                + "item_count = (SELECT COALESCE(SUM(quantity), 0) FROM order_items WHERE order_id = orders.order_id) "
+                + "WHERE EXISTS (SELECT 1 FROM order_items WHERE order_id = orders.order_id)");
+    }
 
-            //  make as a delivered_notified flag (for customer notifications- easy way to do it before .db convertion)
-            boolean needsDeliveredNotified = false;
-            try (ResultSet rs = stmt.executeQuery("SELECT delivered_notified FROM orders LIMIT 1")) {
-            } catch (SQLException ex) {
-                needsDeliveredNotified = true;
-            }
-            if (needsDeliveredNotified) {
-                try {
-                    stmt.executeUpdate("ALTER TABLE orders ADD COLUMN delivered_notified INTEGER DEFAULT 0");
-                } catch (SQLException ex) {
-                }
-            }
+    // version 3 - indexes matching the (created_at, order_id) paging order for each history view,
+    // so a page is a seek + LIMIT instead of sorting every order the user ever placed
+    private static void addPaginationIndexes(Statement stmt) throws SQLException {
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_orders_created ON orders(created_at, order_id)");
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_orders_customer_created ON orders(customer_username, created_at, order_id)");
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_orders_driver_created ON orders(driver_username, created_at, order_id)");
+    }
+
+    /*
+    --> version 4 - partial indexes that only hold the few rows the polling screens care about:
+        pending orders (driver order list, dispatch), a driver's active orders (driver main screen),
+        and delivered orders the customer hasn't been told about yet (MainScreen's timer)
+    --> delivered/cancelled orders pile up forever but never enter these indexes, so the lookups stay small
+    --> idx_orders_customer and idx_orders_status are dropped: the customer one is a prefix of
+        idx_orders_customer_created and nothing filters on status alone anymore
+    --> the WHERE clauses here have to match the queries in SqlStatements word for word or SQLite won't use them
+    */
+    private static void addPartialIndexes(Statement stmt) throws SQLException {
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_orders_pending ON orders(created_at, order_id) "
+                + "WHERE status = 'PENDING'");
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_orders_driver_active ON orders(driver_username) "
+                + "WHERE status != 'DELIVERED' AND status != 'CANCELLED'");
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_orders_customer_unnotified ON orders(customer_username) "
+                + "WHERE status = 'DELIVERED' AND COALESCE(delivered_notified,0) = 0");
+        stmt.executeUpdate("DROP INDEX IF EXISTS idx_orders_customer");
+        stmt.executeUpdate("DROP INDEX IF EXISTS idx_orders_status");
+    }
+
+    /*
+    --> version 5 - the baseline made its own payment_transactions table here, but nothing ever wrote to it
+        (payments go to PaymentDatabase's table of the same name)
+    --> it has to go so both schemas can live in one file (DataStore CONSOLIDATED); the transaction_id column
+        tells it apart from the payments one, and if it somehow has rows they're kept under another name
+    */
+    private static void dropOrderPaymentTransactions(Statement stmt) throws SQLException {
+        if (!SchemaMigrator.columnExists(stmt, "payment_transactions", "transaction_id")) {
+            return;
+        }
+        boolean empty;
+        try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM payment_transactions")) {
+            empty = rs.next() && rs.getInt(1) == 0;
+        }
+        if (empty) {
+            stmt.executeUpdate("DROP TABLE payment_transactions");
+        } else {
+            stmt.executeUpdate("ALTER TABLE payment_transactions RENAME TO order_payment_transactions_old");
+        }
+    }
+
+    // version 6 - createOrder was always given the restaurant and delivery coordinates but threw them away,
+    // DispatchEngine needs the restaurant's to find the nearest drivers (older orders just stay NULL)
+    private static void addCoordinates(Statement stmt) throws SQLException {
+        SchemaMigrator.addColumnIfMissing(stmt, "orders", "restaurant_lat", "REAL");
+        SchemaMigrator.addColumnIfMissing(stmt, "orders", "restaurant_lon", "REAL");
+        SchemaMigrator.addColumnIfMissing(stmt, "orders", "delivery_lat", "REAL");
+        SchemaMigrator.addColumnIfMissing(stmt, "orders", "delivery_lon", "REAL");
+    }
+
+    // version 7 - restaurants with their position, seeded with the three ResturantScreen used to hardcode for 02325
+    // the spatial lookups run on RestaurantDirectory's in-memory grid, so the only index needed is the one on the seed key
+    private static void addRestaurants(Statement stmt) throws SQLException {
+        stmt.executeUpdate("CREATE TABLE IF NOT EXISTS restaurants ("
+                + "restaurant_id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + "name TEXT NOT NULL,"
+                + "address TEXT NOT NULL,"
+                + "zip TEXT,"
+                + "lat REAL NOT NULL,"
+                + "lon REAL NOT NULL,"
+                + "UNIQUE(name, address))");
+        stmt.executeUpdate("INSERT OR IGNORE INTO restaurants (name, address, zip, lat, lon) VALUES "
+                + "('Crimson Dining', '125 Burrill Ave', '02325', 41.98656, 70.96437),"
+                + "('Barrett''s Alehouse Bridgewater', '425 Bedford St', '02325', 41.97653, 70.97556),"
+                + "('Greyhound Tavern', '39 Broad Street', '02325', 41.99093, 70.97487)");
+    }
 
-            // main orders table - stores all the order info
-            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS orders ("
-                    + "order_id INTEGER PRIMARY KEY AUTOINCREMENT,"
-                    + "customer_username TEXT NOT NULL,"
-                    + "restaurant_name TEXT NOT NULL,"
-                    + "status TEXT NOT NULL DEFAULT 'PENDING',"
-                    + "total_amount DECIMAL(10,2) NOT NULL,"
-                    + "created_at INTEGER NOT NULL,"
-                    + "assigned_at INTEGER,"  // when driver picked it up
-                    + "picked_up_at INTEGER,"
-                    + "delivered_at INTEGER,"
-                    + "driver_username TEXT,"
-                    + "delivery_address TEXT,"
-                    + "special_instructions TEXT,"  // extra requests from customer
-                    + "estimated_minutes INTEGER,"
-                    + "actual_minutes INTEGER,"  
-                    + "item_count INTEGER NOT NULL DEFAULT 0,"
-                    + "payment_type TEXT,"
-                    + "payment_status TEXT DEFAULT 'PENDING',"
-                    + "restaurant_address TEXT,"
-                    + "delivered_notified INTEGER DEFAULT 0,"
-                    + "FOREIGN KEY (customer_username) REFERENCES users(username) ON DELETE RESTRICT ON UPDATE CASCADE,"
-                    + "FOREIGN KEY (driver_username) REFERENCES drivers(username) ON DELETE RESTRICT ON UPDATE CASCADE,"
-                    + "CHECK (payment_type IN ('CARD', 'BANK'))"
-                    + ")");
-
-            // payment transactions - separate from orders table
-            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS payment_transactions ("
-                    + "transaction_id INTEGER PRIMARY KEY AUTOINCREMENT,"
-                    + "order_id INTEGER NOT NULL,"
-                    + "amount DECIMAL(10,2) NOT NULL,"
-                    + "status TEXT NOT NULL DEFAULT 'PENDING',"
-                    + "created_at INTEGER NOT NULL,"
-                    + "completed_at INTEGER,"
-                    + "payment_type TEXT NOT NULL,"
-                    + "payment_reference TEXT,"
-                    + "error_message TEXT,"
-                    + "FOREIGN KEY (order_id) REFERENCES orders(order_id)"
-                    + ")");
-
-            // individual items in each order (pizza x2, burger x1, etc)
-            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS order_items ("
-                    + "item_id INTEGER PRIMARY KEY AUTOINCREMENT,"
-                    + "order_id INTEGER NOT NULL,"
-                    + "item_name TEXT NOT NULL,"
-                    + "quantity INTEGER NOT NULL,"
-                    + "unit_price DECIMAL(10,2) NOT NULL,"
-                    + "special_requests TEXT,"
-                    + "FOREIGN KEY (order_id) REFERENCES orders(order_id)"
-                    + ")");
-
-            // keeps a log of all status changes for an order
-            // useful for tracking when things went wrong
-            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS order_updates ("
-                    + "update_id INTEGER PRIMARY KEY AUTOINCREMENT,"
-                    + "order_id INTEGER NOT NULL,"
-                    + "status TEXT NOT NULL,"
-                    + "notes TEXT,"
-                    + "updated_at INTEGER NOT NULL,"
-                    + "updated_by TEXT NOT NULL,"
-                    + "FOREIGN KEY (order_id) REFERENCES orders(order_id)"
-                    + ")");
-
-            // indexes for common searches
-            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_orders_customer ON orders(customer_username)");
-            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_orders_status ON orders(status)");
-            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_order_items_order ON order_items(order_id)");
-        }
-    }
-
-    private boolean tableExists(String tableName, Connection conn) throws SQLException {
-        try (ResultSet rs = conn.getMetaData().getTables(null, null, tableName, null)) {
-            return rs.next();
-        }
-    }
-
-    private void addColumnIfNotExists(String tableName, String columnName, String columnDefinition, Connection conn) throws SQLException {
-        try (Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + tableName + ")")) {
+    // version 8 - EtaModel's per restaurant and hour averages, so startup reads these instead of every delivered order
+    // filled from the orders already delivered, the one time that history is read
+    private static void addEtaStats(Statement stmt) throws SQLException {
+        stmt.executeUpdate("CREATE TABLE IF NOT EXISTS eta_stats ("
+                + "stats_id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + "restaurant_name TEXT NOT NULL,"
+                + "hour INTEGER NOT NULL,"
+                + "samples INTEGER NOT NULL,"
+                + "mean_minutes REAL NOT NULL,"
+                + "UNIQUE(restaurant_name, hour))");
+        Connection conn = stmt.getConnection();
+        EtaModel hours = new EtaModel();
+        try (Statement select = conn.createStatement();
+             ResultSet rs = select.executeQuery("SELECT order_id, restaurant_name, created_at, actual_minutes, "
+                     + "restaurant_lat, restaurant_lon, delivery_lat, delivery_lon FROM orders "
+                     + "WHERE status = 'DELIVERED' AND actual_minutes IS NOT NULL ORDER BY order_id ASC")) {
             while (rs.next()) {
-                if (rs.getString("name").equalsIgnoreCase(columnName)) {
-                    return; // Column already exists
-                }
+                recordEta(conn, hours, DeliveredOrderRow.from(rs));
             }
         }
-        try (Statement stmt = conn.createStatement()) {
-            stmt.executeUpdate("ALTER TABLE " + tableName + " ADD COLUMN " + columnName + " " + columnDefinition);
-        }
     }
+
     // creates a new order and returns the order id
     // also estimates delivery time based on order total
+    // the order row and its "Order created" update are written together on the writer thread
     public long createOrder(String customerUsername, String restaurantName, String restaurantAddress,
                             String deliveryAddress, String specialInstructions, double totalAmount,
                             int itemCount, String paymentType, double restaurantLat, double restaurantLon,
                             double deliveryLat, double deliveryLon) throws SQLException {
-        String sql = "INSERT INTO orders (customer_username, restaurant_name, restaurant_address, status, total_amount, "
-                  + "created_at, delivery_address, special_instructions, estimated_minutes, item_count, payment_type) "
-                  + "VALUES (?, ?, ?, 'PENDING', ?, ?, ?, ?, ?, ?, ?)";
+        String sql = SqlStatements.ORDER_INSERT;
 
-        try (Connection conn = DriverManager.getConnection(url);
-             PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            ps.setString(1, customerUsername);
-            ps.setString(2, restaurantName);
-            ps.setString(3, restaurantAddress);
-            ps.setDouble(4, totalAmount);
-            ps.setLong(5, Instant.now().getEpochSecond());
-            ps.setString(6, deliveryAddress);
-            ps.setString(7, specialInstructions);
-            ps.setInt(8, estimateDeliveryTime(totalAmount));
-            ps.setInt(9, itemCount);
-            ps.setString(10, paymentType);
-            ps.executeUpdate();
+        try {
+            long newOrderId = pool.getWriter().execute(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                    ps.setString(1, customerUsername);
+                    ps.setString(2, restaurantName);
+                    ps.setString(3, restaurantAddress);
+                    ps.setDouble(4, totalAmount);
+                    ps.setLong(5, Instant.now().getEpochSecond());
+                    ps.setString(6, deliveryAddress);
+                    ps.setString(7, specialInstructions);
+                    ps.setInt(8, estimateDeliveryTime(restaurantName, totalAmount, restaurantLat, restaurantLon,
+                            deliveryLat, deliveryLon));
+                    ps.setInt(9, itemCount);
+                    ps.setString(10, paymentType);
+                    ps.setDouble(11, restaurantLat);
+                    ps.setDouble(12, restaurantLon);
+                    ps.setDouble(13, deliveryLat);
+                    ps.setDouble(14, deliveryLon);
+                    ps.executeUpdate();
+
+                    try (ResultSet rs = ps.getGeneratedKeys()) {
+                        if (rs.next()) {
+                            long orderId = rs.getLong(1);
+                            insertOrderUpdate(conn, orderId, OrderStatus.PENDING.name(), "Order created", customerUsername);
+                            return orderId;
+                        }
+                        throw new SQLException("Failed to retrieve generated order ID");
+                    }
+                }
+            });
+            orderAdded(customerUsername);
+            return newOrderId;
+        } catch (SQLException ex) {
+            Logger.catchAndLogBug(ex,"OrderDatabase");
+            JOptionPane.showMessageDialog(null, "An error occurred while creating the order:\n" + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
+            return -1;
+        }
+    }
+    /*
+    --> saves a whole order in one transaction on the writer thread:
+        order row, every order_items row (as one JDBC batch), and the "Order created" update
+    --> either all of it commits or none of it does, so there's no order left without its items
+    --> returns the new order id and the ETA stored on the row
+    */
+    public PlacedOrder placeOrder(OrderDraft draft) throws SQLException {
+        if (draft.getItems().isEmpty()) {
+            throw new IllegalArgumentException("Order has no items");
+        }
+        String orderSql = SqlStatements.ORDER_INSERT;
+        String itemSql = SqlStatements.ORDER_ITEM_INSERT;
+        double total = draft.getTotal();
+        int itemCount = draft.getItemCount();
+        int estimatedMinutes = estimateDeliveryTime(draft.getRestaurantName(), total, draft.getRestaurantLat(),
+                draft.getRestaurantLon(), draft.getDeliveryLat(), draft.getDeliveryLon());
 
-            try (ResultSet rs = ps.getGeneratedKeys()) {
-                if (rs.next()) {
-                    long orderId = rs.getLong(1);
-                    recordOrderUpdate(orderId, "PENDING", "Order created", customerUsername);
-                    return orderId;
+        try {
+            long orderId = pool.getWriter().execute(conn -> {
+                long id;
+                try (PreparedStatement ps = conn.prepareStatement(orderSql, Statement.RETURN_GENERATED_KEYS)) {
+                    ps.setString(1, draft.getCustomerUsername());
+                    ps.setString(2, draft.getRestaurantName());
+                    ps.setString(3, draft.getRestaurantAddress());
+                    ps.setDouble(4, total);
+                    ps.setLong(5, Instant.now().getEpochSecond());
+                    ps.setString(6, draft.getDeliveryAddress());
+                    ps.setString(7, draft.getSpecialInstructions());
+                    ps.setInt(8, estimatedMinutes);
+                    ps.setInt(9, itemCount);
+                    ps.setString(10, draft.getPaymentType());
+                    ps.setDouble(11, draft.getRestaurantLat());
+                    ps.setDouble(12, draft.getRestaurantLon());
+                    ps.setDouble(13, draft.getDeliveryLat());
+                    ps.setDouble(14, draft.getDeliveryLon());
+                    ps.executeUpdate();
+                    try (ResultSet rs = ps.getGeneratedKeys()) {
+                        if (!rs.next()) {
+                            throw new SQLException("Failed to retrieve generated order ID");
+                        }
+                        id = rs.getLong(1);
+                    }
                 }
-                throw new SQLException("Failed to retrieve generated order ID");
-            } catch (SQLException ex) {
-                Logger.catchAndLogBug(ex,"OrderDatabase");
-                JOptionPane.showMessageDialog(null, "An error occurred while creating the order:\n" + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
-                return -1;
-            }
-            
+
+                try (PreparedStatement ps = conn.prepareStatement(itemSql)) {
+                    for (OrderDraft.Line line : draft.getItems()) {
+                        ps.setLong(1, id);
+                        ps.setString(2, line.getItemName());
+                        ps.setInt(3, line.getQuantity());
+                        ps.setDouble(4, line.getUnitPrice());
+                        ps.setString(5, line.getSpecialRequests());
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+
+                insertOrderUpdate(conn, id, OrderStatus.PENDING.name(), "Order created", draft.getCustomerUsername());
+                return id;
+            });
+            orderAdded(draft.getCustomerUsername());
+            return new PlacedOrder(orderId, estimatedMinutes, total, itemCount);
+        } catch (SQLException ex) {
+            Logger.catchAndLogBug(ex, "OrderDatabase.placeOrder");
+            throw ex;
         }
     }
+
     // adds an item to an existing order
     public void addOrderItem(long orderId, String itemName, int quantity,
                            double unitPrice, String specialRequests) throws SQLException {
-        String sql = "INSERT INTO order_items (order_id, item_name, quantity, unit_price, special_requests) "
-                  + "VALUES (?, ?, ?, ?, ?)";
-        try (Connection conn = DriverManager.getConnection(url);
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setLong(1, orderId);
-            ps.setString(2, itemName);
-            ps.setInt(3, quantity);
-            ps.setDouble(4, unitPrice);
-            ps.setString(5, specialRequests);
-            ps.executeUpdate();
+        String sql = SqlStatements.ORDER_ITEM_INSERT;
+        try {
+            pool.getWriter().execute(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setLong(1, orderId);
+                    ps.setString(2, itemName);
+                    ps.setInt(3, quantity);
+                    ps.setDouble(4, unitPrice);
+                    ps.setString(5, specialRequests);
+                    return ps.executeUpdate();
+                }
+            });
+            summaries.invalidateOrder(orderId);
         } catch (SQLException ex) {
             Logger.catchAndLogBug(ex,"OrderDatabase");
             JOptionPane.showMessageDialog(null, "An error occurred while adding item to order:\n" + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
@@ -250,19 +476,9 @@ public class OrderDatabase {
 
     // assigns a driver to an order and updates status to ASSIGNED
     public void assignDriver(long orderId, String driverUsername) throws SQLException {
-        String sql = "UPDATE orders SET driver_username = ?, status = 'ASSIGNED', assigned_at = ? "
-                  + "WHERE order_id = ?";
-        try (Connection conn = DriverManager.getConnection(url);
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            long now = Instant.now().getEpochSecond();
-            ps.setString(1, driverUsername);
-            ps.setLong(2, now);
-            ps.setLong(3, orderId);
-            ps.executeUpdate();
-
-            recordOrderUpdate(orderId, "ASSIGNED", "Driver assigned: " + driverUsername, driverUsername);
+        try {
+            transitionOrder(orderId, OrderStatus.ASSIGNED, driverUsername, "Driver assigned: " + driverUsername);
         } catch (SQLException ex) {
-            Logger.catchAndLogBug(ex,"OrderDatabase");
             JOptionPane.showMessageDialog(null, "An error occurred while assigning driver to order:\n" + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
         }
     }
@@ -272,79 +488,239 @@ public class OrderDatabase {
      * if DELIVERED - records delivery time AND calculates how long it took
      */
     public void updateOrderStatus(long orderId, String status, String username) throws SQLException {
-        String sql = "UPDATE orders SET status = ?";
+        try {
+            OrderStatus target = OrderStatus.parse(status);
+            if (target == null) {
+                throw new SQLException("Unknown order status: " + status);
+            }
+            transitionOrder(orderId, target, username, "Status updated to: " + target);
+        } catch (SQLException ex) {
+            JOptionPane.showMessageDialog(null, "An error occurred while updating order status:\n" + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
 
-        // depending on status we need to update different timestamp fields
-        if (status.equals("IN_PROGRESS")) {
-            sql += ", picked_up_at = ?";
-        } else if (status.equals("DELIVERED")) {
-            sql += ", delivered_at = ?, actual_minutes = ?";
+    /*
+    --> moves an order to a new status following the OrderStatus transition table
+    --> the guarded UPDATE (status + that status' timestamps) and the order_updates event are written
+        back to back on the writer thread, in one transaction, without reading the row first
+    --> 0 rows updated means the order is missing or in a status that can't move to the target;
+        only then is the row read, to say which in the exception
+    --> for ASSIGNED the username is the driver taking the order
+    --> subscribers on getEvents() hear about it after the commit, and a delivery is fed to the ETA model
+    */
+    public void transitionOrder(long orderId, OrderStatus target, String username, String notes) throws SQLException {
+        DeliveredOrderRow[] delivered = { null };
+        try {
+            OrderEventBus.Event event = pool.getWriter().execute(conn -> {
+                if (!applyTransition(conn, orderId, target, username, notes)) {
+                    throw new SQLException(transitionFailure(conn, orderId, target));
+                }
+                if (target == OrderStatus.DELIVERED) {
+                    delivered[0] = deliveryTime(conn, orderId);
+                    if (delivered[0] != null) {
+                        recordEta(conn, eta, delivered[0]);
+                    }
+                }
+                return eventFor(conn, orderId, target);
+            });
+            if (delivered[0] != null) {
+                eta.record(delivered[0]);
+            }
+            orderChanged(orderId, target, username);
+            events.publish(event);
+        } catch (SQLException ex) {
+            Logger.catchAndLogBug(ex, "OrderDatabase.transitionOrder");
+            throw ex;
         }
+    }
 
-        sql += " WHERE order_id = ?";
+    /*
+    --> a driver taking a pending order: compare-and-set PENDING -> ASSIGNED on the order, and only if that
+        won, the driver goes ON_DELIVERY in the same writer transaction
+    --> losing the race isn't an error, it returns false and nothing is written (driver status included)
+    --> CONSOLIDATED (drivers table in this file): both rows commit in one transaction or neither does,
+        an unknown driver rolls the claim back
+    --> SPLIT: SQLite in WAL mode doesn't commit a transaction across ATTACHed files atomically, and updating
+        drivers.db from this writer would make it a second writer on that file; so the order is claimed here,
+        then the driver goes ON_DELIVERY through the drivers writer, and if that fails the claim is undone
+        (order back to PENDING, with an event saying why)
+    */
+    public boolean claimOrder(long orderId, String driverUsername) throws SQLException {
+        OrderEventBus.Event[] event = { null };
+        ConnectionPool drivers = driversPool;
+        try {
+            boolean won = pool.getWriter().execute(conn -> {
+                if (!applyTransition(conn, orderId, OrderStatus.ASSIGNED, driverUsername, "Driver assigned: " + driverUsername)) {
+                    return false;
+                }
+                if (drivers == null) {
+                    setOnDelivery(conn, driverUsername);
+                }
+                event[0] = eventFor(conn, orderId, OrderStatus.ASSIGNED);
+                return true;
+            });
+            if (won) {
+                // as soon as the claim commits, reads from here on have to see it
+                orderChanged(orderId, OrderStatus.ASSIGNED, driverUsername);
+            }
+            if (won && drivers != null) {
+                try {
+                    drivers.getWriter().execute(conn -> {
+                        setOnDelivery(conn, driverUsername);
+                        return null;
+                    });
+                } catch (SQLException | RuntimeException driverFailure) {
+                    unclaim(orderId, driverUsername, driverFailure);
+                    throw driverFailure;
+                }
+            }
+            events.publish(event[0]);
+            return won;
+        } catch (SQLException ex) {
+            Logger.catchAndLogBug(ex, "OrderDatabase.claimOrder");
+            throw ex;
+        }
+    }
 
-        try (Connection conn = DriverManager.getConnection(url);
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            int paramIndex = 1;
-            ps.setString(paramIndex++, status);
+    private static void setOnDelivery(Connection conn, String driverUsername) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(SqlStatements.ORDER_CLAIM_DRIVER_ON_DELIVERY)) {
+            ps.setString(1, driverUsername);
+            if (ps.executeUpdate() == 0) {
+                throw new SQLException("Driver not found: " + driverUsername);
+            }
+        }
+    }
+
+    // the compensating step for a SPLIT claim whose driver update failed
+    // the claim committed first, so anything read in between (cached as ASSIGNED) is dropped either way
+    private void unclaim(long orderId, String driverUsername, Exception cause) {
+        try {
+            pool.getWriter().execute(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(SqlStatements.ORDER_UNCLAIM)) {
+                    ps.setLong(1, orderId);
+                    ps.setString(2, driverUsername);
+                    if (ps.executeUpdate() == 0) {
+                        return null;  // already moved on (cancelled by an admin), leave it
+                    }
+                }
+                insertOrderUpdate(conn, orderId, OrderStatus.PENDING.name(),
+                        "Claim undone, driver " + driverUsername + " not updated: " + cause.getMessage(), driverUsername);
+                return null;
+            });
+        } catch (SQLException ex) {
+            Logger.catchAndLogBug(ex, "OrderDatabase.unclaim");
+        } finally {
+            orderChanged(orderId, OrderStatus.ASSIGNED, driverUsername);
+        }
+    }
 
+    // runs the guarded UPDATE and, if it matched, writes the event - false if the order wasn't in a status that can move
+    private boolean applyTransition(Connection conn, long orderId, OrderStatus target, String username, String notes) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(SqlStatements.orderTransition(target))) {
             long now = Instant.now().getEpochSecond();
-            if (status.equals("IN_PROGRESS")) {
+            int paramIndex = 1;
+            if (target == OrderStatus.ASSIGNED) {
+                ps.setString(paramIndex++, username);
+                ps.setLong(paramIndex++, now);
+            } else if (target == OrderStatus.IN_PROGRESS) {
+                ps.setLong(paramIndex++, now);
+            } else if (target == OrderStatus.DELIVERED) {
                 ps.setLong(paramIndex++, now);
-            } else if (status.equals("DELIVERED")) {
                 ps.setLong(paramIndex++, now);
-                // need to calculate actual delivery time
-                try (PreparedStatement ps2 = conn.prepareStatement(
-                        "SELECT created_at FROM orders WHERE order_id = ?")) {
-                    ps2.setLong(1, orderId);
-                    ResultSet rs = ps2.executeQuery();
-                    if (rs.next()) {
-                        long createdAt = rs.getLong(1);
-                        int actualMinutes = (int)((now - createdAt) / 60);
-                        ps.setInt(paramIndex++, actualMinutes);
-                    }
-                }
             }
             ps.setLong(paramIndex, orderId);
+            if (ps.executeUpdate() == 0) {
+                return false;
+            }
+        }
+        insertOrderUpdate(conn, orderId, target.name(), notes, username);
+        return true;
+    }
+
+    // adds one delivery to its restaurant and hour in eta_stats, in the transaction that delivers it
+    private static void recordEta(Connection conn, EtaModel model, DeliveredOrderRow order) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(SqlStatements.ETA_STATS_RECORD)) {
+            ps.setString(1, order.getRestaurantName());
+            ps.setInt(2, model.hourOf(order.getCreatedAt()));
+            ps.setDouble(3, EtaModel.otherMinutes(order));
             ps.executeUpdate();
+        }
+    }
 
-            recordOrderUpdate(orderId, status, "Status updated to: " + status, username);
-        } catch (SQLException ex) {
-            Logger.catchAndLogBug(ex,"OrderDatabase");
-            JOptionPane.showMessageDialog(null, "An error occurred while updating order status:\n" + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
+    // who to tell about the change, read inside the transition's transaction - skipped when nobody is listening
+    private OrderEventBus.Event eventFor(Connection conn, long orderId, OrderStatus target) throws SQLException {
+        if (!events.wants(target)) {
+            return null;
+        }
+        try (PreparedStatement ps = conn.prepareStatement(SqlStatements.ORDER_PARTIES)) {
+            ps.setLong(1, orderId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                return new OrderEventBus.Event(orderId, target, rs.getString("customer_username"),
+                        rs.getString("driver_username"), Instant.now().getEpochSecond());
+            }
         }
     }
 
-    // helper method to log status changes to order_updates table
-    private void recordOrderUpdate(long orderId, String status, String notes, String username) throws SQLException {
-        String sql = "INSERT INTO order_updates (order_id, status, notes, updated_at, updated_by) "
-                  + "VALUES (?, ?, ?, ?, ?)";
-        try (Connection conn = DriverManager.getConnection(url);
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+    // a new order goes on top of its customer's history and the admin's
+    private void orderAdded(String customerUsername) {
+        summaries.invalidateUser("CUSTOMER", customerUsername);
+        summaries.invalidateUser("ADMIN", null);
+    }
+
+    // pages already showing the order are dropped by id; taking it also puts it on the driver's history
+    private void orderChanged(long orderId, OrderStatus target, String username) {
+        summaries.invalidateOrder(orderId);
+        if (target == OrderStatus.ASSIGNED) {
+            summaries.invalidateUser("DRIVER", username);
+        }
+    }
+
+    // the row actual_minutes was just written to, read on the same connection before the commit
+    private DeliveredOrderRow deliveryTime(Connection conn, long orderId) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(SqlStatements.ORDER_DELIVERY_TIME)) {
+            ps.setLong(1, orderId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? DeliveredOrderRow.from(rs) : null;
+            }
+        }
+    }
+
+    private String transitionFailure(Connection conn, long orderId, OrderStatus target) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(SqlStatements.ORDER_STATUS)) {
+            ps.setLong(1, orderId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    return "Order not found";
+                }
+                return "Order #" + orderId + " can't go from " + rs.getString(1) + " to " + target;
+            }
+        }
+    }
+
+    // writes one order_updates row on the given connection - used inside writer work so the
+    // update commits together with the change it describes
+    private void insertOrderUpdate(Connection conn, long orderId, String status, String notes, String username) throws SQLException {
+        String sql = SqlStatements.ORDER_UPDATE_INSERT;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setLong(1, orderId);
             ps.setString(2, status);
             ps.setString(3, notes);
             ps.setLong(4, Instant.now().getEpochSecond());
             ps.setString(5, username);
             ps.executeUpdate();
-        } catch (SQLException ex) {
-            Logger.catchAndLogBug(ex,"OrderDatabase");
-            JOptionPane.showMessageDialog(null, "An error occurred while recording order update:\n" + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
         }
     }
 
-    // gets full order details including all items
-    // uses GROUP_CONCAT to combine all items into one string
-    // remember to close the ResultSet when done
-    public ResultSet getOrderDetails(long orderId) throws SQLException {
-        String sql = "SELECT o.*, "
-                  + "(SELECT GROUP_CONCAT(item_name || ' x' || quantity) FROM order_items WHERE order_id = o.order_id) as items "
-                  + "FROM orders o WHERE o.order_id = ?";
+    // gets full order details including the items summary
+    // returns null if there's no order with that id
+    // served from the summary cache after the first read until the order changes
+    public OrderRow getOrderDetails(long orderId) throws SQLException {
         try {
-            Connection conn = DriverManager.getConnection(url);
-            PreparedStatement ps = conn.prepareStatement(sql);
-            ps.setLong(1, orderId);
-            return ps.executeQuery();
+            return summaries.order(orderId, () ->
+                    RowCursor.first(pool, "OrderDatabase.getOrderDetails", SqlStatements.ORDER_DETAILS, OrderRow::from, orderId));
         } catch (SQLException e) {
             Logger.catchAndLogBug(e, "OrderDatabase");
             throw e;
@@ -352,99 +728,135 @@ public class OrderDatabase {
     }
 
     // gets just the items for an order
-    public ResultSet getOrderItems(long orderId) throws SQLException {
-        String sql = "SELECT * FROM order_items WHERE order_id = ?";
-        Connection conn = DriverManager.getConnection(url);
-        PreparedStatement ps = conn.prepareStatement(sql);
-        ps.setLong(1, orderId);
-        return ps.executeQuery();
+    public List<OrderItemRow> getOrderItems(long orderId) throws SQLException {
+        List<OrderItemRow> items = new ArrayList<>();
+        RowCursor.forEach(pool, "OrderDatabase.getOrderItems", SqlStatements.ORDER_ITEMS,
+                OrderItemRow::from, items::add, orderId);
+        return items;
     }
 
     // gets order history - different query depending on user type
     // customers see their orders, drivers see orders they delivered, admins see everything
-    public ResultSet getOrderHistory(String username, String userType) throws SQLException {
-        String sql = "SELECT o.*, "
-                  + "(SELECT GROUP_CONCAT(item_name || ' x' || quantity) FROM order_items WHERE order_id = o.order_id) as items "
-                  + "FROM orders o WHERE ";
-
-        if (userType.equals("CUSTOMER")) {
-            sql += "o.customer_username = ?";
-        } else if (userType.equals("DRIVER")) {
-            sql += "o.driver_username = ?";
-        } else {
-            sql += "1=1";  // show all orders for admin
-        }
+    // rows are streamed, so close the cursor when done (or use forEachOrderHistory)
+    public RowCursor<OrderRow> getOrderHistory(String username, String userType) throws SQLException {
+        return RowCursor.open(pool, "OrderDatabase.getOrderHistory", SqlStatements.orderHistory(userType), OrderRow::from,
+                orderHistoryParams(username, userType));
+    }
 
-        sql += " ORDER BY o.created_at DESC";
+    // same as getOrderHistory but hands each row to the action and closes everything itself
+    public void forEachOrderHistory(String username, String userType, Consumer<OrderRow> action) throws SQLException {
+        RowCursor.forEach(pool, "OrderDatabase.forEachOrderHistory", SqlStatements.orderHistory(userType), OrderRow::from, action,
+                orderHistoryParams(username, userType));
+    }
 
-        Connection conn = DriverManager.getConnection(url);
-        PreparedStatement ps = conn.prepareStatement(sql);
-        if (!userType.equals("ADMIN")) {
-            ps.setString(1, username);
+    /*
+    --> one page of order history, newest first, starting right after the given key
+    --> pass null to get the first page, which comes from the summary cache when nothing on it changed
+    --> keyset pagination: WHERE (created_at, order_id) < key instead of OFFSET, so every page
+        costs the same however far back the user has scrolled
+    */
+    public OrderPage getOrderHistoryPage(String username, String userType, OrderPage.Key after, int pageSize) throws SQLException {
+        if (after == null) {
+            return summaries.firstPage(userType, username, pageSize,
+                    () -> fetchHistoryPage(username, userType, null, pageSize, true));
         }
-        return ps.executeQuery();
+        return fetchHistoryPage(username, userType, after, pageSize, true);
     }
 
-    // simple estimate based on order size and distance
-    private int estimateDeliveryTime(double orderTotal) {
-        if (orderTotal <= 20) return 30;
-        else if (orderTotal <= 50) return 45;
-        else return 60;
+    // the page of newer orders just before the given key (scrolling back up)
+    public OrderPage getOrderHistoryPageBefore(String username, String userType, OrderPage.Key before, int pageSize) throws SQLException {
+        if (before == null) {
+            throw new IllegalArgumentException("before key is required");
+        }
+        return fetchHistoryPage(username, userType, before, pageSize, false);
     }
 
-    // assigns driver but only if order is still pending and not already assigned
-    public void assignDriverToOrder(long orderId, String driverUsername) throws SQLException {
-        String sql = "UPDATE orders SET driver_username = ?, status = 'ASSIGNED', assigned_at = ? " +
-                    "WHERE order_id = ? AND status = 'PENDING' AND driver_username IS NULL";
-        try (Connection conn = DriverManager.getConnection(url);
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, driverUsername);
-            ps.setLong(2, Instant.now().getEpochSecond());
-            ps.setLong(3, orderId);
-            int updated = ps.executeUpdate();
-            if (updated == 0) {
-                throw new SQLException("Order not found or already assigned to another driver");
-            }
+    private OrderPage fetchHistoryPage(String username, String userType, OrderPage.Key key, int pageSize, boolean older) throws SQLException {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive");
+        }
+        String sql = SqlStatements.orderHistoryPage(userType, key != null, older);
+        List<Object> params = new ArrayList<>(List.of(orderHistoryParams(username, userType)));
+        if (key != null) {
+            params.add(key.getCreatedAt());
+            params.add(key.getOrderId());
+        }
+        params.add(pageSize + 1);  // one extra row tells us if there's more
+
+        List<OrderRow> rows = new ArrayList<>(pageSize + 1);
+        try {
+            RowCursor.forEach(pool, "OrderDatabase.getOrderHistoryPage", sql, OrderRow::from, rows::add, params.toArray());
         } catch (SQLException e) {
             Logger.catchAndLogBug(e, "OrderDatabase");
-            JOptionPane.showMessageDialog(null, "An error occurred while assigning driver to order:\n" +
-                e.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
             throw e;
         }
+        boolean more = rows.size() > pageSize;
+        if (more) {
+            rows.remove(rows.size() - 1);
+        }
+        if (older) {
+            return new OrderPage(rows, more, key != null);
+        }
+        Collections.reverse(rows);
+        return new OrderPage(rows, true, more);
+    }
+
+    // admins see everything so there's nothing to bind
+    private Object[] orderHistoryParams(String username, String userType) {
+        return userType.equals("ADMIN") ? new Object[0] : new Object[] { username };
+    }
+
+    // restaurant's usual time at this hour plus the drive, see EtaModel
+    private int estimateDeliveryTime(String restaurantName, double orderTotal, double restaurantLat, double restaurantLon,
+                                     double deliveryLat, double deliveryLon) {
+        return eta.estimate(restaurantName, Instant.now().getEpochSecond(), restaurantLat, restaurantLon,
+                deliveryLat, deliveryLon, orderTotal);
     }
 
     // gets all pending orders sorted by oldest first
-    public ResultSet getPendingOrders() throws SQLException {
-        String sql = "SELECT o.*, "
-                  + "(SELECT GROUP_CONCAT(item_name || ' x' || quantity) FROM order_items WHERE order_id = o.order_id) as items "
-                  + "FROM orders o WHERE o.status = 'PENDING' ORDER BY o.created_at ASC";
-        Connection conn = DriverManager.getConnection(url);
-        PreparedStatement ps = conn.prepareStatement(sql);
-        return ps.executeQuery();
+    // close the cursor when done (or use forEachPendingOrder)
+    public RowCursor<OrderRow> getPendingOrders() throws SQLException {
+        return RowCursor.open(pool, "OrderDatabase.getPendingOrders", SqlStatements.ORDER_PENDING, OrderRow::from);
+    }
+
+    public void forEachPendingOrder(Consumer<OrderRow> action) throws SQLException {
+        RowCursor.forEach(pool, "OrderDatabase.forEachPendingOrder", SqlStatements.ORDER_PENDING, OrderRow::from, action);
     }
 
     // cancels an order
     public void cancelOrder(long orderId) throws SQLException {
-        String sql = "UPDATE orders SET status = 'CANCELLED' WHERE order_id = ?";
-        try (Connection conn = DriverManager.getConnection(url);
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setLong(1, orderId);
-            int updated = ps.executeUpdate();
-            if (updated == 0) {
-                throw new SQLException("Order not found");
-            }
-
-            recordOrderUpdate(orderId, "CANCELLED", "Order cancelled by admin", "admin");
+        try {
+            transitionOrder(orderId, OrderStatus.CANCELLED, "admin", "Order cancelled by admin");
         } catch (SQLException ex) {
-            Logger.catchAndLogBug(ex,"OrderDatabase");
             JOptionPane.showMessageDialog(null, "An error occurred while cancelling the order:\n" + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
         }
     }
 
+    /*
+    --> replays the order_updates log from just after the given update, oldest first
+    --> the log is append-only and every status change writes to it, so folding it gives the current
+        status of every order (OrderStates does that) without touching the orders table
+    --> returns the last update_id seen, pass it back in to only get what's new
+    */
+    public long forEachOrderUpdate(long afterUpdateId, Consumer<OrderUpdateRow> action) throws SQLException {
+        long[] last = { afterUpdateId };
+        try {
+            RowCursor.forEach(pool, "OrderDatabase.forEachOrderUpdate", SqlStatements.ORDER_UPDATES_SINCE, OrderUpdateRow::from,
+                    row -> {
+                        action.accept(row);
+                        last[0] = row.getUpdateId();
+                    }, afterUpdateId);
+        } catch (SQLException e) {
+            Logger.catchAndLogBug(e, "OrderDatabase");
+            throw e;
+        }
+        return last[0];
+    }
+
     // check if a customer has any delivered orders that haven't been notified yet
     public boolean hasUnnotifiedDelivered(String customerUsername) throws SQLException {
-        String sql = "SELECT EXISTS(SELECT 1 FROM orders WHERE customer_username = ? AND status = 'DELIVERED' AND COALESCE(delivered_notified,0) = 0)";
-        try (Connection conn = DriverManager.getConnection(url);
+        String sql = SqlStatements.ORDER_HAS_UNNOTIFIED;
+        try (Connection conn = pool.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, customerUsername);
             try (ResultSet rs = ps.executeQuery()) {
@@ -460,11 +872,15 @@ public class OrderDatabase {
 
     // mark all delivered orders as notified;to avoid repeat notifications
     public void markDeliveredNotified(String customerUsername) throws SQLException {
-        String sql = "UPDATE orders SET delivered_notified = 1 WHERE customer_username = ? AND status = 'DELIVERED' AND COALESCE(delivered_notified,0) = 0";
-        try (Connection conn = DriverManager.getConnection(url);
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, customerUsername);
-            ps.executeUpdate();
+        String sql = SqlStatements.ORDER_MARK_NOTIFIED;
+        try {
+            pool.getWriter().execute(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setString(1, customerUsername);
+                    return ps.executeUpdate();
+                }
+            });
+            summaries.invalidateCustomerOrders(customerUsername);
         } catch (SQLException ex) {
             Logger.catchAndLogBug(ex,"OrderDatabase");
             JOptionPane.showMessageDialog(null, "An error occurred while marking orders as notified:\n" + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
@@ -473,11 +889,72 @@ public class OrderDatabase {
     // Used to determine the oldest pending order accepted by a single driver.
     // This will be used to make sure that the order shown in the driver
     // main screen is the most important.
-    public ResultSet getOldestActiveOrder(String driverUsername) throws SQLException {
-        String sql = "SELECT * FROM orders WHERE driver_username = ? AND status != 'DELIVERED' AND status != 'CANCELLED' ORDER BY order_id ASC LIMIT 1";
-        Connection conn = DriverManager.getConnection(url);
-        PreparedStatement ps = conn.prepareStatement(sql);
-        ps.setString(1, driverUsername);
-        return ps.executeQuery();
+    // Returns null if the driver has no active order.
+    public OrderRow getOldestActiveOrder(String driverUsername) throws SQLException {
+        return RowCursor.first(pool, "OrderDatabase.getOldestActiveOrder", SqlStatements.ORDER_OLDEST_ACTIVE, OrderRow::from, driverUsername);
+    }
+
+    /*
+    --> the restaurants table as a spatial index, loaded from the database the first time it's asked for
+    --> restaurants added through addRestaurant afterwards go straight into it
+    */
+    public RestaurantDirectory getRestaurants() throws SQLException {
+        RestaurantDirectory directory = restaurants;
+        if (directory == null) {
+            synchronized (this) {
+                directory = restaurants;
+                if (directory == null) {
+                    RestaurantDirectory loading = new RestaurantDirectory();
+                    forEachRestaurant(loading::put);
+                    restaurants = directory = loading;
+                }
+            }
+        }
+        return directory;
+    }
+
+    // every restaurant in id order
+    public void forEachRestaurant(Consumer<RestaurantRow> action) throws SQLException {
+        try {
+            RowCursor.forEach(pool, "OrderDatabase.forEachRestaurant", SqlStatements.RESTAURANTS_AFTER,
+                    RestaurantRow::from, action, 0L);
+        } catch (SQLException ex) {
+            Logger.catchAndLogBug(ex, "OrderDatabase.forEachRestaurant");
+            throw ex;
+        }
+    }
+
+    // adds a restaurant and returns it with its new id
+    public RestaurantRow addRestaurant(String name, String address, String zip, double lat, double lon) throws SQLException {
+        String sql = SqlStatements.RESTAURANT_INSERT;
+        try {
+            long restaurantId = pool.getWriter().execute(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                    ps.setString(1, name);
+                    ps.setString(2, address);
+                    ps.setString(3, zip);
+                    ps.setDouble(4, lat);
+                    ps.setDouble(5, lon);
+                    ps.executeUpdate();
+                    try (ResultSet rs = ps.getGeneratedKeys()) {
+                        if (rs.next()) {
+                            return rs.getLong(1);
+                        }
+                        throw new SQLException("Failed to retrieve generated restaurant ID");
+                    }
+                }
+            });
+            RestaurantRow row = new RestaurantRow(restaurantId, name, address, zip, lat, lon);
+            // under the lock so a directory that's loading right now either read the row already or gets it here
+            synchronized (this) {
+                if (restaurants != null) {
+                    restaurants.put(row);
+                }
+            }
+            return row;
+        } catch (SQLException ex) {
+            Logger.catchAndLogBug(ex, "OrderDatabase.addRestaurant");
+            throw ex;
+        }
     }
 }
\ No newline at end of file
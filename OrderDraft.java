@@ -0,0 +1,180 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * OrderDraft holds everything a customer picked before the order is saved: who is ordering, from where,
+ * where it's going, and the list of items. OrderDatabase.placeOrder writes the whole draft in one transaction.
+ */
+public class OrderDraft {
+    private final String customerUsername;
+    private final String restaurantName;
+    private final String restaurantAddress;
+    private final String deliveryAddress;
+    private String specialInstructions = "No Special Instructions";
+    private String paymentType;
+    private double restaurantLat;
+    private double restaurantLon;
+    private double deliveryLat;
+    private double deliveryLon;
+    private final List<Line> items = new ArrayList<>();
+
+    /**
+     * Constructs an empty draft for a customer ordering from a restaurant.
+     * @param customerUsername Customer placing the order.
+     * @param restaurantName Restaurant name.
+     * @param restaurantAddress Restaurant street address.
+     * @param deliveryAddress Delivery street address.
+     */
+    public OrderDraft(String customerUsername, String restaurantName, String restaurantAddress, String deliveryAddress) {
+        this.customerUsername = customerUsername;
+        this.restaurantName = restaurantName;
+        this.restaurantAddress = restaurantAddress;
+        this.deliveryAddress = deliveryAddress;
+    }
+
+    /**
+     * Adds an item line to the draft.
+     * @param itemName Menu item name.
+     * @param quantity How many of the item.
+     * @param unitPrice Price of one item.
+     * @param specialRequests Notes for this item, can be null.
+     * @return This draft, so calls can be chained.
+     */
+    public OrderDraft addItem(String itemName, int quantity, double unitPrice, String specialRequests) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive for " + itemName);
+        }
+        items.add(new Line(itemName, quantity, unitPrice, specialRequests));
+        return this;
+    }
+
+    /**
+     * Returns the total price of all item lines.
+     * @return Sum of quantity * unit price.
+     */
+    public double getTotal() {
+        double total = 0;
+        for (Line line : items) {
+            total += line.quantity * line.unitPrice;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the total number of items (quantities added up, not lines).
+     * @return Item count.
+     */
+    public int getItemCount() {
+        int count = 0;
+        for (Line line : items) {
+            count += line.quantity;
+        }
+        return count;
+    }
+
+    public List<Line> getItems() {
+        return Collections.unmodifiableList(items);
+    }
+
+    public String getCustomerUsername() {
+        return customerUsername;
+    }
+
+    public String getRestaurantName() {
+        return restaurantName;
+    }
+
+    public String getRestaurantAddress() {
+        return restaurantAddress;
+    }
+
+    public String getDeliveryAddress() {
+        return deliveryAddress;
+    }
+
+    public String getSpecialInstructions() {
+        return specialInstructions;
+    }
+
+    public void setSpecialInstructions(String specialInstructions) {
+        this.specialInstructions = specialInstructions;
+    }
+
+    public String getPaymentType() {
+        return paymentType;
+    }
+
+    public void setPaymentType(String paymentType) {
+        this.paymentType = paymentType;
+    }
+
+    public double getRestaurantLat() {
+        return restaurantLat;
+    }
+
+    public double getRestaurantLon() {
+        return restaurantLon;
+    }
+
+    /**
+     * Sets the restaurant coordinates.
+     * @param lat Latitude.
+     * @param lon Longitude.
+     */
+    public void setRestaurantLocation(double lat, double lon) {
+        this.restaurantLat = lat;
+        this.restaurantLon = lon;
+    }
+
+    public double getDeliveryLat() {
+        return deliveryLat;
+    }
+
+    public double getDeliveryLon() {
+        return deliveryLon;
+    }
+
+    /**
+     * Sets the delivery coordinates.
+     * @param lat Latitude.
+     * @param lon Longitude.
+     */
+    public void setDeliveryLocation(double lat, double lon) {
+        this.deliveryLat = lat;
+        this.deliveryLon = lon;
+    }
+
+    /**
+     * One item line in the draft.
+     */
+    public static class Line {
+        final String itemName;
+        final int quantity;
+        final double unitPrice;
+        final String specialRequests;
+
+        Line(String itemName, int quantity, double unitPrice, String specialRequests) {
+            this.itemName = itemName;
+            this.quantity = quantity;
+            this.unitPrice = unitPrice;
+            this.specialRequests = specialRequests;
+        }
+
+        public String getItemName() {
+            return itemName;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public double getUnitPrice() {
+            return unitPrice;
+        }
+
+        public String getSpecialRequests() {
+            return specialRequests;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * OrderEventBus pushes order status changes to whoever is watching that customer or driver, so screens don't
+ * have to poll the database. OrderDatabase publishes after a transition to ASSIGNED, DELIVERED or CANCELLED has
+ * committed. Listeners run one at a time, in publish order, on a single background thread, so a Swing listener
+ * has to hop onto the EDT itself (SwingUtilities.invokeLater).
+ * Only changes made through this process are seen; another app instance writing the same file isn't.
+ */
+public class OrderEventBus {
+
+    // the statuses screens care about
+    public static final Set<OrderStatus> PUBLISHED = Collections.unmodifiableSet(
+            EnumSet.of(OrderStatus.ASSIGNED, OrderStatus.DELIVERED, OrderStatus.CANCELLED));
+
+    // one delivery thread for every bus in the process
+    private static final ExecutorService DISPATCHER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "order-events");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Receives order events. Called on the bus thread.
+     */
+    public interface Listener {
+        void onOrderEvent(Event event);
+    }
+
+    /**
+     * One committed status change.
+     */
+    public static final class Event {
+        private final long orderId;
+        private final OrderStatus status;
+        private final String customerUsername;
+        private final String driverUsername;
+        private final long at;
+
+        public Event(long orderId, OrderStatus status, String customerUsername, String driverUsername, long at) {
+            this.orderId = orderId;
+            this.status = status;
+            this.customerUsername = customerUsername;
+            this.driverUsername = driverUsername;
+            this.at = at;
+        }
+
+        public long getOrderId() {
+            return orderId;
+        }
+
+        public OrderStatus getStatus() {
+            return status;
+        }
+
+        public String getCustomerUsername() {
+            return customerUsername;
+        }
+
+        // null until a driver has the order
+        public String getDriverUsername() {
+            return driverUsername;
+        }
+
+        // epoch seconds
+        public long getAt() {
+            return at;
+        }
+
+        @Override
+        public String toString() {
+            return "Order #" + orderId + " " + status + " (customer=" + customerUsername + " driver=" + driverUsername + ")";
+        }
+    }
+
+    /**
+     * Handle for one listener. Close it when the screen goes away.
+     */
+    public final class Subscription implements AutoCloseable {
+        private final Map<String, List<Listener>> map;
+        private final String username;
+        private final Listener listener;
+
+        private Subscription(Map<String, List<Listener>> map, String username, Listener listener) {
+            this.map = map;
+            this.username = username;
+            this.listener = listener;
+        }
+
+        @Override
+        public void close() {
+            map.computeIfPresent(username, (k, listeners) -> {
+                listeners.remove(listener);
+                return listeners.isEmpty() ? null : listeners;
+            });
+        }
+    }
+
+    private final Map<String, List<Listener>> byCustomer = new ConcurrentHashMap<>();
+    private final Map<String, List<Listener>> byDriver = new ConcurrentHashMap<>();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+
+    /**
+     * Listens for status changes on a customer's orders.
+     * @param username The customer.
+     * @param listener Called for every published change to one of their orders.
+     * @return Subscription to close when done.
+     */
+    public Subscription subscribeCustomer(String username, Listener listener) {
+        return subscribe(byCustomer, username, listener);
+    }
+
+    /**
+     * Listens for status changes on the orders a driver has.
+     * @param username The driver.
+     * @param listener Called for every published change to one of their orders.
+     * @return Subscription to close when done.
+     */
+    public Subscription subscribeDriver(String username, Listener listener) {
+        return subscribe(byDriver, username, listener);
+    }
+
+    private Subscription subscribe(Map<String, List<Listener>> map, String username, Listener listener) {
+        map.compute(username, (k, listeners) -> {
+            List<Listener> list = listeners != null ? listeners : new CopyOnWriteArrayList<>();
+            list.add(listener);
+            return list;
+        });
+        return new Subscription(map, username, listener);
+    }
+
+    /**
+     * Checks if a change to this status would reach anyone, so the publisher can skip looking up the order's
+     * customer and driver when nobody is listening.
+     * @param status The new status.
+     * @return true if the status is published and there's at least one subscriber.
+     */
+    public boolean wants(OrderStatus status) {
+        return PUBLISHED.contains(status) && (!byCustomer.isEmpty() || !byDriver.isEmpty());
+    }
+
+    /*
+    --> hands the event to the customer's and the driver's listeners on the bus thread
+    --> a listener that throws is logged and skipped, the rest still get the event
+    */
+    public void publish(Event event) {
+        if (event == null || !PUBLISHED.contains(event.getStatus())) {
+            return;
+        }
+        published.incrementAndGet();
+        List<Listener> targets = new ArrayList<>();
+        if (event.getCustomerUsername() != null) {
+            targets.addAll(byCustomer.getOrDefault(event.getCustomerUsername(), Collections.emptyList()));
+        }
+        if (event.getDriverUsername() != null) {
+            targets.addAll(byDriver.getOrDefault(event.getDriverUsername(), Collections.emptyList()));
+        }
+        if (targets.isEmpty()) {
+            return;
+        }
+        DISPATCHER.execute(() -> {
+            for (Listener listener : targets) {
+                try {
+                    listener.onOrderEvent(event);
+                    delivered.incrementAndGet();
+                } catch (Exception e) {
+                    Logger.catchAndLogBug(e, "OrderEventBus.publish");
+                }
+            }
+        });
+    }
+
+    public long getPublished() {
+        return published.get();
+    }
+
+    public long getDelivered() {
+        return delivered.get();
+    }
+
+    @Override
+    public String toString() {
+        return "OrderEventBus[customers=" + byCustomer.size() + " drivers=" + byDriver.size()
+                + " published=" + published.get() + " delivered=" + delivered.get() + "]";
+    }
+}
@@ -0,0 +1,103 @@
+import org.junit.jupiter.api.*;
+import java.nio.file.*;
+import java.sql.SQLException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+/*
+--> Tests the order event bus:
+    - a customer and a driver subscriber get ASSIGNED, DELIVERED and CANCELLED pushed after the change commits,
+      with no polling; IN_PROGRESS and other people's orders aren't sent
+    - a closed subscription gets nothing more, and a listener that throws doesn't stop the others
+--> Will return "Order event bus test passed" with the bus counters if succeeded.
+ */
+public class OrderEventBusTest {
+
+    private Path dir;
+    private DataStore store;
+
+    @BeforeEach
+    void setup() throws Exception {
+        dir = Files.createTempDirectory("test-events");
+        store = DataStore.open(dir, DataStore.Layout.CONSOLIDATED, StorageProfile.FAST);
+        store.getDriverDb().registerDriver("eventdriver", "Car", "E1", "Downtown");
+    }
+
+    @AfterEach
+    void cleanup() throws Exception {
+        ConnectionPool.closeAll();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    @Test
+    void testChangesArePushed() throws Exception {
+        OrderDatabase orderDb = store.getOrderDb();
+        BlockingQueue<OrderEventBus.Event> customer = new LinkedBlockingQueue<>();
+        BlockingQueue<OrderEventBus.Event> driver = new LinkedBlockingQueue<>();
+        orderDb.getEvents().subscribeCustomer("eventcustomer", customer::add);
+        orderDb.getEvents().subscribeDriver("eventdriver", driver::add);
+
+        long orderId = newOrder(orderDb, "eventcustomer");
+        long otherId = newOrder(orderDb, "someoneelse");
+
+        assertTrue(orderDb.claimOrder(orderId, "eventdriver"));
+        OrderEventBus.Event assigned = next(customer);
+        assertEquals(OrderStatus.ASSIGNED, assigned.getStatus());
+        assertEquals(orderId, assigned.getOrderId());
+        assertEquals("eventdriver", assigned.getDriverUsername());
+        assertEquals(OrderStatus.ASSIGNED, next(driver).getStatus());
+
+        orderDb.transitionOrder(orderId, OrderStatus.IN_PROGRESS, "eventdriver", "picked up");
+        orderDb.transitionOrder(orderId, OrderStatus.DELIVERED, "eventdriver", "dropped off");
+        assertEquals(OrderStatus.DELIVERED, next(customer).getStatus());  // IN_PROGRESS was skipped
+        assertEquals(OrderStatus.DELIVERED, next(driver).getStatus());
+
+        orderDb.cancelOrder(otherId);
+        assertNull(customer.poll(200, TimeUnit.MILLISECONDS));
+        assertTrue(driver.isEmpty());
+        System.out.println("Order event bus test passed - " + orderDb.getEvents());
+    }
+
+    @Test
+    void testUnsubscribeAndFailingListener() throws Exception {
+        OrderDatabase orderDb = store.getOrderDb();
+        BlockingQueue<OrderEventBus.Event> kept = new LinkedBlockingQueue<>();
+        BlockingQueue<OrderEventBus.Event> dropped = new LinkedBlockingQueue<>();
+        orderDb.getEvents().subscribeCustomer("eventcustomer", event -> {
+            throw new IllegalStateException("listener blew up");
+        });
+        orderDb.getEvents().subscribeCustomer("eventcustomer", kept::add);
+        OrderEventBus.Subscription subscription = orderDb.getEvents().subscribeCustomer("eventcustomer", dropped::add);
+
+        long first = newOrder(orderDb, "eventcustomer");
+        orderDb.cancelOrder(first);
+        assertEquals(first, next(kept).getOrderId());
+        assertEquals(first, next(dropped).getOrderId());
+
+        subscription.close();
+        long second = newOrder(orderDb, "eventcustomer");
+        orderDb.cancelOrder(second);
+        assertEquals(second, next(kept).getOrderId());
+        assertNull(dropped.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    private static long newOrder(OrderDatabase orderDb, String customer) throws SQLException {
+        long orderId = orderDb.createOrder(customer, "Event Bistro", "1 Event St", "2 Home St", "none",
+                22.00, 1, "CARD", 41.98, 70.96, 41.99, 70.97);
+        assertTrue(orderId > 0);
+        return orderId;
+    }
+
+    private static OrderEventBus.Event next(BlockingQueue<OrderEventBus.Event> queue) throws InterruptedException {
+        OrderEventBus.Event event = queue.poll(5, TimeUnit.SECONDS);
+        assertNotNull(event, "no event pushed");
+        return event;
+    }
+}
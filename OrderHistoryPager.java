@@ -0,0 +1,186 @@
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Function;
+import javax.swing.JOptionPane;
+import javax.swing.JScrollBar;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+import javax.swing.table.DefaultTableModel;
+
+/**
+ * OrderHistoryPager fills an order table one page at a time as the user scrolls, using
+ * OrderDatabase's keyset pagination. It keeps at most a few pages in the table model: scrolling down
+ * past the window drops the oldest-loaded page from the top, scrolling back up fetches it again,
+ * so the table's memory stays the same however many orders there are.
+ */
+public class OrderHistoryPager {
+    private static final int PAGE_SIZE = 50;
+    private static final int MAX_PAGES = 4;
+    // start loading when the scrollbar is this close (in pixels) to either end
+    private static final int LOAD_MARGIN = 40;
+
+    private final OrderDatabase orderDb;
+    private final String username;
+    private final String userType;
+    private final DefaultTableModel model;
+    private final Function<OrderRow, Object[]> toRow;
+    private final Deque<OrderPage> pages = new ArrayDeque<>();
+    private JScrollPane scroll;
+    private boolean loading;
+
+    /**
+     * Constructs a pager for one history table.
+     * @param orderDb Order database to page through.
+     * @param username User whose history is shown (ignored for ADMIN).
+     * @param userType CUSTOMER, DRIVER or ADMIN.
+     * @param model Table model the rows go into.
+     * @param toRow Turns an order into the table's row values.
+     */
+    public OrderHistoryPager(OrderDatabase orderDb, String username, String userType,
+                             DefaultTableModel model, Function<OrderRow, Object[]> toRow) {
+        this.orderDb = orderDb;
+        this.username = username;
+        this.userType = userType;
+        this.model = model;
+        this.toRow = toRow;
+    }
+
+    /**
+     * Loads more rows whenever the user scrolls near the top or bottom of the table.
+     * @param scroll The scroll pane the table sits in.
+     */
+    public void attach(JScrollPane scroll) {
+        this.scroll = scroll;
+        scroll.getVerticalScrollBar().addAdjustmentListener(e -> {
+            if (e.getValueIsAdjusting() || loading) {
+                return;
+            }
+            JScrollBar bar = scroll.getVerticalScrollBar();
+            if (bar.getValue() + bar.getVisibleAmount() >= bar.getMaximum() - LOAD_MARGIN) {
+                SwingUtilities.invokeLater(this::loadOlder);
+            } else if (bar.getValue() <= LOAD_MARGIN) {
+                SwingUtilities.invokeLater(this::loadNewer);
+            }
+        });
+    }
+
+    /**
+     * Clears the table and loads the newest page again (used for refresh buttons).
+     */
+    public void reload() {
+        pages.clear();
+        model.setRowCount(0);
+        try {
+            OrderPage first = orderDb.getOrderHistoryPage(username, userType, null, PAGE_SIZE);
+            pages.addLast(first);
+            for (OrderRow row : first.getRows()) {
+                model.addRow(toRow.apply(row));
+            }
+        } catch (SQLException ex) {
+            showError(ex);
+        }
+    }
+
+    /**
+     * Appends the next page of older orders, dropping the top page if the window is full.
+     * @return true if a page was loaded.
+     */
+    public boolean loadOlder() {
+        OrderPage last = pages.peekLast();
+        if (loading || last == null || !last.hasOlder()) {
+            return false;
+        }
+        loading = true;
+        try {
+            OrderPage page = orderDb.getOrderHistoryPage(username, userType, last.getOlderKey(), PAGE_SIZE);
+            if (page.isEmpty()) {
+                return false;
+            }
+            pages.addLast(page);
+            for (OrderRow row : page.getRows()) {
+                model.addRow(toRow.apply(row));
+            }
+            if (pages.size() > MAX_PAGES) {
+                OrderPage dropped = pages.removeFirst();
+                int count = dropped.getRows().size();
+                for (int i = 0; i < count; i++) {
+                    model.removeRow(0);
+                }
+                scrollBy(-count);
+            }
+            return true;
+        } catch (SQLException ex) {
+            showError(ex);
+            return false;
+        } finally {
+            loading = false;
+        }
+    }
+
+    /**
+     * Puts back the page of newer orders above the window, dropping the bottom page if the window is full.
+     * @return true if a page was loaded.
+     */
+    public boolean loadNewer() {
+        OrderPage first = pages.peekFirst();
+        if (loading || first == null || first.isEmpty() || !first.hasNewer()) {
+            return false;
+        }
+        loading = true;
+        try {
+            OrderPage page = orderDb.getOrderHistoryPageBefore(username, userType, first.getNewerKey(), PAGE_SIZE);
+            if (page.isEmpty()) {
+                return false;
+            }
+            pages.addFirst(page);
+            int index = 0;
+            for (OrderRow row : page.getRows()) {
+                model.insertRow(index++, toRow.apply(row));
+            }
+            scrollBy(index);
+            if (pages.size() > MAX_PAGES) {
+                OrderPage dropped = pages.removeLast();
+                int count = dropped.getRows().size();
+                for (int i = 0; i < count; i++) {
+                    model.removeRow(model.getRowCount() - 1);
+                }
+            }
+            return true;
+        } catch (SQLException ex) {
+            showError(ex);
+            return false;
+        } finally {
+            loading = false;
+        }
+    }
+
+    // keeps the same rows on screen after rows were added/removed above them
+    private void scrollBy(int rows) {
+        if (scroll == null || scroll.getViewport().getView() == null) {
+            return;
+        }
+        int rowHeight = scroll.getViewport().getView() instanceof JTable
+                ? ((JTable) scroll.getViewport().getView()).getRowHeight() : 16;
+        // the table hasn't been laid out for the new row count yet, so do it first
+        scroll.getViewport().getView().revalidate();
+        scroll.validate();
+        JScrollBar bar = scroll.getVerticalScrollBar();
+        bar.setValue(bar.getValue() + rows * rowHeight);
+    }
+
+    /**
+     * Returns how many rows are currently held in the table.
+     * @return Row count across the loaded pages.
+     */
+    public int getLoadedRowCount() {
+        return model.getRowCount();
+    }
+
+    private void showError(SQLException ex) {
+        Logger.catchAndLogBug(ex, "OrderHistoryPager");
+        JOptionPane.showMessageDialog(scroll, "Error loading orders: " + ex.getMessage(),
+                "Database Error", JOptionPane.ERROR_MESSAGE);
+    }
+}
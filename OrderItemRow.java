@@ -0,0 +1,65 @@
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * OrderItemRow is one row of the order_items table (one menu item line of an order).
+ */
+public class OrderItemRow {
+    private final long itemId;
+    private final long orderId;
+    private final String itemName;
+    private final int quantity;
+    private final double unitPrice;
+    private final String specialRequests;
+
+    private OrderItemRow(ResultSet rs) throws SQLException {
+        this.itemId = rs.getLong("item_id");
+        this.orderId = rs.getLong("order_id");
+        this.itemName = rs.getString("item_name");
+        this.quantity = rs.getInt("quantity");
+        this.unitPrice = rs.getDouble("unit_price");
+        this.specialRequests = rs.getString("special_requests");
+    }
+
+    /**
+     * Maps the current row of a query on order_items.
+     * @param rs ResultSet positioned on a row.
+     * @return The mapped row.
+     * @throws SQLException if a column is missing
+     */
+    public static OrderItemRow from(ResultSet rs) throws SQLException {
+        return new OrderItemRow(rs);
+    }
+
+    public long getItemId() {
+        return itemId;
+    }
+
+    public long getOrderId() {
+        return orderId;
+    }
+
+    public String getItemName() {
+        return itemName;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public double getUnitPrice() {
+        return unitPrice;
+    }
+
+    /**
+     * Returns quantity * unit price for this line.
+     * @return Line total.
+     */
+    public double getLineTotal() {
+        return quantity * unitPrice;
+    }
+
+    public String getSpecialRequests() {
+        return specialRequests;
+    }
+}
@@ -0,0 +1,90 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * OrderPage is one page of an order listing, newest first, fetched with keyset pagination on
+ * (created_at, order_id). Instead of an OFFSET it remembers the keys of its first and last rows,
+ * so fetching the next or previous page is an index seek no matter how deep into the history it is.
+ */
+public class OrderPage {
+
+    /**
+     * Position in an order listing: the (created_at, order_id) of a row.
+     * order_id breaks ties between orders placed in the same second.
+     */
+    public static class Key {
+        private final long createdAt;
+        private final long orderId;
+
+        public Key(long createdAt, long orderId) {
+            this.createdAt = createdAt;
+            this.orderId = orderId;
+        }
+
+        static Key of(OrderRow row) {
+            return new Key(row.getCreatedAt(), row.getOrderId());
+        }
+
+        public long getCreatedAt() {
+            return createdAt;
+        }
+
+        public long getOrderId() {
+            return orderId;
+        }
+    }
+
+    private final List<OrderRow> rows;
+    private final boolean hasOlder;
+    private final boolean hasNewer;
+
+    OrderPage(List<OrderRow> rows, boolean hasOlder, boolean hasNewer) {
+        this.rows = Collections.unmodifiableList(rows);
+        this.hasOlder = hasOlder;
+        this.hasNewer = hasNewer;
+    }
+
+    /**
+     * Returns the orders on this page, newest first.
+     * @return Page rows.
+     */
+    public List<OrderRow> getRows() {
+        return rows;
+    }
+
+    public boolean isEmpty() {
+        return rows.isEmpty();
+    }
+
+    /**
+     * Returns true if there are older orders after this page.
+     * @return Whether a next page exists.
+     */
+    public boolean hasOlder() {
+        return hasOlder;
+    }
+
+    /**
+     * Returns true if there are newer orders before this page.
+     * @return Whether a previous page exists.
+     */
+    public boolean hasNewer() {
+        return hasNewer;
+    }
+
+    /**
+     * Returns the key to pass as "after" to get the next (older) page.
+     * @return Key of the last row, or null if the page is empty.
+     */
+    public Key getOlderKey() {
+        return rows.isEmpty() ? null : Key.of(rows.get(rows.size() - 1));
+    }
+
+    /**
+     * Returns the key to pass as "before" to get the previous (newer) page.
+     * @return Key of the first row, or null if the page is empty.
+     */
+    public Key getNewerKey() {
+        return rows.isEmpty() ? null : Key.of(rows.get(0));
+    }
+}
@@ -0,0 +1,197 @@
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * OrderRow is one row of the orders table, including the "Pizza x2,Soda x1" items summary the
+ * order_items triggers keep on it. Built by OrderDatabase queries in place of handing out a ResultSet.
+ */
+public class OrderRow {
+    private final long orderId;
+    private final String customerUsername;
+    private final String restaurantName;
+    private final String restaurantAddress;
+    private final String status;
+    private final double totalAmount;
+    private final long createdAt;
+    private final Long assignedAt;
+    private final Long pickedUpAt;
+    private final Long deliveredAt;
+    private final String driverUsername;
+    private final String deliveryAddress;
+    private final String specialInstructions;
+    private final int estimatedMinutes;
+    private final Integer actualMinutes;
+    private final int itemCount;
+    private final String paymentType;
+    private final String paymentStatus;
+    private final boolean deliveredNotified;
+    private final String items;
+    private final Double restaurantLat;
+    private final Double restaurantLon;
+    private final Double deliveryLat;
+    private final Double deliveryLon;
+
+    private OrderRow(ResultSet rs) throws SQLException {
+        this.orderId = rs.getLong("order_id");
+        this.customerUsername = rs.getString("customer_username");
+        this.restaurantName = rs.getString("restaurant_name");
+        this.restaurantAddress = rs.getString("restaurant_address");
+        this.status = rs.getString("status");
+        this.totalAmount = rs.getDouble("total_amount");
+        this.createdAt = rs.getLong("created_at");
+        this.assignedAt = getNullableLong(rs, "assigned_at");
+        this.pickedUpAt = getNullableLong(rs, "picked_up_at");
+        this.deliveredAt = getNullableLong(rs, "delivered_at");
+        this.driverUsername = rs.getString("driver_username");
+        this.deliveryAddress = rs.getString("delivery_address");
+        this.specialInstructions = rs.getString("special_instructions");
+        this.estimatedMinutes = rs.getInt("estimated_minutes");
+        Long actual = getNullableLong(rs, "actual_minutes");
+        this.actualMinutes = actual != null ? actual.intValue() : null;
+        this.itemCount = rs.getInt("item_count");
+        this.paymentType = rs.getString("payment_type");
+        this.paymentStatus = rs.getString("payment_status");
+        this.deliveredNotified = rs.getInt("delivered_notified") == 1;
+        this.items = rs.getString("items_summary");
+        this.restaurantLat = getNullableDouble(rs, "restaurant_lat");
+        this.restaurantLon = getNullableDouble(rs, "restaurant_lon");
+        this.deliveryLat = getNullableDouble(rs, "delivery_lat");
+        this.deliveryLon = getNullableDouble(rs, "delivery_lon");
+    }
+
+    /**
+     * Maps the current row of a query that selects o.* from orders.
+     * @param rs ResultSet positioned on a row.
+     * @return The mapped row.
+     * @throws SQLException if a column is missing
+     */
+    public static OrderRow from(ResultSet rs) throws SQLException {
+        return new OrderRow(rs);
+    }
+
+    static Long getNullableLong(ResultSet rs, String column) throws SQLException {
+        long value = rs.getLong(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    static Double getNullableDouble(ResultSet rs, String column) throws SQLException {
+        double value = rs.getDouble(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    public long getOrderId() {
+        return orderId;
+    }
+
+    public String getCustomerUsername() {
+        return customerUsername;
+    }
+
+    public String getRestaurantName() {
+        return restaurantName;
+    }
+
+    public String getRestaurantAddress() {
+        return restaurantAddress;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public double getTotalAmount() {
+        return totalAmount;
+    }
+
+    /**
+     * Returns when the order was placed.
+     * @return Epoch seconds.
+     */
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * Returns when a driver took the order.
+     * @return Epoch seconds, or null if no driver yet.
+     */
+    public Long getAssignedAt() {
+        return assignedAt;
+    }
+
+    public Long getPickedUpAt() {
+        return pickedUpAt;
+    }
+
+    public Long getDeliveredAt() {
+        return deliveredAt;
+    }
+
+    public String getDriverUsername() {
+        return driverUsername;
+    }
+
+    public String getDeliveryAddress() {
+        return deliveryAddress;
+    }
+
+    public String getSpecialInstructions() {
+        return specialInstructions;
+    }
+
+    public int getEstimatedMinutes() {
+        return estimatedMinutes;
+    }
+
+    /**
+     * Returns how long the delivery actually took.
+     * @return Minutes, or null if not delivered yet.
+     */
+    public Integer getActualMinutes() {
+        return actualMinutes;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    public String getPaymentType() {
+        return paymentType;
+    }
+
+    public String getPaymentStatus() {
+        return paymentStatus;
+    }
+
+    public boolean isDeliveredNotified() {
+        return deliveredNotified;
+    }
+
+    /**
+     * Returns the items summary, like "Pizza x2,Soda x1".
+     * @return Items summary, or null if the order has no items.
+     */
+    public String getItems() {
+        return items;
+    }
+
+    /**
+     * Returns the restaurant's latitude.
+     * @return Latitude, or null for orders saved before coordinates were stored.
+     */
+    public Double getRestaurantLat() {
+        return restaurantLat;
+    }
+
+    public Double getRestaurantLon() {
+        return restaurantLon;
+    }
+
+    public Double getDeliveryLat() {
+        return deliveryLat;
+    }
+
+    public Double getDeliveryLon() {
+        return deliveryLon;
+    }
+}
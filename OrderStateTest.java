@@ -0,0 +1,111 @@
+import org.junit.jupiter.api.*;
+import java.nio.file.*;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+/*
+--> Tests the order state machine and the order_updates log:
+    - the transition table (what can follow what, final statuses)
+    - a transition writes the orders row and its event together, an illegal one writes neither
+    - replaying order_updates rebuilds every open order's status, and catching up only reads new events
+--> Will return "Order state test passed" with the events replayed if succeeded.
+ */
+public class OrderStateTest {
+
+    private static Path orderDbPath;
+
+    private OrderDatabase orderDb;
+
+    @BeforeAll
+    static void setup() throws Exception {
+        orderDbPath = Files.createTempFile("test-orderstate", ".db");
+    }
+
+    @AfterAll
+    static void cleanup() throws Exception {
+        ConnectionPool.closeAll();
+        Files.deleteIfExists(orderDbPath);
+    }
+
+    @BeforeEach
+    void init() throws Exception {
+        orderDb = new OrderDatabase(orderDbPath);
+        orderDb.init();
+    }
+
+    @Test
+    void testTransitionTable() {
+        assertTrue(OrderStatus.PENDING.canMoveTo(OrderStatus.ASSIGNED));
+        assertTrue(OrderStatus.ASSIGNED.canMoveTo(OrderStatus.DELIVERED));
+        assertFalse(OrderStatus.PENDING.canMoveTo(OrderStatus.DELIVERED));
+        assertFalse(OrderStatus.IN_PROGRESS.canMoveTo(OrderStatus.ASSIGNED));
+        assertFalse(OrderStatus.CANCELLED.canMoveTo(OrderStatus.PENDING));
+        assertTrue(OrderStatus.DELIVERED.isFinal());
+        assertTrue(OrderStatus.PENDING.reachableFrom().isEmpty());
+        assertEquals(OrderStatus.READY, OrderStatus.fromCode(OrderBook.READY));
+        assertNull(OrderStatus.parse("SHIPPED"));
+    }
+
+    @Test
+    void testIllegalTransitionWritesNothing() throws SQLException {
+        long orderId = newOrder();
+        long before = lastUpdateId();
+
+        SQLException e = assertThrows(SQLException.class,
+                () -> orderDb.transitionOrder(orderId, OrderStatus.DELIVERED, "statedriver", "skipping ahead"));
+        assertTrue(e.getMessage().contains("PENDING"));
+        assertEquals("PENDING", orderDb.getOrderDetails(orderId).getStatus());
+        assertEquals(before, lastUpdateId());
+
+        assertThrows(SQLException.class, () -> orderDb.transitionOrder(999999, OrderStatus.CANCELLED, "admin", "missing"));
+    }
+
+    @Test
+    void testReplayRebuildsOpenOrders() throws SQLException {
+        long delivered = newOrder();
+        long assigned = newOrder();
+        long cancelled = newOrder();
+        long pending = newOrder();
+        orderDb.transitionOrder(delivered, OrderStatus.ASSIGNED, "statedriver", "taken");
+        orderDb.transitionOrder(delivered, OrderStatus.IN_PROGRESS, "statedriver", "picked up");
+        orderDb.transitionOrder(delivered, OrderStatus.DELIVERED, "statedriver", "dropped off");
+        orderDb.transitionOrder(assigned, OrderStatus.ASSIGNED, "statedriver", "taken");
+        orderDb.transitionOrder(cancelled, OrderStatus.CANCELLED, "admin", "cancelled");
+
+        assertEquals("DELIVERED", orderDb.getOrderDetails(delivered).getStatus());
+        assertEquals("statedriver", orderDb.getOrderDetails(assigned).getDriverUsername());
+
+        OrderStates states = new OrderStates(orderDb);
+        int replayed = states.catchUp();
+        assertNull(states.statusOf(delivered));
+        assertNull(states.statusOf(cancelled));
+        assertEquals(OrderStatus.ASSIGNED, states.statusOf(assigned));
+        assertEquals(OrderStatus.PENDING, states.statusOf(pending));
+
+        // the replayed state matches what the orders table says for every open order
+        for (long orderId : states.openOrders().keySet()) {
+            assertEquals(orderDb.getOrderDetails(orderId).getStatus(), states.statusOf(orderId).name());
+        }
+
+        // only the new event is read on the next catch up
+        orderDb.transitionOrder(pending, OrderStatus.ASSIGNED, "statedriver", "taken");
+        assertEquals(1, states.catchUp());
+        assertEquals(OrderStatus.ASSIGNED, states.statusOf(pending));
+        assertEquals(0, states.catchUp());
+        System.out.println("Order state test passed - " + replayed + " events replayed");
+    }
+
+    private long newOrder() throws SQLException {
+        long orderId = orderDb.createOrder("statecustomer", "State Diner", "1 State St", "2 Home St", "none",
+                18.00, 1, "CARD", 41.98, 70.96, 41.99, 70.97);
+        assertTrue(orderId > 0);
+        return orderId;
+    }
+
+    private long lastUpdateId() throws SQLException {
+        List<OrderUpdateRow> rows = new ArrayList<>();
+        orderDb.forEachOrderUpdate(0, rows::add);
+        return rows.isEmpty() ? 0 : rows.get(rows.size() - 1).getUpdateId();
+    }
+}
@@ -0,0 +1,71 @@
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * OrderStates is an in-memory view of which orders are still open and what status each one is in,
+ * built only from the order_updates log. Nothing is persisted: a new instance's first catchUp() replays the whole
+ * log from the start, so create one and keep it around; after that catchUp() only reads the events written since
+ * the last call, so keeping it warm never scans the orders table.
+ * Orders that reach DELIVERED or CANCELLED are dropped, so it only ever holds the live ones.
+ */
+public class OrderStates {
+
+    private final OrderDatabase orderDb;
+    private final Map<Long, OrderStatus> open = new ConcurrentHashMap<>();
+    private volatile long lastUpdateId;
+
+    public OrderStates(OrderDatabase orderDb) {
+        this.orderDb = orderDb;
+    }
+
+    /**
+     * Applies every order_updates event written since the last call (all of them the first time).
+     * @return Number of events applied.
+     * @throws SQLException if reading the log fails
+     */
+    public synchronized int catchUp() throws SQLException {
+        int[] applied = { 0 };
+        lastUpdateId = orderDb.forEachOrderUpdate(lastUpdateId, row -> {
+            apply(row);
+            applied[0]++;
+        });
+        return applied[0];
+    }
+
+    /*
+    --> the log is the truth, so events are applied as they are even if the table wouldn't allow them
+        (rows written before OrderStatus existed)
+    --> statuses the table doesn't know are skipped
+    */
+    private void apply(OrderUpdateRow row) {
+        OrderStatus status = row.getOrderStatus();
+        if (status == null) {
+            return;
+        }
+        if (status.isFinal()) {
+            open.remove(row.getOrderId());
+        } else {
+            open.put(row.getOrderId(), status);
+        }
+    }
+
+    /**
+     * Returns an order's status as of the last catchUp().
+     * @param orderId The order.
+     * @return The status, or null if the order is finished or unknown.
+     */
+    public OrderStatus statusOf(long orderId) {
+        return open.get(orderId);
+    }
+
+    // read-only view of open order id -> status
+    public Map<Long, OrderStatus> openOrders() {
+        return Collections.unmodifiableMap(open);
+    }
+
+    public long getLastUpdateId() {
+        return lastUpdateId;
+    }
+}
@@ -0,0 +1,98 @@
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * OrderStatus is the lifecycle of an order and the table of which status can follow which.
+ * The name is what orders.status and order_updates.status store, the code is the int Orders/OrderBook use in memory.
+ * PENDING -> ASSIGNED -> (READY) -> IN_PROGRESS -> DELIVERED, and anything that isn't finished can be CANCELLED.
+ * DELIVERED and CANCELLED are final.
+ */
+public enum OrderStatus {
+    PENDING(0),
+    ASSIGNED(1),
+    READY(2),        // restaurant has it bagged, waiting for the driver
+    IN_PROGRESS(3),  // picked up
+    DELIVERED(4),
+    CANCELLED(5);
+
+    private final int code;
+    private Set<OrderStatus> next = Collections.emptySet();
+    private Set<OrderStatus> previous = Collections.emptySet();
+
+    static {
+        PENDING.next = EnumSet.of(ASSIGNED, CANCELLED);
+        // the driver screen goes straight from assigned to delivered, pickup isn't always recorded
+        ASSIGNED.next = EnumSet.of(READY, IN_PROGRESS, DELIVERED, CANCELLED);
+        READY.next = EnumSet.of(IN_PROGRESS, DELIVERED, CANCELLED);
+        IN_PROGRESS.next = EnumSet.of(DELIVERED, CANCELLED);
+
+        for (OrderStatus status : values()) {
+            EnumSet<OrderStatus> from = EnumSet.noneOf(OrderStatus.class);
+            for (OrderStatus other : values()) {
+                if (other.next.contains(status)) {
+                    from.add(other);
+                }
+            }
+            status.previous = Collections.unmodifiableSet(from);
+            status.next = Collections.unmodifiableSet(status.next);
+        }
+    }
+
+    OrderStatus(int code) {
+        this.code = code;
+    }
+
+    public int code() {
+        return code;
+    }
+
+    /**
+     * Checks the transition table.
+     * @param target Status to move to.
+     * @return true if an order in this status is allowed to move to target.
+     */
+    public boolean canMoveTo(OrderStatus target) {
+        return next.contains(target);
+    }
+
+    // statuses this one can be reached from (what a guarded UPDATE has to see in the row)
+    public Set<OrderStatus> reachableFrom() {
+        return previous;
+    }
+
+    public boolean isFinal() {
+        return next.isEmpty();
+    }
+
+    /**
+     * Maps an Orders/OrderBook status code.
+     * @param code 0-5.
+     * @return The status.
+     * @throws IllegalArgumentException if the code isn't one of them
+     */
+    public static OrderStatus fromCode(int code) {
+        for (OrderStatus status : values()) {
+            if (status.code == code) {
+                return status;
+            }
+        }
+        throw new IllegalArgumentException("Unknown order status code " + code);
+    }
+
+    /**
+     * Maps a status as stored in the database.
+     * @param name e.g. "PENDING".
+     * @return The status, or null for anything older code wrote that isn't in the table.
+     */
+    public static OrderStatus parse(String name) {
+        if (name == null) {
+            return null;
+        }
+        try {
+            return valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
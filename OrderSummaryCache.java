@@ -0,0 +1,270 @@
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * OrderSummaryCache keeps the first history page of each customer, driver and the admin, and single orders looked up
+ * by id, so going back and forth between screens doesn't read orders.db again.
+ * Both parts are LRU and bounded. OrderDatabase drops entries itself when it writes: every cached page remembers the
+ * order ids on it, so a status change only throws away the pages and order that actually show that order.
+ * A load that was running while something got invalidated isn't cached, so a stale read can't slip back in.
+ */
+public class OrderSummaryCache {
+
+    static final int DEFAULT_PAGES = 256;
+    static final int DEFAULT_ORDERS = 1024;
+
+    /**
+     * Hit/miss counters for both parts of the cache.
+     */
+    public static class Stats {
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong evictions = new AtomicLong();
+        private final AtomicLong invalidations = new AtomicLong();
+
+        public long getHits() {
+            return hits.get();
+        }
+
+        public long getMisses() {
+            return misses.get();
+        }
+
+        public long getEvictions() {
+            return evictions.get();
+        }
+
+        public long getInvalidations() {
+            return invalidations.get();
+        }
+
+        public double getHitRatio() {
+            long total = hits.get() + misses.get();
+            return total == 0 ? 0.0 : (double) hits.get() / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits=%d misses=%d evictions=%d invalidations=%d hitRatio=%.2f",
+                    getHits(), getMisses(), getEvictions(), getInvalidations(), getHitRatio());
+        }
+    }
+
+    /**
+     * Loads a value on a miss.
+     */
+    public interface Loader<T> {
+        T load() throws SQLException;
+    }
+
+    private final int pageCapacity;
+    private final int orderCapacity;
+    private final Stats stats = new Stats();
+    // all three are guarded by this
+    private final LinkedHashMap<String, OrderPage> pages = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Long, OrderRow> orders = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Long, Set<String>> pagesByOrder = new HashMap<>();
+    // bumped by every invalidation, a load only gets cached if nothing was invalidated while it ran
+    private long generation;
+
+    /**
+     * Constructs a cache with the default sizes.
+     */
+    public OrderSummaryCache() {
+        this(DEFAULT_PAGES, DEFAULT_ORDERS);
+    }
+
+    /**
+     * Constructs a cache.
+     * @param pageCapacity How many history pages to keep at most.
+     * @param orderCapacity How many single orders to keep at most.
+     */
+    public OrderSummaryCache(int pageCapacity, int orderCapacity) {
+        this.pageCapacity = pageCapacity;
+        this.orderCapacity = orderCapacity;
+    }
+
+    // "CUSTOMER:alice:", "DRIVER:bob:"; the admin sees everyone's orders so the name doesn't matter
+    private static String userPrefix(String userType, String username) {
+        return userType + ":" + ("ADMIN".equals(userType) ? "" : username) + ":";
+    }
+
+    private static String pageKey(String userType, String username, int pageSize) {
+        return userPrefix(userType, username) + pageSize;
+    }
+
+    /**
+     * Returns the cached first history page, loading (and caching) it on a miss.
+     * @param userType CUSTOMER, DRIVER or ADMIN.
+     * @param username Whose history.
+     * @param pageSize Rows per page.
+     * @param loader Reads the page from the database.
+     * @return The page.
+     * @throws SQLException if the loader fails
+     */
+    public OrderPage firstPage(String userType, String username, int pageSize, Loader<OrderPage> loader) throws SQLException {
+        String key = pageKey(userType, username, pageSize);
+        long started;
+        synchronized (this) {
+            OrderPage cached = pages.get(key);
+            if (cached != null) {
+                stats.hits.incrementAndGet();
+                return cached;
+            }
+            started = generation;
+        }
+        stats.misses.incrementAndGet();
+        OrderPage page = loader.load();
+        synchronized (this) {
+            if (generation == started) {
+                putPage(key, page);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Returns a cached order, loading (and caching) it on a miss. A missing order (null) isn't cached.
+     * @param orderId The order.
+     * @param loader Reads the order from the database.
+     * @return The order, or null if the loader found nothing.
+     * @throws SQLException if the loader fails
+     */
+    public OrderRow order(long orderId, Loader<OrderRow> loader) throws SQLException {
+        long started;
+        synchronized (this) {
+            OrderRow cached = orders.get(orderId);
+            if (cached != null) {
+                stats.hits.incrementAndGet();
+                return cached;
+            }
+            started = generation;
+        }
+        stats.misses.incrementAndGet();
+        OrderRow order = loader.load();
+        synchronized (this) {
+            if (order != null && generation == started) {
+                orders.put(orderId, order);
+                if (orders.size() > orderCapacity) {
+                    Iterator<Long> oldest = orders.keySet().iterator();
+                    oldest.next();
+                    oldest.remove();
+                    stats.evictions.incrementAndGet();
+                }
+            }
+        }
+        return order;
+    }
+
+    // caller holds the lock
+    private void putPage(String key, OrderPage page) {
+        removePage(key);
+        pages.put(key, page);
+        for (OrderRow row : page.getRows()) {
+            pagesByOrder.computeIfAbsent(row.getOrderId(), id -> new HashSet<>()).add(key);
+        }
+        if (pages.size() > pageCapacity) {
+            removePage(pages.keySet().iterator().next());
+            stats.evictions.incrementAndGet();
+        }
+    }
+
+    // caller holds the lock
+    private boolean removePage(String key) {
+        OrderPage page = pages.remove(key);
+        if (page == null) {
+            return false;
+        }
+        for (OrderRow row : page.getRows()) {
+            Set<String> keys = pagesByOrder.get(row.getOrderId());
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    pagesByOrder.remove(row.getOrderId());
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Drops the order and every history page showing it (its status, driver or items changed).
+     * @param orderId The order that changed.
+     */
+    public synchronized void invalidateOrder(long orderId) {
+        generation++;
+        int dropped = orders.remove(orderId) != null ? 1 : 0;
+        Set<String> keys = pagesByOrder.remove(orderId);
+        if (keys != null) {
+            for (String key : new HashSet<>(keys)) {
+                if (removePage(key)) {
+                    dropped++;
+                }
+            }
+        }
+        stats.invalidations.addAndGet(dropped);
+    }
+
+    /**
+     * Drops one user's first pages, for a change that adds an order to their history (a new order, a driver taking one).
+     * @param userType CUSTOMER, DRIVER or ADMIN.
+     * @param username Whose history.
+     */
+    public synchronized void invalidateUser(String userType, String username) {
+        generation++;
+        String prefix = userPrefix(userType, username);
+        int dropped = 0;
+        for (String key : new HashSet<>(pages.keySet())) {
+            if (key.startsWith(prefix) && removePage(key)) {
+                dropped++;
+            }
+        }
+        stats.invalidations.addAndGet(dropped);
+    }
+
+    /**
+     * Drops a customer's first pages and every cached order of theirs, for updates that touch several of their
+     * orders at once (marking deliveries notified).
+     * @param customerUsername Whose orders.
+     */
+    public synchronized void invalidateCustomerOrders(String customerUsername) {
+        invalidateUser("CUSTOMER", customerUsername);
+        Iterator<OrderRow> it = orders.values().iterator();
+        while (it.hasNext()) {
+            if (customerUsername.equals(it.next().getCustomerUsername())) {
+                it.remove();
+                stats.invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        generation++;
+        pages.clear();
+        orders.clear();
+        pagesByOrder.clear();
+    }
+
+    public synchronized int getPageCount() {
+        return pages.size();
+    }
+
+    public synchronized int getOrderCount() {
+        return orders.size();
+    }
+
+    public Stats getStats() {
+        return stats;
+    }
+
+    @Override
+    public String toString() {
+        return "OrderSummaryCache[pages=" + getPageCount() + " orders=" + getOrderCount() + " " + stats + "]";
+    }
+}
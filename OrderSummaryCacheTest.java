@@ -0,0 +1,119 @@
+import org.junit.jupiter.api.*;
+import java.nio.file.*;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+/*
+--> Tests the per-user order summary cache:
+    - opening the same history again is a hit, not a query
+    - a new order drops its customer's and the admin's page, a status change drops only the pages showing that order,
+      a driver taking an order drops the driver's page; everyone else stays cached
+    - the order lookup the cash-out flow does is cached and dropped the same way
+    - the cache stays within its size, and a load that raced an invalidation isn't kept
+--> Will return "Order summary cache test passed" with the cache counters if succeeded.
+ */
+public class OrderSummaryCacheTest {
+
+    private static final int PAGE = 50;
+
+    private Path dir;
+    private OrderDatabase orderDb;
+    private OrderSummaryCache cache;
+
+    @BeforeEach
+    void setup() throws Exception {
+        dir = Files.createTempDirectory("test-summary-cache");
+        DataStore store = DataStore.open(dir, DataStore.Layout.CONSOLIDATED, StorageProfile.FAST);
+        orderDb = store.getOrderDb();
+        cache = orderDb.getSummaryCache();
+        store.getDriverDb().registerDriver("cachedriver", "Car", "D1", "Downtown");
+    }
+
+    @AfterEach
+    void cleanup() throws Exception {
+        ConnectionPool.closeAll();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    @Test
+    void testWritesInvalidatePrecisely() throws SQLException {
+        long alice = addOrder("alice");
+        long bob = addOrder("bob");
+
+        OrderPage alicePage = orderDb.getOrderHistoryPage("alice", "CUSTOMER", null, PAGE);
+        orderDb.getOrderHistoryPage("bob", "CUSTOMER", null, PAGE);
+        orderDb.getOrderHistoryPage("admin", "ADMIN", null, PAGE);
+        orderDb.getOrderHistoryPage("cachedriver", "DRIVER", null, PAGE);
+        long misses = cache.getStats().getMisses();
+        assertSame(alicePage, orderDb.getOrderHistoryPage("alice", "CUSTOMER", null, PAGE));
+        assertEquals(misses, cache.getStats().getMisses());
+        assertEquals(4, cache.getPageCount());
+
+        // alice's order changing leaves bob's page alone
+        assertTrue(orderDb.claimOrder(alice, "cachedriver"));
+        assertEquals(1, cache.getPageCount());
+        assertEquals("ASSIGNED", orderDb.getOrderHistoryPage("alice", "CUSTOMER", null, PAGE).getRows().get(0).getStatus());
+        List<OrderRow> driverRows = orderDb.getOrderHistoryPage("cachedriver", "DRIVER", null, PAGE).getRows();
+        assertEquals(1, driverRows.size());
+        assertEquals(alice, driverRows.get(0).getOrderId());
+        long hits = cache.getStats().getHits();
+        orderDb.getOrderHistoryPage("bob", "CUSTOMER", null, PAGE);
+        assertEquals(hits + 1, cache.getStats().getHits());
+
+        // a new order for bob drops bob's and the admin's pages, alice's stays
+        orderDb.getOrderHistoryPage("admin", "ADMIN", null, PAGE);
+        addOrder("bob");
+        assertEquals(2, orderDb.getOrderHistoryPage("bob", "CUSTOMER", null, PAGE).getRows().size());
+        assertEquals(3, orderDb.getOrderHistoryPage("admin", "ADMIN", null, PAGE).getRows().size());
+        hits = cache.getStats().getHits();
+        orderDb.getOrderHistoryPage("alice", "CUSTOMER", null, PAGE);
+        assertEquals(hits + 1, cache.getStats().getHits());
+
+        // the cash-out lookup
+        assertEquals("PENDING", orderDb.getOrderDetails(bob).getStatus());
+        misses = cache.getStats().getMisses();
+        assertEquals("PENDING", orderDb.getOrderDetails(bob).getStatus());
+        assertEquals(misses, cache.getStats().getMisses());
+        orderDb.cancelOrder(bob);
+        assertEquals("CANCELLED", orderDb.getOrderDetails(bob).getStatus());
+        assertNull(orderDb.getOrderDetails(9999));
+        System.out.println("Order summary cache test passed - " + cache);
+    }
+
+    @Test
+    void testBoundedAndRaceSafe() throws SQLException {
+        OrderSummaryCache small = new OrderSummaryCache(2, 2);
+        OrderPage empty = new OrderPage(List.of(), false, false);
+        small.firstPage("CUSTOMER", "a", PAGE, () -> empty);
+        small.firstPage("CUSTOMER", "b", PAGE, () -> empty);
+        small.firstPage("CUSTOMER", "a", PAGE, () -> empty);  // a is now the most recently used
+        small.firstPage("CUSTOMER", "c", PAGE, () -> empty);
+        assertEquals(2, small.getPageCount());
+        assertEquals(1, small.getStats().getEvictions());
+        int[] loads = { 0 };
+        small.firstPage("CUSTOMER", "a", PAGE, () -> { loads[0]++; return empty; });
+        small.firstPage("CUSTOMER", "b", PAGE, () -> { loads[0]++; return empty; });
+        assertEquals(1, loads[0]);  // only b had been evicted
+
+        // the order changes while it's being read: what was read may be old, so it isn't kept
+        long id = addOrder("racer");
+        OrderRow read = small.order(id, () -> {
+            OrderRow row = orderDb.getOrderDetails(id);
+            small.invalidateOrder(id);
+            return row;
+        });
+        assertNotNull(read);
+        assertEquals(0, small.getOrderCount());
+    }
+
+    private long addOrder(String customer) throws SQLException {
+        return orderDb.createOrder(customer, "Cache Grill", "1 Cache St", "2 Home St", "none",
+                20.00, 1, "CARD", 41.98, 70.96, 41.99, 70.97);
+    }
+}
@@ -0,0 +1,59 @@
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * OrderUpdateRow is one event from the order_updates log (an order moving to a status).
+ */
+public class OrderUpdateRow {
+    private final long updateId;
+    private final long orderId;
+    private final String status;
+    private final long updatedAt;
+    private final String updatedBy;
+
+    private OrderUpdateRow(ResultSet rs) throws SQLException {
+        this.updateId = rs.getLong("update_id");
+        this.orderId = rs.getLong("order_id");
+        this.status = rs.getString("status");
+        this.updatedAt = rs.getLong("updated_at");
+        this.updatedBy = rs.getString("updated_by");
+    }
+
+    /**
+     * Maps the current row of a query on order_updates.
+     * @param rs ResultSet positioned on a row.
+     * @return The mapped row.
+     * @throws SQLException if a column is missing
+     */
+    public static OrderUpdateRow from(ResultSet rs) throws SQLException {
+        return new OrderUpdateRow(rs);
+    }
+
+    public long getUpdateId() {
+        return updateId;
+    }
+
+    public long getOrderId() {
+        return orderId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns the status as an OrderStatus.
+     * @return The status, or null if the row has one that isn't in the transition table.
+     */
+    public OrderStatus getOrderStatus() {
+        return OrderStatus.parse(status);
+    }
+
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public String getUpdatedBy() {
+        return updatedBy;
+    }
+}
@@ -1,12 +1,11 @@
-import java.util.ArrayList;
+import java.util.Set;
 
 /**
  * OrderingSystem manages order queues and order state transitions.
- * Maintains lists of unaccepted and accepted orders.
+ * Open orders live in an OrderBook (indexed by id, store, customer and status) instead of lists.
  */
 public class OrderingSystem {
-    ArrayList<Orders> unacceptedOrders = new ArrayList<>();
-    ArrayList<Orders> acceptedOrders = new ArrayList<>();
+    final OrderBook orders = new OrderBook();
 
     /**
      * Checks if a customer can place an order based on balance and store status.
@@ -29,7 +28,7 @@ public class OrderingSystem {
     public int createNewOrder (int orderID,Customer customer, String items[], int storeID){
         Orders newOrder = new Orders(orderID, customer.name, customer.ID,null, 0,items,storeID,0);
         try {
-            unacceptedOrders.add(newOrder);
+            orders.add(newOrder);
             // return newOrder.orderID;
         } catch (Exception e) {
             Logger.catchAndLogBug(e, "OrderingSystem.createNewOrder");
@@ -39,48 +38,39 @@ public class OrderingSystem {
 
     };
     /*Method for when a driver accpets an order,
-    * The oder will be taken out of the unaccepted queue and the order object will have the added properties */
-    public void acceptOrder(Driver driver, Orders order){
+    * The oder will be taken out of the unaccepted queue and the order object will have the added properties
+    * returns false if another driver got it first */
+    public boolean acceptOrder(Driver driver, Orders order){
         try {
-            order.driverID = driver.ID;
-            order.driver = driver.name;
-            unacceptedOrders.remove(order);
-            acceptedOrders.add(order);
-            order.status = 1;
+            return orders.accept(order.orderID, driver);
         } catch (Exception e) {
             Logger.catchAndLogBug(e, "OrderingSystem.acceptOrder");
+            return false;
         }
     } 
 
     /*
     --> Just stores to use update an order status
     --> Should also change where it does in the database
+    --> only moves the OrderStatus table allows, cancelled (5) and completed (4) orders drop out of the book
     */
     public void updateStatus(int newStatus, Orders order){
         try {
-            order.status = newStatus;
-            cancelOrder(order);
+            if (orders.setStatus(order.orderID, newStatus) || orders.get(order.orderID) != null) {
+                return;  // moved, or an open order that isn't allowed to make this move
+            }
+            // not in the book, just keep the object in sync if the move is allowed
+            if (OrderStatus.fromCode(order.status).canMoveTo(OrderStatus.fromCode(newStatus))) {
+                order.status = newStatus;
+            }
         } catch (Exception e) {
             Logger.catchAndLogBug(e, "OrderingSystem.updateStatus");
         }
     }
-    /*  
-     --> Cancels an order if its status is 5 (canceled)
-     --> Removes it from unacceptedOrders if no driver assigned
-     */
-    private void cancelOrder (Orders order){
-        try {
-            if (order.status == 5){
-                if (order.driverID == 0){
-                    unacceptedOrders.remove(order);
-                }
-                else {
-                    acceptedOrders.remove(order);
-                } 
-            }
-        } catch (Exception e) {
-            Logger.catchAndLogBug(e, "OrderingSystem.cancelOrder");
-        }
+
+    // orders no driver has taken yet, for the driver order list
+    public Set<Orders> getAvailableOrders() {
+        return orders.availableOrders();
     }
 
 }
@@ -1,6 +1,5 @@
 import java.nio.file.Path;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -14,19 +13,45 @@ import java.time.Instant;
 public class PaymentDatabase {
     private final Path dbPath;
     private final String url;
+    private final ConnectionPool pool;
+    private final StorageProfile profile;
 
     /**
-     * Constructs a PaymentDatabase with the given database path.
+     * Constructs a PaymentDatabase with the given database path, using the configured storage profile.
      * @param dbPath Path to the SQLite database file.
      */
     public PaymentDatabase(Path dbPath) {
+        this(dbPath, StorageProfile.current());
+    }
+
+    /**
+     * Constructs a PaymentDatabase with the given database path and storage profile.
+     * @param dbPath Path to the SQLite database file.
+     * @param profile SQLite settings applied to every connection during init().
+     */
+    public PaymentDatabase(Path dbPath, StorageProfile profile) {
         this.dbPath = dbPath;
         this.url = "jdbc:sqlite:" + dbPath.toAbsolutePath().toString();
+        this.pool = ConnectionPool.forDatabase(dbPath);
+        this.profile = profile;
     }
 
     public String getConnectionUrl() {
         return url;
     }
+
+    /**
+     * Borrows a pooled connection to payments.db. Close it to give it back to the pool.
+     * @return A pooled connection.
+     * @throws SQLException if no connection is available
+     */
+    public Connection getConnection() throws SQLException {
+        return pool.getConnection();
+    }
+
+    public ConnectionPool getPool() {
+        return pool;
+    }
     // sets up the payment tables when app starts
     public void init() throws SQLException {
         try {
@@ -36,50 +61,18 @@ public class PaymentDatabase {
                 throw new SQLException("SQLite JDBC driver not found on classpath", e);
             }
 
-            try (Connection conn = DriverManager.getConnection(url);
+            // WAL + the storage profile settings for every connection we hand out from now on
+            pool.useProfile(profile);
+
+            // own connection for setup so the foreign_keys pragma doesn't end up on a pooled connection
+            try (Connection conn = pool.openConnection();
                  Statement stmt = conn.createStatement()) {
 
                 // sqlite doesnt enforce foreign keys by default apparently... had to enable this
                 stmt.executeUpdate("PRAGMA foreign_keys = ON");
 
-                // main table for storing payment info
-                // can handle either card payments OR bank payments
-                stmt.executeUpdate("CREATE TABLE IF NOT EXISTS payment_methods ("
-                        + "id INTEGER PRIMARY KEY AUTOINCREMENT,"
-                        + "username TEXT NOT NULL,"
-                        + "payment_type TEXT NOT NULL,"  // either CARD or BANK
-                        + "card_number TEXT,"
-                        + "card_expiry TEXT,"
-                        + "card_name TEXT," 
-                        + "bank_routing TEXT,"
-                        + "bank_account TEXT,"
-                        + "bank_name TEXT,"
-                        + "created_at INTEGER NOT NULL,"
-                        + "is_active BOOLEAN DEFAULT 1,"  // so users can turn off old payment methods
-                        + "FOREIGN KEY (username) REFERENCES users(username) ON DELETE CASCADE ON UPDATE CASCADE,"
-                        + "CHECK (payment_type IN ('CARD', 'BANK')), "
-                        // the big check constraint below makes sure card payments have card info and bank payments have bank info
-                        + "CHECK ((payment_type = 'CARD' AND card_number IS NOT NULL AND card_expiry IS NOT NULL AND card_name IS NOT NULL) OR "
-                        + "(payment_type = 'BANK' AND bank_routing IS NOT NULL AND bank_account IS NOT NULL AND bank_name IS NOT NULL))"
-                        + ")");
-
-                // keeps track of all payment transactions
-                stmt.executeUpdate("CREATE TABLE IF NOT EXISTS payment_transactions ("
-                        + "id INTEGER PRIMARY KEY AUTOINCREMENT,"
-                        + "payment_method_id INTEGER NOT NULL,"
-                        + "order_id INTEGER,"  // can be null if its not for an order
-                        + "amount DECIMAL(10,2) NOT NULL,"
-                        + "status TEXT NOT NULL,"
-                        + "created_at INTEGER,"
-                        + "completed_at INTEGER,"
-                        + "error_message TEXT,"  // stores why payment failed if it does
-                        + "FOREIGN KEY (payment_method_id) REFERENCES payment_methods(id),"
-                        + "FOREIGN KEY (order_id) REFERENCES orders(id)"
-                        + ")");
-
-                // adding indexes so the queries dont take forever when theres lots of data
-                stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_payment_methods_user ON payment_methods(username)");
-                stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_payment_trans_order ON payment_transactions(order_id)");
+                // only does real work the first time a file is opened by a newer version
+                MIGRATIONS.migrate(conn);
             }
         } catch (Exception e) {
             Logger.catchAndLogBug(e, "PaymentDatabase.init");
@@ -87,12 +80,71 @@ public class PaymentDatabase {
         }
     }
 
+    // schema history for payments.db, version is kept by SchemaMigrator (user_version, or schema_versions in fooddash.db)
+    // add new changes as a new numbered step at the end
+    static final SchemaMigrator MIGRATIONS = new SchemaMigrator("PaymentDatabase")
+            .add(1, "baseline payments schema", PaymentDatabase::createBaselineSchema)
+            .add(2, "active method and transaction lookup indexes", PaymentDatabase::addLookupIndexes);
+
+    // version 1 - the tables init() used to create on every start
+    private static void createBaselineSchema(Statement stmt) throws SQLException {
+        // main table for storing payment info
+        // can handle either card payments OR bank payments
+        stmt.executeUpdate("CREATE TABLE IF NOT EXISTS payment_methods ("
+                + "id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + "username TEXT NOT NULL,"
+                + "payment_type TEXT NOT NULL,"  // either CARD or BANK
+                + "card_number TEXT,"
+                + "card_expiry TEXT,"
+                + "card_name TEXT," 
+                + "bank_routing TEXT,"
+                + "bank_account TEXT,"
+                + "bank_name TEXT,"
+                + "created_at INTEGER NOT NULL,"
+                + "is_active BOOLEAN DEFAULT 1,"  // so users can turn off old payment methods
+                + "FOREIGN KEY (username) REFERENCES users(username) ON DELETE CASCADE ON UPDATE CASCADE,"
+                + "CHECK (payment_type IN ('CARD', 'BANK')), "
+                // the big check constraint below makes sure card payments have card info and bank payments have bank info
+                + "CHECK ((payment_type = 'CARD' AND card_number IS NOT NULL AND card_expiry IS NOT NULL AND card_name IS NOT NULL) OR "
+                + "(payment_type = 'BANK' AND bank_routing IS NOT NULL AND bank_account IS NOT NULL AND bank_name IS NOT NULL))"
+                + ")");
+
+        // keeps track of all payment transactions
+        stmt.executeUpdate("CREATE TABLE IF NOT EXISTS payment_transactions ("
+                + "id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + "payment_method_id INTEGER NOT NULL,"
+                + "order_id INTEGER,"  // can be null if its not for an order
+                + "amount DECIMAL(10,2) NOT NULL,"
+                + "status TEXT NOT NULL,"
+                + "created_at INTEGER,"
+                + "completed_at INTEGER,"
+                + "error_message TEXT,"  // stores why payment failed if it does
+                + "FOREIGN KEY (payment_method_id) REFERENCES payment_methods(id),"
+                + "FOREIGN KEY (order_id) REFERENCES orders(id)"
+                + ")");
+
+        // adding indexes so the queries dont take forever when theres lots of data
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_payment_methods_user ON payment_methods(username)");
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_payment_trans_order ON payment_transactions(order_id)");
+    }
+
+    /*
+    --> version 2 - (username, is_active, id) answers "newest active method" with a single seek,
+        getActivePaymentMethodId never touches the table at all
+    --> payment_transactions(payment_method_id) is for the driver payment history join, which
+        otherwise scans every transaction ever made
+    */
+    private static void addLookupIndexes(Statement stmt) throws SQLException {
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_payment_methods_user_active ON payment_methods(username, is_active, id)");
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_payment_trans_method ON payment_transactions(payment_method_id)");
+        stmt.executeUpdate("DROP INDEX IF EXISTS idx_payment_methods_user");
+    }
+
     // adds a credit card to someones account, returns the id we assigned it
     public long addCardPayment(String username, String cardNumber, String cardExpiry, String cardName) throws SQLException {
         try {
-            String sql = "INSERT INTO payment_methods (username, payment_type, card_number, card_expiry, card_name, created_at) "
-                      + "VALUES (?, 'CARD', ?, ?, ?, ?)";
-            try (Connection conn = DriverManager.getConnection(url);
+            String sql = SqlStatements.PAYMENT_CARD_INSERT;
+            try (Connection conn = pool.getConnection();
                  PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
                 ps.setString(1, username);
                 ps.setString(2, cardNumber);
@@ -117,9 +169,8 @@ public class PaymentDatabase {
     // same as addCardPayment but for bank accounts instead
     public long addBankPayment(String username, String routingNumber, String accountNumber, String bankName) throws SQLException {
         try {
-            String sql = "INSERT INTO payment_methods (username, payment_type, bank_routing, bank_account, bank_name, created_at) "
-                      + "VALUES (?, 'BANK', ?, ?, ?, ?)";
-            try (Connection conn = DriverManager.getConnection(url);
+            String sql = SqlStatements.PAYMENT_BANK_INSERT;
+            try (Connection conn = pool.getConnection();
                  PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
                 ps.setString(1, username);
                 ps.setString(2, routingNumber);
@@ -147,10 +198,8 @@ public class PaymentDatabase {
      */
     public PaymentInformation getActivePaymentMethod(String username) throws SQLException {
         try {
-            String sql = "SELECT payment_type, card_number, card_expiry, card_name, "
-                      + "bank_routing, bank_account, bank_name FROM payment_methods "
-                      + "WHERE username = ? AND is_active = 1 ORDER BY id DESC LIMIT 1";  // gets most recent one
-            try (Connection conn = DriverManager.getConnection(url);
+            String sql = SqlStatements.PAYMENT_ACTIVE_METHOD;
+            try (Connection conn = pool.getConnection();
                  PreparedStatement ps = conn.prepareStatement(sql)) {
                 ps.setString(1, username);
                 try (ResultSet rs = ps.executeQuery()) {
@@ -187,8 +236,8 @@ public class PaymentDatabase {
      */
     public Long getActivePaymentMethodId(String username) throws SQLException {
         try {
-            String sql = "SELECT id FROM payment_methods WHERE username = ? AND is_active = 1 ORDER BY id DESC LIMIT 1";
-            try (Connection c = DriverManager.getConnection(url);
+            String sql = SqlStatements.PAYMENT_ACTIVE_METHOD_ID;
+            try (Connection c = pool.getConnection();
                  PreparedStatement p = c.prepareStatement(sql)) {
                 p.setString(1, username);
                 try (ResultSet rs = p.executeQuery()) {
@@ -205,8 +254,8 @@ public class PaymentDatabase {
     // turns off all payment methods for a user (like if theyre switching to a new one)
     public void deactivateAllPaymentMethods(String username) throws SQLException {
         try {
-            String sql = "UPDATE payment_methods SET is_active = 0 WHERE username = ?";
-            try (Connection conn = DriverManager.getConnection(url);
+            String sql = SqlStatements.PAYMENT_DEACTIVATE_ALL;
+            try (Connection conn = pool.getConnection();
                  PreparedStatement ps = conn.prepareStatement(sql)) {
                 ps.setString(1, username);
                 ps.executeUpdate();
@@ -221,28 +270,29 @@ public class PaymentDatabase {
     // orderId can be null if its not related to an order
     public long createTransaction(long paymentMethodId, Long orderId, double amount) throws SQLException {
         try {
-            String sql = "INSERT INTO payment_transactions (payment_method_id, order_id, amount, status, created_at) "
-                      + "VALUES (?, ?, ?, 'PENDING', ?)";
-            try (Connection conn = DriverManager.getConnection(url);
-                 PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-                ps.setLong(1, paymentMethodId);
-                // this was annoying to figure out - have to handle null orderIds differently
-                if (orderId != null) {
-                    ps.setLong(2, orderId);
-                } else {
-                    ps.setNull(2, java.sql.Types.INTEGER);
-                }
-                ps.setDouble(3, amount);
-                ps.setLong(4, Instant.now().getEpochSecond());
-                ps.executeUpdate();
+            String sql = SqlStatements.PAYMENT_TX_INSERT;
+            // queued on the writer thread so concurrent payouts share a commit
+            return pool.getWriter().execute(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                    ps.setLong(1, paymentMethodId);
+                    // this was annoying to figure out - have to handle null orderIds differently
+                    if (orderId != null) {
+                        ps.setLong(2, orderId);
+                    } else {
+                        ps.setNull(2, java.sql.Types.INTEGER);
+                    }
+                    ps.setDouble(3, amount);
+                    ps.setLong(4, Instant.now().getEpochSecond());
+                    ps.executeUpdate();
 
-                try (ResultSet rs = ps.getGeneratedKeys()) {
-                    if (rs.next()) {
-                        return rs.getLong(1);
+                    try (ResultSet rs = ps.getGeneratedKeys()) {
+                        if (rs.next()) {
+                            return rs.getLong(1);
+                        }
+                        throw new SQLException("Failed to retrieve generated transaction ID");
                     }
-                    throw new SQLException("Failed to retrieve generated transaction ID");
                 }
-            }
+            });
         } catch (SQLException ex) {
             Logger.catchAndLogBug(ex, "PaymentDatabase.createTransaction");
             throw ex;
@@ -252,16 +302,16 @@ public class PaymentDatabase {
     // updates transaction after payment goes through (or fails)
     public void updateTransactionStatus(long transactionId, String status, String errorMessage) throws SQLException {
         try {
-            String sql = "UPDATE payment_transactions SET status = ?, completed_at = ?, error_message = ? WHERE id = ?";
-            try (Connection conn = DriverManager.getConnection(url);
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setString(1, status);
-                ps.setLong(2, Instant.now().getEpochSecond());
-                ps.setString(3, errorMessage);
-                ps.setLong(4, transactionId);
-                ps.executeUpdate();
-                // System.out.println("Updated transaction " + transactionId + " to " + status);  // used this for debugging
-            }
+            String sql = SqlStatements.PAYMENT_TX_SET_STATUS;
+            pool.getWriter().execute(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setString(1, status);
+                    ps.setLong(2, Instant.now().getEpochSecond());
+                    ps.setString(3, errorMessage);
+                    ps.setLong(4, transactionId);
+                    return ps.executeUpdate();
+                }
+            });
         } catch (SQLException ex) {
             Logger.catchAndLogBug(ex, "PaymentDatabase.updateTransactionStatus");
             throw ex;
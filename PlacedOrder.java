@@ -0,0 +1,48 @@
+/**
+ * PlacedOrder is what OrderDatabase.placeOrder returns once an order and its items are saved:
+ * the generated order id and the ETA that was stored on the order row.
+ */
+public class PlacedOrder {
+    private final long orderId;
+    private final int estimatedMinutes;
+    private final double total;
+    private final int itemCount;
+
+    /**
+     * Constructs the result of a saved order.
+     * @param orderId Generated order id.
+     * @param estimatedMinutes Estimated delivery time stored with the order.
+     * @param total Order total.
+     * @param itemCount Number of items in the order.
+     */
+    public PlacedOrder(long orderId, int estimatedMinutes, double total, int itemCount) {
+        this.orderId = orderId;
+        this.estimatedMinutes = estimatedMinutes;
+        this.total = total;
+        this.itemCount = itemCount;
+    }
+
+    public long getOrderId() {
+        return orderId;
+    }
+
+    public int getEstimatedMinutes() {
+        return estimatedMinutes;
+    }
+
+    public double getTotal() {
+        return total;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    /**
+     * Returns a formatted message with the estimated delivery time.
+     * @return String message with ETA in minutes.
+     */
+    public String getETAMessage() {
+        return String.format("Estimated delivery time: %d minutes", estimatedMinutes);
+    }
+}
@@ -0,0 +1,119 @@
+import org.junit.jupiter.api.*;
+import java.nio.file.*;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.*;
+/*
+--> Runs EXPLAIN QUERY PLAN on every statement in SqlStatements against freshly migrated databases:
+    - no statement is allowed to full scan a table (scanning an index in order is fine, that's the admin history)
+    - the partial and covering indexes are actually picked for the queries they were made for
+--> Each statement runs with its own database as main and the others ATTACHed, so unqualified
+    names resolve the same way they do in the app
+--> Will return "Query plan test passed" with the number of statements checked if succeeded.
+ */
+public class QueryPlanTest {
+
+    private static final Map<SqlStatements.Domain, Path> dbPaths = new EnumMap<>(SqlStatements.Domain.class);
+
+    @BeforeAll
+    static void setup() throws Exception {
+        for (SqlStatements.Domain domain : SqlStatements.Domain.values()) {
+            dbPaths.put(domain, Files.createTempFile("test-plan-" + domain.name().toLowerCase(), ".db"));
+        }
+        new UserDataBase(dbPaths.get(SqlStatements.Domain.USERS)).init();
+        new DriverDatabase(dbPaths.get(SqlStatements.Domain.DRIVERS)).init();
+        new OrderDatabase(dbPaths.get(SqlStatements.Domain.ORDERS)).init();
+        new PaymentDatabase(dbPaths.get(SqlStatements.Domain.PAYMENTS)).init();
+    }
+
+    @AfterAll
+    static void cleanup() throws Exception {
+        ConnectionPool.closeAll();
+        for (Path path : dbPaths.values()) {
+            Files.deleteIfExists(path);
+            Files.deleteIfExists(Path.of(path + "-wal"));
+            Files.deleteIfExists(Path.of(path + "-shm"));
+        }
+    }
+
+    @Test
+    void testNoStatementScansATable() throws SQLException {
+        List<String> failures = new ArrayList<>();
+        int checked = 0;
+        for (SqlStatements.NamedSql named : SqlStatements.all()) {
+            for (String detail : explain(named)) {
+                if (isTableScan(detail)) {
+                    failures.add(named.getName() + ": " + detail);
+                }
+            }
+            checked++;
+        }
+        assertTrue(checked > 0);
+        assertTrue(failures.isEmpty(), "Full table scans:\n" + String.join("\n", failures));
+        System.out.println("Query plan test passed - " + checked + " statements checked");
+    }
+
+    @Test
+    void testIndexesArePicked() throws SQLException {
+        assertUses("ORDER_PENDING", "idx_orders_pending");
+        assertUses("ORDER_OLDEST_ACTIVE", "idx_orders_driver_active");
+        assertUses("ORDER_HAS_UNNOTIFIED", "idx_orders_customer_unnotified");
+        assertUses("ORDER_HISTORY_PAGE_OLDER_CUSTOMER", "idx_orders_customer_created");
+        assertUses("DRIVER_STATS", "COVERING INDEX idx_delivery_history_driver_time");
+        assertUses("PAYMENT_ACTIVE_METHOD_ID", "COVERING INDEX idx_payment_methods_user_active");
+        assertUses("PAYMENT_HISTORY", "idx_payment_trans_method");
+    }
+
+    // a SCAN line without an index is the whole table; "SCAN CONSTANT ROW" is the EXISTS() wrapper
+    private static boolean isTableScan(String detail) {
+        return detail.startsWith("SCAN ") && !detail.contains(" USING ") && !detail.equals("SCAN CONSTANT ROW");
+    }
+
+    private void assertUses(String name, String index) throws SQLException {
+        SqlStatements.NamedSql named = SqlStatements.get(name);
+        assertNotNull(named, name);
+        List<String> plan = explain(named);
+        assertTrue(plan.stream().anyMatch(d -> d.contains(index)), name + " should use " + index + " but plan was " + plan);
+    }
+
+    private List<String> explain(SqlStatements.NamedSql named) throws SQLException {
+        List<String> details = new ArrayList<>();
+        try (Connection conn = open(named.getDomain());
+             PreparedStatement ps = conn.prepareStatement("EXPLAIN QUERY PLAN " + named.getSql())) {
+            // values don't change the plan, they just have to be bound
+            ParameterMetaData meta = ps.getParameterMetaData();
+            for (int i = 1; i <= meta.getParameterCount(); i++) {
+                ps.setObject(i, null);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    details.add(rs.getString("detail"));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException(named.getName() + " failed to plan: " + e.getMessage(), e);
+        }
+        return details;
+    }
+
+    private Connection open(SqlStatements.Domain main) throws SQLException {
+        Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbPaths.get(main).toAbsolutePath());
+        try (Statement stmt = conn.createStatement()) {
+            for (SqlStatements.Domain other : SqlStatements.Domain.values()) {
+                if (other != main) {
+                    stmt.execute("ATTACH DATABASE '" + dbPaths.get(other).toAbsolutePath() + "' AS " + other.name().toLowerCase());
+                }
+            }
+        }
+        return conn;
+    }
+}
@@ -0,0 +1,95 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * RestaurantDirectory keeps every restaurant in a SpatialGrid so "restaurants within R miles of this address,
+ * closest first" only looks at the cells around the address instead of the whole table.
+ * OrderDatabase.getRestaurants() loads it from the restaurants table; see RestaurantDirectoryBenchmark for timings.
+ */
+public class RestaurantDirectory {
+
+    private static final double KM_PER_MILE = 1.609;
+    // about 5.5 km north-south, a few cells cover the usual search radius
+    private static final double CELL_DEGREES = 0.05;
+
+    /**
+     * One restaurant in a lookup result and how far it is from where the lookup was made.
+     */
+    public static final class Match {
+        private final RestaurantRow restaurant;
+        private final double miles;
+
+        Match(RestaurantRow restaurant, double miles) {
+            this.restaurant = restaurant;
+            this.miles = miles;
+        }
+
+        public RestaurantRow getRestaurant() {
+            return restaurant;
+        }
+
+        public double getMiles() {
+            return miles;
+        }
+    }
+
+    private final SpatialGrid<Long> grid = new SpatialGrid<>(CELL_DEGREES);
+    private final Map<Long, RestaurantRow> byId = new ConcurrentHashMap<>();
+
+    /**
+     * Adds a restaurant, or replaces (and moves) the one with the same id.
+     * @param restaurant The restaurant.
+     */
+    public void put(RestaurantRow restaurant) {
+        byId.put(restaurant.getRestaurantId(), restaurant);
+        grid.put(restaurant.getRestaurantId(), restaurant.getLat(), restaurant.getLon());
+    }
+
+    public boolean remove(long restaurantId) {
+        byId.remove(restaurantId);
+        return grid.remove(restaurantId);
+    }
+
+    public RestaurantRow get(long restaurantId) {
+        return byId.get(restaurantId);
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    /**
+     * Finds the restaurants within a radius of a location.
+     * @param lat Latitude to search from.
+     * @param lon Longitude to search from.
+     * @param miles Search radius in miles.
+     * @return Matches sorted closest first, empty if there are none.
+     */
+    public List<Match> within(double lat, double lon, double miles) {
+        List<SpatialGrid.Hit<Long>> hits = grid.within(lat, lon, miles * KM_PER_MILE, null);
+        List<Match> matches = new ArrayList<>(hits.size());
+        for (SpatialGrid.Hit<Long> hit : hits) {
+            RestaurantRow restaurant = byId.get(hit.getKey());
+            if (restaurant != null) {
+                matches.add(new Match(restaurant, hit.getDistanceKm() / KM_PER_MILE));
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Finds the restaurants within a radius of an address.
+     * @param address The customer's address.
+     * @param miles Search radius in miles.
+     * @return Matches sorted closest first, empty if the address is missing or has no coordinates.
+     */
+    public List<Match> near(Address address, double miles) {
+        if (address == null || address.getLatitude() == 0 || address.getLongitude() == 0) {
+            return Collections.emptyList();
+        }
+        return within(address.getLatitude(), address.getLongitude(), miles);
+    }
+}
@@ -0,0 +1,154 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * RestaurantDirectoryBenchmark times "restaurants within R miles of here, closest first" over 100k restaurants,
+ * the grid lookup against checking and sorting every restaurant (what rendering every row with calculateMiles costs).
+ * Restaurants are spread like real ones: clustered around 500 towns across the northeast quarter of the country,
+ * with a thin layer in between (about what 100k restaurants covering that area looks like).
+ * Also times loading the whole restaurants table into the directory at startup.
+ * Run with: java RestaurantDirectoryBenchmark [restaurants] [miles]
+ */
+public class RestaurantDirectoryBenchmark {
+
+    private static final int QUERIES = 5000;
+    private static final int TOWNS = 500;
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        double miles = args.length > 1 ? Double.parseDouble(args[1]) : 5.0;
+
+        Random random = new Random(42);
+        double[][] towns = new double[TOWNS][];
+        for (int i = 0; i < TOWNS; i++) {
+            towns[i] = new double[] { 37.0 + random.nextDouble() * 10.0, 68.0 + random.nextDouble() * 20.0 };
+        }
+        List<RestaurantRow> rows = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            double lat;
+            double lon;
+            if (i % 10 == 0) {
+                lat = 37.0 + random.nextDouble() * 10.0;
+                lon = 68.0 + random.nextDouble() * 20.0;
+            } else {
+                double[] town = towns[random.nextInt(TOWNS)];
+                lat = town[0] + random.nextGaussian() * 0.03;
+                lon = town[1] + random.nextGaussian() * 0.04;
+            }
+            rows.add(new RestaurantRow(i, "Restaurant " + i, i + " Main St", "02325", lat, lon));
+        }
+        // customers live where the restaurants are
+        double[][] queries = new double[QUERIES][];
+        for (int i = 0; i < QUERIES; i++) {
+            double[] town = towns[random.nextInt(TOWNS)];
+            queries[i] = new double[] { town[0] + random.nextGaussian() * 0.05, town[1] + random.nextGaussian() * 0.05 };
+        }
+
+        System.out.println("Restaurant lookup benchmark: " + count + " restaurants, " + miles + " mile radius, "
+                + QUERIES + " lookups");
+        System.out.println("=".repeat(72));
+
+        RestaurantDirectory directory = new RestaurantDirectory();
+        long start = System.nanoTime();
+        for (RestaurantRow row : rows) {
+            directory.put(row);
+        }
+        System.out.printf("%-28s %10.1f ms%n", "build grid", (System.nanoTime() - start) / 1e6);
+
+        long found = 0;
+        // warm up both paths so the JIT has compiled them before timing
+        for (int i = 0; i < 500; i++) {
+            found += directory.within(queries[i][0], queries[i][1], miles).size();
+            found += scan(rows, queries[i][0], queries[i][1], miles).size();
+        }
+
+        long[] gridNanos = new long[QUERIES];
+        long matches = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            long t = System.nanoTime();
+            matches += directory.within(queries[i][0], queries[i][1], miles).size();
+            gridNanos[i] = System.nanoTime() - t;
+        }
+        int scanQueries = QUERIES / 10;
+        long[] scanNanos = new long[scanQueries];
+        for (int i = 0; i < scanQueries; i++) {
+            long t = System.nanoTime();
+            found += scan(rows, queries[i][0], queries[i][1], miles).size();
+            scanNanos[i] = System.nanoTime() - t;
+        }
+        System.out.println("-".repeat(72));
+        System.out.printf("%-14s %12s %12s %12s %16s%n", "Impl", "avg us", "p50 us", "p99 us", "lookups/sec");
+        print("grid", gridNanos);
+        print("scan + sort", scanNanos);
+        System.out.printf("average matches per lookup: %.1f%n", (double) matches / QUERIES);
+
+        System.out.println("-".repeat(72));
+        loadFromDatabase(rows);
+        if (found == Long.MIN_VALUE) {
+            System.out.println(found);
+        }
+    }
+
+    // the linear version: distance to every restaurant, keep the ones in range, sort
+    private static List<RestaurantRow> scan(List<RestaurantRow> rows, double lat, double lon, double miles) {
+        double maxKm = miles * 1.609;
+        List<double[]> hits = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            RestaurantRow row = rows.get(i);
+            double km = MapCalculator.distanceKm(lat, lon, row.getLat(), row.getLon());
+            if (km <= maxKm) {
+                hits.add(new double[] { i, km });
+            }
+        }
+        hits.sort(Comparator.comparingDouble(h -> h[1]));
+        List<RestaurantRow> result = new ArrayList<>(hits.size());
+        for (double[] hit : hits) {
+            result.add(rows.get((int) hit[0]));
+        }
+        return result;
+    }
+
+    // startup cost: insert the rows into a scratch orders.db, then time OrderDatabase.getRestaurants()
+    private static void loadFromDatabase(List<RestaurantRow> rows) throws Exception {
+        Path file = Files.createTempFile("bench-restaurants", ".db");
+        try {
+            OrderDatabase orderDb = new OrderDatabase(file, StorageProfile.FAST);
+            orderDb.init();
+            orderDb.getPool().getWriter().execute(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(SqlStatements.RESTAURANT_INSERT)) {
+                    for (RestaurantRow row : rows) {
+                        ps.setString(1, row.getName());
+                        ps.setString(2, row.getAddress());
+                        ps.setString(3, row.getZip());
+                        ps.setDouble(4, row.getLat());
+                        ps.setDouble(5, row.getLon());
+                        ps.addBatch();
+                    }
+                    return ps.executeBatch().length;
+                }
+            });
+            long start = System.nanoTime();
+            int loaded = orderDb.getRestaurants().size();
+            System.out.printf("%-28s %10.1f ms (%d restaurants)%n", "load directory from db", (System.nanoTime() - start) / 1e6, loaded);
+        } finally {
+            ConnectionPool.closeAll();
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(Path.of(file + "-wal"));
+            Files.deleteIfExists(Path.of(file + "-shm"));
+        }
+    }
+
+    private static void print(String impl, long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        double avg = Arrays.stream(sorted).average().orElse(0) / 1000.0;
+        System.out.printf("%-14s %12.1f %12.1f %12.1f %16.0f%n", impl, avg,
+                sorted[sorted.length / 2] / 1000.0, sorted[(int) (sorted.length * 0.99)] / 1000.0, 1e6 / avg);
+    }
+}
@@ -0,0 +1,110 @@
+import org.junit.jupiter.api.*;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+/*
+--> Tests restaurant discovery by location:
+    - the migration seeds the restaurants ResturantScreen used to hardcode, and they come back closest first
+    - the grid's within() returns exactly what checking every restaurant does
+    - restaurants added later show up in the loaded directory, and survive consolidating a split install
+--> Will return "Restaurant directory test passed" with the number of restaurants if succeeded.
+ */
+public class RestaurantDirectoryTest {
+
+    private Path dir;
+
+    @BeforeEach
+    void setup() throws Exception {
+        dir = Files.createTempDirectory("test-restaurants");
+    }
+
+    @AfterEach
+    void cleanup() throws Exception {
+        ConnectionPool.closeAll();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    @Test
+    void testSeededRestaurantsNearAddress() throws Exception {
+        DataStore store = DataStore.open(dir, DataStore.Layout.CONSOLIDATED, StorageProfile.FAST);
+        RestaurantDirectory directory = store.getOrderDb().getRestaurants();
+        assertEquals(3, directory.size());
+
+        // right next to Greyhound Tavern
+        Address home = new Address("1 Broad Street", "Bridgewater", "MA", "02325", 41.9905, 70.9745);
+        List<RestaurantDirectory.Match> nearby = directory.near(home, 10);
+        assertEquals(3, nearby.size());
+        assertEquals("Greyhound Tavern", nearby.get(0).getRestaurant().getName());
+        for (int i = 1; i < nearby.size(); i++) {
+            assertTrue(nearby.get(i - 1).getMiles() <= nearby.get(i).getMiles());
+        }
+        assertEquals(MapCalculator.calculateMiles(41.9905, 70.9745, 41.99093, 70.97487), nearby.get(0).getMiles(), 0.1);
+
+        assertTrue(directory.near(new Address("1 Main St", "Boston", "MA", "02108", 42.36, 71.06), 10).isEmpty());
+        assertTrue(directory.near(new Address("1 Main St", "Nowhere", "MA", "00000", 0, 0), 10).isEmpty());
+        assertTrue(directory.near(null, 10).isEmpty());
+
+        RestaurantRow added = store.getOrderDb().addRestaurant("Test Kitchen", "2 Broad Street", "02325", 41.9906, 70.9746);
+        assertEquals(4, directory.size());
+        assertEquals("Test Kitchen", directory.near(home, 1).get(0).getRestaurant().getName());
+        assertSame(added, directory.get(added.getRestaurantId()));
+    }
+
+    @Test
+    void testWithinMatchesBruteForce() {
+        RestaurantDirectory directory = new RestaurantDirectory();
+        Random random = new Random(17);
+        List<RestaurantRow> all = new ArrayList<>();
+        for (int i = 1; i <= 5000; i++) {
+            RestaurantRow row = new RestaurantRow(i, "R" + i, i + " Test St", "02325",
+                    42.0 + (random.nextDouble() - 0.5), 71.0 + (random.nextDouble() - 0.5));
+            all.add(row);
+            directory.put(row);
+        }
+
+        for (int q = 0; q < 50; q++) {
+            double lat = 42.0 + (random.nextDouble() - 0.5);
+            double lon = 71.0 + (random.nextDouble() - 0.5);
+            double miles = 1 + random.nextDouble() * 9;
+            List<Long> expected = new ArrayList<>();
+            for (RestaurantRow row : all) {
+                if (MapCalculator.distanceKm(lat, lon, row.getLat(), row.getLon()) <= miles * 1.609) {
+                    expected.add(row.getRestaurantId());
+                }
+            }
+            List<RestaurantDirectory.Match> found = directory.within(lat, lon, miles);
+            assertEquals(expected.size(), found.size());
+            for (int i = 0; i < found.size(); i++) {
+                assertTrue(expected.contains(found.get(i).getRestaurant().getRestaurantId()));
+                if (i > 0) {
+                    assertTrue(found.get(i - 1).getMiles() <= found.get(i).getMiles());
+                }
+            }
+        }
+    }
+
+    @Test
+    void testRestaurantsSurviveConsolidation() throws Exception {
+        DataStore split = DataStore.open(dir, DataStore.Layout.SPLIT, StorageProfile.FAST);
+        split.getOrderDb().addRestaurant("Split Diner", "9 Split Rd", "02325", 41.98, 70.96);
+        ConnectionPool.closeAll();
+
+        // only the restaurant added after seeding is copied, the seeded ids are already there
+        assertEquals(1, ConsolidateDatabases.consolidate(dir).get("orders.restaurants"));
+        ConnectionPool.closeAll();
+
+        DataStore store = DataStore.open(dir, DataStore.Layout.CONSOLIDATED, StorageProfile.FAST);
+        List<String> names = new ArrayList<>();
+        store.getOrderDb().forEachRestaurant(row -> names.add(row.getName()));
+        assertEquals(List.of("Crimson Dining", "Barrett's Alehouse Bridgewater", "Greyhound Tavern", "Split Diner"), names);
+        System.out.println("Restaurant directory test passed - " + names.size() + " restaurants");
+    }
+}
@@ -0,0 +1,67 @@
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * RestaurantRow is one row of the restaurants table: id, name, street address, zip and position.
+ */
+public class RestaurantRow {
+    private final long restaurantId;
+    private final String name;
+    private final String address;
+    private final String zip;
+    private final double lat;
+    private final double lon;
+
+    /**
+     * Constructs a RestaurantRow from its values (a restaurant that was just inserted).
+     * @param restaurantId Id from the restaurants table.
+     * @param name Restaurant name.
+     * @param address Street address.
+     * @param zip Zip code, may be null.
+     * @param lat Latitude.
+     * @param lon Longitude.
+     */
+    public RestaurantRow(long restaurantId, String name, String address, String zip, double lat, double lon) {
+        this.restaurantId = restaurantId;
+        this.name = name;
+        this.address = address;
+        this.zip = zip;
+        this.lat = lat;
+        this.lon = lon;
+    }
+
+    /**
+     * Maps the current row of a query selecting restaurant_id, name, address, zip, lat and lon from restaurants.
+     * @param rs ResultSet positioned on a row.
+     * @return The mapped row.
+     * @throws SQLException if a column is missing
+     */
+    public static RestaurantRow from(ResultSet rs) throws SQLException {
+        return new RestaurantRow(rs.getLong("restaurant_id"), rs.getString("name"), rs.getString("address"),
+                rs.getString("zip"), rs.getDouble("lat"), rs.getDouble("lon"));
+    }
+
+    public long getRestaurantId() {
+        return restaurantId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public String getZip() {
+        return zip;
+    }
+
+    public double getLat() {
+        return lat;
+    }
+
+    public double getLon() {
+        return lon;
+    }
+}
@@ -2,15 +2,17 @@ import java.awt.*;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.sql.SQLException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Collections;
+import java.util.List;
 import javax.swing.*;
 
 /**
- * ResturantScreen displays available restaurants and menu items filtered by zip code.
+ * ResturantScreen displays the restaurants near the customer's address, closest first, and their menu items.
  * Allows customers to browse menus and place orders.
  */
 public class ResturantScreen extends JPanel {
+    private static final double SEARCH_RADIUS_MILES = 10.0;
+
     private FoodDeliveryLoginUI parent;
     private String username;
     private JPanel content;
@@ -90,15 +92,23 @@ public class ResturantScreen extends JPanel {
         content.removeAll();
         String zip = parent.address != null ? String.valueOf(parent.address.getZip()) : "";
 
-        if ("02325".equals(zip)) {
-            content.add(createRestaurantRow("Crimson Dining", "125 Burrill Ave", 41.98656, 70.96437));
-            content.add(Box.createVerticalStrut(6));
-            content.add(createRestaurantRow("Barrett's Alehouse Bridgewater", "425 Bedford St", 41.97653, 70.97556));
-            content.add(Box.createVerticalStrut(6));
-            content.add(createRestaurantRow("Greyhound Tavern", "39 Broad Street", 41.99093, 70.97487));
-            content.add(Box.createVerticalStrut(8));
+        // grid lookup around the address, already sorted by distance
+        List<RestaurantDirectory.Match> nearby;
+        try {
+            nearby = parent.orderDb.getRestaurants().near(parent.address, SEARCH_RADIUS_MILES);
+        } catch (SQLException ex) {
+            Logger.catchAndLogBug(ex, "ResturantScreen.refreshUI");
+            nearby = Collections.emptyList();
+        }
+
+        if (!nearby.isEmpty()) {
+            for (RestaurantDirectory.Match match : nearby) {
+                content.add(createRestaurantRow(match.getRestaurant(), match.getMiles()));
+                content.add(Box.createVerticalStrut(6));
+            }
+            content.add(Box.createVerticalStrut(2));
         } else {
-            // no restaurants for other zips yet
+            // nothing within the radius (or no coordinates on the address)
             JPanel noResultsPanel = new JPanel(new BorderLayout());
             noResultsPanel.setBorder(BorderFactory.createEmptyBorder(20, 0, 20, 0));
             JLabel none = new JLabel("No restaurants available in " + zip, SwingConstants.CENTER);
@@ -115,7 +125,7 @@ public class ResturantScreen extends JPanel {
     }
 
     // makes each restaurant row
-    private JPanel createRestaurantRow(String name, String restAddress, double lat, double lon) {
+    private JPanel createRestaurantRow(RestaurantRow restaurant, double miles) {
         JPanel row = new JPanel(new BorderLayout(8,6));
         row.setBorder(BorderFactory.createCompoundBorder(
             BorderFactory.createLineBorder(new Color(220, 220, 220)),
@@ -129,11 +139,11 @@ public class ResturantScreen extends JPanel {
         info.setOpaque(false);
         info.setBorder(BorderFactory.createEmptyBorder(0, 0, 0, 8));
 
-        JLabel nameLabel = new JLabel(name);
+        JLabel nameLabel = new JLabel(restaurant.getName());
         nameLabel.setFont(new Font("Times New Roman", Font.BOLD, 12));
         info.add(nameLabel);
 
-        JLabel addressLabel = new JLabel(restAddress);
+        JLabel addressLabel = new JLabel(restaurant.getAddress());
         addressLabel.setFont(new Font("Times New Roman", Font.PLAIN, 10));
         addressLabel.setForeground(Color.DARK_GRAY);
         info.add(addressLabel);
@@ -148,31 +158,29 @@ public class ResturantScreen extends JPanel {
         orderBtn.setOpaque(true);
         orderBtn.setBorderPainted(false);
         orderBtn.setFocusPainted(false);
-        orderBtn.addActionListener(e -> createOrder(name, lat, lon));
+        orderBtn.addActionListener(e -> createOrder(restaurant));
         row.add(orderBtn, BorderLayout.EAST);
 
         JPanel bottomPanel = new JPanel();
         bottomPanel.setLayout(new FlowLayout(FlowLayout.LEFT, 15, 0));
         bottomPanel.setOpaque(false);
 
-        // Miles/ETA
-        if (parent.address != null) {
-            double miles = MapCalculator.calculateMiles(parent.address.getLatitude(),parent.address.getLongitude(), lat, lon);
-            JLabel distanceLabel = new JLabel(String.format("%.1f miles away", miles));
-            distanceLabel.setFont(new Font("Times New Roman", Font.PLAIN, 10));
-            distanceLabel.setForeground(new Color(46, 125, 50));
-            distanceLabel.setOpaque(false);
-            distanceLabel.setBorder(BorderFactory.createCompoundBorder());
-            //bottomPanel.add(distanceLabel);
-        }
+        // Miles/ETA, the distance comes with the lookup
+        JLabel distanceLabel = new JLabel(String.format("%.1f miles away", miles));
+        distanceLabel.setFont(new Font("Times New Roman", Font.PLAIN, 10));
+        distanceLabel.setForeground(new Color(46, 125, 50));
+        distanceLabel.setOpaque(false);
+        distanceLabel.setBorder(BorderFactory.createCompoundBorder());
+        //bottomPanel.add(distanceLabel);
 
         //row.add(bottomPanel, BorderLayout.SOUTH);
 
         return row; 
     } 
     // shows menu and places order
-    private void createOrder(String restaurantName, double restaurantLat, double restaurantLon) {
-        String restaurantAddress = getRestaurantAddress(restaurantName);
+    private void createOrder(RestaurantRow restaurant) {
+        String restaurantName = restaurant.getName();
+        String restaurantAddress = restaurant.getAddress();
         String[] menuItems = {"Burger - $12.99", "Pizza - $15.99", "Salad - $8.99", "Pasta - $13.99", "Sandwich - $9.99"};
         double[] prices = {12.99, 15.99, 8.99, 13.99, 9.99};
 
@@ -201,7 +209,7 @@ public class ResturantScreen extends JPanel {
 
             if (confirm == JOptionPane.OK_OPTION) {
                 try {
-                    saveOrderToDatabase(restaurantName, restaurantAddress, menuItems, prices, menuPanel.checkBoxes, menuPanel.quantities, calc.total, restaurantLat, restaurantLon);
+                    saveOrderToDatabase(restaurantName, restaurantAddress, menuItems, prices, menuPanel.checkBoxes, menuPanel.quantities, calc.total, restaurant.getLat(), restaurant.getLon());
                     navigateBackToMain();
                 } catch (SQLException ex) {
                     Logger.catchAndLogBug(ex, "ResturantScreen");
@@ -214,14 +222,6 @@ public class ResturantScreen extends JPanel {
         }
     }
 
-    private String getRestaurantAddress(String restaurantName) {
-        Map<String, String> restaurantAddresses = new HashMap<>();
-        restaurantAddresses.put("Crimson Dining", "125 Burrill Ave");
-        restaurantAddresses.put("Barrett's Alehouse Bridgewater", "425 Bedford St");
-        restaurantAddresses.put("Greyhound Tavern", "39 Broad Street");
-        return restaurantAddresses.getOrDefault(restaurantName, "Address not available");
-    }
-
     private MenuSelectionPanel buildMenuPanel(String restaurantName, String[] menuItems) {
         JPanel panel = new JPanel();
         panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
@@ -298,46 +298,33 @@ public class ResturantScreen extends JPanel {
             throw new SQLException("No payment method available");
         }
 
-        // Count total items
-        int totalItems = 0;
-        for (int i = 0; i < checkBoxes.length; i++) {
-            if (checkBoxes[i].isSelected()) {
-                totalItems += (Integer)quantities[i].getValue();
-            }
-        }
-
         // Create order in database
         String deliveryStreet = (parent.address != null && parent.address.getStreet() != null) 
             ? parent.address.getStreet() : "Address not fully set";
         double deliveryLat = (parent.address != null) ? parent.address.getLatitude() : 0.0;
         double deliveryLon = (parent.address != null) ? parent.address.getLongitude() : 0.0;
-        
-        long orderId = parent.orderDb.createOrder(username, restaurantName, restaurantAddress,
-            deliveryStreet,
-            "No Special Instructions",
-            total,
-            totalItems,
-            paymentInfo.getPaymentType(),
-            restaurantLat, restaurantLon,
-            deliveryLat, deliveryLon);
-
-        // Add items to order
+
+        OrderDraft draft = new OrderDraft(username, restaurantName, restaurantAddress, deliveryStreet);
+        draft.setPaymentType(paymentInfo.getPaymentType());
+        draft.setRestaurantLocation(restaurantLat, restaurantLon);
+        draft.setDeliveryLocation(deliveryLat, deliveryLon);
         for (int i = 0; i < checkBoxes.length; i++) {
             if (checkBoxes[i].isSelected()) {
                 int quantity = (Integer)quantities[i].getValue();
                 String itemName = menuItems[i].split(" - ")[0];
-                double price = prices[i];
-                parent.orderDb.addOrderItem(orderId, itemName, quantity, price, null);
+                draft.addItem(itemName, quantity, prices[i], null);
             }
         }
 
+        // order + items are saved in one transaction
+        PlacedOrder placed = parent.orderDb.placeOrder(draft);
+
         // Show ETA confirmation
-        ETA eta = new ETA((int)orderId, totalItems);
         String confirmMessage = String.format(
             "Order #%d placed successfully!\n" +
             "Total: $%.2f\n\n" +
             "%s",
-            orderId, total, eta.getETAMessage());
+            placed.getOrderId(), total, placed.getETAMessage());
 
         JOptionPane.showMessageDialog(this,
             confirmMessage,
@@ -0,0 +1,186 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * RowCursor streams the rows of a query one at a time, mapping each one to a typed row object.
+ * It owns the pooled connection, statement and ResultSet behind the query and closes all of them when
+ * it is closed or runs out of rows, so callers never hold on to a raw ResultSet.
+ * Use it in a try-with-resources, or use one of the forEach methods on the database classes.
+ * @param <T> The row type (OrderRow, DeliveryRow, etc).
+ */
+public class RowCursor<T> implements Iterator<T>, Iterable<T>, AutoCloseable {
+
+    /**
+     * Turns the current row of a ResultSet into a row object. Should not call rs.next().
+     * @param <T> The row type.
+     */
+    @FunctionalInterface
+    public interface Mapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Thrown from hasNext()/next() when reading a row fails, since Iterator can't throw SQLException.
+     * The original SQLException is the cause.
+     */
+    public static class CursorException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        CursorException(SQLException cause) {
+            super(cause.getMessage(), cause);
+        }
+
+        @Override
+        public synchronized SQLException getCause() {
+            return (SQLException) super.getCause();
+        }
+    }
+
+    private final Connection conn;
+    private final PreparedStatement ps;
+    private final ResultSet rs;
+    private final Mapper<T> mapper;
+    private T nextRow;
+    private boolean closed;
+
+    private RowCursor(Connection conn, PreparedStatement ps, ResultSet rs, Mapper<T> mapper) {
+        this.conn = conn;
+        this.ps = ps;
+        this.rs = rs;
+        this.mapper = mapper;
+    }
+
+    /**
+     * Runs a query on a pooled connection and returns a cursor over the mapped rows.
+     * @param pool Pool to borrow the connection from.
+     * @param owner Name recorded on the connection lease (shows up in leak reports).
+     * @param sql Query to run.
+     * @param mapper Maps each row.
+     * @param params Values for the ? placeholders, in order.
+     * @param <T> The row type.
+     * @return An open cursor the caller must close.
+     * @throws SQLException if the query fails
+     */
+    public static <T> RowCursor<T> open(ConnectionPool pool, String owner, String sql, Mapper<T> mapper,
+                                        Object... params) throws SQLException {
+        Connection conn = pool.getConnection(owner);
+        PreparedStatement ps = null;
+        try {
+            ps = conn.prepareStatement(sql);
+            for (int i = 0; i < params.length; i++) {
+                ps.setObject(i + 1, params[i]);
+            }
+            return new RowCursor<>(conn, ps, ps.executeQuery(), mapper);
+        } catch (SQLException e) {
+            if (ps != null) {
+                try {
+                    ps.close();
+                } catch (SQLException ignored) { }
+            }
+            conn.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Runs a query and returns just the first mapped row.
+     * @return The first row, or null if the query returned nothing.
+     * @throws SQLException if the query fails
+     */
+    public static <T> T first(ConnectionPool pool, String owner, String sql, Mapper<T> mapper,
+                              Object... params) throws SQLException {
+        try (RowCursor<T> cursor = open(pool, owner, sql, mapper, params)) {
+            return cursor.hasNext() ? cursor.next() : null;
+        } catch (CursorException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Runs a query and hands every mapped row to the action, one at a time, then closes everything.
+     * Only one row is in memory at a time.
+     * @throws SQLException if the query or reading a row fails
+     */
+    public static <T> void forEach(ConnectionPool pool, String owner, String sql, Mapper<T> mapper,
+                                   Consumer<? super T> action, Object... params) throws SQLException {
+        try (RowCursor<T> cursor = open(pool, owner, sql, mapper, params)) {
+            while (cursor.hasNext()) {
+                action.accept(cursor.next());
+            }
+        } catch (CursorException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextRow != null) {
+            return true;
+        }
+        if (closed) {
+            return false;
+        }
+        try {
+            if (rs.next()) {
+                nextRow = mapper.map(rs);
+                return true;
+            }
+            close();  // ran out of rows, give the connection back right away
+            return false;
+        } catch (SQLException e) {
+            close();
+            throw new CursorException(e);
+        }
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T row = nextRow;
+        nextRow = null;
+        return row;
+    }
+
+    // lets a cursor be used directly in a for-each loop (only once)
+    @Override
+    public Iterator<T> iterator() {
+        return this;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Closes the ResultSet and statement and returns the connection to the pool. Safe to call twice.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            rs.close();
+        } catch (SQLException e) {
+            Logger.catchAndLogBug(e, "RowCursor.close");
+        }
+        try {
+            ps.close();
+        } catch (SQLException e) {
+            Logger.catchAndLogBug(e, "RowCursor.close");
+        }
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            Logger.catchAndLogBug(e, "RowCursor.close");
+        }
+    }
+}
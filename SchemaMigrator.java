@@ -0,0 +1,211 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SchemaMigrator brings a database file up to the current schema using an ordered list of migrations.
+ * The version a file is at is stored in PRAGMA user_version, so each migration runs exactly once per file
+ * (inside its own transaction, together with the version bump) and checking a database that is already current
+ * is one PRAGMA read.
+ * A file holding several schemas (DataStore's consolidated layout) can't share the single user_version, so there
+ * each migrator keeps its version as a row in the schema_versions table instead (see {@link #useVersionTable}),
+ * and user_version only marks the file as one that does; checking it is the PRAGMA read plus that one row.
+ */
+public class SchemaMigrator {
+
+    /**
+     * One schema change. Runs inside a transaction; throwing rolls the whole step back.
+     */
+    @FunctionalInterface
+    public interface Migration {
+        void apply(Statement stmt) throws SQLException;
+    }
+
+    static final String VERSION_TABLE = "schema_versions";
+    // user_version of a file whose versions are in schema_versions; a real version is never negative
+    static final int USES_VERSION_TABLE = -1;
+
+    private final String name;
+    private final List<Step> steps = new ArrayList<>();
+
+    /**
+     * Constructs an empty migrator.
+     * @param name Name used in log messages (usually the database class).
+     */
+    public SchemaMigrator(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Adds a migration. Versions have to be added in increasing order starting at 1.
+     * @param version Schema version the database is at after this migration.
+     * @param description Short description for the log.
+     * @param migration The change to apply.
+     * @return This migrator, so calls can be chained.
+     */
+    public SchemaMigrator add(int version, String description, Migration migration) {
+        int expected = steps.size() + 1;
+        if (version != expected) {
+            throw new IllegalArgumentException(name + " migration " + version + " added out of order, expected " + expected);
+        }
+        steps.add(new Step(version, description, migration));
+        return this;
+    }
+
+    /**
+     * Returns the version the schema is at once every migration has run.
+     * @return Latest migration version (0 if there are none).
+     */
+    public int getLatestVersion() {
+        return steps.size();
+    }
+
+    /*
+    --> reads user_version; only a shared file (the marker) or a blank one (0, could be a shared file made before
+        the marker existed) goes on to look at schema_versions
+    --> reads the current version, if it's already the latest we're done
+    --> otherwise runs each missing migration in its own transaction and bumps the version in the same transaction
+    --> a failing migration rolls back and leaves the version where it was, so the next start retries it
+    */
+    public int migrate(Connection conn) throws SQLException {
+        int userVersion = getVersion(conn);
+        boolean versionTable = userVersion == USES_VERSION_TABLE || (userVersion == 0 && hasVersionTable(conn));
+        if (versionTable && userVersion == 0) {
+            markVersionTable(conn);
+        }
+        int current = versionTable ? getVersion(conn, name) : userVersion;
+        if (current >= getLatestVersion()) {
+            return current;
+        }
+
+        boolean autoCommit = conn.getAutoCommit();
+        try (Statement stmt = conn.createStatement()) {
+            for (Step step : steps) {
+                if (step.version <= current) {
+                    continue;
+                }
+                conn.setAutoCommit(false);
+                try {
+                    step.migration.apply(stmt);
+                    if (versionTable) {
+                        stmt.executeUpdate("INSERT OR REPLACE INTO " + VERSION_TABLE + " (name, version) VALUES ('"
+                                + name + "', " + step.version + ")");
+                    } else {
+                        stmt.executeUpdate("PRAGMA user_version = " + step.version);
+                    }
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    Logger.catchAndLogBug(e, "SchemaMigrator." + name + " v" + step.version);
+                    throw new SQLException(name + " migration " + step.version + " (" + step.description + ") failed", e);
+                } finally {
+                    conn.setAutoCommit(autoCommit);
+                }
+                current = step.version;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Reads the schema version stored in the database file.
+     * @param conn Connection to the database.
+     * @return PRAGMA user_version (0 for a new or never-migrated file, USES_VERSION_TABLE for a shared one).
+     * @throws SQLException if the pragma can't be read
+     */
+    public static int getVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Reads one schema's version from the schema_versions table of a shared file.
+     * @param conn Connection to the database.
+     * @param name Migrator name, like "OrderDatabase".
+     * @return The stored version (0 if that schema hasn't been created in this file yet).
+     * @throws SQLException if the table can't be read
+     */
+    public static int getVersion(Connection conn, String name) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT version FROM " + VERSION_TABLE + " WHERE name = ?")) {
+            ps.setString(1, name);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * Marks a database file as holding more than one schema: from now on every migrator keeps its own
+     * version in schema_versions instead of PRAGMA user_version. Has to run before the first migrate() on the file.
+     * @param conn Connection to the shared file.
+     * @throws SQLException if the table can't be created
+     */
+    public static void useVersionTable(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS " + VERSION_TABLE
+                    + " (name TEXT PRIMARY KEY, version INTEGER NOT NULL)");
+        }
+        markVersionTable(conn);
+    }
+
+    private static void markVersionTable(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("PRAGMA user_version = " + USES_VERSION_TABLE);
+        }
+    }
+
+    private static boolean hasVersionTable(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?")) {
+            ps.setString(1, VERSION_TABLE);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * Checks if a table has a column, using PRAGMA table_info instead of a probe query that has to fail.
+     * @return true if the column exists.
+     * @throws SQLException if the table info can't be read
+     */
+    public static boolean columnExists(Statement stmt, String table, String column) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                if (rs.getString("name").equalsIgnoreCase(column)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds a column if the table doesn't have it yet. For baseline migrations on files made by older versions.
+     * @throws SQLException if the ALTER TABLE fails
+     */
+    public static void addColumnIfMissing(Statement stmt, String table, String column, String definition) throws SQLException {
+        if (!columnExists(stmt, table, column)) {
+            stmt.executeUpdate("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+        }
+    }
+
+    // one numbered migration
+    private static class Step {
+        final int version;
+        final String description;
+        final Migration migration;
+
+        Step(int version, String description, Migration migration) {
+            this.version = version;
+            this.description = description;
+            this.migration = migration;
+        }
+    }
+}
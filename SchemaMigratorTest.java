@@ -0,0 +1,115 @@
+import org.junit.jupiter.api.*;
+import java.nio.file.*;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.*;
+/*
+--> Tests the PRAGMA user_version schema migrations:
+    - each migration runs once, a second start is just the version check
+    - an orders.db from an older version gets the missing columns
+    - a failing migration rolls back and leaves the version alone
+    - a shared file keeps versions in schema_versions and is marked in user_version, including one made before the mark
+--> Will return "Schema migration test passed" with the version if succeeded.
+ */
+public class SchemaMigratorTest {
+
+    private Path dbPath;
+
+    @BeforeEach
+    void setup() throws Exception {
+        dbPath = Files.createTempFile("test-schema", ".db");
+    }
+
+    @AfterEach
+    void cleanup() throws Exception {
+        ConnectionPool.closeAll();
+        Files.deleteIfExists(dbPath);
+    }
+
+    @Test
+    void testMigrationsRunOnce() throws SQLException {
+        AtomicInteger runs = new AtomicInteger();
+        SchemaMigrator migrator = new SchemaMigrator("test")
+                .add(1, "create table", stmt -> {
+                    runs.incrementAndGet();
+                    stmt.executeUpdate("CREATE TABLE things (id INTEGER PRIMARY KEY)");
+                })
+                .add(2, "add column", stmt -> {
+                    runs.incrementAndGet();
+                    stmt.executeUpdate("ALTER TABLE things ADD COLUMN name TEXT");
+                });
+
+        try (Connection conn = open()) {
+            assertEquals(2, migrator.migrate(conn));
+            assertEquals(2, migrator.migrate(conn));
+            assertEquals(2, SchemaMigrator.getVersion(conn));
+        }
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    void testSharedFileUsesVersionTable() throws SQLException {
+        SchemaMigrator migrator = new SchemaMigrator("test")
+                .add(1, "create table", stmt -> stmt.executeUpdate("CREATE TABLE things (id INTEGER PRIMARY KEY)"))
+                .add(2, "add column", stmt -> stmt.executeUpdate("ALTER TABLE things ADD COLUMN name TEXT"));
+        try (Connection conn = open(); Statement stmt = conn.createStatement()) {
+            // a fooddash.db from before the mark: schema_versions is there, user_version was left at 0
+            stmt.executeUpdate("CREATE TABLE schema_versions (name TEXT PRIMARY KEY, version INTEGER NOT NULL)");
+            stmt.executeUpdate("CREATE TABLE things (id INTEGER PRIMARY KEY)");
+            stmt.executeUpdate("INSERT INTO schema_versions (name, version) VALUES ('test', 1)");
+
+            assertEquals(2, migrator.migrate(conn));
+            assertEquals(SchemaMigrator.USES_VERSION_TABLE, SchemaMigrator.getVersion(conn));
+            assertEquals(2, SchemaMigrator.getVersion(conn, "test"));
+            assertEquals(2, migrator.migrate(conn));
+        }
+    }
+
+    @Test
+    void testOldOrdersFileIsUpgraded() throws SQLException {
+        // orders table the way the first version of the app made it
+        try (Connection conn = open(); Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE orders (order_id INTEGER PRIMARY KEY AUTOINCREMENT, customer_username TEXT NOT NULL, "
+                    + "restaurant_name TEXT NOT NULL, status TEXT NOT NULL DEFAULT 'PENDING', total_amount DECIMAL(10,2) NOT NULL, "
+                    + "created_at INTEGER NOT NULL, assigned_at INTEGER, picked_up_at INTEGER, delivered_at INTEGER, driver_username TEXT, "
+                    + "delivery_address TEXT, special_instructions TEXT, estimated_minutes INTEGER, actual_minutes INTEGER, "
+                    + "item_count INTEGER NOT NULL DEFAULT 0)");
+        }
+
+        OrderDatabase orderDb = new OrderDatabase(dbPath);
+        orderDb.init();
+
+        try (Connection conn = open(); Statement stmt = conn.createStatement()) {
+            assertEquals(OrderDatabase.MIGRATIONS.getLatestVersion(), SchemaMigrator.getVersion(conn));
+            assertTrue(SchemaMigrator.columnExists(stmt, "orders", "payment_status"));
+            assertTrue(SchemaMigrator.columnExists(stmt, "orders", "payment_type"));
+            assertTrue(SchemaMigrator.columnExists(stmt, "orders", "restaurant_address"));
+            assertTrue(SchemaMigrator.columnExists(stmt, "orders", "delivered_notified"));
+        }
+        assertTrue(orderDb.createOrder("oldfile", "Pizza Place", "123 Main St", "456 Home St", "none", 19.99, 1, "CARD", 0, 0, 0, 0) > 0);
+        System.out.println("Schema migration test passed - orders.db at version " + OrderDatabase.MIGRATIONS.getLatestVersion());
+    }
+
+    @Test
+    void testFailedMigrationRollsBack() throws SQLException {
+        SchemaMigrator migrator = new SchemaMigrator("test")
+                .add(1, "create table", stmt -> stmt.executeUpdate("CREATE TABLE things (id INTEGER PRIMARY KEY)"))
+                .add(2, "broken", stmt -> {
+                    stmt.executeUpdate("CREATE TABLE half_done (id INTEGER)");
+                    stmt.executeUpdate("ALTER TABLE no_such_table ADD COLUMN name TEXT");
+                });
+
+        try (Connection conn = open(); Statement stmt = conn.createStatement()) {
+            assertThrows(SQLException.class, () -> migrator.migrate(conn));
+            assertEquals(1, SchemaMigrator.getVersion(conn));
+            assertFalse(SchemaMigrator.columnExists(stmt, "half_done", "id"));
+        }
+    }
+
+    private Connection open() throws SQLException {
+        return DriverManager.getConnection("jdbc:sqlite:" + dbPath.toAbsolutePath());
+    }
+}
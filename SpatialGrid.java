@@ -0,0 +1,229 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * SpatialGrid buckets points (drivers, restaurants) into square lat/lon cells so a "k nearest to here" lookup only
+ * looks at the cells around the location instead of every point. Distances are MapCalculator's haversine.
+ * Adding, moving and removing a point is O(1). Lookups don't lock, so one running while a point moves may see it
+ * in either place.
+ * @param <K> What identifies a point (a username, a restaurant id).
+ */
+public class SpatialGrid<K> {
+
+    private static final double KM_PER_DEGREE_LAT = 111.19;
+
+    /**
+     * One lookup result.
+     */
+    public static final class Hit<K> {
+        private final K key;
+        private final double lat;
+        private final double lon;
+        private final double distanceKm;
+
+        Hit(K key, double lat, double lon, double distanceKm) {
+            this.key = key;
+            this.lat = lat;
+            this.lon = lon;
+            this.distanceKm = distanceKm;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        public double getLat() {
+            return lat;
+        }
+
+        public double getLon() {
+            return lon;
+        }
+
+        public double getDistanceKm() {
+            return distanceKm;
+        }
+    }
+
+    private final double cellDegrees;
+    private final Map<Long, Set<K>> cells = new ConcurrentHashMap<>();
+    private final Map<K, double[]> positions = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs an empty grid.
+     * @param cellDegrees Cell size in degrees. Around the typical lookup radius works best
+     *                    (0.01 is about 1.1 km north-south).
+     */
+    public SpatialGrid(double cellDegrees) {
+        if (cellDegrees <= 0) {
+            throw new IllegalArgumentException("cellDegrees must be positive");
+        }
+        this.cellDegrees = cellDegrees;
+    }
+
+    /**
+     * Adds a point, or moves it if it's already in the grid.
+     * @param key The point.
+     * @param lat Latitude.
+     * @param lon Longitude.
+     */
+    public synchronized void put(K key, double lat, double lon) {
+        double[] old = positions.put(key, new double[] { lat, lon });
+        long cell = cellOf(lat, lon);
+        if (old != null) {
+            long oldCell = cellOf(old[0], old[1]);
+            if (oldCell == cell) {
+                return;
+            }
+            removeFromCell(oldCell, key);
+        }
+        cells.computeIfAbsent(cell, c -> ConcurrentHashMap.newKeySet()).add(key);
+    }
+
+    /**
+     * Takes a point out of the grid.
+     * @param key The point.
+     * @return true if it was there.
+     */
+    public synchronized boolean remove(K key) {
+        double[] old = positions.remove(key);
+        if (old == null) {
+            return false;
+        }
+        removeFromCell(cellOf(old[0], old[1]), key);
+        return true;
+    }
+
+    private void removeFromCell(long cell, K key) {
+        Set<K> keys = cells.get(cell);
+        if (keys != null) {
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                cells.remove(cell);
+            }
+        }
+    }
+
+    public boolean contains(K key) {
+        return positions.containsKey(key);
+    }
+
+    public int size() {
+        return positions.size();
+    }
+
+    /*
+    --> walks rings of cells outward from the cell the location is in, keeping the k closest points seen
+    --> a cell in ring r is at least (r - 1) cells away, so once that's farther than the k-th best (or maxKm)
+        nothing further out can make the list and the walk stops
+    --> longitude cells shrink away from the equator, the bound uses the narrowest width the ring can have
+    --> returns closest first, points the filter rejects are skipped
+    */
+    public List<Hit<K>> nearest(double lat, double lon, int k, double maxKm, Predicate<? super K> filter) {
+        if (k <= 0 || positions.isEmpty()) {
+            return Collections.emptyList();
+        }
+        PriorityQueue<Hit<K>> best = new PriorityQueue<>(k, Comparator.comparingDouble((Hit<K> h) -> h.distanceKm).reversed());
+        long row = (long) Math.floor(lat / cellDegrees);
+        long col = (long) Math.floor(lon / cellDegrees);
+        int seen = 0;
+        int total = positions.size();
+        for (int ring = 0; ; ring++) {
+            double edgeLat = Math.min(89.9, Math.abs(lat) + (ring + 1) * cellDegrees);
+            double cellKm = cellDegrees * KM_PER_DEGREE_LAT * Math.cos(Math.toRadians(edgeLat));
+            double ringMinKm = Math.max(0, ring - 1) * cellKm;
+            if (ringMinKm > maxKm || (best.size() == k && ringMinKm > best.peek().distanceKm) || seen >= total) {
+                break;
+            }
+            seen += forEachInRing(row, col, ring, candidate -> {
+                double[] pos = positions.get(candidate);
+                if (pos == null || (filter != null && !filter.test(candidate))) {
+                    return;
+                }
+                double km = MapCalculator.distanceKm(lat, lon, pos[0], pos[1]);
+                if (km > maxKm) {
+                    return;
+                }
+                if (best.size() < k) {
+                    best.add(new Hit<>(candidate, pos[0], pos[1], km));
+                } else if (km < best.peek().distanceKm) {
+                    best.poll();
+                    best.add(new Hit<>(candidate, pos[0], pos[1], km));
+                }
+            });
+        }
+        List<Hit<K>> result = new ArrayList<>(best);
+        result.sort(Comparator.comparingDouble(h -> h.distanceKm));
+        return result;
+    }
+
+    /*
+    --> every point within maxKm of the location, closest first (restaurants near an address)
+    --> same ring walk as nearest(), it just doesn't cap the count, so it stops once a whole ring is past maxKm
+    */
+    public List<Hit<K>> within(double lat, double lon, double maxKm, Predicate<? super K> filter) {
+        List<Hit<K>> result = new ArrayList<>();
+        if (positions.isEmpty()) {
+            return result;
+        }
+        long row = (long) Math.floor(lat / cellDegrees);
+        long col = (long) Math.floor(lon / cellDegrees);
+        int seen = 0;
+        int total = positions.size();
+        for (int ring = 0; ; ring++) {
+            double edgeLat = Math.min(89.9, Math.abs(lat) + (ring + 1) * cellDegrees);
+            double cellKm = cellDegrees * KM_PER_DEGREE_LAT * Math.cos(Math.toRadians(edgeLat));
+            if (Math.max(0, ring - 1) * cellKm > maxKm || seen >= total) {
+                break;
+            }
+            seen += forEachInRing(row, col, ring, candidate -> {
+                double[] pos = positions.get(candidate);
+                if (pos == null || (filter != null && !filter.test(candidate))) {
+                    return;
+                }
+                double km = MapCalculator.distanceKm(lat, lon, pos[0], pos[1]);
+                if (km <= maxKm) {
+                    result.add(new Hit<>(candidate, pos[0], pos[1], km));
+                }
+            });
+        }
+        result.sort(Comparator.comparingDouble(h -> h.distanceKm));
+        return result;
+    }
+
+    // hands every point in the border cells of a ring to visit, returns how many there were
+    private int forEachInRing(long row, long col, int ring, Consumer<K> visit) {
+        int count = 0;
+        for (long r = row - ring; r <= row + ring; r++) {
+            // only the border of the ring, the inside was done already
+            long step = (r == row - ring || r == row + ring) ? 1 : Math.max(1, 2L * ring);
+            for (long c = col - ring; c <= col + ring; c += step) {
+                Set<K> keys = cells.get(key(r, c));
+                if (keys == null) {
+                    continue;
+                }
+                for (K candidate : keys) {
+                    count++;
+                    visit.accept(candidate);
+                }
+            }
+        }
+        return count;
+    }
+
+    private long cellOf(double lat, double lon) {
+        return key((long) Math.floor(lat / cellDegrees), (long) Math.floor(lon / cellDegrees));
+    }
+
+    private static long key(long row, long col) {
+        return (row << 32) ^ (col & 0xffffffffL);
+    }
+}
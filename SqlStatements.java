@@ -0,0 +1,366 @@
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * SqlStatements is the one place the app's production SQL lives, each statement under a name and
+ * tagged with the database it runs against. The database classes and screens use these constants instead
+ * of inline strings, which lets QueryPlanTest run EXPLAIN QUERY PLAN on every one of them and catch a
+ * query that stops using an index, and lets StatementCache keep exactly these statements prepared.
+ * One-off tools (ListUsers, UpdateOrderAddresses) and schema migrations are not registered.
+ */
+public final class SqlStatements {
+
+    /**
+     * Which schema a statement belongs to. Statements that join another schema's tables (DELIVERY_HISTORY,
+     * PAYMENT_HISTORY) rely on DataStore putting them in one file or ATTACHing them.
+     */
+    public enum Domain { USERS, DRIVERS, ORDERS, PAYMENTS }
+
+    /**
+     * A registered statement.
+     */
+    public static final class NamedSql {
+        private final String name;
+        private final Domain domain;
+        private final String sql;
+
+        NamedSql(String name, Domain domain, String sql) {
+            this.name = name;
+            this.domain = domain;
+            this.sql = sql;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Domain getDomain() {
+            return domain;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+    }
+
+    // has to come before the constants so it exists when they register
+    private static final Map<String, NamedSql> REGISTRY = new LinkedHashMap<>();
+    private static final Set<String> REGISTERED_SQL = new HashSet<>();
+
+    private SqlStatements() { }
+
+    private static String register(Domain domain, String name, String sql) {
+        if (REGISTRY.put(name, new NamedSql(name, domain, sql)) != null) {
+            throw new IllegalStateException("Duplicate SQL name " + name);
+        }
+        REGISTERED_SQL.add(sql);
+        return sql;
+    }
+
+    /**
+     * Returns every registered statement, in registration order.
+     * @return All named statements.
+     */
+    public static Collection<NamedSql> all() {
+        return Collections.unmodifiableCollection(REGISTRY.values());
+    }
+
+    /**
+     * Looks up a statement by name.
+     * @param name Statement name, like "ORDER_PENDING".
+     * @return The statement, or null if there isn't one with that name.
+     */
+    public static NamedSql get(String name) {
+        return REGISTRY.get(name);
+    }
+
+    /**
+     * Checks whether a SQL string is one of the registered statements (exact text match).
+     * @param sql The SQL about to be prepared.
+     * @return true if it's in the registry.
+     */
+    public static boolean isRegistered(String sql) {
+        return REGISTERED_SQL.contains(sql);
+    }
+
+    // ---- users.db ----
+
+    public static final String USER_INSERT = register(Domain.USERS, "USER_INSERT",
+            "INSERT INTO users(username,password_hash,user_type,full_name,email,phone,created_at) VALUES(?,?,?,?,?,?,?)");
+    public static final String USER_ADDRESS_UPSERT = register(Domain.USERS, "USER_ADDRESS_UPSERT",
+            "INSERT OR REPLACE INTO address (username, street, city, state, zip, latitude, longitude) VALUES (?, ?, ?, ?, ?, ?, ?)");
+
+    public static final String USER_PASSWORD_HASH = register(Domain.USERS, "USER_PASSWORD_HASH",
+            "SELECT password_hash FROM users WHERE username = ?");
+    public static final String USER_EXISTS = register(Domain.USERS, "USER_EXISTS",
+            "SELECT 1 FROM users WHERE username = ?");
+    public static final String USER_TYPE = register(Domain.USERS, "USER_TYPE",
+            "SELECT user_type FROM users WHERE username = ?");
+    public static final String USER_ADMIN_HASH = register(Domain.USERS, "USER_ADMIN_HASH",
+            "SELECT admin_hash FROM users WHERE username = ?");
+    public static final String USER_SET_ADMIN_HASH = register(Domain.USERS, "USER_SET_ADMIN_HASH",
+            "UPDATE users SET admin_hash = ? WHERE username = ?");
+    public static final String USER_ADDRESS = register(Domain.USERS, "USER_ADDRESS",
+            "SELECT street, city, state, zip, latitude, longitude FROM address WHERE username = ?");
+    public static final String CUSTOMER_LIST = register(Domain.USERS, "CUSTOMER_LIST",
+            "SELECT username, full_name, email, phone FROM users WHERE user_type = 'CUSTOMER'");
+
+    // ---- drivers.db ----
+
+    public static final String DRIVER_INSERT = register(Domain.DRIVERS, "DRIVER_INSERT", 
+            "INSERT INTO drivers (username, vehicle_type, license_number, service_area, "
+            + "current_status, account_status, joined_date) "
+            + "VALUES (?, ?, ?, ?, 'OFFLINE', 'ACTIVE', ?)");
+    public static final String DELIVERY_INSERT = register(Domain.DRIVERS, "DELIVERY_INSERT",
+            "INSERT INTO delivery_history (driver_username, order_id, pickup_time, "
+            + "delivery_time, delivery_status) VALUES (?, ?, ?, ?, ?)");
+    public static final String SCHEDULE_INSERT = register(Domain.DRIVERS, "SCHEDULE_INSERT", 
+            "INSERT INTO driver_schedule (driver_username, day_of_week, start_time, end_time) "
+            + "VALUES (?, ?, ?, ?)");
+
+    public static final String DRIVER_SET_STATUS = register(Domain.DRIVERS, "DRIVER_SET_STATUS",
+            "UPDATE drivers SET current_status = ? WHERE username = ?");
+    public static final String DRIVER_SET_LOCATION = register(Domain.DRIVERS, "DRIVER_SET_LOCATION",
+            "UPDATE drivers SET current_lat = ?, current_lon = ?, location_updated_at = ? WHERE username = ?");
+    public static final String DRIVER_AVAILABLE_LOCATIONS = register(Domain.DRIVERS, "DRIVER_AVAILABLE_LOCATIONS",
+            "SELECT username, current_lat, current_lon FROM drivers "
+            + "WHERE current_status = 'AVAILABLE' AND current_lat IS NOT NULL AND current_lon IS NOT NULL");
+    public static final String DRIVER_INCREMENT_DELIVERIES = register(Domain.DRIVERS, "DRIVER_INCREMENT_DELIVERIES",
+            "UPDATE drivers SET total_deliveries = total_deliveries + 1 WHERE username = ?");
+    public static final String DELIVERY_SET_RATING = register(Domain.DRIVERS, "DELIVERY_SET_RATING",
+            "UPDATE delivery_history SET customer_rating = ?, customer_feedback = ? "
+            + "WHERE driver_username = ? AND order_id = ?");
+    public static final String DRIVER_RECALC_RATING = register(Domain.DRIVERS, "DRIVER_RECALC_RATING",
+            "UPDATE drivers SET rating = (SELECT AVG(customer_rating) FROM delivery_history "
+            + "WHERE driver_username = ? AND customer_rating IS NOT NULL) WHERE username = ?");
+    public static final String DELIVERY_HISTORY = register(Domain.DRIVERS, "DELIVERY_HISTORY",
+            "SELECT dh.*, o.restaurant_name, o.total_amount "
+            + "FROM delivery_history dh "
+            + "JOIN orders o ON dh.order_id = o.order_id "
+            + "WHERE dh.driver_username = ? "
+            + "ORDER BY dh.delivery_time DESC");  // newest first
+    public static final String DRIVER_STATS = register(Domain.DRIVERS, "DRIVER_STATS",
+            "SELECT d.*, "
+            + "(SELECT COUNT(*) FROM delivery_history WHERE driver_username = d.username) as total_orders, "
+            + "(SELECT AVG(customer_rating) FROM delivery_history WHERE driver_username = d.username) as avg_rating, "
+            + "(SELECT SUM(earnings) FROM delivery_history WHERE driver_username = d.username) as total_earnings "
+            + "FROM drivers d WHERE d.username = ?");
+
+    // ---- orders.db ----
+
+    // the columns OrderRow maps - items_summary is kept up to date by triggers on order_items
+    private static final String ORDER_COLUMNS = "SELECT o.* FROM orders o ";
+
+    public static final String ORDER_INSERT = register(Domain.ORDERS, "ORDER_INSERT",
+            "INSERT INTO orders (customer_username, restaurant_name, restaurant_address, status, total_amount, "
+            + "created_at, delivery_address, special_instructions, estimated_minutes, item_count, payment_type, "
+            + "restaurant_lat, restaurant_lon, delivery_lat, delivery_lon) "
+            + "VALUES (?, ?, ?, 'PENDING', ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+    public static final String ORDER_ITEM_INSERT = register(Domain.ORDERS, "ORDER_ITEM_INSERT",
+            "INSERT INTO order_items (order_id, item_name, quantity, unit_price, special_requests) "
+            + "VALUES (?, ?, ?, ?, ?)");
+    public static final String ORDER_UPDATE_INSERT = register(Domain.ORDERS, "ORDER_UPDATE_INSERT",
+            "INSERT INTO order_updates (order_id, status, notes, updated_at, updated_by) "
+            + "VALUES (?, ?, ?, ?, ?)");
+    public static final String ORDER_STATUS = register(Domain.ORDERS, "ORDER_STATUS",
+            "SELECT status FROM orders WHERE order_id = ?");
+    // who an order event goes to (OrderEventBus)
+    public static final String ORDER_PARTIES = register(Domain.ORDERS, "ORDER_PARTIES",
+            "SELECT customer_username, driver_username FROM orders WHERE order_id = ?");
+    // the order_updates log from a given update on, for rebuilding order state (OrderStates)
+    public static final String ORDER_UPDATES_SINCE = register(Domain.ORDERS, "ORDER_UPDATES_SINCE",
+            "SELECT update_id, order_id, status, updated_at, updated_by FROM order_updates "
+            + "WHERE update_id > ? ORDER BY update_id ASC");
+    public static final String ORDER_DETAILS = register(Domain.ORDERS, "ORDER_DETAILS",
+            ORDER_COLUMNS + "WHERE o.order_id = ?");
+    public static final String ORDER_ITEMS = register(Domain.ORDERS, "ORDER_ITEMS",
+            "SELECT * FROM order_items WHERE order_id = ?");
+    // the claiming driver goes on delivery in the same transaction as the claim (drivers is reached through DataStore)
+    public static final String ORDER_CLAIM_DRIVER_ON_DELIVERY = register(Domain.ORDERS, "ORDER_CLAIM_DRIVER_ON_DELIVERY",
+            "UPDATE drivers SET current_status = 'ON_DELIVERY' WHERE username = ?");
+    // undoes a claim whose driver update failed, only if nothing has moved the order since
+    public static final String ORDER_UNCLAIM = register(Domain.ORDERS, "ORDER_UNCLAIM",
+            "UPDATE orders SET status = 'PENDING', driver_username = NULL, assigned_at = NULL "
+            + "WHERE order_id = ? AND status = 'ASSIGNED' AND driver_username = ?");
+    public static final String ORDER_PENDING = register(Domain.ORDERS, "ORDER_PENDING",
+            ORDER_COLUMNS + "WHERE o.status = 'PENDING' ORDER BY o.created_at ASC, o.order_id ASC");
+    // DriverGetOrder's list of orders nobody has taken yet
+    public static final String ORDER_AVAILABLE = register(Domain.ORDERS, "ORDER_AVAILABLE",
+            "SELECT o.order_id, o.restaurant_name, o.restaurant_address, o.total_amount, "
+            + "o.estimated_minutes, o.status, o.created_at, o.items_summary as items, o.item_count "
+            + "FROM orders o "
+            + "WHERE o.status = 'PENDING' AND o.driver_username IS NULL "
+            + "ORDER BY o.created_at DESC, o.order_id DESC");
+    public static final String ORDER_HAS_UNNOTIFIED = register(Domain.ORDERS, "ORDER_HAS_UNNOTIFIED",
+            "SELECT EXISTS(SELECT 1 FROM orders WHERE customer_username = ? AND status = 'DELIVERED' AND COALESCE(delivered_notified,0) = 0)");
+    public static final String ORDER_MARK_NOTIFIED = register(Domain.ORDERS, "ORDER_MARK_NOTIFIED",
+            "UPDATE orders SET delivered_notified = 1 WHERE customer_username = ? AND status = 'DELIVERED' AND COALESCE(delivered_notified,0) = 0");
+    public static final String ORDER_OLDEST_ACTIVE = register(Domain.ORDERS, "ORDER_OLDEST_ACTIVE",
+            ORDER_COLUMNS + "WHERE o.driver_username = ? AND o.status != 'DELIVERED' AND o.status != 'CANCELLED' "
+            + "ORDER BY o.order_id ASC LIMIT 1");
+    // what EtaModel learns from when an order is delivered
+    private static final String DELIVERY_TIME_COLUMNS = "SELECT order_id, restaurant_name, created_at, actual_minutes, "
+            + "restaurant_lat, restaurant_lon, delivery_lat, delivery_lon FROM orders ";
+    public static final String ORDER_DELIVERY_TIME = register(Domain.ORDERS, "ORDER_DELIVERY_TIME",
+            DELIVERY_TIME_COLUMNS + "WHERE order_id = ? AND actual_minutes IS NOT NULL");
+    // EtaModel's averages, kept up to date by the writer; at most 24 rows per restaurant, loaded whole at startup
+    public static final String ETA_STATS_RECORD = register(Domain.ORDERS, "ETA_STATS_RECORD",
+            "INSERT INTO eta_stats (restaurant_name, hour, samples, mean_minutes) VALUES (?, ?, 1, ?) "
+            + "ON CONFLICT (restaurant_name, hour) DO UPDATE SET samples = samples + 1, "
+            + "mean_minutes = mean_minutes + (excluded.mean_minutes - mean_minutes) / (samples + 1)");
+    public static final String ETA_STATS_AFTER = register(Domain.ORDERS, "ETA_STATS_AFTER",
+            "SELECT stats_id, restaurant_name, hour, samples, mean_minutes FROM eta_stats "
+            + "WHERE stats_id > ? ORDER BY stats_id ASC");
+    public static final String RESTAURANT_INSERT = register(Domain.ORDERS, "RESTAURANT_INSERT",
+            "INSERT INTO restaurants (name, address, zip, lat, lon) VALUES (?, ?, ?, ?, ?)");
+    // RestaurantDirectory loads the whole table once, the distance lookups run against its grid
+    public static final String RESTAURANTS_AFTER = register(Domain.ORDERS, "RESTAURANTS_AFTER",
+            "SELECT restaurant_id, name, address, zip, lat, lon FROM restaurants "
+            + "WHERE restaurant_id > ? ORDER BY restaurant_id ASC");
+
+    /*
+    --> one guarded UPDATE per status an order can move to (OrderStatus has the table)
+    --> the WHERE only matches if the row is in a status allowed to move there, so a transition is a
+        compare-and-set: 0 rows updated means the order is gone or somebody moved it first
+    --> the timestamps for the new status are set in the same statement, actual_minutes is worked out
+        from created_at inside the UPDATE instead of reading it first
+    --> parameters: [driver_username,] [now, [now,]] order_id (see orderTransition)
+    */
+    private static final Map<OrderStatus, String> ORDER_TRANSITION = new EnumMap<>(OrderStatus.class);
+
+    static {
+        for (OrderStatus target : OrderStatus.values()) {
+            if (target.reachableFrom().isEmpty()) {
+                continue;  // PENDING, only set when the order is created
+            }
+            StringBuilder from = new StringBuilder();
+            for (OrderStatus status : target.reachableFrom()) {
+                from.append(from.length() == 0 ? "'" : ", '").append(status.name()).append("'");
+            }
+            ORDER_TRANSITION.put(target, register(Domain.ORDERS, "ORDER_TRANSITION_" + target.name(),
+                    "UPDATE orders SET status = '" + target.name() + "'" + transitionColumns(target)
+                    + " WHERE order_id = ? AND status IN (" + from + ")"));
+        }
+    }
+
+    private static String transitionColumns(OrderStatus target) {
+        switch (target) {
+            case ASSIGNED:
+                return ", driver_username = ?, assigned_at = ?";
+            case IN_PROGRESS:
+                return ", picked_up_at = ?";
+            case DELIVERED:
+                return ", delivered_at = ?, actual_minutes = (? - created_at) / 60";
+            default:
+                return "";
+        }
+    }
+
+    /**
+     * Returns the guarded UPDATE that moves an order to a status.
+     * @param target Status to move to (anything but PENDING).
+     * @return SQL taking [driver_username, now] for ASSIGNED, [now] for IN_PROGRESS, [now, now] for DELIVERED,
+     *         then the order id.
+     */
+    public static String orderTransition(OrderStatus target) {
+        String sql = ORDER_TRANSITION.get(target);
+        if (sql == null) {
+            throw new IllegalArgumentException("No transition into " + target);
+        }
+        return sql;
+    }
+
+    /*
+    --> order history comes in a few shapes: who it's for (customer/driver/admin), and for the paged version
+        whether it starts after a key and which way it walks
+    --> every combination gets registered up front so the plan test sees all of them
+    */
+    private static final String[] HISTORY_USER_TYPES = { "CUSTOMER", "DRIVER", "ADMIN" };
+    private static final Map<String, String> ORDER_HISTORY = new LinkedHashMap<>();
+
+    static {
+        for (String userType : HISTORY_USER_TYPES) {
+            String where = ORDER_COLUMNS + "WHERE " + historyFilter(userType);
+            ORDER_HISTORY.put(userType, register(Domain.ORDERS, "ORDER_HISTORY_" + userType,
+                    where + " ORDER BY o.created_at DESC, o.order_id DESC"));
+            ORDER_HISTORY.put(userType + "_FIRST", register(Domain.ORDERS, "ORDER_HISTORY_PAGE_FIRST_" + userType,
+                    where + " ORDER BY o.created_at DESC, o.order_id DESC LIMIT ?"));
+            ORDER_HISTORY.put(userType + "_OLDER", register(Domain.ORDERS, "ORDER_HISTORY_PAGE_OLDER_" + userType,
+                    where + " AND (o.created_at, o.order_id) < (?, ?) ORDER BY o.created_at DESC, o.order_id DESC LIMIT ?"));
+            // going backwards walks the index the other way, OrderDatabase flips the rows afterwards
+            ORDER_HISTORY.put(userType + "_NEWER", register(Domain.ORDERS, "ORDER_HISTORY_PAGE_NEWER_" + userType,
+                    where + " AND (o.created_at, o.order_id) > (?, ?) ORDER BY o.created_at ASC, o.order_id ASC LIMIT ?"));
+        }
+    }
+
+    private static String historyFilter(String userType) {
+        if (userType.equals("CUSTOMER")) {
+            return "o.customer_username = ?";
+        } else if (userType.equals("DRIVER")) {
+            return "o.driver_username = ?";
+        }
+        return "1=1";  // show all orders for admin
+    }
+
+    /**
+     * Returns the full (unpaged) order history query for a user type.
+     * @param userType CUSTOMER, DRIVER or ADMIN (anything else is treated as ADMIN).
+     * @return SQL with one ? for the username, none for ADMIN.
+     */
+    public static String orderHistory(String userType) {
+        return ORDER_HISTORY.get(historyType(userType));
+    }
+
+    /**
+     * Returns the keyset page query for a user type.
+     * @param userType CUSTOMER, DRIVER or ADMIN.
+     * @param keyed false for the first page, true when continuing from a key.
+     * @param older Direction when keyed: true for older rows, false for newer.
+     * @return SQL taking [username,] [created_at, order_id,] limit.
+     */
+    public static String orderHistoryPage(String userType, boolean keyed, boolean older) {
+        String suffix = !keyed ? "_FIRST" : older ? "_OLDER" : "_NEWER";
+        return ORDER_HISTORY.get(historyType(userType) + suffix);
+    }
+
+    private static String historyType(String userType) {
+        return userType.equals("CUSTOMER") || userType.equals("DRIVER") ? userType : "ADMIN";
+    }
+
+    // ---- payments.db ----
+
+    public static final String PAYMENT_CARD_INSERT = register(Domain.PAYMENTS, "PAYMENT_CARD_INSERT", 
+            "INSERT INTO payment_methods (username, payment_type, card_number, card_expiry, card_name, created_at) "
+            + "VALUES (?, 'CARD', ?, ?, ?, ?)");
+    public static final String PAYMENT_BANK_INSERT = register(Domain.PAYMENTS, "PAYMENT_BANK_INSERT", 
+            "INSERT INTO payment_methods (username, payment_type, bank_routing, bank_account, bank_name, created_at) "
+            + "VALUES (?, 'BANK', ?, ?, ?, ?)");
+    public static final String PAYMENT_TX_INSERT = register(Domain.PAYMENTS, "PAYMENT_TX_INSERT",
+            "INSERT INTO payment_transactions (payment_method_id, order_id, amount, status, created_at) "
+            + "VALUES (?, ?, ?, 'PENDING', ?)");
+
+    public static final String PAYMENT_ACTIVE_METHOD = register(Domain.PAYMENTS, "PAYMENT_ACTIVE_METHOD",
+            "SELECT payment_type, card_number, card_expiry, card_name, "
+            + "bank_routing, bank_account, bank_name FROM payment_methods "
+            + "WHERE username = ? AND is_active = 1 ORDER BY id DESC LIMIT 1");  // gets most recent one
+    public static final String PAYMENT_ACTIVE_METHOD_ID = register(Domain.PAYMENTS, "PAYMENT_ACTIVE_METHOD_ID",
+            "SELECT id FROM payment_methods WHERE username = ? AND is_active = 1 ORDER BY id DESC LIMIT 1");
+    public static final String PAYMENT_DEACTIVATE_ALL = register(Domain.PAYMENTS, "PAYMENT_DEACTIVATE_ALL",
+            "UPDATE payment_methods SET is_active = 0 WHERE username = ?");
+    public static final String PAYMENT_TX_SET_STATUS = register(Domain.PAYMENTS, "PAYMENT_TX_SET_STATUS",
+            "UPDATE payment_transactions SET status = ?, completed_at = ?, error_message = ? WHERE id = ?");
+    // DriverPaymentHistory's list of payouts, with the restaurant from the order each one was for
+    public static final String PAYMENT_HISTORY = register(Domain.PAYMENTS, "PAYMENT_HISTORY",
+            "SELECT t.id, t.order_id, t.amount, t.status, t.created_at, t.completed_at, t.error_message, "
+            + "       m.payment_type, m.card_number, m.card_name, m.bank_name, o.restaurant_name "
+            + "FROM payment_transactions t "
+            + "JOIN payment_methods m ON t.payment_method_id = m.id "
+            + "LEFT JOIN orders o ON t.order_id = o.order_id "
+            + "WHERE m.username = ? "
+            + "ORDER BY COALESCE(t.completed_at, t.created_at) DESC");
+}
@@ -0,0 +1,209 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * StatementCache keeps one connection's prepared statements open between uses, so SQL from the
+ * SqlStatements registry is parsed once per connection instead of on every call.
+ * Connections from ConnectionPool.openConnection() are wrapped with one: prepareStatement() on registered SQL
+ * hands back a cached statement and close() puts it back, the least recently used one is closed when the cache is full.
+ * SQL that isn't in the registry (one-off tools, migrations, EXPLAIN) is prepared and closed normally.
+ */
+public class StatementCache {
+
+    static final int DEFAULT_CAPACITY = 32;
+
+    /**
+     * Hit/miss counters, shared by every cache of one pool so the numbers survive connections being replaced.
+     */
+    public static class Stats {
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong evictions = new AtomicLong();
+
+        public long getHits() {
+            return hits.get();
+        }
+
+        public long getMisses() {
+            return misses.get();
+        }
+
+        public long getEvictions() {
+            return evictions.get();
+        }
+
+        public double getHitRatio() {
+            long total = hits.get() + misses.get();
+            return total == 0 ? 0.0 : (double) hits.get() / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits=%d misses=%d evictions=%d hitRatio=%.2f",
+                    getHits(), getMisses(), getEvictions(), getHitRatio());
+        }
+    }
+
+    private final Connection raw;
+    private final int capacity;
+    private final Stats stats;
+    // statements that are prepared but not checked out right now, in least -> most recently used order
+    private final LinkedHashMap<String, PreparedStatement> idle = new LinkedHashMap<>(16, 0.75f, true);
+
+    private StatementCache(Connection raw, int capacity, Stats stats) {
+        this.raw = raw;
+        this.capacity = capacity;
+        this.stats = stats;
+    }
+
+    /**
+     * Wraps a connection so registered SQL is served from a statement cache.
+     * Closing the returned connection closes the cached statements and then the real connection.
+     * @param raw The connection to wrap.
+     * @param capacity How many statements to keep open at most.
+     * @param stats Where to count hits and misses.
+     * @return The caching connection.
+     */
+    public static Connection wrap(Connection raw, int capacity, Stats stats) {
+        StatementCache cache = new StatementCache(raw, capacity, stats);
+        return (Connection) Proxy.newProxyInstance(StatementCache.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, cache.new ConnectionHandler());
+    }
+
+    // sql plus the generated keys flag, a statement prepared one way can't stand in for the other
+    private static String key(String sql, int autoGeneratedKeys) {
+        return autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? "K:" + sql : "N:" + sql;
+    }
+
+    private synchronized PreparedStatement checkout(String sql, int autoGeneratedKeys) throws SQLException {
+        String key = key(sql, autoGeneratedKeys);
+        PreparedStatement ps = idle.remove(key);
+        if (ps != null && !ps.isClosed()) {
+            stats.hits.incrementAndGet();
+        } else {
+            stats.misses.incrementAndGet();
+            ps = raw.prepareStatement(sql, autoGeneratedKeys);
+        }
+        return (PreparedStatement) Proxy.newProxyInstance(StatementCache.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, new StatementHandler(key, ps));
+    }
+
+    /*
+    --> takes a statement back once its caller is done with it
+    --> leftover result sets are closed (so a reader doesn't keep its snapshot open) and parameters/batches are cleared
+    --> if the same SQL is already waiting in the cache (it was used twice at once) the extra copy is just closed
+    */
+    private synchronized void checkin(String key, PreparedStatement ps, List<ResultSet> results) {
+        try {
+            for (ResultSet rs : results) {
+                rs.close();
+            }
+            if (raw.isClosed() || ps.isClosed() || idle.containsKey(key)) {
+                ps.close();
+                return;
+            }
+            ps.clearParameters();
+            ps.clearBatch();
+            idle.put(key, ps);
+        } catch (SQLException e) {
+            Logger.catchAndLogBug(e, "StatementCache.checkin");
+            closeQuietly(ps);
+            return;
+        }
+        Iterator<PreparedStatement> eldest = idle.values().iterator();
+        while (idle.size() > capacity) {
+            closeQuietly(eldest.next());
+            eldest.remove();
+            stats.evictions.incrementAndGet();
+        }
+    }
+
+    private synchronized void closeAll() {
+        for (PreparedStatement ps : idle.values()) {
+            closeQuietly(ps);
+        }
+        idle.clear();
+    }
+
+    private static void closeQuietly(PreparedStatement ps) {
+        try {
+            ps.close();
+        } catch (SQLException ignored) { }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    // the wrapped connection: registered SQL goes through the cache, everything else straight to the real one
+    private class ConnectionHandler implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("prepareStatement".equals(name) && args != null && SqlStatements.isRegistered((String) args[0])) {
+                if (args.length == 1) {
+                    return checkout((String) args[0], Statement.NO_GENERATED_KEYS);
+                }
+                if (args.length == 2 && method.getParameterTypes()[1] == int.class) {
+                    return checkout((String) args[0], (Integer) args[1]);
+                }
+            }
+            if ("close".equals(name) && method.getParameterCount() == 0) {
+                closeAll();
+            }
+            return StatementCache.invoke(raw, method, args);
+        }
+    }
+
+    // one checkout of a cached statement; close() gives it back instead of closing it
+    private class StatementHandler implements InvocationHandler {
+        private final String key;
+        private final PreparedStatement ps;
+        private final List<ResultSet> results = new ArrayList<>(1);
+        private boolean returned;
+
+        StatementHandler(String key, PreparedStatement ps) {
+            this.key = key;
+            this.ps = ps;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("close".equals(name) && method.getParameterCount() == 0) {
+                if (!returned) {
+                    returned = true;
+                    checkin(key, ps, results);
+                }
+                return null;
+            }
+            if ("isClosed".equals(name) && method.getParameterCount() == 0) {
+                return returned || ps.isClosed();
+            }
+            if (returned) {
+                throw new SQLException("Statement has already been closed");
+            }
+            Object result = StatementCache.invoke(ps, method, args);
+            if (result instanceof ResultSet) {
+                results.add((ResultSet) result);
+            }
+            return result;
+        }
+    }
+}
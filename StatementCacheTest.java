@@ -0,0 +1,99 @@
+import org.junit.jupiter.api.*;
+import java.nio.file.*;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import static org.junit.jupiter.api.Assertions.*;
+/*
+--> Tests the per-connection prepared statement cache:
+    - a hot query (the delivered-order poll) is only parsed once per pooled connection
+    - the least recently used statement is evicted when the cache is full
+    - a statement handed back with its result set still open gets it closed, and unregistered SQL isn't cached
+--> Will return "Statement cache test passed" with the hit/miss counts if succeeded.
+ */
+public class StatementCacheTest {
+
+    private static Path orderDbPath;
+
+    private OrderDatabase orderDb;
+
+    @BeforeAll
+    static void setup() throws Exception {
+        orderDbPath = Files.createTempFile("test-statements", ".db");
+    }
+
+    @AfterAll
+    static void cleanup() throws Exception {
+        ConnectionPool.closeAll();
+        Files.deleteIfExists(orderDbPath);
+    }
+
+    @BeforeEach
+    void init() throws Exception {
+        orderDb = new OrderDatabase(orderDbPath);
+        orderDb.init();
+    }
+
+    @Test
+    void testHotQueryIsPreparedOnce() throws SQLException {
+        StatementCache.Stats stats = orderDb.getPool().getStatementStats();
+        long hitsBefore = stats.getHits();
+        long missesBefore = stats.getMisses();
+
+        for (int i = 0; i < 100; i++) {
+            orderDb.hasUnnotifiedDelivered("cachecustomer");
+        }
+
+        // calls in a row reuse the same pooled connection, so only the first one parses
+        assertEquals(1, stats.getMisses() - missesBefore);
+        assertEquals(99, stats.getHits() - hitsBefore);
+        System.out.println("Statement cache test passed - " + stats);
+    }
+
+    @Test
+    void testLeastRecentlyUsedIsEvicted() throws SQLException {
+        StatementCache.Stats stats = new StatementCache.Stats();
+        try (Connection conn = StatementCache.wrap(DriverManager.getConnection("jdbc:sqlite:" + orderDbPath), 2, stats)) {
+            prepareAndClose(conn, SqlStatements.ORDER_DETAILS);
+            prepareAndClose(conn, SqlStatements.ORDER_ITEMS);
+            prepareAndClose(conn, SqlStatements.ORDER_DETAILS);      // hit, ORDER_ITEMS is now the oldest
+            prepareAndClose(conn, SqlStatements.ORDER_STATUS);       // pushes ORDER_ITEMS out
+            assertEquals(1, stats.getEvictions());
+
+            prepareAndClose(conn, SqlStatements.ORDER_DETAILS);
+            assertEquals(2, stats.getHits());
+            prepareAndClose(conn, SqlStatements.ORDER_ITEMS);
+            assertEquals(4, stats.getMisses());
+        }
+    }
+
+    @Test
+    void testReturnedStatementIsReset() throws SQLException {
+        StatementCache.Stats stats = new StatementCache.Stats();
+        try (Connection conn = StatementCache.wrap(DriverManager.getConnection("jdbc:sqlite:" + orderDbPath), 4, stats)) {
+            PreparedStatement ps = conn.prepareStatement(SqlStatements.ORDER_STATUS);
+            ps.setLong(1, 1);
+            ResultSet rs = ps.executeQuery();
+            ps.close();  // result set deliberately left open
+            assertTrue(rs.isClosed());
+            assertTrue(ps.isClosed());
+            assertThrows(SQLException.class, () -> ps.setLong(1, 2));
+
+            // not in the registry, so it's a plain statement
+            try (PreparedStatement adHoc = conn.prepareStatement("SELECT 1")) {
+                adHoc.executeQuery().close();
+            }
+            assertEquals(0, stats.getHits());
+            assertEquals(1, stats.getMisses());
+        }
+    }
+
+    private static void prepareAndClose(Connection conn, String sql) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, 1);
+            ps.executeQuery().close();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+import java.util.List;
+
+/**
+ * StorageProfile is a named set of SQLite settings applied to every connection the database classes hand out.
+ * All profiles run in WAL mode so a writer (driver accepting an order) doesn't block readers (customer polling);
+ * they differ in how hard they sync to disk and how much memory they use for caching.
+ * The active profile comes from the FOODDASH_STORAGE_PROFILE environment variable (default BALANCED).
+ */
+public enum StorageProfile {
+    // fsync on every commit - survives power loss without losing the last transaction
+    SAFE("FULL", -2000, 0L, "DEFAULT", 5000),
+    // fsync only at checkpoints - can lose the last few commits on power loss, never corrupts
+    BALANCED("NORMAL", -8000, 64L * 1024 * 1024, "MEMORY", 5000),
+    // no fsync at all - fastest, but an OS crash can lose recent data; fine for demos and tests
+    FAST("OFF", -32000, 256L * 1024 * 1024, "MEMORY", 2000);
+
+    private final String synchronous;
+    private final int cacheSize;      // negative = size in KiB, like SQLite expects
+    private final long mmapSize;      // bytes of the file to memory map, 0 = off
+    private final String tempStore;
+    private final int busyTimeoutMs;
+
+    StorageProfile(String synchronous, int cacheSize, long mmapSize, String tempStore, int busyTimeoutMs) {
+        this.synchronous = synchronous;
+        this.cacheSize = cacheSize;
+        this.mmapSize = mmapSize;
+        this.tempStore = tempStore;
+        this.busyTimeoutMs = busyTimeoutMs;
+    }
+
+    /**
+     * Returns the profile chosen by the FOODDASH_STORAGE_PROFILE environment variable.
+     * Falls back to BALANCED if it isn't set or isn't a valid profile name.
+     * @return The configured storage profile.
+     */
+    public static StorageProfile current() {
+        String value = System.getenv("FOODDASH_STORAGE_PROFILE");
+        if (value != null && !value.isBlank()) {
+            try {
+                return StorageProfile.valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                Logger.catchAndLogBug(e, "StorageProfile.current");
+            }
+        }
+        return BALANCED;
+    }
+
+    /**
+     * Returns the PRAGMA statements that have to run on each new connection.
+     * journal_mode is not included since WAL is stored in the database file itself (see {@link #journalModePragma()}).
+     * @return PRAGMA statements in the order they should run.
+     */
+    public List<String> connectionPragmas() {
+        return List.of(
+                "PRAGMA busy_timeout = " + busyTimeoutMs,
+                "PRAGMA synchronous = " + synchronous,
+                "PRAGMA cache_size = " + cacheSize,
+                "PRAGMA mmap_size = " + mmapSize,
+                "PRAGMA temp_store = " + tempStore);
+    }
+
+    /**
+     * Returns the PRAGMA that switches the database file to WAL journaling.
+     * Only needs to run once per file (during init), it sticks after that.
+     * @return The journal_mode PRAGMA.
+     */
+    public String journalModePragma() {
+        return "PRAGMA journal_mode = WAL";
+    }
+
+    public String getSynchronous() {
+        return synchronous;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public long getMmapSize() {
+        return mmapSize;
+    }
+
+    public String getTempStore() {
+        return tempStore;
+    }
+
+    public int getBusyTimeoutMs() {
+        return busyTimeoutMs;
+    }
+}
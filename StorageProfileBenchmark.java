@@ -0,0 +1,140 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * StorageProfileBenchmark measures throughput and latency of each StorageProfile against a throwaway orders database.
+ * Runs three phases per profile: sequential order writes, delivered-order polling reads, and polling reads
+ * while a writer is active (the case WAL is meant to fix).
+ * Run with: java -cp ".;lib/sqlite-jdbc-3.42.0.0.jar" StorageProfileBenchmark [writes] [reads]
+ */
+public class StorageProfileBenchmark {
+
+    private static final int READER_THREADS = 4;
+
+    public static void main(String[] args) throws Exception {
+        int writes = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int reads = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+
+        System.out.println("Storage profile benchmark: " + writes + " writes, " + reads + " reads per phase");
+        System.out.println("=".repeat(96));
+        System.out.printf("%-9s %-14s %12s %10s %10s %10s%n", "Profile", "Phase", "ops/sec", "p50 ms", "p99 ms", "max ms");
+        System.out.println("-".repeat(96));
+
+        for (StorageProfile profile : StorageProfile.values()) {
+            Path dbPath = Files.createTempFile("bench-orders-" + profile.name().toLowerCase(), ".db");
+            try {
+                OrderDatabase orderDb = new OrderDatabase(dbPath, profile);
+                orderDb.init();
+
+                print(profile, "write", runWrites(orderDb, writes));
+                print(profile, "read", runReads(orderDb, reads));
+                print(profile, "read+writer", runReadsDuringWrites(orderDb, reads));
+            } finally {
+                deleteDatabase(dbPath);
+            }
+        }
+        System.out.println("=".repeat(96));
+    }
+
+    // sequential createOrder calls, each one commits on its own
+    private static long[] runWrites(OrderDatabase orderDb, int count) throws SQLException {
+        long[] latencies = new long[count];
+        for (int i = 0; i < count; i++) {
+            long start = System.nanoTime();
+            long orderId = orderDb.createOrder("bench" + (i % 50), "Bench Grill", "1 Bench St", "2 Home St", "none",
+                    10 + (i % 40), 1, "CARD", 41.98, 70.96, 41.99, 70.97);
+            if (orderId <= 0) {
+                throw new SQLException("createOrder failed during benchmark");
+            }
+            latencies[i] = System.nanoTime() - start;
+        }
+        return latencies;
+    }
+
+    // the same query MainScreen's delivered-order timer runs
+    private static long[] runReads(OrderDatabase orderDb, int count) throws SQLException {
+        long[] latencies = new long[count];
+        for (int i = 0; i < count; i++) {
+            long start = System.nanoTime();
+            orderDb.hasUnnotifiedDelivered("bench" + (i % 50));
+            latencies[i] = System.nanoTime() - start;
+        }
+        return latencies;
+    }
+
+    // readers poll from several threads while one thread keeps writing
+    private static long[] runReadsDuringWrites(OrderDatabase orderDb, int count) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(READER_THREADS + 1);
+        AtomicBoolean done = new AtomicBoolean(false);
+        try {
+            Future<?> writer = pool.submit(() -> {
+                while (!done.get()) {
+                    try {
+                        orderDb.createOrder("writer", "Bench Grill", "1 Bench St", "2 Home St", "none",
+                                25, 1, "CARD", 41.98, 70.96, 41.99, 70.97);
+                    } catch (SQLException e) {
+                        Logger.catchAndLogBug(e, "StorageProfileBenchmark.writer");
+                    }
+                }
+            });
+
+            int perThread = count / READER_THREADS;
+            long[] latencies = new long[perThread * READER_THREADS];
+            Future<?>[] readers = new Future<?>[READER_THREADS];
+            for (int t = 0; t < READER_THREADS; t++) {
+                int offset = t * perThread;
+                readers[t] = pool.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        long start = System.nanoTime();
+                        orderDb.hasUnnotifiedDelivered("bench" + (i % 50));
+                        latencies[offset + i] = System.nanoTime() - start;
+                    }
+                    return null;
+                });
+            }
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+            done.set(true);
+            writer.get();
+            return latencies;
+        } finally {
+            done.set(true);
+            pool.shutdown();
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private static void print(StorageProfile profile, String phase, long[] latencies) {
+        long total = 0;
+        for (long l : latencies) {
+            total += l;
+        }
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        // for the concurrent phase total is summed across threads, so scale by thread count
+        int threads = phase.equals("read+writer") ? READER_THREADS : 1;
+        double opsPerSec = total == 0 ? 0 : latencies.length / (total / 1e9 / threads);
+        System.out.printf("%-9s %-14s %12.0f %10.3f %10.3f %10.3f%n", profile, phase, opsPerSec,
+                percentile(sorted, 0.50), percentile(sorted, 0.99), sorted[sorted.length - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int index = (int) Math.min(sorted.length - 1, Math.round(p * (sorted.length - 1)));
+        return sorted[index] / 1e6;
+    }
+
+    private static void deleteDatabase(Path dbPath) throws Exception {
+        ConnectionPool.forDatabase(dbPath).close();
+        Files.deleteIfExists(dbPath);
+        Files.deleteIfExists(Path.of(dbPath + "-wal"));
+        Files.deleteIfExists(Path.of(dbPath + "-shm"));
+    }
+}
@@ -2,11 +2,11 @@ import java.sql.*;
 
 /**
  * UpdateOrderAddresses is a utility to update existing orders with restaurant addresses.
- * Connects to orders.db and sets restaurant_address based on restaurant_name.
+ * Connects to the orders database (fooddash.db, or orders.db on split installs) and sets restaurant_address based on restaurant_name.
  */
 public class UpdateOrderAddresses {
     public static void main(String[] args) {
-        String url = "jdbc:sqlite:orders.db";
+        String url = "jdbc:sqlite:" + DataStore.fileFor(java.nio.file.Path.of("."), "orders");
         
         try (Connection conn = DriverManager.getConnection(url)) {
             // Update existing orders with restaurant addresses
@@ -1,6 +1,5 @@
 import java.nio.file.Path;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -15,6 +14,8 @@ import javax.swing.JOptionPane;
 public class UserDataBase {
     private final Path dbPath;
     private final String url;
+    private final ConnectionPool pool;
+    private final StorageProfile profile;
     public Address address;
 
     /**
@@ -23,8 +24,20 @@ public class UserDataBase {
      * @throws SQLException if a database error occurs
      */
     public UserDataBase(Path dbPath) throws SQLException {
+        this(dbPath, StorageProfile.current());
+    }
+
+    /**
+     * Constructs a UserDataBase with the given database path and storage profile.
+     * @param dbPath Path to the SQLite database file.
+     * @param profile SQLite settings applied to every connection during init().
+     * @throws SQLException if a database error occurs
+     */
+    public UserDataBase(Path dbPath, StorageProfile profile) throws SQLException {
         this.dbPath = dbPath;
         this.url = "jdbc:sqlite:" + dbPath.toAbsolutePath().toString();
+        this.pool = ConnectionPool.forDatabase(dbPath);
+        this.profile = profile;
     }
 
     /**
@@ -32,26 +45,37 @@ public class UserDataBase {
      * @throws SQLException if a database error occurs
      */
     public UserDataBase() throws SQLException {
-        this.dbPath = Path.of("FoodDelivery.db");
-        this.url = "jdbc:sqlite:" + dbPath.toAbsolutePath().toString();
+        this(Path.of("FoodDelivery.db"));
     }
 
     public String getConnectionUrl() {
         return url;
     }
 
+    /**
+     * Borrows a pooled connection to users.db. Close it to give it back to the pool.
+     * @return A pooled connection.
+     * @throws SQLException if no connection is available
+     */
+    public Connection getConnection() throws SQLException {
+        return pool.getConnection();
+    }
+
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
     /*
     --> sets up the users table and handles migrations *from older database versions* * Updated refeactor methods*
     --> loads the JDBC driver
-    --> creates indexes on frequently queried columns
-    --> migrates the users table if needed
-    --> create UsersTable
+    --> applies the storage profile (WAL, sync level, cache) to the connection pool first
+    --> brings the schema up to date (tables, old columns, address zip type, indexes) through MIGRATIONS,
+        a file that's already current only costs one version read
     */
     public void init() throws SQLException {
         loadJDBCDriver();
-        createUsersTable();
-        migrateUsersTable();
-        createIndexes();
+        pool.useProfile(profile);
+        migrateSchema();
     }
 /*
 --> Refactored old loadJDBCDriver method, into separate method *Readabiltiy*
@@ -69,45 +93,12 @@ public class UserDataBase {
         }
     }
 /*
---> sets up the users table if it doesn't exist
---> creates the users table with necessary columns
---> into the database
-*/
-    private void createUsersTable() throws SQLException {
-        try (Connection conn = DriverManager.getConnection(url);
-             Statement stmt = conn.createStatement()) {
-            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS users ("
-                    + "username TEXT PRIMARY KEY,"
-                    + "password_hash TEXT NOT NULL,"
-                    + "user_type TEXT DEFAULT 'CUSTOMER',"
-                    + "full_name TEXT,"
-                    + "email TEXT,"
-                    + "phone TEXT,"
-                    + "admin_hash TEXT,"
-                    + "created_at INTEGER"
-                    + ")");
-        } catch (SQLException e) {
-            Logger.catchAndLogBug(e, "UserDataBase");
-            JOptionPane.showMessageDialog(null, "An error occurred while creating users table:\n" +
-                e.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
-            throw e;
-        }
-    }
-/*
---> handles migrations for older database versions
---> adds missing columns if they don't exist yet
---> also connects to the database
+--> runs any migrations this file hasn't had yet
+--> uses its own connection so the setup doesn't touch a pooled connection's state
 */
-    private void migrateUsersTable() throws SQLException {
-        try (Connection conn = DriverManager.getConnection(url);
-             Statement stmt = conn.createStatement()) {
-            addColumnIfNotExists(stmt, "user_type", "TEXT DEFAULT 'CUSTOMER'");
-            addColumnIfNotExists(stmt, "phone", "TEXT");
-            addColumnIfNotExists(stmt, "admin_hash", "TEXT");
-            addColumnIfNotExists(stmt, "address", "TEXT"); 
-            addColumnIfNotExists(stmt, "zipCode", "TEXT"); 
-            addColumnIfNotExists(stmt, "latitude", "REAL"); 
-            createAddressTableAndMigrate(conn,stmt);
+    private void migrateSchema() throws SQLException {
+        try (Connection conn = pool.openConnection()) {
+            MIGRATIONS.migrate(conn);
         } catch (SQLException e) {
             Logger.catchAndLogBug(e, "UserDataBase");
             JOptionPane.showMessageDialog(null, "An error occurred while migrating users table:\n" +
@@ -117,84 +108,80 @@ public class UserDataBase {
     }
 
     /*
-    --> adds a column to the users table if it doesn't already exist
-    --> used for database migrations; meaningful when updating older versions of the database
-    --> catches SQL exception if column already exists
-    --> And logger.CatchAndLogBug; catches other SQL exceptions and prints to bug.log
+    --> schema history for the users database, version is kept by SchemaMigrator (user_version, or schema_versions in fooddash.db)
+    --> add new changes as a new numbered step at the end, never edit a step that already shipped
     */
-    private void addColumnIfNotExists(Statement stmt, String columnName, String columnDef) {
-        try {
-            stmt.executeUpdate("ALTER TABLE users ADD COLUMN " + columnName + " " + columnDef);
-        } catch (SQLException e) {
-            if (!e.getMessage().contains("duplicate column name")) {
-                Logger.catchAndLogBug(e, "UserDataBase");
-            }
-        }
+    static final SchemaMigrator MIGRATIONS = new SchemaMigrator("UserDataBase")
+            .add(1, "baseline users schema", UserDataBase::createBaselineSchema);
+
+/*
+--> version 1 - everything init() used to do on every start
+--> creates the users table, adds the columns older versions are missing,
+    sets up the address table (fixing the zip column type) and the indexes
+*/
+    private static void createBaselineSchema(Statement stmt) throws SQLException {
+        stmt.executeUpdate("CREATE TABLE IF NOT EXISTS users ("
+                + "username TEXT PRIMARY KEY,"
+                + "password_hash TEXT NOT NULL,"
+                + "user_type TEXT DEFAULT 'CUSTOMER',"
+                + "full_name TEXT,"
+                + "email TEXT,"
+                + "phone TEXT,"
+                + "admin_hash TEXT,"
+                + "created_at INTEGER"
+                + ")");
+
+        // older versions of the users table
+        SchemaMigrator.addColumnIfMissing(stmt, "users", "user_type", "TEXT DEFAULT 'CUSTOMER'");
+        SchemaMigrator.addColumnIfMissing(stmt, "users", "phone", "TEXT");
+        SchemaMigrator.addColumnIfMissing(stmt, "users", "admin_hash", "TEXT");
+        SchemaMigrator.addColumnIfMissing(stmt, "users", "address", "TEXT");
+        SchemaMigrator.addColumnIfMissing(stmt, "users", "zipCode", "TEXT");
+        SchemaMigrator.addColumnIfMissing(stmt, "users", "latitude", "REAL");
+
+        createAddressTableAndMigrate(stmt);
+
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_users_type ON users(user_type)");
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_users_email ON users(email)");
     }
+
     /*
     --> Creates the address table if it doesn't exist and handles migration for the 'zip' column type.
-    --> This method is called during database initialization to ensure the address table is correctly set up.
     --> It checks if the 'zip' column in an existing 'address' table is of type INTEGER and, if so,
     --> migrates it to TEXT to align with the expected data type.
     --> If the 'address' table does not exist or does not require migration, it simply creates it.
     */
-    private void createAddressTableAndMigrate(Connection conn, Statement stmt) throws SQLException {
+    private static void createAddressTableAndMigrate(Statement stmt) throws SQLException {
         // Check if the address table needs migration for the 'zip' column
         boolean migrationNeeded = false;
-        try (ResultSet rs = conn.getMetaData().getColumns(null, null, "address", "zip")) {
-            if (rs.next()) {
-                String typeName = rs.getString("TYPE_NAME");
-                if ("INTEGER".equalsIgnoreCase(typeName)) {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(address)")) {
+            while (rs.next()) {
+                if ("zip".equalsIgnoreCase(rs.getString("name")) && "INTEGER".equalsIgnoreCase(rs.getString("type"))) {
                     migrationNeeded = true;
                 }
             }
         }
 
+        String createAddress = "CREATE TABLE IF NOT EXISTS address ("
+                + "username TEXT PRIMARY KEY,"
+                + "street TEXT,"
+                + "city TEXT,"
+                + "state TEXT,"
+                + "zip TEXT,"
+                + "latitude REAL,"
+                + "longitude REAL,"
+                + "FOREIGN KEY(username) REFERENCES users(username)"
+                + ")";
         if (migrationNeeded) {
             System.out.println("Migrating address table to update zip column type...");
             stmt.executeUpdate("ALTER TABLE address RENAME TO address_old");
-            stmt.executeUpdate("CREATE TABLE address ("
-                    + "username TEXT PRIMARY KEY,"
-                    + "street TEXT,"
-                    + "city TEXT,"
-                    + "state TEXT,"
-                    + "zip TEXT,"
-                    + "latitude REAL,"
-                    + "longitude REAL,"
-                    + "FOREIGN KEY(username) REFERENCES users(username)"
-                    + ")");
+            stmt.executeUpdate(createAddress);
             stmt.executeUpdate("INSERT INTO address (username, street, city, state, zip, latitude, longitude) "
                     + "SELECT username, street, city, state, zip, latitude, longitude FROM address_old");
             stmt.executeUpdate("DROP TABLE address_old");
             System.out.println("Address table migration complete.");
         } else {
-            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS address ("
-                    + "username TEXT PRIMARY KEY,"
-                    + "street TEXT,"
-                    + "city TEXT,"
-                    + "state TEXT,"
-                    + "zip TEXT,"
-                    + "latitude REAL,"
-                    + "longitude REAL,"
-                    + "FOREIGN KEY(username) REFERENCES users(username)"
-                    + ")");
-        }
-    }
-    /*
-    --> creates indexes on frequently queried columns for performance
-    --> connects to the database
-    -->  create indexes on user_type and email columns
-    */
-    private void createIndexes() throws SQLException {
-        try (Connection conn = DriverManager.getConnection(url);
-             Statement stmt = conn.createStatement()) {
-            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_users_type ON users(user_type)");
-            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_users_email ON users(email)");
-        } catch (SQLException e) {
-            Logger.catchAndLogBug(e, "UserDataBase");
-            JOptionPane.showMessageDialog(null, "An error occurred while creating indexes:\n" +
-                e.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
-            throw e;
+            stmt.executeUpdate(createAddress);
         }
     }
     /*
@@ -214,8 +201,8 @@ public class UserDataBase {
     // full version - can register any user type with all their info
     public boolean register(String username, String passwordHash, String userType,
                           String fullName, String email, String phone) throws SQLException {
-        String sql = "INSERT INTO users(username,password_hash,user_type,full_name,email,phone,created_at) VALUES(?,?,?,?,?,?,?)";
-        try (Connection conn = DriverManager.getConnection(url);
+        String sql = SqlStatements.USER_INSERT;
+        try (Connection conn = pool.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, username);
             ps.setString(2, passwordHash);
@@ -242,8 +229,8 @@ public class UserDataBase {
     --> returns false, if failed
     */
     public boolean authenticate(String username, String passwordHash) throws SQLException {
-        String sql = "SELECT password_hash FROM users WHERE username = ?";
-        try (Connection conn = DriverManager.getConnection(url);
+        String sql = SqlStatements.USER_PASSWORD_HASH;
+        try (Connection conn = pool.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, username);
             try (ResultSet rs = ps.executeQuery()) {
@@ -267,8 +254,8 @@ public class UserDataBase {
     --> returns true if username exists
     */
     public boolean userExists(String username) throws SQLException {
-        String sql = "SELECT 1 FROM users WHERE username = ?";
-        try (Connection conn = DriverManager.getConnection(url);
+        String sql = SqlStatements.USER_EXISTS;
+        try (Connection conn = pool.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, username);
             try (ResultSet rs = ps.executeQuery()) {
@@ -288,8 +275,8 @@ public class UserDataBase {
     --> returns the user type or null if not found
     */
     public String getUserType(String username) throws SQLException {
-        String sql = "SELECT user_type FROM users WHERE username = ?";
-        try (Connection conn = DriverManager.getConnection(url);
+        String sql = SqlStatements.USER_TYPE;
+        try (Connection conn = pool.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, username);
             try (ResultSet rs = ps.executeQuery()) {
@@ -312,8 +299,8 @@ public class UserDataBase {
     --> calls the database for the admin_hash value for the given username
     */
     public boolean verifyAdminHash(String username, String hashCode) throws SQLException {
-        String sql = "SELECT admin_hash FROM users WHERE username = ?";
-        try (Connection conn = DriverManager.getConnection(url);
+        String sql = SqlStatements.USER_ADMIN_HASH;
+        try (Connection conn = pool.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, username);
             try (ResultSet rs = ps.executeQuery()) {
@@ -358,8 +345,8 @@ public class UserDataBase {
     --> update in database
     */
     private void setAdminHash(String adminUsername, String adminHashCode) throws SQLException {
-        String sql = "UPDATE users SET admin_hash = ? WHERE username = ?";
-        try (Connection conn = DriverManager.getConnection(url);
+        String sql = SqlStatements.USER_SET_ADMIN_HASH;
+        try (Connection conn = pool.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, adminHashCode);
             ps.setString(2, adminUsername);
@@ -373,8 +360,8 @@ public class UserDataBase {
     }
 
     public void updateUserAddress(String username, Address address) throws SQLException {
-        String sql = "INSERT OR REPLACE INTO address (username, street, city, state, zip, latitude, longitude) VALUES (?, ?, ?, ?, ?, ?, ?)";
-        try (Connection conn = DriverManager.getConnection(url);
+        String sql = SqlStatements.USER_ADDRESS_UPSERT;
+        try (Connection conn = pool.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, username);
             ps.setString(2, address.getStreet());
@@ -388,8 +375,8 @@ public class UserDataBase {
     }
 
     public Address getUserAddress(String username) throws SQLException {
-        String sql = "SELECT street, city, state, zip, latitude, longitude FROM address WHERE username = ?";
-        try (Connection conn = DriverManager.getConnection(url);
+        String sql = SqlStatements.USER_ADDRESS;
+        try (Connection conn = pool.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, username);
             try (ResultSet rs = ps.executeQuery()) {